@@ -0,0 +1,137 @@
+package github.jomutils.android.barcode;
+
+import android.graphics.Point;
+import android.graphics.Rect;
+import android.os.Parcel;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the size and round-trip time of {@link BarcodeResultList} against writing every
+ * {@link BarcodeResult} as its own parcelable.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BarcodeResultListBenchmarkTest {
+
+    private static final String TAG = "BarcodeResultListBench";
+
+    private static final int RESULT_COUNT = 500;
+    private static final int ITERATIONS = 50;
+
+    @Test
+    public void compactListRoundTrips() {
+        final List<BarcodeResult> results = createResults(RESULT_COUNT);
+
+        final Parcel parcel = Parcel.obtain();
+        new BarcodeResultList(results).writeToParcel(parcel, 0);
+        parcel.setDataPosition(0);
+        final BarcodeResultList decoded = BarcodeResultList.CREATOR.createFromParcel(parcel);
+        parcel.recycle();
+
+        assertEquals(results.size(), decoded.size());
+        for (int i = 0; i < results.size(); i++) {
+            final BarcodeResult expected = results.get(i);
+            final BarcodeResult actual = decoded.getResults().get(i);
+            assertEquals(expected, actual);
+            assertEquals(expected.wifi, actual.wifi);
+            assertEquals(expected.url, actual.url);
+            assertEquals(expected.boundingBox, actual.boundingBox);
+            assertEquals(expected.cornerPoints.length, actual.cornerPoints.length);
+            for (int j = 0; j < expected.cornerPoints.length; j++) {
+                assertEquals(expected.cornerPoints[j], actual.cornerPoints[j]);
+            }
+        }
+    }
+
+    @Test
+    public void compactListIsSmallerThanTypedList() {
+        final List<BarcodeResult> results = createResults(RESULT_COUNT);
+
+        final Parcel legacy = Parcel.obtain();
+        legacy.writeTypedList(results);
+        final int legacySize = legacy.dataSize();
+        legacy.recycle();
+
+        final Parcel compact = Parcel.obtain();
+        new BarcodeResultList(results).writeToParcel(compact, 0);
+        final int compactSize = compact.dataSize();
+        compact.recycle();
+
+        // Warm up both paths before timing.
+        roundTripLegacy(results, ITERATIONS);
+        roundTripCompact(results, ITERATIONS);
+
+        final long legacyNanos = roundTripLegacy(results, ITERATIONS);
+        final long compactNanos = roundTripCompact(results, ITERATIONS);
+
+        Log.i(TAG, String.format("%d results | typed list: %d bytes, %.2f ms | compact: %d bytes, %.2f ms",
+                RESULT_COUNT,
+                legacySize, legacyNanos / 1e6 / ITERATIONS,
+                compactSize, compactNanos / 1e6 / ITERATIONS));
+
+        assertTrue("compact " + compactSize + " >= legacy " + legacySize, compactSize < legacySize);
+    }
+
+    private static long roundTripLegacy(List<BarcodeResult> results, int iterations) {
+        final long start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < iterations; i++) {
+            final Parcel parcel = Parcel.obtain();
+            parcel.writeTypedList(results);
+            parcel.setDataPosition(0);
+            parcel.createTypedArrayList(BarcodeResult.CREATOR);
+            parcel.recycle();
+        }
+        return SystemClock.elapsedRealtimeNanos() - start;
+    }
+
+    private static long roundTripCompact(List<BarcodeResult> results, int iterations) {
+        final long start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < iterations; i++) {
+            final Parcel parcel = Parcel.obtain();
+            new BarcodeResultList(results).writeToParcel(parcel, 0);
+            parcel.setDataPosition(0);
+            BarcodeResultList.CREATOR.createFromParcel(parcel);
+            parcel.recycle();
+        }
+        return SystemClock.elapsedRealtimeNanos() - start;
+    }
+
+    private static List<BarcodeResult> createResults(int count) {
+        final List<BarcodeResult> results = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final BarcodeResult result = new BarcodeResult();
+            result.rawValue = "0105012345678900" + "10LOT" + i;
+            result.displayValue = result.rawValue;
+            result.valueType = 5;
+            result.format = 1;
+            if (i % 10 == 0) {
+                result.url = new BarcodeResult.Url("title " + i, "https://example.com/" + i);
+            }
+            if (i % 25 == 0) {
+                result.wifi = new BarcodeResult.Wifi("ssid" + i, null, 2);
+            }
+            final int left = 100 + i % 50;
+            final int top = 200 + i % 30;
+            result.boundingBox = new Rect(left, top, left + 320, top + 80);
+            result.cornerPoints = new Point[]{
+                    new Point(left, top),
+                    new Point(left + 320, top + 2),
+                    new Point(left + 318, top + 80),
+                    new Point(left - 1, top + 79)
+            };
+            results.add(result);
+        }
+        return results;
+    }
+}
@@ -0,0 +1,195 @@
+package github.jomutils.android.barcode.analysis;
+
+import android.content.res.AssetManager;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.google.android.gms.tasks.Tasks;
+import com.google.mlkit.vision.barcode.Barcode;
+import com.google.mlkit.vision.barcode.BarcodeScanner;
+import com.google.mlkit.vision.common.InputImage;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import github.jomutils.android.barcode.BarcodeScanners;
+import github.jomutils.android.barcode.synthetic.RenderOptions;
+import github.jomutils.android.barcode.synthetic.Symbology;
+import github.jomutils.android.barcode.synthetic.SyntheticFrame;
+import github.jomutils.android.barcode.synthetic.SyntheticFrameGenerator;
+
+/**
+ * Measures, for each {@link RetryPreprocessor.Variant}, how long it takes and how many images of a
+ * corpus it makes decodable compared to the raw image.
+ * <p>
+ * The corpus is generated: faded, glared and dimly lit labels of a few symbologies, rendered by
+ * {@link SyntheticFrameGenerator}. Every image in the test APK's {@code assets/retry-corpus}
+ * directory is added to it, e.g. photos of real labels that fail raw. Results are logged under
+ * {@link #TAG}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class RetryPreprocessorBenchmarkTest {
+
+    private static final String TAG = "RetryPreprocessorBench";
+
+    private static final String CORPUS_DIR = "retry-corpus";
+    private static final int TIMING_ITERATIONS = 20;
+    private static final int FRAME_WIDTH = 640;
+    private static final int FRAME_HEIGHT = 480;
+
+    @Test
+    public void measureCostAndDetectionGain() throws Exception {
+        final List<LumaImage> corpus = generateCorpus();
+        final AssetManager assets = InstrumentationRegistry.getInstrumentation().getContext().getAssets();
+        final String[] files = assets.list(CORPUS_DIR);
+        if (files != null) {
+            for (String file : files) {
+                final LumaImage image = loadLuma(assets, CORPUS_DIR + "/" + file);
+                if (image != null) {
+                    corpus.add(image);
+                }
+            }
+        }
+
+        final RetryPreprocessor.Variant[] variants = RetryPreprocessor.Variant.values();
+        final RetryPreprocessor preprocessor = new RetryPreprocessor();
+        final BarcodeScanner scanner = BarcodeScanners.newClient(null);
+
+        int rawDetected = 0;
+        final int[] detected = new int[variants.length];
+        final int[] gained = new int[variants.length];
+        final long[] totalNanos = new long[variants.length];
+        int images = 0;
+
+        try {
+            for (LumaImage image : corpus) {
+                final byte[] luma = image.luma;
+                final int width = image.width;
+                final int height = image.height;
+                images++;
+
+                final boolean raw = decode(scanner, toNv21(luma, width, height), width, height);
+                if (raw) {
+                    rawDetected++;
+                }
+
+                for (int v = 0; v < variants.length; v++) {
+                    byte[] work = null;
+                    final long start = System.nanoTime();
+                    for (int i = 0; i < TIMING_ITERATIONS; i++) {
+                        work = luma.clone();
+                        preprocessor.apply(variants[v], work, width, 0, 0, width, height);
+                    }
+                    totalNanos[v] += (System.nanoTime() - start) / TIMING_ITERATIONS;
+
+                    if (decode(scanner, toNv21(work, width, height), width, height)) {
+                        detected[v]++;
+                        if (!raw) {
+                            gained[v]++;
+                        }
+                    }
+                }
+            }
+        } finally {
+            scanner.close();
+        }
+
+        final StringBuilder report = new StringBuilder()
+                .append(images).append(" images, raw detected ").append(rawDetected).append('\n');
+        for (int v = 0; v < variants.length; v++) {
+            report.append(String.format("%-20s detected %3d  gained %3d  avg %.2f ms%n",
+                    variants[v], detected[v], gained[v], totalNanos[v] / 1e6 / Math.max(1, images)));
+        }
+        Log.i(TAG, report.toString());
+    }
+
+    /**
+     * Renders labels under the conditions the variants are meant for, each of them with every
+     * symbology.
+     */
+    private static List<LumaImage> generateCorpus() {
+        final RenderOptions base = new RenderOptions.Builder()
+                .setFrameSize(FRAME_WIDTH, FRAME_HEIGHT)
+                .setNoiseSigma(3)
+                .build();
+        final RenderOptions[] conditions = {
+                base.buildUpon().setContrast(0.2f).build(),
+                base.buildUpon().setContrast(0.35f).setNoiseSigma(10).build(),
+                base.buildUpon().setGlare(0.8f).build(),
+                base.buildUpon().setGlare(0.6f).setContrast(0.5f).build(),
+                base.buildUpon().setBackground(20).setContrast(0.3f).build(),
+                base.buildUpon().setBlurRadius(2).setContrast(0.4f).build(),
+        };
+        final Symbology[] symbologies = {Symbology.EAN_13, Symbology.CODE_128, Symbology.QR_CODE};
+        final String[] contents = {"400638133393", "LOT-2021-0457", "https://example.com/retry"};
+
+        final List<LumaImage> corpus = new ArrayList<>(conditions.length * symbologies.length);
+        for (int c = 0; c < conditions.length; c++) {
+            for (int s = 0; s < symbologies.length; s++) {
+                final SyntheticFrame frame = SyntheticFrameGenerator.render(symbologies[s], contents[s],
+                        conditions[c].buildUpon().setSeed(c * 10L + s).build());
+                corpus.add(new LumaImage(frame.getLuma(), frame.getWidth(), frame.getHeight()));
+            }
+        }
+        return corpus;
+    }
+
+    private static LumaImage loadLuma(AssetManager assets, String path) throws IOException {
+        final Bitmap bitmap;
+        try (InputStream stream = assets.open(path)) {
+            bitmap = BitmapFactory.decodeStream(stream);
+        }
+        if (bitmap == null) {
+            return null;
+        }
+        // NV21 needs even dimensions.
+        final int width = bitmap.getWidth() & ~1;
+        final int height = bitmap.getHeight() & ~1;
+        final int[] pixels = new int[width * height];
+        bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+        bitmap.recycle();
+
+        final byte[] luma = new byte[pixels.length];
+        for (int i = 0; i < pixels.length; i++) {
+            final int p = pixels[i];
+            luma[i] = (byte) ((77 * ((p >> 16) & 0xFF) + 150 * ((p >> 8) & 0xFF) + 29 * (p & 0xFF)) >> 8);
+        }
+        return new LumaImage(luma, width, height);
+    }
+
+    private static byte[] toNv21(byte[] luma, int width, int height) {
+        final byte[] nv21 = new byte[width * height * 3 / 2];
+        System.arraycopy(luma, 0, nv21, 0, luma.length);
+        for (int i = luma.length; i < nv21.length; i++) {
+            nv21[i] = (byte) 128;
+        }
+        return nv21;
+    }
+
+    private static boolean decode(BarcodeScanner scanner, byte[] nv21, int width, int height) throws Exception {
+        final InputImage image = InputImage.fromByteArray(nv21, width, height, 0, InputImage.IMAGE_FORMAT_NV21);
+        final List<Barcode> barcodes = Tasks.await(scanner.process(image));
+        return !barcodes.isEmpty();
+    }
+
+    private static final class LumaImage {
+        final byte[] luma;
+        final int width;
+        final int height;
+
+        LumaImage(byte[] luma, int width, int height) {
+            this.luma = luma;
+            this.width = width;
+            this.height = height;
+        }
+    }
+}
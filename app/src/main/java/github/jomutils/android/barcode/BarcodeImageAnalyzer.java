@@ -1,5 +1,10 @@
 package github.jomutils.android.barcode;
 
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.os.SystemClock;
+
+import androidx.annotation.Nullable;
 import androidx.camera.core.ImageAnalysis;
 import androidx.camera.core.ImageProxy;
 
@@ -8,43 +13,374 @@ import com.google.mlkit.vision.barcode.BarcodeScanner;
 import com.google.mlkit.vision.common.InputImage;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import github.jomutils.android.barcode.analysis.FramePipeline;
+import github.jomutils.android.barcode.analysis.FrameStage;
+import github.jomutils.android.barcode.analysis.LumaFrame;
+import github.jomutils.android.barcode.analysis.RetryPreprocessor;
+import github.jomutils.android.barcode.analysis.RoiResultCache;
+import github.jomutils.android.barcode.camera.ImageTransform;
+import github.jomutils.android.barcode.camera.ImageTransformTracker;
 
 public abstract class BarcodeImageAnalyzer implements ImageAnalysis.Analyzer {
 
     private final BarcodeScanner barcodeScanner;
     private final Executor listenerExecutor;
+    private final Executor resultExecutor;
+
+    private final AtomicLong frameSequence = new AtomicLong();
+    private volatile boolean frozen;
+    /**
+     * Results of frames up to this sequence number were submitted before the last
+     * {@link #resume()} and are dropped.
+     */
+    private volatile long resumeAfterSequence;
+
+    @Nullable
+    private volatile BarcodeScanner fallbackScanner;
+    private volatile int fallbackIntervalFrames;
+    private int decodedFrames;
+
+    private final AtomicInteger decodesInFlight = new AtomicInteger();
+    private volatile int maxDecodesInFlight;
+
+    private final LumaFrame lumaFrame = new LumaFrame();
+    private volatile FramePipeline<List<Barcode>> pipeline = new FramePipeline<>();
+    private volatile float roiWidthFraction = 1f;
+    private volatile float roiHeightFraction = 1f;
+
+    @Nullable
+    private volatile ImageTransformTracker imageTransformTracker;
+    private volatile boolean filterToVisibleArea;
+    // Scratch for mapping the ROI, analyzer thread only.
+    private final RectF roiViewRect = new RectF();
+    private final Rect roiBufferRect = new Rect();
+    private final float[] roiPoints = new float[4];
 
     protected BarcodeImageAnalyzer(BarcodeScanner barcodeScanner, Executor listenerExecutor) {
+        this(barcodeScanner, listenerExecutor, listenerExecutor);
+    }
+
+    /**
+     * @param listenerExecutor runs the bookkeeping of every decoded frame, the stages' and the
+     *                         cache's included, and {@link #onProcessFail(Exception)}; it should
+     *                         not drop runnables, e.g. a {@link ScopedExecutor} with
+     *                         {@link ScopedExecutor.OverflowPolicy#GROW}
+     * @param resultExecutor   runs {@link #onProceed(List)}, after the frame's bookkeeping; it may
+     *                         drop or supersede results, e.g.
+     *                         {@link ScopedExecutor#newSupersedingExecutor()}
+     */
+    protected BarcodeImageAnalyzer(BarcodeScanner barcodeScanner, Executor listenerExecutor, Executor resultExecutor) {
         this.barcodeScanner = barcodeScanner;
         this.listenerExecutor = listenerExecutor;
+        this.resultExecutor = resultExecutor;
+    }
+
+    /**
+     * Stops admitting frames. Frames keep arriving and are closed right away, so all use cases stay
+     * bound. Results of frames already submitted to the decoder are dropped.
+     */
+    public void freeze() {
+        frozen = true;
+    }
+
+    /**
+     * Admits frames again, starting with the first frame after this call. Results of frames
+     * submitted before it are dropped.
+     */
+    public void resume() {
+        resumeAfterSequence = frameSequence.get();
+        frozen = false;
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    /**
+     * Appends a stage run on every admitted frame before decoding.
+     */
+    public synchronized void addStage(FrameStage stage) {
+        pipeline = pipeline.withStage(stage);
+    }
+
+    /**
+     * Sets the preprocessor applied to frames following a miss, {@code null} to decode raw frames
+     * only.
+     */
+    public synchronized void setRetryPreprocessor(@Nullable RetryPreprocessor retryPreprocessor) {
+        pipeline = pipeline.withRetryPreprocessor(retryPreprocessor);
+    }
+
+    /**
+     * Sets the cache answering frames whose region of interest looks like a recently decoded one
+     * without decoding them, {@code null} to decode every frame.
+     */
+    public synchronized void setResultCache(@Nullable RoiResultCache<List<Barcode>> resultCache) {
+        pipeline = pipeline.withResultCache(resultCache);
+    }
+
+    /**
+     * Decodes every {@code intervalFrames}th frame with {@code fallbackScanner} instead of the main
+     * scanner, e.g. an all-formats scanner next to a narrowed one so rare formats are still found.
+     * {@code null} to always use the main scanner.
+     */
+    public void setFallbackScanner(@Nullable BarcodeScanner fallbackScanner, int intervalFrames) {
+        this.fallbackIntervalFrames = Math.max(1, intervalFrames);
+        this.fallbackScanner = fallbackScanner;
+    }
+
+    /**
+     * Limits how many frames may be decoding at once. The decoder runs asynchronously, so without
+     * a limit frames queue up in it when it is slower than the camera. Frames over the limit are
+     * skipped before any stage runs. 0 for no limit, the default.
+     */
+    public void setMaxDecodesInFlight(int maxDecodesInFlight) {
+        this.maxDecodesInFlight = Math.max(0, maxDecodesInFlight);
+    }
+
+    /**
+     * Sets the region of interest handed to the stages, centered and sized relative to the
+     * displayed frame. Defaults to the whole frame.
+     */
+    public void setRoiFractions(float widthFraction, float heightFraction) {
+        roiWidthFraction = widthFraction;
+        roiHeightFraction = heightFraction;
+    }
+
+    /**
+     * Feeds the geometry of every frame to {@code tracker}. Once the tracker also knows the
+     * preview view, the region of interest is the reticle mapped exactly into the frame instead of
+     * fractions of the whole frame.
+     */
+    public void setImageTransformTracker(@Nullable ImageTransformTracker tracker) {
+        this.imageTransformTracker = tracker;
+    }
+
+    /**
+     * Drops barcodes whose center is outside the part of the frame the preview shows, so nothing
+     * the user cannot see is reported. Needs {@link #setImageTransformTracker} with a known view.
+     */
+    public void setFilterToVisibleArea(boolean filterToVisibleArea) {
+        this.filterToVisibleArea = filterToVisibleArea;
+    }
+
+    private boolean isAdmitted(long sequence) {
+        return !frozen && sequence > resumeAfterSequence;
     }
 
     @Override
     public void analyze(ImageProxy imageProxy) {
-        final ByteBuffer buffer = imageProxy.getPlanes()[0].getBuffer();
-        InputImage inputImage = InputImage.fromByteBuffer(buffer,
-                imageProxy.getWidth(),
-                imageProxy.getHeight(),
-                imageProxy.getImageInfo().getRotationDegrees(),
-                InputImage.IMAGE_FORMAT_NV21
-        );
+        final long sequence = frameSequence.incrementAndGet();
+        if (!isAdmitted(sequence)) {
+            imageProxy.close();
+            return;
+        }
+
+        final int maxDecodesInFlight = this.maxDecodesInFlight;
+        if (maxDecodesInFlight > 0 && decodesInFlight.get() >= maxDecodesInFlight) {
+            onFrameSkipped(null);
+            imageProxy.close();
+            return;
+        }
+
+        final ImageTransformTracker tracker = this.imageTransformTracker;
+        ImageTransform transform = null;
+        if (tracker != null) {
+            tracker.onImage(imageProxy.getWidth(),
+                    imageProxy.getHeight(),
+                    imageProxy.getImageInfo().getRotationDegrees(),
+                    imageProxy.getCropRect());
+            transform = tracker.get();
+        }
+
+        final ImageProxy.PlaneProxy plane = imageProxy.getPlanes()[0];
+        final ByteBuffer buffer = plane.getBuffer();
+
+        final FramePipeline<List<Barcode>> pipeline = this.pipeline;
+        byte[] preprocessed = null;
+        long roiHash = 0;
+        if (pipeline.readsFrames()) {
+            final LumaFrame frame = lumaFrame;
+            frame.set(buffer,
+                    plane.getRowStride(),
+                    imageProxy.getWidth(),
+                    imageProxy.getHeight(),
+                    imageProxy.getImageInfo().getRotationDegrees(),
+                    sequence);
+            setRoi(frame, transform);
+            switch (pipeline.prepare(frame)) {
+                case FramePipeline.REJECTED:
+                    onFrameSkipped(pipeline.getRejectingStage());
+                    imageProxy.close();
+                    return;
+                case FramePipeline.CACHED:
+                    final List<Barcode> cached = pipeline.getCachedResult();
+                    imageProxy.close();
+                    listenerExecutor.execute(() -> {
+                        pipeline.onCachedFrameDecoded(sequence, cached.size());
+                        proceed(sequence, cached);
+                    });
+                    return;
+                default:
+                    preprocessed = pipeline.getPreprocessed();
+                    roiHash = pipeline.getRoiHash();
+                    break;
+            }
+        }
+
+        InputImage inputImage;
+        if (preprocessed != null) {
+            inputImage = InputImage.fromByteArray(preprocessed,
+                    imageProxy.getWidth(),
+                    imageProxy.getHeight(),
+                    imageProxy.getImageInfo().getRotationDegrees(),
+                    InputImage.IMAGE_FORMAT_NV21
+            );
+        } else {
+            inputImage = InputImage.fromByteBuffer(buffer,
+                    imageProxy.getWidth(),
+                    imageProxy.getHeight(),
+                    imageProxy.getImageInfo().getRotationDegrees(),
+                    InputImage.IMAGE_FORMAT_NV21
+            );
+        }
 
         // Pass image to an ML Kit Vision API
-        process(inputImage);
+        process(inputImage, imageProxy.getWidth(), imageProxy.getHeight(), sequence,
+                pipeline, preprocessed, roiHash,
+                filterToVisibleArea ? transform : null);
 
         imageProxy.close();
     }
 
-    private void process(InputImage image) {
+    private void process(InputImage image, int width, int height, long sequence,
+                         FramePipeline<List<Barcode>> pipeline,
+                         @Nullable byte[] preprocessed,
+                         long roiHash,
+                         @Nullable ImageTransform visibleAreaFilter) {
+        final BarcodeScanner fallbackScanner = this.fallbackScanner;
+        final boolean fallback = fallbackScanner != null && ++decodedFrames % fallbackIntervalFrames == 0;
+        final BarcodeScanner scanner = fallback ? fallbackScanner : barcodeScanner;
+
+        final long startNanos = SystemClock.elapsedRealtimeNanos();
+        decodesInFlight.incrementAndGet();
         /*Task<List<Barcode>> result = */
-        barcodeScanner.process(image)
-                .addOnSuccessListener(listenerExecutor, this::onProceed)
-                .addOnFailureListener(listenerExecutor, this::onProcessFail);
+        scanner.process(image)
+                .addOnCompleteListener(Runnable::run, task -> {
+                    decodesInFlight.decrementAndGet();
+                    // The decoder no longer reads it.
+                    if (preprocessed != null) {
+                        pipeline.release(preprocessed);
+                    }
+                })
+                .addOnSuccessListener(listenerExecutor, decoded -> {
+                    final List<Barcode> barcodes = visibleAreaFilter != null
+                            ? filterVisible(decoded, visibleAreaFilter)
+                            : decoded;
+                    final long latencyNanos = SystemClock.elapsedRealtimeNanos() - startNanos;
+                    onFrameProcessed(width, height, latencyNanos, barcodes.size());
+                    if (fallback) {
+                        onFallbackFrameProcessed(latencyNanos, barcodes.size());
+                    }
+                    pipeline.onFrameDecoded(sequence, roiHash, barcodes, barcodes.size());
+                    proceed(sequence, barcodes);
+                })
+                .addOnFailureListener(listenerExecutor, e -> {
+                    // A failed decode found nothing, so the stages and the retry schedule move
+                    // on and the cache entry of this ROI is dropped.
+                    pipeline.onFrameDecoded(sequence, roiHash, null, 0);
+                    if (isAdmitted(sequence)) {
+                        onProcessFail(e);
+                    }
+                });
+    }
+
+    /**
+     * Hands the result of frame {@code sequence} to {@link #onProceed(List)} on the result
+     * executor. Called on the listener executor.
+     */
+    private void proceed(long sequence, List<Barcode> barcodes) {
+        if (resultExecutor == listenerExecutor) {
+            if (isAdmitted(sequence)) {
+                onProceed(barcodes);
+            }
+            return;
+        }
+        resultExecutor.execute(() -> {
+            if (isAdmitted(sequence)) {
+                onProceed(barcodes);
+            }
+        });
+    }
+
+    /**
+     * Sets the region of interest to the reticle mapped through {@code transform}, or to centered
+     * fractions of the frame while the view is unknown.
+     */
+    private void setRoi(LumaFrame frame, @Nullable ImageTransform transform) {
+        if (transform != null && transform.hasView()) {
+            final float viewWidth = transform.getViewWidth();
+            final float viewHeight = transform.getViewHeight();
+            final float halfWidth = viewWidth * roiWidthFraction / 2f;
+            final float halfHeight = viewHeight * roiHeightFraction / 2f;
+            roiViewRect.set(viewWidth / 2f - halfWidth, viewHeight / 2f - halfHeight,
+                    viewWidth / 2f + halfWidth, viewHeight / 2f + halfHeight);
+            transform.viewToBuffer(roiViewRect, roiPoints, roiBufferRect);
+            if (roiBufferRect.width() > 0 && roiBufferRect.height() > 0) {
+                frame.setRoi(roiBufferRect.left, roiBufferRect.top, roiBufferRect.right, roiBufferRect.bottom);
+                return;
+            }
+        }
+        frame.setCenteredRoi(roiWidthFraction, roiHeightFraction);
+    }
+
+    /**
+     * Returns the barcodes whose center the view shows, {@code barcodes} itself when it is all of
+     * them.
+     */
+    private static List<Barcode> filterVisible(List<Barcode> barcodes, ImageTransform transform) {
+        List<Barcode> visible = null;
+        for (int i = 0; i < barcodes.size(); i++) {
+            final Barcode barcode = barcodes.get(i);
+            final Rect box = barcode.getBoundingBox();
+            final boolean shown = box == null || transform.isVisible(box.exactCenterX(), box.exactCenterY());
+            if (!shown && visible == null) {
+                visible = new ArrayList<>(barcodes.subList(0, i));
+            } else if (shown && visible != null) {
+                visible.add(barcode);
+            }
+        }
+        return visible != null ? visible : barcodes;
     }
 
     public abstract void onProceed(List<Barcode> barcodes);
 
     public abstract void onProcessFail(Exception e);
+
+    /**
+     * Called on the listener executor before {@link #onProceed(List)} with the size of the analyzed
+     * image, the time the decoder took for it and the number of barcodes found.
+     */
+    protected void onFrameProcessed(int width, int height, long latencyNanos, int barcodeCount) {
+    }
+
+    /**
+     * Called on the listener executor right after {@link #onFrameProcessed} for frames decoded by
+     * the fallback scanner.
+     */
+    protected void onFallbackFrameProcessed(long latencyNanos, int barcodeCount) {
+    }
+
+    /**
+     * Called on the analyzer thread when {@code stage} kept a frame from being decoded, or with
+     * {@code null} when the frame was skipped because of {@link #setMaxDecodesInFlight(int)}.
+     */
+    protected void onFrameSkipped(@Nullable FrameStage stage) {
+    }
 }
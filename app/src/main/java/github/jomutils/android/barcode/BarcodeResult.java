@@ -10,6 +10,8 @@ import com.google.mlkit.vision.barcode.Barcode;
 import java.util.Arrays;
 import java.util.Objects;
 
+import github.jomutils.android.barcode.gs1.Gs1Elements;
+
 public class BarcodeResult implements Parcelable {
     public String rawValue;
     public String displayValue;
@@ -20,6 +22,9 @@ public class BarcodeResult implements Parcelable {
     public Rect boundingBox;
     public Point[] cornerPoints;
 
+    private transient Gs1Elements gs1Elements;
+    private transient String gs1RawValue;
+
     public BarcodeResult() {
     }
 
@@ -77,6 +82,20 @@ public class BarcodeResult implements Parcelable {
         }
     };
 
+    /**
+     * Returns the GS1 Application Identifiers of {@link #rawValue}, parsed on first call and again,
+     * into a new instance, whenever {@link #rawValue} has been reassigned since; instances already
+     * returned never change. Check {@link Gs1Elements#isValid()} since most non-GS1 payloads do not
+     * parse.
+     */
+    public Gs1Elements getGs1Elements() {
+        if (gs1Elements == null || gs1RawValue != rawValue) {
+            gs1Elements = Gs1Elements.of(rawValue);
+            gs1RawValue = rawValue;
+        }
+        return gs1Elements;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -0,0 +1,292 @@
+package github.jomutils.android.barcode;
+
+import android.graphics.Point;
+import android.graphics.Rect;
+
+import androidx.annotation.NonNull;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Compact binary encoding of {@link BarcodeResult}.
+ * <p>
+ * Integers are written as zig-zag varints, optional fields are announced by a presence bitmask
+ * instead of null markers, a {@code displayValue} equal to {@code rawValue} is not written twice,
+ * and corner points are packed as {@code int[8]} deltas from the bounding box origin.
+ */
+public final class BarcodeResultCodec {
+
+    private BarcodeResultCodec() {
+        //no instance
+    }
+
+    private static final int FORMAT_VERSION = 1;
+
+    private static final int HAS_RAW_VALUE = 1;
+    private static final int HAS_DISPLAY_VALUE = 1 << 1;
+    private static final int DISPLAY_SAME_AS_RAW = 1 << 2;
+    private static final int HAS_WIFI = 1 << 3;
+    private static final int HAS_URL = 1 << 4;
+    private static final int HAS_BOUNDING_BOX = 1 << 5;
+    private static final int HAS_CORNER_POINTS = 1 << 6;
+
+    /**
+     * Encodes a whole list in one pass.
+     */
+    @NonNull
+    public static byte[] encodeList(@NonNull List<BarcodeResult> results) {
+        final Writer writer = new Writer(32 + results.size() * 48);
+        writer.writeVarint(FORMAT_VERSION);
+        writer.writeVarint(results.size());
+        for (BarcodeResult result : results) {
+            write(writer, result);
+        }
+        return writer.toByteArray();
+    }
+
+    @NonNull
+    public static List<BarcodeResult> decodeList(@NonNull byte[] bytes) {
+        final Reader reader = new Reader(bytes);
+        final int version = reader.readVarint();
+        if (version != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unsupported encoding version " + version);
+        }
+        final int size = reader.readVarint();
+        final List<BarcodeResult> results = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            results.add(read(reader));
+        }
+        return results;
+    }
+
+    @NonNull
+    public static byte[] encode(@NonNull BarcodeResult result) {
+        final Writer writer = new Writer(48);
+        write(writer, result);
+        return writer.toByteArray();
+    }
+
+    @NonNull
+    public static BarcodeResult decode(@NonNull byte[] bytes) {
+        return read(new Reader(bytes));
+    }
+
+    static void write(Writer writer, BarcodeResult result) {
+        final boolean sameDisplay = result.displayValue != null
+                && Objects.equals(result.rawValue, result.displayValue);
+        final boolean hasCorners = result.cornerPoints != null && result.cornerPoints.length > 0;
+
+        int flags = 0;
+        if (result.rawValue != null) flags |= HAS_RAW_VALUE;
+        if (sameDisplay) flags |= DISPLAY_SAME_AS_RAW;
+        else if (result.displayValue != null) flags |= HAS_DISPLAY_VALUE;
+        if (result.wifi != null) flags |= HAS_WIFI;
+        if (result.url != null) flags |= HAS_URL;
+        if (result.boundingBox != null) flags |= HAS_BOUNDING_BOX;
+        if (hasCorners) flags |= HAS_CORNER_POINTS;
+
+        writer.writeVarint(flags);
+        writer.writeSignedVarint(result.valueType);
+        writer.writeSignedVarint(result.format);
+
+        if ((flags & HAS_RAW_VALUE) != 0) writer.writeString(result.rawValue);
+        if ((flags & HAS_DISPLAY_VALUE) != 0) writer.writeString(result.displayValue);
+        if ((flags & HAS_WIFI) != 0) {
+            writer.writeNullableString(result.wifi.ssid);
+            writer.writeNullableString(result.wifi.password);
+            writer.writeSignedVarint(result.wifi.encryptionType);
+        }
+        if ((flags & HAS_URL) != 0) {
+            writer.writeNullableString(result.url.title);
+            writer.writeNullableString(result.url.url);
+        }
+
+        int originX = 0;
+        int originY = 0;
+        if ((flags & HAS_BOUNDING_BOX) != 0) {
+            final Rect box = result.boundingBox;
+            originX = box.left;
+            originY = box.top;
+            writer.writeSignedVarint(box.left);
+            writer.writeSignedVarint(box.top);
+            writer.writeSignedVarint(box.right - box.left);
+            writer.writeSignedVarint(box.bottom - box.top);
+        }
+        if (hasCorners) {
+            final int[] packed = packCorners(result.cornerPoints);
+            writer.writeVarint(packed.length);
+            for (int i = 0; i < packed.length; i += 2) {
+                writer.writeSignedVarint(packed[i] - originX);
+                writer.writeSignedVarint(packed[i + 1] - originY);
+            }
+        }
+    }
+
+    static BarcodeResult read(Reader reader) {
+        final BarcodeResult result = new BarcodeResult();
+        final int flags = reader.readVarint();
+        result.valueType = reader.readSignedVarint();
+        result.format = reader.readSignedVarint();
+
+        if ((flags & HAS_RAW_VALUE) != 0) result.rawValue = reader.readString();
+        if ((flags & HAS_DISPLAY_VALUE) != 0) result.displayValue = reader.readString();
+        else if ((flags & DISPLAY_SAME_AS_RAW) != 0) result.displayValue = result.rawValue;
+        if ((flags & HAS_WIFI) != 0) {
+            final String ssid = reader.readNullableString();
+            final String password = reader.readNullableString();
+            result.wifi = new BarcodeResult.Wifi(ssid, password, reader.readSignedVarint());
+        }
+        if ((flags & HAS_URL) != 0) {
+            final String title = reader.readNullableString();
+            result.url = new BarcodeResult.Url(title, reader.readNullableString());
+        }
+
+        int originX = 0;
+        int originY = 0;
+        if ((flags & HAS_BOUNDING_BOX) != 0) {
+            originX = reader.readSignedVarint();
+            originY = reader.readSignedVarint();
+            final int width = reader.readSignedVarint();
+            final int height = reader.readSignedVarint();
+            result.boundingBox = new Rect(originX, originY, originX + width, originY + height);
+        }
+        if ((flags & HAS_CORNER_POINTS) != 0) {
+            final int[] packed = new int[reader.readVarint()];
+            for (int i = 0; i < packed.length; i += 2) {
+                packed[i] = reader.readSignedVarint() + originX;
+                packed[i + 1] = reader.readSignedVarint() + originY;
+            }
+            result.cornerPoints = unpackCorners(packed);
+        }
+        return result;
+    }
+
+    /**
+     * Packs corner points as {@code [x0, y0, x1, y1, ...]}, i.e. an {@code int[8]} for the usual
+     * four corners.
+     */
+    @NonNull
+    public static int[] packCorners(@NonNull Point[] points) {
+        final int[] packed = new int[points.length * 2];
+        for (int i = 0; i < points.length; i++) {
+            packed[i * 2] = points[i].x;
+            packed[i * 2 + 1] = points[i].y;
+        }
+        return packed;
+    }
+
+    @NonNull
+    public static Point[] unpackCorners(@NonNull int[] packed) {
+        final Point[] points = new Point[packed.length / 2];
+        for (int i = 0; i < points.length; i++) {
+            points[i] = new Point(packed[i * 2], packed[i * 2 + 1]);
+        }
+        return points;
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    // Classes
+    ///////////////////////////////////////////////////////////////////////////
+
+    static final class Writer {
+        private byte[] buffer;
+        private int position;
+
+        Writer(int initialCapacity) {
+            buffer = new byte[Math.max(16, initialCapacity)];
+        }
+
+        void writeVarint(int value) {
+            ensureCapacity(5);
+            while ((value & ~0x7F) != 0) {
+                buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[position++] = (byte) value;
+        }
+
+        void writeSignedVarint(int value) {
+            writeVarint((value << 1) ^ (value >> 31));
+        }
+
+        void writeString(String value) {
+            final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(bytes.length);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+
+        /**
+         * Writes the UTF-8 length plus one, so zero stands for {@code null}.
+         */
+        void writeNullableString(String value) {
+            if (value == null) {
+                writeVarint(0);
+                return;
+            }
+            final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(bytes.length + 1);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, position);
+        }
+
+        private void ensureCapacity(int extra) {
+            if (position + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + extra));
+            }
+        }
+    }
+
+    static final class Reader {
+        private final byte[] buffer;
+        private int position;
+
+        Reader(byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+        int readVarint() {
+            int value = 0;
+            int shift = 0;
+            while (shift < 35) {
+                final byte b = buffer[position++];
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+                shift += 7;
+            }
+            throw new IllegalArgumentException("Malformed varint at " + position);
+        }
+
+        int readSignedVarint() {
+            final int value = readVarint();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        String readString() {
+            return readUtf8(readVarint());
+        }
+
+        String readNullableString() {
+            final int length = readVarint();
+            return length == 0 ? null : readUtf8(length - 1);
+        }
+
+        private String readUtf8(int length) {
+            final String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+    }
+}
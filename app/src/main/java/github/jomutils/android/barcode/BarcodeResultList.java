@@ -0,0 +1,82 @@
+package github.jomutils.android.barcode;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A {@link Parcelable} list of {@link BarcodeResult} that is written in one pass with
+ * {@link BarcodeResultCodec}, as a single byte array, instead of one nested parcelable per result.
+ * Use it to return large batches across processes or in an {@link android.content.Intent}.
+ */
+public class BarcodeResultList implements Parcelable {
+
+    private final List<BarcodeResult> results;
+
+    public BarcodeResultList(@NonNull List<BarcodeResult> results) {
+        this.results = Collections.unmodifiableList(new ArrayList<>(results));
+    }
+
+    protected BarcodeResultList(Parcel in) {
+        final byte[] bytes = in.createByteArray();
+        results = bytes != null
+                ? Collections.unmodifiableList(BarcodeResultCodec.decodeList(bytes))
+                : Collections.emptyList();
+    }
+
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+        dest.writeByteArray(BarcodeResultCodec.encodeList(results));
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    public static final Creator<BarcodeResultList> CREATOR = new Creator<BarcodeResultList>() {
+        @Override
+        public BarcodeResultList createFromParcel(Parcel in) {
+            return new BarcodeResultList(in);
+        }
+
+        @Override
+        public BarcodeResultList[] newArray(int size) {
+            return new BarcodeResultList[size];
+        }
+    };
+
+    @NonNull
+    public List<BarcodeResult> getResults() {
+        return results;
+    }
+
+    public int size() {
+        return results.size();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        BarcodeResultList that = (BarcodeResultList) o;
+        return results.equals(that.results);
+    }
+
+    @Override
+    public int hashCode() {
+        return results.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "BarcodeResultList{" +
+                "size = " + results.size() +
+                '}';
+    }
+}
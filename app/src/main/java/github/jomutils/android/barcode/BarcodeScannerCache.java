@@ -0,0 +1,142 @@
+package github.jomutils.android.barcode;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.SparseArray;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.mlkit.vision.barcode.Barcode;
+import com.google.mlkit.vision.barcode.BarcodeScanner;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Process-wide cache of {@link BarcodeScanner} clients keyed by the normalized set of formats.
+ * <p>
+ * Every {@link #acquire(int[])} must be balanced by one {@link #release(BarcodeScanner)} instead of
+ * {@link BarcodeScanner#close()}. A client whose reference count drops to zero stays loaded for
+ * {@link #setIdleTimeoutMs(long)} so reopening a scanner screen reuses the detector; it is closed
+ * only when no one acquired it again within that time.
+ */
+public final class BarcodeScannerCache {
+
+    private BarcodeScannerCache() {
+        //no instance
+    }
+
+    private static final String TAG = "BarcodeScannerCache";
+
+    private static final long DEFAULT_IDLE_TIMEOUT_MS = 60_000;
+
+    private static final Object lock = new Object();
+    private static final SparseArray<Entry> entries = new SparseArray<>();
+    private static final Map<BarcodeScanner, Entry> entriesByScanner = new IdentityHashMap<>();
+    private static final Handler evictionHandler = new Handler(Looper.getMainLooper());
+
+    private static long idleTimeoutMs = DEFAULT_IDLE_TIMEOUT_MS;
+
+    /**
+     * Returns a shared client for the formats, creating it on first use.
+     *
+     * @param formats an array of {@link Barcode}'s Formats. {@code null} for all formats support.
+     */
+    @NonNull
+    public static BarcodeScanner acquire(@Nullable int[] formats) {
+        final int key = BarcodeScanners.toFormatMask(formats);
+        synchronized (lock) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                entry = new Entry(key, BarcodeScanners.newClient(BarcodeScanners.toFormats(key)));
+                entries.put(key, entry);
+                entriesByScanner.put(entry.scanner, entry);
+            } else if (entry.refCount == 0) {
+                evictionHandler.removeCallbacks(entry.evictTask);
+            }
+            entry.refCount++;
+            return entry.scanner;
+        }
+    }
+
+    /**
+     * Releases a client returned by {@link #acquire(int[])}. Clients not created by this cache are
+     * closed right away.
+     */
+    public static void release(@NonNull BarcodeScanner scanner) {
+        synchronized (lock) {
+            final Entry entry = entriesByScanner.get(scanner);
+            if (entry == null) {
+                scanner.close();
+                return;
+            }
+            if (entry.refCount <= 0) {
+                Log.w(TAG, "release: unbalanced release of formats " + entry.key);
+                return;
+            }
+            entry.refCount--;
+            if (entry.refCount == 0) {
+                evictionHandler.postDelayed(entry.evictTask, idleTimeoutMs);
+            }
+        }
+    }
+
+    /**
+     * Sets how long an unreferenced client stays loaded. Applies to clients released afterwards.
+     */
+    public static void setIdleTimeoutMs(long timeoutMs) {
+        synchronized (lock) {
+            idleTimeoutMs = Math.max(0, timeoutMs);
+        }
+    }
+
+    /**
+     * Closes every unreferenced client now, e.g. on {@link android.content.ComponentCallbacks2#onTrimMemory(int)}.
+     */
+    public static void evictIdle() {
+        synchronized (lock) {
+            for (int i = entries.size() - 1; i >= 0; i--) {
+                final Entry entry = entries.valueAt(i);
+                if (entry.refCount == 0) {
+                    evictionHandler.removeCallbacks(entry.evictTask);
+                    evictLocked(entry);
+                }
+            }
+        }
+    }
+
+    private static void evictLocked(Entry entry) {
+        entries.remove(entry.key);
+        entriesByScanner.remove(entry.scanner);
+        entry.scanner.close();
+        Log.i(TAG, "Evicted idle scanner for formats " + entry.key);
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    // Classes
+    ///////////////////////////////////////////////////////////////////////////
+
+    private static final class Entry {
+        final int key;
+        final BarcodeScanner scanner;
+        int refCount;
+
+        final Runnable evictTask = new Runnable() {
+            @Override
+            public void run() {
+                synchronized (lock) {
+                    if (refCount == 0 && entries.get(key) == Entry.this) {
+                        evictLocked(Entry.this);
+                    }
+                }
+            }
+        };
+
+        Entry(int key, BarcodeScanner scanner) {
+            this.key = key;
+            this.scanner = scanner;
+        }
+    }
+}
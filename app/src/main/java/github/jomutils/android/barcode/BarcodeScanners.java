@@ -0,0 +1,76 @@
+package github.jomutils.android.barcode;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.mlkit.vision.barcode.Barcode;
+import com.google.mlkit.vision.barcode.BarcodeScanner;
+import com.google.mlkit.vision.barcode.BarcodeScannerOptions;
+import com.google.mlkit.vision.barcode.BarcodeScanning;
+
+public final class BarcodeScanners {
+
+    private BarcodeScanners() {
+        //no instance
+    }
+
+    /**
+     * Creates a new ML Kit {@link BarcodeScanner} client.
+     *
+     * @param formats an array of {@link Barcode}'s Formats. {@code null} or empty for all formats support.
+     */
+    @NonNull
+    public static BarcodeScanner newClient(@Nullable int[] formats) {
+        if (formats == null || formats.length == 0) {
+            return BarcodeScanning.getClient();
+        }
+
+        BarcodeScannerOptions.Builder builder;
+        if (formats.length == 1) {
+            builder = new BarcodeScannerOptions.Builder()
+                    .setBarcodeFormats(formats[0]);
+        } else {
+            int[] nextFormats = new int[formats.length - 1];
+            System.arraycopy(formats, 1, nextFormats, 0, formats.length - 1);
+            builder = new BarcodeScannerOptions.Builder()
+                    .setBarcodeFormats(formats[0], nextFormats);
+        }
+
+        return BarcodeScanning.getClient(builder.build());
+    }
+
+    /**
+     * Normalizes formats to a bitmask, so the same set in any order or with duplicates maps to the
+     * same value. {@code 0} ({@link Barcode#FORMAT_ALL_FORMATS}) stands for all formats.
+     */
+    public static int toFormatMask(@Nullable int[] formats) {
+        if (formats == null) {
+            return Barcode.FORMAT_ALL_FORMATS;
+        }
+        int mask = 0;
+        for (int format : formats) {
+            if (format == Barcode.FORMAT_ALL_FORMATS) {
+                return Barcode.FORMAT_ALL_FORMATS;
+            }
+            mask |= format;
+        }
+        return mask;
+    }
+
+    /**
+     * Expands a mask of {@link #toFormatMask(int[])} back to formats, {@code null} for all formats.
+     */
+    @Nullable
+    public static int[] toFormats(int formatMask) {
+        if (formatMask == Barcode.FORMAT_ALL_FORMATS) {
+            return null;
+        }
+        final int[] formats = new int[Integer.bitCount(formatMask)];
+        int remaining = formatMask;
+        for (int i = 0; i < formats.length; i++) {
+            formats[i] = Integer.lowestOneBit(remaining);
+            remaining &= remaining - 1;
+        }
+        return formats;
+    }
+}
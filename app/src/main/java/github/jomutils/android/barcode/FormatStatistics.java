@@ -0,0 +1,156 @@
+package github.jomutils.android.barcode;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.google.mlkit.vision.barcode.Barcode;
+
+import java.util.Arrays;
+
+/**
+ * Counts of decoded barcode formats for one site, persisted across sessions, from which a narrowed
+ * set of formats covering most scans is derived.
+ * <p>
+ * ML Kit has no notion of format priority, only of enabled formats, so prioritizing here means
+ * enabling the frequent formats only, with an all-formats scanner run from time to time to still
+ * catch the rare ones.
+ */
+public class FormatStatistics {
+
+    private static final String TAG = "FormatStatistics";
+
+    private static final String PREFS_NAME = "barcode_format_statistics";
+
+    private static final int[] FORMATS = {
+            Barcode.FORMAT_CODE_128,
+            Barcode.FORMAT_CODE_39,
+            Barcode.FORMAT_CODE_93,
+            Barcode.FORMAT_CODABAR,
+            Barcode.FORMAT_DATA_MATRIX,
+            Barcode.FORMAT_EAN_13,
+            Barcode.FORMAT_EAN_8,
+            Barcode.FORMAT_ITF,
+            Barcode.FORMAT_QR_CODE,
+            Barcode.FORMAT_UPC_A,
+            Barcode.FORMAT_UPC_E,
+            Barcode.FORMAT_PDF417,
+            Barcode.FORMAT_AZTEC,
+    };
+
+    private final SharedPreferences preferences;
+    private final String siteId;
+    private final long[] counts = new long[FORMATS.length];
+    private boolean dirty;
+
+    private FormatStatistics(Context context, String siteId) {
+        this.preferences = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        this.siteId = siteId;
+        for (int i = 0; i < FORMATS.length; i++) {
+            counts[i] = preferences.getLong(key(i), 0);
+        }
+    }
+
+    /**
+     * Loads the statistics of {@code siteId}. Reads {@link SharedPreferences}, so it should be
+     * called once per session.
+     */
+    @NonNull
+    public static FormatStatistics forSite(@NonNull Context context, @NonNull String siteId) {
+        return new FormatStatistics(context, siteId);
+    }
+
+    private String key(int index) {
+        return siteId + "/" + FORMATS[index];
+    }
+
+    /**
+     * Counts one scan of {@code format}. Unknown formats are ignored.
+     */
+    public synchronized void record(int format) {
+        for (int i = 0; i < FORMATS.length; i++) {
+            if (FORMATS[i] == format) {
+                counts[i]++;
+                dirty = true;
+                return;
+            }
+        }
+    }
+
+    public synchronized long getTotalCount() {
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * Returns the smallest set of formats, most frequent first, whose scans add up to at least
+     * {@code coverage} of all scans, as a mask of {@link BarcodeScanners#toFormatMask(int[])}.
+     *
+     * @return 0 (all formats) before {@code minScans} scans were counted, or when the set would
+     * not exclude any seen format.
+     */
+    public synchronized int getPrioritizedFormatMask(float coverage, long minScans) {
+        final long total = getTotalCount();
+        if (total < minScans) {
+            return Barcode.FORMAT_ALL_FORMATS;
+        }
+
+        final Integer[] order = new Integer[FORMATS.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(counts[b], counts[a]));
+
+        int mask = 0;
+        long covered = 0;
+        int used = 0;
+        for (int index : order) {
+            if (covered >= coverage * total || counts[index] == 0) {
+                break;
+            }
+            mask |= FORMATS[index];
+            covered += counts[index];
+            used++;
+        }
+
+        int seen = 0;
+        for (long count : counts) {
+            if (count > 0) {
+                seen++;
+            }
+        }
+        return used < seen ? mask : Barcode.FORMAT_ALL_FORMATS;
+    }
+
+    /**
+     * Writes the counts back if they changed.
+     */
+    public synchronized void save() {
+        if (!dirty) {
+            return;
+        }
+        final SharedPreferences.Editor editor = preferences.edit();
+        for (int i = 0; i < FORMATS.length; i++) {
+            editor.putLong(key(i), counts[i]);
+        }
+        editor.apply();
+        dirty = false;
+        Log.i(TAG, "save: " + this);
+    }
+
+    @Override
+    public synchronized String toString() {
+        final StringBuilder builder = new StringBuilder("FormatStatistics{site=").append(siteId);
+        for (int i = 0; i < FORMATS.length; i++) {
+            if (counts[i] > 0) {
+                builder.append(", ").append(FORMATS[i]).append('=').append(counts[i]);
+            }
+        }
+        return builder.append('}').toString();
+    }
+}
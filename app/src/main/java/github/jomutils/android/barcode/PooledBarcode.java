@@ -0,0 +1,289 @@
+package github.jomutils.android.barcode;
+
+import android.graphics.Point;
+import android.graphics.Rect;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.mlkit.vision.barcode.Barcode;
+
+import java.util.Objects;
+
+/**
+ * Hot-path, recyclable view of a detected {@link Barcode}.
+ * <p>
+ * Geometry is copied into primitive arrays, {@link BarcodeResult.Wifi} and {@link BarcodeResult.Url}
+ * payloads are only built on first access, and instances come from a {@link Pool}. A
+ * {@link BarcodeResult} is materialized with {@link #toBarcodeResult()} only when it is handed to the
+ * caller.
+ * <p>
+ * Equality uses the same fields as {@link BarcodeResult#equals(Object)} and
+ * {@link #getIdentityHash()} is precomputed from them, so equal instances always share a hash.
+ */
+public final class PooledBarcode {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private String rawValue;
+    private String displayValue;
+    private int valueType;
+    private int format;
+
+    private boolean hasBoundingBox;
+    private final int[] boundingBox = new int[4];
+    private int cornerCount;
+    private int[] corners = new int[8];
+
+    private long identityHash;
+
+    private Barcode source;
+    private boolean payloadParsed;
+    private BarcodeResult.Wifi wifi;
+    private BarcodeResult.Url url;
+
+    private PooledBarcode() {
+    }
+
+    private void set(Barcode barcode) {
+        set(barcode.getRawValue(), barcode.getDisplayValue(), barcode.getValueType(),
+                barcode.getFormat(), barcode.getBoundingBox(), barcode.getCornerPoints());
+        source = barcode;
+    }
+
+    private void set(String rawValue, String displayValue, int valueType, int format,
+                     @Nullable Rect box, @Nullable Point[] points) {
+        this.rawValue = rawValue;
+        this.displayValue = displayValue;
+        this.valueType = valueType;
+        this.format = format;
+
+        hasBoundingBox = box != null;
+        if (box != null) {
+            boundingBox[0] = box.left;
+            boundingBox[1] = box.top;
+            boundingBox[2] = box.right;
+            boundingBox[3] = box.bottom;
+        }
+
+        cornerCount = points != null ? points.length : 0;
+        if (cornerCount * 2 > corners.length) {
+            corners = new int[cornerCount * 2];
+        }
+        for (int i = 0; i < cornerCount; i++) {
+            corners[i * 2] = points[i].x;
+            corners[i * 2 + 1] = points[i].y;
+        }
+
+        identityHash = computeIdentityHash(rawValue, displayValue, valueType, format);
+    }
+
+    private void reset() {
+        source = null;
+        rawValue = null;
+        displayValue = null;
+        payloadParsed = false;
+        wifi = null;
+        url = null;
+        hasBoundingBox = false;
+        cornerCount = 0;
+        identityHash = 0;
+    }
+
+    /**
+     * 64-bit FNV-1a over the fields that take part in equality.
+     */
+    static long computeIdentityHash(String rawValue, String displayValue, int valueType, int format) {
+        long hash = FNV_OFFSET_BASIS;
+        hash = mix(hash, rawValue);
+        hash = mix(hash, displayValue);
+        hash = (hash ^ valueType) * FNV_PRIME;
+        hash = (hash ^ format) * FNV_PRIME;
+        return hash;
+    }
+
+    private static long mix(long hash, String value) {
+        if (value == null) {
+            return (hash ^ 0xFF) * FNV_PRIME;
+        }
+        for (int i = 0, length = value.length(); i < length; i++) {
+            hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+        }
+        // Length terminator keeps ("ab", "c") and ("a", "bc") apart.
+        return (hash ^ value.length()) * FNV_PRIME;
+    }
+
+    public long getIdentityHash() {
+        return identityHash;
+    }
+
+    public String getRawValue() {
+        return rawValue;
+    }
+
+    public String getDisplayValue() {
+        return displayValue;
+    }
+
+    public int getValueType() {
+        return valueType;
+    }
+
+    public int getFormat() {
+        return format;
+    }
+
+    public boolean hasBoundingBox() {
+        return hasBoundingBox;
+    }
+
+    /**
+     * Returns {@code [left, top, right, bottom]}. Only valid when {@link #hasBoundingBox()}; the
+     * array is reused once this instance is released.
+     */
+    @NonNull
+    public int[] getBoundingBox() {
+        return boundingBox;
+    }
+
+    public int getCornerCount() {
+        return cornerCount;
+    }
+
+    /**
+     * Returns corners packed as {@code [x0, y0, x1, y1, ...]} for {@link #getCornerCount()} points.
+     * The array is reused once this instance is released.
+     */
+    @NonNull
+    public int[] getCorners() {
+        return corners;
+    }
+
+    @Nullable
+    public BarcodeResult.Wifi getWifi() {
+        parsePayloadIfNeeded();
+        return wifi;
+    }
+
+    @Nullable
+    public BarcodeResult.Url getUrl() {
+        parsePayloadIfNeeded();
+        return url;
+    }
+
+    private void parsePayloadIfNeeded() {
+        if (payloadParsed) {
+            return;
+        }
+        payloadParsed = true;
+        if (source != null) {
+            wifi = BarcodeResult.Wifi.fromBarcodeWifi(source.getWifi());
+            url = BarcodeResult.Url.fromBarcodeUrl(source.getUrl());
+        }
+    }
+
+    /**
+     * Materializes the public, parcelable result. The returned object does not share state with
+     * this instance and stays valid after it is released.
+     */
+    @NonNull
+    public BarcodeResult toBarcodeResult() {
+        final BarcodeResult result = new BarcodeResult();
+        result.rawValue = rawValue;
+        result.displayValue = displayValue;
+        result.valueType = valueType;
+        result.format = format;
+        result.wifi = getWifi();
+        result.url = getUrl();
+        if (hasBoundingBox) {
+            result.boundingBox = new Rect(boundingBox[0], boundingBox[1], boundingBox[2], boundingBox[3]);
+        }
+        if (cornerCount > 0) {
+            final Point[] points = new Point[cornerCount];
+            for (int i = 0; i < cornerCount; i++) {
+                points[i] = new Point(corners[i * 2], corners[i * 2 + 1]);
+            }
+            result.cornerPoints = points;
+        }
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        PooledBarcode that = (PooledBarcode) o;
+        return identityHash == that.identityHash &&
+                valueType == that.valueType &&
+                format == that.format &&
+                Objects.equals(rawValue, that.rawValue) &&
+                Objects.equals(displayValue, that.displayValue);
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (identityHash ^ (identityHash >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return "PooledBarcode{" +
+                "rawValue = '" + rawValue + '\'' +
+                ", format = " + format +
+                ", identityHash = " + Long.toHexString(identityHash) +
+                '}';
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    // Classes
+    ///////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Fixed-capacity recycling pool. Not thread-safe: confine it to the thread that consumes
+     * detections, usually the main thread.
+     */
+    public static final class Pool {
+        private final PooledBarcode[] free;
+        private int size;
+
+        public Pool(int capacity) {
+            free = new PooledBarcode[Math.max(1, capacity)];
+        }
+
+        @NonNull
+        public PooledBarcode acquire(@NonNull Barcode barcode) {
+            final PooledBarcode instance = obtain();
+            instance.set(barcode);
+            return instance;
+        }
+
+        /**
+         * Acquires an instance holding the given fields, without a source {@link Barcode}, so
+         * without Wi-Fi or URL payload.
+         */
+        @NonNull
+        PooledBarcode acquire(String rawValue, String displayValue, int valueType, int format,
+                              @Nullable Rect boundingBox, @Nullable Point[] cornerPoints) {
+            final PooledBarcode instance = obtain();
+            instance.set(rawValue, displayValue, valueType, format, boundingBox, cornerPoints);
+            return instance;
+        }
+
+        private PooledBarcode obtain() {
+            final PooledBarcode instance = size > 0 ? free[--size] : new PooledBarcode();
+            free[size] = null;
+            return instance;
+        }
+
+        public void release(@Nullable PooledBarcode instance) {
+            if (instance == null) {
+                return;
+            }
+            instance.reset();
+            if (size < free.length) {
+                free[size++] = instance;
+            }
+        }
+    }
+}
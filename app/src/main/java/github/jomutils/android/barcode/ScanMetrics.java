@@ -0,0 +1,181 @@
+package github.jomutils.android.barcode;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import github.jomutils.android.barcode.power.PowerProfile;
+
+/**
+ * Counters of one scanning session, from the moment the scanner is created. Safe to update from
+ * the analyzer and listener threads and to read from any thread.
+ */
+public class ScanMetrics {
+
+    private static final String TAG = "ScanMetrics";
+
+    private final long sessionStartNanos = SystemClock.elapsedRealtimeNanos();
+
+    private final AtomicLong timeToFirstDecodeNanos = new AtomicLong(-1);
+    private final AtomicLong framesDecoded = new AtomicLong();
+    private final AtomicLong totalDecodeLatencyNanos = new AtomicLong();
+    private final AtomicLong framesSkipped = new AtomicLong();
+    private final AtomicLong fallbackFramesDecoded = new AtomicLong();
+    private final AtomicLong totalFallbackDecodeLatencyNanos = new AtomicLong();
+
+    private final long[] timeInPowerProfileNanos = new long[PowerProfile.values().length];
+    @Nullable
+    private PowerProfile powerProfile;
+    private long powerProfileSinceNanos;
+    private int powerProfileChanges;
+
+    /**
+     * Records a frame the decoder finished, with or without barcodes.
+     */
+    public void onFrameDecoded(long latencyNanos) {
+        framesDecoded.incrementAndGet();
+        totalDecodeLatencyNanos.addAndGet(latencyNanos);
+
+        if (timeToFirstDecodeNanos.compareAndSet(-1, SystemClock.elapsedRealtimeNanos() - sessionStartNanos)) {
+            Log.i(TAG, "Time to first decode: " + getTimeToFirstDecodeMs() + " ms"
+                    + " (" + (ScannerWarmUp.isWarm() ? "warm" : "cold") + " start)");
+        }
+    }
+
+    /**
+     * Records a frame a gate kept from the decoder.
+     */
+    public void onFrameSkipped() {
+        framesSkipped.incrementAndGet();
+    }
+
+    /**
+     * Records a frame decoded by the all-formats fallback scanner while the main scanner looks for
+     * prioritized formats only. It is also counted by {@link #onFrameDecoded(long)}.
+     */
+    public void onFallbackFrameDecoded(long latencyNanos) {
+        fallbackFramesDecoded.incrementAndGet();
+        totalFallbackDecodeLatencyNanos.addAndGet(latencyNanos);
+    }
+
+    /**
+     * Records the power profile the engine moved to. The first call sets the initial profile and
+     * is not counted as a change.
+     */
+    public synchronized void onPowerProfileChanged(@NonNull PowerProfile profile) {
+        final long now = SystemClock.elapsedRealtimeNanos();
+        if (powerProfile != null) {
+            timeInPowerProfileNanos[powerProfile.ordinal()] += now - powerProfileSinceNanos;
+            powerProfileChanges++;
+            Log.i(TAG, "Power profile " + powerProfile + " -> " + profile
+                    + " after " + (now - powerProfileSinceNanos) / 1_000_000 + " ms");
+        }
+        powerProfile = profile;
+        powerProfileSinceNanos = now;
+    }
+
+    public long getSessionStartNanos() {
+        return sessionStartNanos;
+    }
+
+    /**
+     * Returns milliseconds from session start until the first decoded frame, or -1 before it.
+     */
+    public long getTimeToFirstDecodeMs() {
+        final long nanos = timeToFirstDecodeNanos.get();
+        return nanos < 0 ? -1 : nanos / 1_000_000;
+    }
+
+    public long getFramesDecoded() {
+        return framesDecoded.get();
+    }
+
+    public long getFramesSkipped() {
+        return framesSkipped.get();
+    }
+
+    public float getAverageDecodeLatencyMs() {
+        final long frames = framesDecoded.get();
+        return frames > 0 ? totalDecodeLatencyNanos.get() / 1e6f / frames : 0f;
+    }
+
+    public long getFallbackFramesDecoded() {
+        return fallbackFramesDecoded.get();
+    }
+
+    /**
+     * Returns the average latency of the all-formats fallback scanner, 0 when it never ran.
+     */
+    public float getAverageFallbackDecodeLatencyMs() {
+        final long frames = fallbackFramesDecoded.get();
+        return frames > 0 ? totalFallbackDecodeLatencyNanos.get() / 1e6f / frames : 0f;
+    }
+
+    /**
+     * Returns the average latency of the prioritized-formats scanner, i.e. of frames not decoded
+     * by the fallback scanner.
+     */
+    public float getAveragePrioritizedDecodeLatencyMs() {
+        final long frames = framesDecoded.get() - fallbackFramesDecoded.get();
+        final long nanos = totalDecodeLatencyNanos.get() - totalFallbackDecodeLatencyNanos.get();
+        return frames > 0 ? nanos / 1e6f / frames : 0f;
+    }
+
+    @Nullable
+    public synchronized PowerProfile getPowerProfile() {
+        return powerProfile;
+    }
+
+    public synchronized int getPowerProfileChanges() {
+        return powerProfileChanges;
+    }
+
+    /**
+     * Returns the time spent in {@code profile} so far, including the ongoing stay.
+     */
+    public synchronized long getTimeInPowerProfileMs(@NonNull PowerProfile profile) {
+        long nanos = timeInPowerProfileNanos[profile.ordinal()];
+        if (profile == powerProfile) {
+            nanos += SystemClock.elapsedRealtimeNanos() - powerProfileSinceNanos;
+        }
+        return nanos / 1_000_000;
+    }
+
+    /**
+     * Returns decoded frames per second since session start.
+     */
+    public float getDecodedFramesPerSecond() {
+        final long elapsedNanos = SystemClock.elapsedRealtimeNanos() - sessionStartNanos;
+        return elapsedNanos > 0 ? framesDecoded.get() * 1e9f / elapsedNanos : 0f;
+    }
+
+    @Override
+    public String toString() {
+        return "ScanMetrics{" +
+                "timeToFirstDecodeMs=" + getTimeToFirstDecodeMs() +
+                ", framesDecoded=" + getFramesDecoded() +
+                ", framesSkipped=" + getFramesSkipped() +
+                ", avgDecodeLatencyMs=" + getAverageDecodeLatencyMs() +
+                ", decodedFps=" + getDecodedFramesPerSecond() +
+                ", fallbackFramesDecoded=" + getFallbackFramesDecoded() +
+                ", avgFallbackDecodeLatencyMs=" + getAverageFallbackDecodeLatencyMs() +
+                ", powerProfileChanges=" + getPowerProfileChanges() +
+                ", timeInPowerProfilesMs=" + formatTimeInPowerProfiles() +
+                '}';
+    }
+
+    private String formatTimeInPowerProfiles() {
+        final StringBuilder builder = new StringBuilder("{");
+        for (PowerProfile profile : PowerProfile.values()) {
+            if (builder.length() > 1) {
+                builder.append(", ");
+            }
+            builder.append(profile).append('=').append(getTimeInPowerProfileMs(profile));
+        }
+        return builder.append('}').toString();
+    }
+}
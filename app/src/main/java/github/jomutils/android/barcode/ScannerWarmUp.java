@@ -0,0 +1,101 @@
+package github.jomutils.android.barcode;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.camera.lifecycle.ProcessCameraProvider;
+
+import com.google.android.gms.tasks.Tasks;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.mlkit.vision.barcode.BarcodeScanner;
+import com.google.mlkit.vision.common.InputImage;
+
+/**
+ * Opt-in, process-wide warm-up of the camera provider and the ML Kit barcode decoder.
+ * <p>
+ * Call {@link #start(Context)} early, e.g. from {@link android.app.Application#onCreate()}. It
+ * returns immediately and, on a background thread, initializes {@link ProcessCameraProvider},
+ * acquires the all-formats {@link BarcodeScanner} from {@link BarcodeScannerCache} and runs one
+ * inference on a blank frame so the model is loaded. That client stays pinned in the cache for the
+ * life of the process. Scanner screens then get those resources from
+ * {@link #getCameraProvider(Context)} and {@link BarcodeScannerCache#acquire(int[])} instead of
+ * paying for them on their first frame.
+ */
+public final class ScannerWarmUp {
+
+    private ScannerWarmUp() {
+        //no instance
+    }
+
+    private static final String TAG = "ScannerWarmUp";
+
+    private static final int BLANK_FRAME_SIZE = 64;
+
+    private static final Object lock = new Object();
+
+    private static boolean started;
+    private static volatile boolean warm;
+    private static ListenableFuture<ProcessCameraProvider> cameraProviderFuture;
+
+    /**
+     * Starts warming up. Subsequent calls do nothing.
+     */
+    public static void start(@NonNull Context context) {
+        final Context appContext = context.getApplicationContext();
+        synchronized (lock) {
+            if (started) {
+                return;
+            }
+            started = true;
+            cameraProviderFuture = ProcessCameraProvider.getInstance(appContext);
+        }
+
+        final Thread thread = new Thread(ScannerWarmUp::warmUpDecoder, TAG);
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        thread.start();
+    }
+
+    private static void warmUpDecoder() {
+        final long start = SystemClock.elapsedRealtime();
+        // Never released: the warmed client stays in the cache for the life of the process.
+        final BarcodeScanner scanner = BarcodeScannerCache.acquire(null);
+        try {
+            final byte[] blank = new byte[BLANK_FRAME_SIZE * BLANK_FRAME_SIZE * 3 / 2];
+            final InputImage image = InputImage.fromByteArray(blank,
+                    BLANK_FRAME_SIZE,
+                    BLANK_FRAME_SIZE,
+                    0,
+                    InputImage.IMAGE_FORMAT_NV21);
+            Tasks.await(scanner.process(image));
+        } catch (Exception e) {
+            // The model is loaded even when the blank frame fails, so the client is still useful.
+            Log.w(TAG, "Blank frame inference failed", e);
+        }
+
+        warm = true;
+        Log.i(TAG, "Decoder warmed up in " + (SystemClock.elapsedRealtime() - start) + " ms");
+    }
+
+    /**
+     * Whether the decoder has finished warming up.
+     */
+    public static boolean isWarm() {
+        return warm;
+    }
+
+    /**
+     * Returns the camera provider future started by {@link #start(Context)}, or a new request when
+     * warm-up was not started.
+     */
+    @NonNull
+    public static ListenableFuture<ProcessCameraProvider> getCameraProvider(@NonNull Context context) {
+        synchronized (lock) {
+            if (cameraProviderFuture != null) {
+                return cameraProviderFuture;
+            }
+        }
+        return ProcessCameraProvider.getInstance(context.getApplicationContext());
+    }
+}
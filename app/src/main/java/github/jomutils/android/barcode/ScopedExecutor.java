@@ -1,41 +1,276 @@
 package github.jomutils.android.barcode;
 
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
 import java.util.concurrent.Executor;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
- * Wraps an existing executor to provide a [.shutdown] method that allows subsequent
- * cancellation of submitted runnables.
+ * Wraps an existing executor to provide a {@link #shutdown()} method that cancels every runnable
+ * submitted and not run yet.
+ * <p>
+ * Runnables wait in a bounded queue of this executor, not in the wrapped one: a single drain task
+ * is posted to the wrapped executor while the queue is not empty, and it runs at most
+ * {@link #MAX_TASKS_PER_DRAIN} runnables before posting itself again, so a burst does not hold a
+ * looper for long. When the queue is full the {@link OverflowPolicy} decides what is dropped, if
+ * anything.
+ * Runnables submitted through a {@link #newSupersedingExecutor()} replace the one still queued
+ * from the same view, so per-frame results never pile up behind each other.
  */
 public class ScopedExecutor implements Executor {
-    private final AtomicBoolean shutdown = new AtomicBoolean();
+
+    public enum OverflowPolicy {
+        /**
+         * Drops the runnable queued the longest to make room.
+         */
+        DROP_OLDEST,
+        /**
+         * Drops the runnable being submitted.
+         */
+        DROP_NEWEST,
+        /**
+         * Drops nothing, the queue doubles instead. For runnables that must all run, such as the
+         * bookkeeping of a decoder's listeners; the capacity is then only the initial one.
+         */
+        GROW
+    }
+
+    public static final int DEFAULT_CAPACITY = 16;
+    private static final int MAX_TASKS_PER_DRAIN = 8;
+
     private final Executor executor;
+    private final OverflowPolicy overflowPolicy;
+    private final Runnable drainTask = this::drain;
+
+    // Ring buffer, guarded by this.
+    private Runnable[] commands;
+    private Object[] keys;
+    private long[] enqueuedNanos;
+    private int head;
+    private int size;
+    private boolean drainPosted;
+    private volatile boolean shutdown;
+
+    // Metrics, guarded by this.
+    private int maxQueueDepth;
+    private long executedCount;
+    private long droppedCount;
+    private long supersededCount;
+    private long cancelledCount;
+    private long totalWaitNanos;
+    private long dequeuedCount;
 
     public ScopedExecutor(Executor executor) {
+        this(executor, DEFAULT_CAPACITY, OverflowPolicy.DROP_OLDEST);
+    }
+
+    public ScopedExecutor(@NonNull Executor executor, int capacity, @NonNull OverflowPolicy overflowPolicy) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity < 1: " + capacity);
+        }
         this.executor = executor;
+        this.overflowPolicy = overflowPolicy;
+        this.commands = new Runnable[capacity];
+        this.keys = new Object[capacity];
+        this.enqueuedNanos = new long[capacity];
     }
 
     @Override
     public void execute(Runnable command) {
+        enqueue(command, null);
+    }
+
+    /**
+     * Returns a view of this executor keeping at most one runnable queued: a runnable submitted
+     * while the previous one still waits replaces it in its queue position. For results of which
+     * only the newest matters, such as per-frame detections.
+     */
+    @NonNull
+    public Executor newSupersedingExecutor() {
+        final Object key = new Object();
+        return command -> enqueue(command, key);
+    }
+
+    private void enqueue(Runnable command, @Nullable Object key) {
         // Return early if this object has been shut down.
-        if (shutdown.get()) {
+        if (shutdown) {
             return;
         }
 
-        executor.execute(new Runnable() {
-            @Override
-            public void run() {
-                if (shutdown.get()) {
+        synchronized (this) {
+            if (shutdown) {
+                return;
+            }
+            if (key != null) {
+                for (int i = 0; i < size; i++) {
+                    final int index = (head + i) % commands.length;
+                    if (keys[index] == key) {
+                        commands[index] = command;
+                        supersededCount++;
+                        return;
+                    }
+                }
+            }
+            if (size == commands.length && overflowPolicy == OverflowPolicy.GROW) {
+                grow();
+            } else if (size == commands.length) {
+                droppedCount++;
+                if (overflowPolicy == OverflowPolicy.DROP_NEWEST) {
                     return;
                 }
+                poll();
+            }
+
+            final int tail = (head + size) % commands.length;
+            commands[tail] = command;
+            keys[tail] = key;
+            enqueuedNanos[tail] = SystemClock.elapsedRealtimeNanos();
+            size++;
+            maxQueueDepth = Math.max(maxQueueDepth, size);
+
+            if (drainPosted) {
+                return;
+            }
+            drainPosted = true;
+        }
+        executor.execute(drainTask);
+    }
 
+    /**
+     * Doubles the queue, moving its head to index 0. Must hold the lock.
+     */
+    private void grow() {
+        final int capacity = commands.length * 2;
+        final Runnable[] grownCommands = new Runnable[capacity];
+        final Object[] grownKeys = new Object[capacity];
+        final long[] grownEnqueuedNanos = new long[capacity];
+        for (int i = 0; i < size; i++) {
+            final int index = (head + i) % commands.length;
+            grownCommands[i] = commands[index];
+            grownKeys[i] = keys[index];
+            grownEnqueuedNanos[i] = enqueuedNanos[index];
+        }
+        commands = grownCommands;
+        keys = grownKeys;
+        enqueuedNanos = grownEnqueuedNanos;
+        head = 0;
+    }
+
+    /**
+     * Removes the head of the queue. Must hold the lock.
+     */
+    private Runnable poll() {
+        final Runnable command = commands[head];
+        totalWaitNanos += SystemClock.elapsedRealtimeNanos() - enqueuedNanos[head];
+        dequeuedCount++;
+        commands[head] = null;
+        keys[head] = null;
+        head = (head + 1) % commands.length;
+        size--;
+        return command;
+    }
+
+    private void drain() {
+        for (int i = 0; i < MAX_TASKS_PER_DRAIN; i++) {
+            final Runnable command;
+            synchronized (this) {
+                if (shutdown || size == 0) {
+                    drainPosted = false;
+                    return;
+                }
+                command = poll();
+                executedCount++;
+            }
+            try {
                 command.run();
+            } catch (RuntimeException e) {
+                repostDrain();
+                throw e;
+            }
+        }
+        repostDrain();
+    }
+
+    /**
+     * Gives the wrapped executor's other work a turn before the rest of the queue.
+     */
+    private void repostDrain() {
+        synchronized (this) {
+            if (shutdown || size == 0) {
+                drainPosted = false;
+                return;
             }
-        });
+        }
+        executor.execute(drainTask);
     }
 
+    /**
+     * Cancels every queued runnable and ignores those submitted later.
+     */
     public void shutdown() {
-        shutdown.set(true);
+        synchronized (this) {
+            shutdown = true;
+            cancelledCount += size;
+            while (size > 0) {
+                poll();
+            }
+        }
     }
 
-}
\ No newline at end of file
+    public synchronized int getQueueDepth() {
+        return size;
+    }
+
+    public synchronized int getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    public synchronized long getExecutedCount() {
+        return executedCount;
+    }
+
+    /**
+     * Returns runnables dropped by the {@link OverflowPolicy}.
+     */
+    public synchronized long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * Returns runnables replaced by a newer one submitted through a
+     * {@link #newSupersedingExecutor()}.
+     */
+    public synchronized long getSupersededCount() {
+        return supersededCount;
+    }
+
+    /**
+     * Returns runnables cancelled by {@link #shutdown()}.
+     */
+    public synchronized long getCancelledCount() {
+        return cancelledCount;
+    }
+
+    /**
+     * Returns the average time runnables spent in the queue, over executed, dropped and cancelled
+     * ones.
+     */
+    public synchronized float getAverageWaitMs() {
+        return dequeuedCount > 0 ? totalWaitNanos / 1e6f / dequeuedCount : 0f;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "ScopedExecutor{" +
+                "queueDepth=" + size +
+                ", maxQueueDepth=" + maxQueueDepth +
+                ", executed=" + executedCount +
+                ", dropped=" + droppedCount +
+                ", superseded=" + supersededCount +
+                ", cancelled=" + cancelledCount +
+                ", avgWaitMs=" + getAverageWaitMs() +
+                '}';
+    }
+}
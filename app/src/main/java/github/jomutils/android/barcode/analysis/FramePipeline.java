@@ -0,0 +1,201 @@
+package github.jomutils.android.barcode.analysis;
+
+import androidx.annotation.AnyThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+/**
+ * The per-frame path between the camera and the decoder: the {@link FrameStage}s, the
+ * {@link RoiResultCache} and the {@link RetryPreprocessor}, and the bookkeeping of each of them
+ * once a frame was decoded. The decoder itself is left to the caller, so the same path runs in
+ * {@link github.jomutils.android.barcode.BarcodeImageAnalyzer} and in tests with another decoder.
+ * <p>
+ * A pipeline is immutable, build a new one to change it. {@link #prepare(LumaFrame)} runs on the
+ * analyzer thread and leaves its outcome in fields read right after it on the same thread, so a
+ * frame costs no allocation. The callbacks of a decoded frame must go to the pipeline that
+ * prepared it.
+ *
+ * @param <T> the decode result type
+ */
+public class FramePipeline<T> {
+
+    /**
+     * A stage kept the frame from being decoded, see {@link #getRejectingStage()}.
+     */
+    public static final int REJECTED = 0;
+    /**
+     * The result cache answered the frame, see {@link #getCachedResult()}; report it with
+     * {@link #onCachedFrameDecoded(long, int)}.
+     */
+    public static final int CACHED = 1;
+    /**
+     * The frame goes to the decoder, preprocessed if {@link #getPreprocessed()} is not
+     * {@code null}; report it with {@link #onFrameDecoded(long, long, Object, int)}.
+     */
+    public static final int DECODE = 2;
+
+    private final FrameStage[] stages;
+    @Nullable
+    private final RetryPreprocessor retryPreprocessor;
+    @Nullable
+    private final RoiResultCache<T> resultCache;
+
+    // Outcome of the last prepare(), analyzer thread only.
+    @Nullable
+    private FrameStage rejectingStage;
+    @Nullable
+    private T cachedResult;
+    private long roiHash;
+    @Nullable
+    private byte[] preprocessed;
+
+    public FramePipeline() {
+        this(new FrameStage[0], null, null);
+    }
+
+    public FramePipeline(@NonNull FrameStage[] stages,
+                         @Nullable RetryPreprocessor retryPreprocessor,
+                         @Nullable RoiResultCache<T> resultCache) {
+        this.stages = stages.clone();
+        this.retryPreprocessor = retryPreprocessor;
+        this.resultCache = resultCache;
+    }
+
+    @NonNull
+    public FramePipeline<T> withStage(@NonNull FrameStage stage) {
+        final FrameStage[] next = new FrameStage[stages.length + 1];
+        System.arraycopy(stages, 0, next, 0, stages.length);
+        next[stages.length] = stage;
+        return new FramePipeline<>(next, retryPreprocessor, resultCache);
+    }
+
+    @NonNull
+    public FramePipeline<T> withRetryPreprocessor(@Nullable RetryPreprocessor retryPreprocessor) {
+        return new FramePipeline<>(stages, retryPreprocessor, resultCache);
+    }
+
+    @NonNull
+    public FramePipeline<T> withResultCache(@Nullable RoiResultCache<T> resultCache) {
+        return new FramePipeline<>(stages, retryPreprocessor, resultCache);
+    }
+
+    /**
+     * Whether {@link #prepare(LumaFrame)} reads the frame. When not, it needs no pixels or region
+     * of interest and always decodes the raw frame.
+     */
+    public boolean readsFrames() {
+        return stages.length > 0 || retryPreprocessor != null || resultCache != null;
+    }
+
+    /**
+     * Runs the stages on {@code frame}, then looks it up in the result cache and preprocesses it
+     * for a retry if due.
+     *
+     * @return {@link #REJECTED}, {@link #CACHED} or {@link #DECODE}
+     */
+    @WorkerThread
+    public int prepare(@NonNull LumaFrame frame) {
+        rejectingStage = null;
+        cachedResult = null;
+        roiHash = 0;
+        preprocessed = null;
+
+        for (FrameStage stage : stages) {
+            if (!stage.onFrame(frame)) {
+                rejectingStage = stage;
+                return REJECTED;
+            }
+        }
+
+        final RoiResultCache<T> resultCache = this.resultCache;
+        if (resultCache != null) {
+            roiHash = resultCache.hash(frame);
+            cachedResult = resultCache.get(roiHash);
+            if (cachedResult != null) {
+                return CACHED;
+            }
+        }
+
+        final RetryPreprocessor retryPreprocessor = this.retryPreprocessor;
+        if (retryPreprocessor != null) {
+            if (retryPreprocessor.shouldPreprocess()) {
+                preprocessed = retryPreprocessor.process(frame);
+            } else {
+                retryPreprocessor.onRawFrame();
+            }
+        }
+        return DECODE;
+    }
+
+    /**
+     * Returns the stage that rejected the last prepared frame.
+     */
+    @Nullable
+    public FrameStage getRejectingStage() {
+        return rejectingStage;
+    }
+
+    /**
+     * Returns the cached result of the last prepared frame.
+     */
+    @Nullable
+    public T getCachedResult() {
+        return cachedResult;
+    }
+
+    /**
+     * Returns the hash of the last prepared frame's region of interest, 0 without a result cache.
+     */
+    public long getRoiHash() {
+        return roiHash;
+    }
+
+    /**
+     * Returns the NV21 image to decode instead of the last prepared frame, {@code null} to decode
+     * the frame as is. Hand it back with {@link #release(byte[])} once the decoder is done.
+     */
+    @Nullable
+    public byte[] getPreprocessed() {
+        return preprocessed;
+    }
+
+    /**
+     * Returns a preprocessed image to the retry preprocessor's pool, when its decode completed.
+     */
+    @AnyThread
+    public void release(@NonNull byte[] preprocessed) {
+        if (retryPreprocessor != null) {
+            retryPreprocessor.release(preprocessed);
+        }
+    }
+
+    /**
+     * Reports a frame answered from the result cache.
+     */
+    public void onCachedFrameDecoded(long sequence, int barcodeCount) {
+        for (FrameStage stage : stages) {
+            stage.onFrameDecoded(sequence, barcodeCount);
+        }
+        if (retryPreprocessor != null) {
+            retryPreprocessor.onFrameDecoded(barcodeCount);
+        }
+    }
+
+    /**
+     * Reports a decoded frame, and caches its result under the ROI hash it was prepared with.
+     *
+     * @param result {@code null} or empty when nothing was found
+     */
+    public void onFrameDecoded(long sequence, long roiHash, @Nullable T result, int barcodeCount) {
+        onCachedFrameDecoded(sequence, barcodeCount);
+        final RoiResultCache<T> resultCache = this.resultCache;
+        if (resultCache != null) {
+            if (result == null || barcodeCount == 0) {
+                resultCache.invalidate(roiHash);
+            } else {
+                resultCache.put(roiHash, result);
+            }
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package github.jomutils.android.barcode.analysis;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Admits at most {@link #setMaxFramesPerSecond(float)} frames per second and skips the others.
+ * Added first, it keeps throttled frames from every other stage too.
+ */
+public class FrameRateLimiter extends FrameStage {
+
+    private volatile long minIntervalNanos;
+    private long lastAdmittedNanos;
+
+    /**
+     * Sets the admission rate, 0 to admit every frame.
+     */
+    public void setMaxFramesPerSecond(float framesPerSecond) {
+        minIntervalNanos = framesPerSecond > 0 ? (long) (1e9 / framesPerSecond) : 0;
+    }
+
+    @Override
+    public boolean onFrame(@NonNull LumaFrame frame) {
+        final long minIntervalNanos = this.minIntervalNanos;
+        if (minIntervalNanos == 0) {
+            return true;
+        }
+        final long now = SystemClock.elapsedRealtimeNanos();
+        if (lastAdmittedNanos != 0 && now - lastAdmittedNanos < minIntervalNanos) {
+            return false;
+        }
+        lastAdmittedNanos = now;
+        return true;
+    }
+}
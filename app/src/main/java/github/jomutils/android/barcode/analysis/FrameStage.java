@@ -0,0 +1,28 @@
+package github.jomutils.android.barcode.analysis;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+/**
+ * A step run by {@link github.jomutils.android.barcode.BarcodeImageAnalyzer} on every admitted
+ * frame before it goes to the decoder. Stages run in the order they were added; the first one
+ * returning {@code false} skips decoding for that frame.
+ * <p>
+ * {@link #onFrame(LumaFrame)} is called on the analyzer thread, for every frame, so it should not
+ * allocate.
+ */
+public abstract class FrameStage {
+
+    /**
+     * @return {@code false} to skip decoding this frame.
+     */
+    @WorkerThread
+    public abstract boolean onFrame(@NonNull LumaFrame frame);
+
+    /**
+     * Called on the analyzer's listener executor once a frame this stage let through was decoded,
+     * or answered from the result cache.
+     */
+    public void onFrameDecoded(long sequence, int barcodeCount) {
+    }
+}
@@ -0,0 +1,119 @@
+package github.jomutils.android.barcode.analysis;
+
+import androidx.annotation.NonNull;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The luminance (Y) plane of one analysis frame together with the region of interest, in image
+ * coordinates. A single instance is reused for every frame, so stages must not keep it beyond
+ * {@link FrameStage#onFrame(LumaFrame)}.
+ */
+public final class LumaFrame {
+
+    private ByteBuffer buffer;
+    private int rowStride;
+    private int width;
+    private int height;
+    private int rotationDegrees;
+    private long sequence;
+
+    private int roiLeft;
+    private int roiTop;
+    private int roiRight;
+    private int roiBottom;
+
+    /**
+     * Points this holder at a new frame. The region of interest is reset to the whole image.
+     */
+    public void set(@NonNull ByteBuffer buffer, int rowStride, int width, int height, int rotationDegrees, long sequence) {
+        this.buffer = buffer;
+        this.rowStride = rowStride;
+        this.width = width;
+        this.height = height;
+        this.rotationDegrees = rotationDegrees;
+        this.sequence = sequence;
+        setRoi(0, 0, width, height);
+    }
+
+    public void setRoi(int left, int top, int right, int bottom) {
+        roiLeft = Math.max(0, left);
+        roiTop = Math.max(0, top);
+        roiRight = Math.min(width, right);
+        roiBottom = Math.min(height, bottom);
+    }
+
+    /**
+     * Sets a region of interest centered in the image, with its size given as fractions of the
+     * displayed (upright) frame, e.g. the size of the reticle relative to the preview.
+     */
+    public void setCenteredRoi(float displayWidthFraction, float displayHeightFraction) {
+        final boolean rotated = rotationDegrees == 90 || rotationDegrees == 270;
+        final float widthFraction = rotated ? displayHeightFraction : displayWidthFraction;
+        final float heightFraction = rotated ? displayWidthFraction : displayHeightFraction;
+        final int roiWidth = Math.round(width * widthFraction);
+        final int roiHeight = Math.round(height * heightFraction);
+        final int left = (width - roiWidth) / 2;
+        final int top = (height - roiHeight) / 2;
+        setRoi(left, top, left + roiWidth, top + roiHeight);
+    }
+
+    /**
+     * Returns the luminance at ({@code x}, {@code y}) in [0, 255].
+     */
+    public int getLuma(int x, int y) {
+        return buffer.get(y * rowStride + x) & 0xFF;
+    }
+
+    @NonNull
+    public ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    public int getRowStride() {
+        return rowStride;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getRotationDegrees() {
+        return rotationDegrees;
+    }
+
+    /**
+     * Returns the frame's sequence number, increasing by one for every frame the camera delivered.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public int getRoiLeft() {
+        return roiLeft;
+    }
+
+    public int getRoiTop() {
+        return roiTop;
+    }
+
+    public int getRoiRight() {
+        return roiRight;
+    }
+
+    public int getRoiBottom() {
+        return roiBottom;
+    }
+
+    public int getRoiWidth() {
+        return roiRight - roiLeft;
+    }
+
+    public int getRoiHeight() {
+        return roiBottom - roiTop;
+    }
+}
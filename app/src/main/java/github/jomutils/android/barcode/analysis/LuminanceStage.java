@@ -0,0 +1,138 @@
+package github.jomutils.android.barcode.analysis;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+/**
+ * Measures brightness and contrast of the region of interest every few frames, from a luminance
+ * histogram of a subsampled grid. Never rejects a frame.
+ * <p>
+ * The pass reads one pixel out of {@code SAMPLE_STEP * SAMPLE_STEP} and reuses one histogram, so
+ * it does not allocate and takes a few microseconds on a 640x480 frame.
+ */
+public class LuminanceStage extends FrameStage {
+
+    public interface Listener {
+        /**
+         * Called on the analyzer thread with the statistics of the last measured frame.
+         *
+         * @param mean average luminance in [0, 255]
+         * @param low  luminance of the 5th percentile
+         * @param high luminance of the 95th percentile; {@code high - low} is the contrast
+         */
+        @WorkerThread
+        void onLuminanceMeasured(int mean, int low, int high);
+    }
+
+    private static final int DEFAULT_INTERVAL_FRAMES = 5;
+    private static final int SAMPLE_STEP = 4;
+    private static final int BIN_SHIFT = 2;
+    private static final int BINS = 256 >> BIN_SHIFT;
+
+    private final int[] histogram = new int[BINS];
+    private final int intervalFrames;
+    @Nullable
+    private final Listener listener;
+
+    private int lastMean = -1;
+    private int lastLow = -1;
+    private int lastHigh = -1;
+    private long lastMeasureNanos;
+
+    public LuminanceStage(@Nullable Listener listener) {
+        this(listener, DEFAULT_INTERVAL_FRAMES);
+    }
+
+    /**
+     * @param intervalFrames measure one frame out of this many.
+     */
+    public LuminanceStage(@Nullable Listener listener, int intervalFrames) {
+        this.listener = listener;
+        this.intervalFrames = Math.max(1, intervalFrames);
+    }
+
+    @Override
+    public boolean onFrame(@NonNull LumaFrame frame) {
+        if (frame.getSequence() % intervalFrames != 0) {
+            return true;
+        }
+
+        final long start = System.nanoTime();
+        measure(frame);
+        lastMeasureNanos = System.nanoTime() - start;
+
+        if (listener != null && lastMean >= 0) {
+            listener.onLuminanceMeasured(lastMean, lastLow, lastHigh);
+        }
+        return true;
+    }
+
+    /**
+     * Computes the statistics of {@code frame} right away, regardless of the interval.
+     */
+    public void measure(@NonNull LumaFrame frame) {
+        final int[] histogram = this.histogram;
+        for (int i = 0; i < BINS; i++) {
+            histogram[i] = 0;
+        }
+
+        final int right = frame.getRoiRight();
+        final int bottom = frame.getRoiBottom();
+        long sum = 0;
+        int count = 0;
+        for (int y = frame.getRoiTop(); y < bottom; y += SAMPLE_STEP) {
+            for (int x = frame.getRoiLeft(); x < right; x += SAMPLE_STEP) {
+                final int luma = frame.getLuma(x, y);
+                histogram[luma >> BIN_SHIFT]++;
+                sum += luma;
+                count++;
+            }
+        }
+
+        if (count == 0) {
+            lastMean = lastLow = lastHigh = -1;
+            return;
+        }
+
+        lastMean = (int) (sum / count);
+        lastLow = percentile(histogram, count / 20);
+        lastHigh = percentile(histogram, count - count / 20 - 1);
+    }
+
+    /**
+     * Returns the luminance, at the center of its bin, of the sample with the given rank.
+     */
+    private static int percentile(int[] histogram, int rank) {
+        int seen = 0;
+        for (int bin = 0; bin < BINS; bin++) {
+            seen += histogram[bin];
+            if (seen > rank) {
+                return (bin << BIN_SHIFT) + (1 << BIN_SHIFT) / 2;
+            }
+        }
+        return 255;
+    }
+
+    /**
+     * Returns the last measured mean luminance, or -1 before the first measurement.
+     */
+    public int getLastMean() {
+        return lastMean;
+    }
+
+    public int getLastLow() {
+        return lastLow;
+    }
+
+    public int getLastHigh() {
+        return lastHigh;
+    }
+
+    /**
+     * Returns how long the last measurement took.
+     */
+    public long getLastMeasureNanos() {
+        return lastMeasureNanos;
+    }
+}
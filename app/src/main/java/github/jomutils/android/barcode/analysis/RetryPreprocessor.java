@@ -0,0 +1,330 @@
+package github.jomutils.android.barcode.analysis;
+
+import androidx.annotation.AnyThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Rewrites the region of interest of a frame for another decode attempt after a frame without any
+ * barcode, to help with faded, damaged or inverted labels. Clean scans never pay for it: a frame
+ * is only preprocessed when the previous decoded frame was a miss, and raw and preprocessed
+ * frames alternate so the raw image keeps being tried too. Consecutive retries cycle through the
+ * configured variants.
+ * <p>
+ * The output is an NV21 image of the full frame size, so decoded coordinates need no mapping.
+ * Outside the region of interest it is a copy of the frame, the chroma is neutral. Output buffers
+ * and scratch arrays are pooled per frame size. The decoder reads an output buffer asynchronously,
+ * so it stays out of the pool until handed back with {@link #release(byte[])}; while every pooled
+ * buffer is out, frames go to the decoder raw.
+ */
+public class RetryPreprocessor {
+
+    public enum Variant {
+        /**
+         * Maps the 1st to 99th luminance percentile of the ROI to the full range.
+         */
+        CONTRAST_STRETCH,
+        /**
+         * Binarizes each pixel against the mean of its neighbourhood (Bradley's method), which
+         * copes with uneven lighting and faded print.
+         */
+        ADAPTIVE_THRESHOLD,
+        /**
+         * Swaps dark and light, for light-on-dark labels.
+         */
+        INVERT
+    }
+
+    /**
+     * Preprocessed frames that may be decoding at once. Retries alternate with raw frames, so this
+     * covers up to twice as many decodes in flight.
+     */
+    private static final int POOL_SIZE = 3;
+    /**
+     * A pixel is dark when it is this many percent below its neighbourhood mean.
+     */
+    private static final int THRESHOLD_PERCENT = 15;
+
+    private final Variant[] variants;
+
+    private volatile boolean lastFrameMissed;
+    private boolean lastFramePreprocessed;
+    private int nextVariant;
+
+    // Guarded by pool.
+    private final byte[][] pool = new byte[POOL_SIZE][];
+    private final boolean[] released = new boolean[POOL_SIZE];
+    private int pooledWidth;
+    private int pooledHeight;
+    private int[] integral = new int[0];
+    private final int[] histogram = new int[256];
+    private final byte[] lut = new byte[256];
+
+    public RetryPreprocessor() {
+        this(Variant.CONTRAST_STRETCH, Variant.ADAPTIVE_THRESHOLD, Variant.INVERT);
+    }
+
+    public RetryPreprocessor(@NonNull Variant... variants) {
+        if (variants.length == 0) {
+            throw new IllegalArgumentException("At least one variant is required");
+        }
+        this.variants = variants.clone();
+    }
+
+    /**
+     * Whether the next frame should be preprocessed: it follows a miss and a pooled buffer is free
+     * for it.
+     */
+    @WorkerThread
+    public boolean shouldPreprocess() {
+        return lastFrameMissed && !lastFramePreprocessed && hasFreeBuffer();
+    }
+
+    /**
+     * Records that a frame was sent to the decoder as is.
+     */
+    @WorkerThread
+    public void onRawFrame() {
+        lastFramePreprocessed = false;
+    }
+
+    /**
+     * Records the result of a decoded frame, raw or preprocessed.
+     */
+    @AnyThread
+    public void onFrameDecoded(int barcodeCount) {
+        lastFrameMissed = barcodeCount == 0;
+    }
+
+    /**
+     * Returns the variant the next call of {@link #process(LumaFrame)} applies.
+     */
+    @NonNull
+    public Variant peekVariant() {
+        return variants[nextVariant];
+    }
+
+    /**
+     * Copies the frame into a pooled NV21 buffer and applies the next variant to the ROI. Hand the
+     * buffer back with {@link #release(byte[])} once the decoder is done with it; if none is free,
+     * a buffer outside the pool is returned.
+     */
+    @WorkerThread
+    @NonNull
+    public byte[] process(@NonNull LumaFrame frame) {
+        final Variant variant = variants[nextVariant];
+        nextVariant = (nextVariant + 1) % variants.length;
+        lastFramePreprocessed = true;
+
+        final byte[] output = obtainBuffer(frame.getWidth(), frame.getHeight());
+        copyLuma(frame, output);
+        apply(variant, output, frame.getWidth(),
+                frame.getRoiLeft(), frame.getRoiTop(), frame.getRoiRight(), frame.getRoiBottom());
+        return output;
+    }
+
+    /**
+     * Returns a buffer from {@link #process(LumaFrame)} to the pool, e.g. when its decode completes.
+     * Buffers of another frame size or from outside the pool are ignored.
+     */
+    @AnyThread
+    public void release(@NonNull byte[] buffer) {
+        synchronized (pool) {
+            for (int i = 0; i < POOL_SIZE; i++) {
+                if (pool[i] == buffer) {
+                    released[i] = true;
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Applies {@code variant} in place to a packed luminance image with the given row stride.
+     */
+    public void apply(@NonNull Variant variant, @NonNull byte[] luma, int stride,
+                      int left, int top, int right, int bottom) {
+        if (right <= left || bottom <= top) {
+            return;
+        }
+        switch (variant) {
+            case CONTRAST_STRETCH:
+                contrastStretch(luma, stride, left, top, right, bottom);
+                break;
+            case ADAPTIVE_THRESHOLD:
+                adaptiveThreshold(luma, stride, left, top, right, bottom);
+                break;
+            case INVERT:
+                invert(luma, stride, left, top, right, bottom);
+                break;
+        }
+    }
+
+    private boolean hasFreeBuffer() {
+        synchronized (pool) {
+            for (int i = 0; i < POOL_SIZE; i++) {
+                if (pool[i] == null || released[i]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private byte[] obtainBuffer(int width, int height) {
+        synchronized (pool) {
+            if (width != pooledWidth || height != pooledHeight) {
+                // Buffers of the old size still decoding are left to the garbage collector.
+                for (int i = 0; i < POOL_SIZE; i++) {
+                    pool[i] = null;
+                }
+                pooledWidth = width;
+                pooledHeight = height;
+            }
+
+            for (int i = 0; i < POOL_SIZE; i++) {
+                if (pool[i] != null && released[i]) {
+                    released[i] = false;
+                    return pool[i];
+                }
+            }
+            for (int i = 0; i < POOL_SIZE; i++) {
+                if (pool[i] == null) {
+                    pool[i] = newBuffer(width, height);
+                    released[i] = false;
+                    return pool[i];
+                }
+            }
+        }
+        // Every pooled buffer is still decoding.
+        return newBuffer(width, height);
+    }
+
+    private static byte[] newBuffer(int width, int height) {
+        final int lumaSize = width * height;
+        final byte[] buffer = new byte[lumaSize + 2 * ((width + 1) / 2) * ((height + 1) / 2)];
+        // Neutral chroma, written once.
+        for (int i = lumaSize; i < buffer.length; i++) {
+            buffer[i] = (byte) 128;
+        }
+        return buffer;
+    }
+
+    private static void copyLuma(LumaFrame frame, byte[] output) {
+        final ByteBuffer source = frame.getBuffer().duplicate();
+        final int width = frame.getWidth();
+        final int height = frame.getHeight();
+        final int rowStride = frame.getRowStride();
+        if (rowStride == width) {
+            source.position(0);
+            source.get(output, 0, width * height);
+            return;
+        }
+        for (int y = 0; y < height; y++) {
+            source.position(y * rowStride);
+            source.get(output, y * width, width);
+        }
+    }
+
+    private void contrastStretch(byte[] luma, int stride, int left, int top, int right, int bottom) {
+        final int[] histogram = this.histogram;
+        for (int i = 0; i < 256; i++) {
+            histogram[i] = 0;
+        }
+        for (int y = top; y < bottom; y++) {
+            final int row = y * stride;
+            for (int x = left; x < right; x++) {
+                histogram[luma[row + x] & 0xFF]++;
+            }
+        }
+
+        final int count = (right - left) * (bottom - top);
+        final int clip = count / 100;
+        int low = 0;
+        for (int seen = 0; low < 255; low++) {
+            seen += histogram[low];
+            if (seen > clip) {
+                break;
+            }
+        }
+        int high = 255;
+        for (int seen = 0; high > 0; high--) {
+            seen += histogram[high];
+            if (seen > clip) {
+                break;
+            }
+        }
+        if (high <= low) {
+            return;
+        }
+
+        final byte[] lut = this.lut;
+        final int range = high - low;
+        for (int i = 0; i < 256; i++) {
+            final int value = (i - low) * 255 / range;
+            lut[i] = (byte) (value < 0 ? 0 : Math.min(value, 255));
+        }
+        for (int y = top; y < bottom; y++) {
+            final int row = y * stride;
+            for (int x = left; x < right; x++) {
+                luma[row + x] = lut[luma[row + x] & 0xFF];
+            }
+        }
+    }
+
+    private void adaptiveThreshold(byte[] luma, int stride, int left, int top, int right, int bottom) {
+        final int width = right - left;
+        final int height = bottom - top;
+        final int integralStride = width + 1;
+        final int size = integralStride * (height + 1);
+        if (integral.length < size) {
+            integral = new int[size];
+        }
+        final int[] integral = this.integral;
+
+        // Summed-area table of the ROI, with a zero first row and column.
+        for (int x = 0; x <= width; x++) {
+            integral[x] = 0;
+        }
+        for (int y = 0; y < height; y++) {
+            final int row = (top + y) * stride + left;
+            final int out = (y + 1) * integralStride;
+            integral[out] = 0;
+            int rowSum = 0;
+            for (int x = 0; x < width; x++) {
+                rowSum += luma[row + x] & 0xFF;
+                integral[out + x + 1] = integral[out - integralStride + x + 1] + rowSum;
+            }
+        }
+
+        final int radius = Math.max(4, Math.min(width, height) / 16);
+        for (int y = 0; y < height; y++) {
+            final int y0 = Math.max(0, y - radius);
+            final int y1 = Math.min(height, y + radius + 1);
+            final int row = (top + y) * stride + left;
+            for (int x = 0; x < width; x++) {
+                final int x0 = Math.max(0, x - radius);
+                final int x1 = Math.min(width, x + radius + 1);
+                final int area = (x1 - x0) * (y1 - y0);
+                final int sum = integral[y1 * integralStride + x1]
+                        - integral[y0 * integralStride + x1]
+                        - integral[y1 * integralStride + x0]
+                        + integral[y0 * integralStride + x0];
+                final int pixel = luma[row + x] & 0xFF;
+                luma[row + x] = (long) pixel * area * 100 < (long) sum * (100 - THRESHOLD_PERCENT)
+                        ? (byte) 0 : (byte) 255;
+            }
+        }
+    }
+
+    private static void invert(byte[] luma, int stride, int left, int top, int right, int bottom) {
+        for (int y = top; y < bottom; y++) {
+            final int row = y * stride;
+            for (int x = left; x < right; x++) {
+                luma[row + x] = (byte) ~luma[row + x];
+            }
+        }
+    }
+}
@@ -0,0 +1,329 @@
+package github.jomutils.android.barcode.analysis;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Remembers decode results by a perceptual hash of the region of interest, so a code held steady
+ * in the reticle is not decoded again frame after frame.
+ * <p>
+ * The ROI is averaged down to a 72x16 thumbnail, every pixel counted, which cancels sensor noise.
+ * The hash is a 64-bit difference hash of the thumbnail averaged further to 9x8 cells: each bit
+ * tells whether a cell is brighter than its right neighbour by more than
+ * {@link #MIN_CELL_DIFFERENCE} luma levels, the margin keeping flat neighbours, which only differ
+ * by noise, at 0. A uniform brightness change leaves it alone.
+ * <p>
+ * 64 bits cannot tell apart codes much smaller than the ROI, whose cells mostly average to the
+ * same gray, so the hash only picks candidates: an entry within {@link #MAX_DISTANCE} bits hits
+ * only if its thumbnail also correlates with the frame's, compared on the differences between
+ * neighbouring thumbnail cells, by at least {@link #MIN_CORRELATION}. The thumbnails of the last
+ * {@link #RECENT_FRAMES} hashed frames are kept for that and for {@link #put(long, Object)}, a
+ * hash whose frame aged out or is shared by unrelated recent frames is never answered or stored.
+ * To stay safe, only non-empty results are stored, and an entry is dropped after
+ * {@link #MAX_HITS_PER_ENTRY} hits so the result is confirmed by the decoder regularly.
+ * <p>
+ * Lookups run on the analyzer thread and {@link #put(long, Object)} on the listener thread, so
+ * the methods are synchronized; each holds the lock for a few thumbnail copies or comparisons.
+ *
+ * @param <T> the decode result type
+ */
+public class RoiResultCache<T> {
+
+    private static final int GRID_WIDTH = 9;
+    private static final int GRID_HEIGHT = 8;
+    /**
+     * Thumbnail cells averaged into each hash cell, across and down.
+     */
+    private static final int CELL_WIDTH = 8;
+    private static final int CELL_HEIGHT = 2;
+    private static final int THUMBNAIL_WIDTH = GRID_WIDTH * CELL_WIDTH;
+    private static final int THUMBNAIL_HEIGHT = GRID_HEIGHT * CELL_HEIGHT;
+    /**
+     * Mean luma levels a cell must exceed its right neighbour by to set its bit.
+     */
+    private static final int MIN_CELL_DIFFERENCE = 2;
+    private static final int MAX_DISTANCE = 4;
+    /**
+     * Correlation of two thumbnails' horizontal differences above which they show the same
+     * content. On synthetic frames, noise, brightness and contrast changes keep it above 0.98
+     * and another code at the same position below 0.96.
+     */
+    private static final double MIN_CORRELATION = 0.975;
+    /**
+     * Hits after which an entry is dropped, so the decoder confirms it.
+     */
+    static final int MAX_HITS_PER_ENTRY = 15;
+    private static final int DEFAULT_CAPACITY = 4;
+    /**
+     * Hashed frames whose thumbnails are kept, enough for the frames hashed while a few decodes
+     * are in flight.
+     */
+    private static final int RECENT_FRAMES = 8;
+
+    private final long[] hashes;
+    private final byte[][] thumbnails;
+    private final Object[] results;
+    private final int[] hitCounts;
+    private int size;
+    private int next;
+
+    private final long[] recentHashes = new long[RECENT_FRAMES];
+    private final byte[][] recentThumbnails = new byte[RECENT_FRAMES][THUMBNAIL_WIDTH * THUMBNAIL_HEIGHT];
+    private int recentCount;
+    private int nextRecent;
+
+    // Scratch of hash(), analyzer thread only.
+    private final byte[] thumbnail = new byte[THUMBNAIL_WIDTH * THUMBNAIL_HEIGHT];
+    private final int[] cells = new int[GRID_WIDTH * GRID_HEIGHT];
+
+    private long hits;
+    private long misses;
+
+    public RoiResultCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public RoiResultCache(int capacity) {
+        hashes = new long[capacity];
+        thumbnails = new byte[capacity][THUMBNAIL_WIDTH * THUMBNAIL_HEIGHT];
+        results = new Object[capacity];
+        hitCounts = new int[capacity];
+    }
+
+    /**
+     * Returns the difference hash of the frame's region of interest, reading each of its pixels
+     * once, and remembers the frame's thumbnail under it. Must be called from a single thread, it
+     * reuses scratch arrays.
+     */
+    public long hash(@NonNull LumaFrame frame) {
+        final int left = frame.getRoiLeft();
+        final int top = frame.getRoiTop();
+        final int roiWidth = frame.getRoiWidth();
+        final int roiHeight = frame.getRoiHeight();
+        final ByteBuffer buffer = frame.getBuffer();
+        final int rowStride = frame.getRowStride();
+
+        final byte[] thumbnail = this.thumbnail;
+        final int[] cells = this.cells;
+        Arrays.fill(cells, 0);
+        if (roiWidth > 0 && roiHeight > 0) {
+            for (int ty = 0; ty < THUMBNAIL_HEIGHT; ty++) {
+                // A ROI smaller than the thumbnail repeats its pixels.
+                final int y0 = top + ty * roiHeight / THUMBNAIL_HEIGHT;
+                final int y1 = Math.max(y0 + 1, top + (ty + 1) * roiHeight / THUMBNAIL_HEIGHT);
+                for (int tx = 0; tx < THUMBNAIL_WIDTH; tx++) {
+                    final int x0 = left + tx * roiWidth / THUMBNAIL_WIDTH;
+                    final int x1 = Math.max(x0 + 1, left + (tx + 1) * roiWidth / THUMBNAIL_WIDTH);
+                    int sum = 0;
+                    for (int y = y0; y < y1; y++) {
+                        final int rowEnd = y * rowStride + x1;
+                        for (int i = y * rowStride + x0; i < rowEnd; i++) {
+                            sum += buffer.get(i) & 0xFF;
+                        }
+                    }
+                    final int mean = sum / ((x1 - x0) * (y1 - y0));
+                    thumbnail[ty * THUMBNAIL_WIDTH + tx] = (byte) mean;
+                    cells[ty / CELL_HEIGHT * GRID_WIDTH + tx / CELL_WIDTH] += mean;
+                }
+            }
+        } else {
+            Arrays.fill(thumbnail, (byte) 0);
+        }
+
+        final int minDifference = MIN_CELL_DIFFERENCE * CELL_WIDTH * CELL_HEIGHT;
+        long hash = 0;
+        for (int cy = 0; cy < GRID_HEIGHT; cy++) {
+            final int row = cy * GRID_WIDTH;
+            for (int cx = 0; cx < GRID_WIDTH - 1; cx++) {
+                hash <<= 1;
+                if (cells[row + cx] > cells[row + cx + 1] + minDifference) {
+                    hash |= 1;
+                }
+            }
+        }
+
+        synchronized (this) {
+            recentHashes[nextRecent] = hash;
+            System.arraycopy(thumbnail, 0, recentThumbnails[nextRecent], 0, thumbnail.length);
+            nextRecent = (nextRecent + 1) % RECENT_FRAMES;
+            recentCount = Math.min(recentCount + 1, RECENT_FRAMES);
+        }
+        return hash;
+    }
+
+    /**
+     * Returns the result of the closest entry within tolerance whose thumbnail matches, or
+     * {@code null} on a miss.
+     */
+    @SuppressWarnings("unchecked")
+    @Nullable
+    public synchronized T get(long hash) {
+        final byte[] thumbnail = findRecentThumbnail(hash);
+        int best = -1;
+        int bestDistance = MAX_DISTANCE + 1;
+        for (int i = 0; thumbnail != null && i < size; i++) {
+            final int distance = Long.bitCount(hashes[i] ^ hash);
+            if (distance < bestDistance && correlates(thumbnails[i], thumbnail)) {
+                best = i;
+                bestDistance = distance;
+            }
+        }
+
+        if (best < 0) {
+            misses++;
+            return null;
+        }
+        final T result = (T) results[best];
+        if (++hitCounts[best] >= MAX_HITS_PER_ENTRY) {
+            removeAt(best);
+        }
+        hits++;
+        return result;
+    }
+
+    /**
+     * Stores a decode result under the thumbnail of the frame {@code hash} came from. Replaces an
+     * entry showing the same content, otherwise the oldest one. Does nothing once that frame
+     * aged out of the recent ones.
+     */
+    public synchronized void put(long hash, @NonNull T result) {
+        final byte[] thumbnail = findRecentThumbnail(hash);
+        if (thumbnail == null) {
+            return;
+        }
+        int slot = -1;
+        for (int i = 0; i < size; i++) {
+            if (Long.bitCount(hashes[i] ^ hash) <= MAX_DISTANCE && correlates(thumbnails[i], thumbnail)) {
+                slot = i;
+                break;
+            }
+        }
+        if (slot < 0) {
+            if (size < hashes.length) {
+                slot = size++;
+            } else {
+                slot = next;
+                next = (next + 1) % hashes.length;
+            }
+        }
+        hashes[slot] = hash;
+        System.arraycopy(thumbnail, 0, thumbnails[slot], 0, thumbnail.length);
+        results[slot] = result;
+        hitCounts[slot] = 0;
+    }
+
+    /**
+     * Drops the entries within tolerance of {@code hash}, e.g. when decoding that content found
+     * nothing.
+     */
+    public synchronized void invalidate(long hash) {
+        for (int i = size - 1; i >= 0; i--) {
+            if (Long.bitCount(hashes[i] ^ hash) <= MAX_DISTANCE) {
+                removeAt(i);
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        for (int i = 0; i < size; i++) {
+            results[i] = null;
+        }
+        size = 0;
+        next = 0;
+        recentCount = 0;
+    }
+
+    /**
+     * Returns the thumbnail of the newest recent frame hashed to {@code hash}, {@code null} if
+     * there is none or another recent frame with that hash showed different content.
+     */
+    @Nullable
+    private byte[] findRecentThumbnail(long hash) {
+        byte[] found = null;
+        for (int i = 1; i <= recentCount; i++) {
+            final int index = (nextRecent - i + RECENT_FRAMES) % RECENT_FRAMES;
+            if (recentHashes[index] != hash) {
+                continue;
+            }
+            if (found == null) {
+                found = recentThumbnails[index];
+            } else if (!correlates(found, recentThumbnails[index])) {
+                return null;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Whether the differences between horizontally neighbouring cells of both thumbnails
+     * correlate by at least {@link #MIN_CORRELATION}. Flat thumbnails never do.
+     */
+    private static boolean correlates(byte[] a, byte[] b) {
+        long sumA = 0;
+        long sumB = 0;
+        long sumAA = 0;
+        long sumBB = 0;
+        long sumAB = 0;
+        for (int ty = 0; ty < THUMBNAIL_HEIGHT; ty++) {
+            final int row = ty * THUMBNAIL_WIDTH;
+            for (int tx = 0; tx < THUMBNAIL_WIDTH - 1; tx++) {
+                final int da = (a[row + tx + 1] & 0xFF) - (a[row + tx] & 0xFF);
+                final int db = (b[row + tx + 1] & 0xFF) - (b[row + tx] & 0xFF);
+                sumA += da;
+                sumB += db;
+                sumAA += da * da;
+                sumBB += db * db;
+                sumAB += da * db;
+            }
+        }
+        final int n = THUMBNAIL_HEIGHT * (THUMBNAIL_WIDTH - 1);
+        final double covariance = (double) n * sumAB - (double) sumA * sumB;
+        final double varianceA = (double) n * sumAA - (double) sumA * sumA;
+        final double varianceB = (double) n * sumBB - (double) sumB * sumB;
+        return varianceA > 0 && varianceB > 0
+                && covariance >= MIN_CORRELATION * Math.sqrt(varianceA * varianceB);
+    }
+
+    private void removeAt(int index) {
+        final int last = size - 1;
+        final byte[] removedThumbnail = thumbnails[index];
+        hashes[index] = hashes[last];
+        thumbnails[index] = thumbnails[last];
+        thumbnails[last] = removedThumbnail;
+        results[index] = results[last];
+        hitCounts[index] = hitCounts[last];
+        results[last] = null;
+        size = last;
+        if (next >= size) {
+            next = 0;
+        }
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * Returns hits over lookups, 0 before the first lookup.
+     */
+    public synchronized float getHitRate() {
+        final long lookups = hits + misses;
+        return lookups > 0 ? (float) hits / lookups : 0f;
+    }
+
+    @Override
+    public String toString() {
+        return "RoiResultCache{" +
+                "hits=" + getHitCount() +
+                ", misses=" + getMissCount() +
+                ", hitRate=" + getHitRate() +
+                '}';
+    }
+}
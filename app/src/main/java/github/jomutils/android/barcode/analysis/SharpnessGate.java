@@ -0,0 +1,121 @@
+package github.jomutils.android.barcode.analysis;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rejects motion-blurred frames before they reach the decoder.
+ * <p>
+ * The score is the squared gradient (Tenengrad) between neighbouring pixels over a subsampled grid
+ * of the region of interest, divided by the squared gradient over {@link #COARSE_STEP} pixels at
+ * the same points. Tenengrad alone grows with the square of the contrast, so a faded or glared
+ * label would score far below a crisp one however sharp it is. The coarse gradient measures that
+ * contrast while hardly changing with blur, which spreads an edge over a few pixels, so the ratio
+ * only depends on how steep the edges are. Dividing by the plain luminance variance would cancel
+ * blur as well, since blur lowers the variance of thin bars too. What counts as sharp still
+ * depends on the scene, so the threshold is relative: a frame is rejected when its score is below
+ * {@link #REJECT_RATIO} of a peak of recent scores that halves every
+ * {@link #PEAK_HALF_LIFE_NANOS}. The decay follows time rather than frames, since earlier stages
+ * may let through only a few frames per second. After {@link #MAX_CONSECUTIVE_REJECTS} rejections
+ * in a row one frame is let through anyway, so a scene that never gets sharper still gets decoded.
+ */
+public class SharpnessGate extends FrameStage {
+
+    private static final int SAMPLE_STEP = 2;
+    private static final int COARSE_STEP = 4;
+    private static final float REJECT_RATIO = 0.4f;
+    /**
+     * About 35 frames at 30 fps.
+     */
+    private static final long PEAK_HALF_LIFE_NANOS = 1_200_000_000L;
+    /**
+     * Added to the coarse gradient energy of each sample, a few times that of sensor noise, so a
+     * flat region does not score as sharp from its noise alone.
+     */
+    private static final int NOISE_FLOOR = 64;
+    private static final int MAX_CONSECUTIVE_REJECTS = 15;
+
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    private float peakScore;
+    private long peakNanos;
+    private float lastScore;
+    private int consecutiveRejects;
+
+    @Override
+    public boolean onFrame(@NonNull LumaFrame frame) {
+        final float score = measure(frame);
+        lastScore = score;
+        final long now = SystemClock.elapsedRealtimeNanos();
+        if (peakNanos != 0) {
+            peakScore *= (float) Math.pow(0.5, (double) (now - peakNanos) / PEAK_HALF_LIFE_NANOS);
+        }
+        peakNanos = now;
+        peakScore = Math.max(score, peakScore);
+
+        if (score < peakScore * REJECT_RATIO && consecutiveRejects < MAX_CONSECUTIVE_REJECTS) {
+            consecutiveRejects++;
+            rejected.incrementAndGet();
+            return false;
+        }
+
+        consecutiveRejects = 0;
+        admitted.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Returns the gradient energy over one pixel divided by the gradient energy over
+     * {@link #COARSE_STEP} pixels plus {@link #NOISE_FLOOR}, sampled every {@link #SAMPLE_STEP}
+     * pixels of the region of interest.
+     */
+    public static float measure(@NonNull LumaFrame frame) {
+        final int right = frame.getRoiRight() - COARSE_STEP;
+        final int bottom = frame.getRoiBottom() - COARSE_STEP;
+        long fine = 0;
+        long coarse = 0;
+        int count = 0;
+        for (int y = frame.getRoiTop(); y < bottom; y += SAMPLE_STEP) {
+            for (int x = frame.getRoiLeft(); x < right; x += SAMPLE_STEP) {
+                final int center = frame.getLuma(x, y);
+                final int right1 = frame.getLuma(x + 1, y);
+                final int below1 = frame.getLuma(x, y + 1);
+                // Both pixel pairs of the sample step, so no edge falls between samples.
+                final int dx0 = right1 - center;
+                final int dx1 = frame.getLuma(x + 2, y) - right1;
+                final int dy0 = below1 - center;
+                final int dy1 = frame.getLuma(x, y + 2) - below1;
+                final int coarseDx = frame.getLuma(x + COARSE_STEP, y) - center;
+                final int coarseDy = frame.getLuma(x, y + COARSE_STEP) - center;
+                fine += dx0 * dx0 + dx1 * dx1 + dy0 * dy0 + dy1 * dy1;
+                coarse += coarseDx * coarseDx + coarseDy * coarseDy;
+                count++;
+            }
+        }
+        return count > 0 ? (float) fine / (coarse + (long) NOISE_FLOOR * count) : 0f;
+    }
+
+    public long getAdmittedCount() {
+        return admitted.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    public float getLastScore() {
+        return lastScore;
+    }
+
+    @Override
+    public String toString() {
+        return "SharpnessGate{" +
+                "admitted=" + getAdmittedCount() +
+                ", rejected=" + getRejectedCount() +
+                '}';
+    }
+}
@@ -0,0 +1,148 @@
+package github.jomutils.android.barcode.analysis;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Skips frames showing the same scene as the last decoded frame, e.g. the empty counter in front
+ * of a fixed-mount scanner.
+ * <p>
+ * Each frame's region of interest is averaged down to a {@link #THUMBNAIL_SIZE} square thumbnail
+ * and compared with the thumbnail of the last decoded frame. The frame is decoded only when
+ * enough thumbnail cells changed by more than {@link #CELL_THRESHOLD}, or when
+ * {@link #setForcedDecodeIntervalFrames(int)} frames were skipped in a row.
+ * <p>
+ * The thumbnail of a frame let through is only staged, and becomes the reference in
+ * {@link #onFrameDecoded(long, int)}. A new scene whose first frame is rejected by a later stage,
+ * or fails to decode, is therefore still let through on the following frames.
+ */
+public class StaticSceneGate extends FrameStage {
+
+    private static final int THUMBNAIL_SIZE = 16;
+    private static final int CELLS = THUMBNAIL_SIZE * THUMBNAIL_SIZE;
+    /**
+     * Absolute luminance change of a cell that counts as a change, above sensor noise and
+     * auto-exposure flicker.
+     */
+    private static final int CELL_THRESHOLD = 12;
+    /**
+     * Cells that must change, about 3% of the thumbnail.
+     */
+    private static final int MIN_CHANGED_CELLS = 8;
+    private static final int SAMPLES_PER_CELL_SIDE = 4;
+    private static final int DEFAULT_FORCED_DECODE_INTERVAL_FRAMES = 30;
+
+    private final int[] thumbnail = new int[CELLS];
+    // Guarded by reference, written on the listener executor and read on the analyzer thread.
+    private final int[] reference = new int[CELLS];
+    private final int[] staged = new int[CELLS];
+    private boolean hasReference;
+    private long stagedSequence = -1;
+    private int forcedDecodeIntervalFrames = DEFAULT_FORCED_DECODE_INTERVAL_FRAMES;
+    private int skippedInARow;
+
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+
+    /**
+     * Sets after how many skipped frames in a row one is decoded anyway, about once a second by
+     * default.
+     */
+    public void setForcedDecodeIntervalFrames(int frames) {
+        forcedDecodeIntervalFrames = Math.max(1, frames);
+    }
+
+    @Override
+    public boolean onFrame(@NonNull LumaFrame frame) {
+        buildThumbnail(frame, thumbnail);
+
+        synchronized (reference) {
+            if (hasReference
+                    && countChangedCells(thumbnail, reference) < MIN_CHANGED_CELLS
+                    && skippedInARow + 1 < forcedDecodeIntervalFrames) {
+                skippedInARow++;
+                skipped.incrementAndGet();
+                return false;
+            }
+
+            System.arraycopy(thumbnail, 0, staged, 0, CELLS);
+            stagedSequence = frame.getSequence();
+        }
+        skippedInARow = 0;
+        admitted.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Makes the thumbnail of the decoded frame the reference, if it is the last one staged.
+     */
+    @Override
+    public void onFrameDecoded(long sequence, int barcodeCount) {
+        synchronized (reference) {
+            if (sequence == stagedSequence) {
+                System.arraycopy(staged, 0, reference, 0, CELLS);
+                hasReference = true;
+                stagedSequence = -1;
+            }
+        }
+    }
+
+    /**
+     * Forgets the reference, so the next frame is decoded.
+     */
+    public void reset() {
+        synchronized (reference) {
+            hasReference = false;
+            stagedSequence = -1;
+        }
+    }
+
+    private static void buildThumbnail(LumaFrame frame, int[] thumbnail) {
+        final int left = frame.getRoiLeft();
+        final int top = frame.getRoiTop();
+        final int roiWidth = frame.getRoiWidth();
+        final int roiHeight = frame.getRoiHeight();
+        final int samplesPerSide = THUMBNAIL_SIZE * SAMPLES_PER_CELL_SIDE;
+
+        for (int cy = 0; cy < THUMBNAIL_SIZE; cy++) {
+            for (int cx = 0; cx < THUMBNAIL_SIZE; cx++) {
+                int sum = 0;
+                for (int sy = 0; sy < SAMPLES_PER_CELL_SIDE; sy++) {
+                    final int y = top + (cy * SAMPLES_PER_CELL_SIDE + sy) * roiHeight / samplesPerSide;
+                    for (int sx = 0; sx < SAMPLES_PER_CELL_SIDE; sx++) {
+                        final int x = left + (cx * SAMPLES_PER_CELL_SIDE + sx) * roiWidth / samplesPerSide;
+                        sum += frame.getLuma(x, y);
+                    }
+                }
+                thumbnail[cy * THUMBNAIL_SIZE + cx] = sum / (SAMPLES_PER_CELL_SIDE * SAMPLES_PER_CELL_SIDE);
+            }
+        }
+    }
+
+    private static int countChangedCells(int[] thumbnail, int[] reference) {
+        int changed = 0;
+        for (int i = 0; i < CELLS; i++) {
+            if (Math.abs(thumbnail[i] - reference[i]) > CELL_THRESHOLD) {
+                changed++;
+            }
+        }
+        return changed;
+    }
+
+    public long getAdmittedCount() {
+        return admitted.get();
+    }
+
+    public long getSkippedCount() {
+        return skipped.get();
+    }
+
+    @Override
+    public String toString() {
+        return "StaticSceneGate{" +
+                "admitted=" + getAdmittedCount() +
+                ", skipped=" + getSkippedCount() +
+                '}';
+    }
+}
@@ -0,0 +1,208 @@
+package github.jomutils.android.barcode.analytics;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.ProcessLifecycleOwner;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local, offline record of scanning sessions: a JSON lines file in the app's files directory, one
+ * {@link ScanSessionRecord} per line.
+ * <p>
+ * Records are handed to a single low priority thread of this log and written in batches, once
+ * {@link #BATCH_SIZE} are pending or {@link #FLUSH_DELAY_MS} after the first one, so
+ * {@link #append(ScanSessionRecord)} costs the caller one queue insertion and no I/O. When the file
+ * would grow past its size limit it is moved to {@code <name>.1}, replacing the previous one, so
+ * the log never takes more than twice the limit.
+ * <p>
+ * The process wide log of {@link #getInstance(Context)} also flushes whenever the app goes to the
+ * background, since a process in the background may be killed without notice.
+ */
+public class ScanSessionLog {
+
+    private static final String TAG = "ScanSessionLog";
+
+    public static final String FILE_NAME = "scan_sessions.jsonl";
+    private static final long DEFAULT_MAX_FILE_BYTES = 256 * 1024;
+
+    static final int BATCH_SIZE = 8;
+    static final long FLUSH_DELAY_MS = 10_000;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static ScanSessionLog instance;
+
+    /**
+     * Where {@link #file} is resolved on first use, when not given, so that no caller thread touches
+     * the disk.
+     */
+    @Nullable
+    private final Context context;
+    // Guarded by this.
+    private File file;
+    private File rolledFile;
+    private final long maxFileBytes;
+    private final ScheduledExecutorService executor;
+
+    // Writer thread only.
+    private final List<ScanSessionRecord> pending = new ArrayList<>(BATCH_SIZE);
+    private final StringBuilder lines = new StringBuilder(BATCH_SIZE * 256);
+    private ScheduledFuture<?> scheduledFlush;
+
+    /**
+     * Returns the process wide log in {@link Context#getFilesDir()}, resolved on the log's thread.
+     */
+    @NonNull
+    public static synchronized ScanSessionLog getInstance(@NonNull Context context) {
+        if (instance == null) {
+            final ScanSessionLog log = new ScanSessionLog(null, context.getApplicationContext(), DEFAULT_MAX_FILE_BYTES);
+            // Observers are added on the main thread.
+            new Handler(Looper.getMainLooper()).post(() -> ProcessLifecycleOwner.get().getLifecycle()
+                    .addObserver((LifecycleEventObserver) (source, event) -> {
+                        if (event == Lifecycle.Event.ON_STOP) {
+                            log.flush();
+                        }
+                    }));
+            instance = log;
+        }
+        return instance;
+    }
+
+    public ScanSessionLog(@NonNull File file, long maxFileBytes) {
+        this(file, null, maxFileBytes);
+    }
+
+    private ScanSessionLog(@Nullable File file, @Nullable Context context, long maxFileBytes) {
+        if (maxFileBytes <= 0) {
+            throw new IllegalArgumentException("maxFileBytes <= 0: " + maxFileBytes);
+        }
+        this.context = context;
+        if (file != null) {
+            setFile(file);
+        }
+        this.maxFileBytes = maxFileBytes;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, TAG);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Queues {@code record} for the next batch. Safe to call from any thread, never blocks on I/O.
+     */
+    public void append(@NonNull ScanSessionRecord record) {
+        executor.execute(() -> {
+            pending.add(record);
+            if (pending.size() >= BATCH_SIZE) {
+                writePending();
+            } else if (scheduledFlush == null) {
+                scheduledFlush = executor.schedule(this::writePending, FLUSH_DELAY_MS, TimeUnit.MILLISECONDS);
+            }
+        });
+    }
+
+    /**
+     * Writes the pending records now, e.g. when the app goes to the background.
+     *
+     * @return completes once they are written
+     */
+    @NonNull
+    public Future<?> flush() {
+        return executor.submit(this::writePending);
+    }
+
+    /**
+     * Returns the log files, oldest first. Checks the disk, so better not called from the main
+     * thread.
+     */
+    @NonNull
+    public List<File> getFiles() {
+        final File file = getFile();
+        final File rolledFile = getRolledFile();
+        final List<File> files = new ArrayList<>(2);
+        if (rolledFile.exists()) {
+            files.add(rolledFile);
+        }
+        if (file.exists()) {
+            files.add(file);
+        }
+        return files;
+    }
+
+    private void setFile(File file) {
+        this.file = file;
+        this.rolledFile = new File(file.getPath() + ".1");
+    }
+
+    private synchronized File getFile() {
+        if (file == null) {
+            // Only constructed without a file when given a context.
+            setFile(new File(context.getFilesDir(), FILE_NAME));
+        }
+        return file;
+    }
+
+    private synchronized File getRolledFile() {
+        getFile();
+        return rolledFile;
+    }
+
+    private void writePending() {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        lines.setLength(0);
+        for (ScanSessionRecord record : pending) {
+            record.appendJson(lines);
+            lines.append('\n');
+        }
+        pending.clear();
+        final byte[] bytes = lines.toString().getBytes(UTF_8);
+
+        final File file = getFile();
+        final File rolledFile = getRolledFile();
+        final long length = file.length();
+        if (length > 0 && length + bytes.length > maxFileBytes) {
+            if (rolledFile.exists() && !rolledFile.delete() || !file.renameTo(rolledFile)) {
+                Log.w(TAG, "Could not roll " + file + ", appending to it");
+            }
+        }
+
+        final File parent = file.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            Log.w(TAG, "Could not create " + parent);
+            return;
+        }
+        try (OutputStream out = new FileOutputStream(file, true)) {
+            out.write(bytes);
+        } catch (IOException e) {
+            Log.w(TAG, "Could not write " + file, e);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package github.jomutils.android.barcode.analytics;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Summary of one scanning session, as written to the {@link ScanSessionLog}: one JSON object per
+ * line with fixed keys, times in milliseconds, -1 for what did not happen.
+ */
+public final class ScanSessionRecord {
+
+    private final long startedAtMs;
+    private final long durationMs;
+    private final String siteId;
+    private final long timeToFirstDetectionMs;
+    private final long timeToFirstResultMs;
+    private final long framesAnalyzed;
+    private final long framesDropped;
+    private final long decoderFailures;
+    private final int[] resultFormats;
+    private final int[] resultCounts;
+    private final long torchOnMs;
+    private final int zoomChanges;
+    private final float maxZoomRatio;
+
+    /**
+     * @param startedAtMs   wall clock time of the session start
+     * @param resultFormats ML Kit formats of the confirmed results, paired with {@code resultCounts}
+     */
+    public ScanSessionRecord(long startedAtMs, long durationMs, @NonNull String siteId,
+                             long timeToFirstDetectionMs, long timeToFirstResultMs,
+                             long framesAnalyzed, long framesDropped, long decoderFailures,
+                             @NonNull int[] resultFormats, @NonNull int[] resultCounts,
+                             long torchOnMs, int zoomChanges, float maxZoomRatio) {
+        if (resultFormats.length != resultCounts.length) {
+            throw new IllegalArgumentException("formats and counts differ in length: "
+                    + resultFormats.length + " != " + resultCounts.length);
+        }
+        this.startedAtMs = startedAtMs;
+        this.durationMs = durationMs;
+        this.siteId = siteId;
+        this.timeToFirstDetectionMs = timeToFirstDetectionMs;
+        this.timeToFirstResultMs = timeToFirstResultMs;
+        this.framesAnalyzed = framesAnalyzed;
+        this.framesDropped = framesDropped;
+        this.decoderFailures = decoderFailures;
+        this.resultFormats = resultFormats;
+        this.resultCounts = resultCounts;
+        this.torchOnMs = torchOnMs;
+        this.zoomChanges = zoomChanges;
+        this.maxZoomRatio = maxZoomRatio;
+    }
+
+    public long getStartedAtMs() {
+        return startedAtMs;
+    }
+
+    public long getDurationMs() {
+        return durationMs;
+    }
+
+    @NonNull
+    public String getSiteId() {
+        return siteId;
+    }
+
+    public long getTimeToFirstDetectionMs() {
+        return timeToFirstDetectionMs;
+    }
+
+    public long getTimeToFirstResultMs() {
+        return timeToFirstResultMs;
+    }
+
+    public long getFramesAnalyzed() {
+        return framesAnalyzed;
+    }
+
+    public long getFramesDropped() {
+        return framesDropped;
+    }
+
+    public long getDecoderFailures() {
+        return decoderFailures;
+    }
+
+    /**
+     * Returns the number of confirmed results of {@code format}.
+     */
+    public int getResultCount(int format) {
+        for (int i = 0; i < resultFormats.length; i++) {
+            if (resultFormats[i] == format) {
+                return resultCounts[i];
+            }
+        }
+        return 0;
+    }
+
+    public long getTorchOnMs() {
+        return torchOnMs;
+    }
+
+    public int getZoomChanges() {
+        return zoomChanges;
+    }
+
+    public float getMaxZoomRatio() {
+        return maxZoomRatio;
+    }
+
+    /**
+     * Appends this record as a single line JSON object, without the line break.
+     */
+    public void appendJson(@NonNull StringBuilder out) {
+        out.append("{\"startedAt\":").append(startedAtMs)
+                .append(",\"durationMs\":").append(durationMs)
+                .append(",\"site\":");
+        appendJsonString(out, siteId);
+        out.append(",\"firstDetectionMs\":").append(timeToFirstDetectionMs)
+                .append(",\"firstResultMs\":").append(timeToFirstResultMs)
+                .append(",\"framesAnalyzed\":").append(framesAnalyzed)
+                .append(",\"framesDropped\":").append(framesDropped)
+                .append(",\"decoderFailures\":").append(decoderFailures)
+                .append(",\"formats\":{");
+        for (int i = 0; i < resultFormats.length; i++) {
+            if (i > 0) {
+                out.append(',');
+            }
+            out.append('"').append(resultFormats[i]).append("\":").append(resultCounts[i]);
+        }
+        out.append("},\"torchOnMs\":").append(torchOnMs)
+                .append(",\"zoomChanges\":").append(zoomChanges)
+                .append(",\"maxZoom\":").append(maxZoomRatio)
+                .append('}');
+    }
+
+    @NonNull
+    public String toJson() {
+        final StringBuilder builder = new StringBuilder(256);
+        appendJson(builder);
+        return builder.toString();
+    }
+
+    private static void appendJsonString(StringBuilder out, String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+                    break;
+            }
+        }
+        out.append('"');
+    }
+
+    @Override
+    public String toString() {
+        return toJson();
+    }
+}
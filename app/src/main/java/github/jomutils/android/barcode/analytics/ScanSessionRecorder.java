@@ -0,0 +1,143 @@
+package github.jomutils.android.barcode.analytics;
+
+import android.os.SystemClock;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects the counters of one scanning session for a {@link ScanSessionRecord}, from the moment
+ * it is created until {@link #finish()}.
+ * <p>
+ * Frame counters are lock-free so the analyzer thread only pays an atomic increment per frame;
+ * torch and zoom changes come from camera state observers on the main thread.
+ */
+public class ScanSessionRecorder {
+
+    /**
+     * Zoom ratio changes smaller than this are not counted.
+     */
+    private static final float MIN_ZOOM_CHANGE = 0.01f;
+
+    private final String siteId;
+    private final long startedAtMs = System.currentTimeMillis();
+    private final long startNanos = SystemClock.elapsedRealtimeNanos();
+
+    private final AtomicLong firstDetectionNanos = new AtomicLong(-1);
+    private final AtomicLong firstResultNanos = new AtomicLong(-1);
+    private final AtomicLong framesAnalyzed = new AtomicLong();
+    private final AtomicLong framesDropped = new AtomicLong();
+    private final AtomicLong decoderFailures = new AtomicLong();
+    /**
+     * Indexed by the bit of the ML Kit format flag.
+     */
+    private final AtomicIntegerArray resultCounts = new AtomicIntegerArray(Integer.SIZE);
+
+    // Main thread only.
+    private boolean torchOn;
+    private long torchOnSinceNanos;
+    private long torchOnNanos;
+    private float zoomRatio = -1f;
+    private float maxZoomRatio = 1f;
+    private int zoomChanges;
+
+    public ScanSessionRecorder(@NonNull String siteId) {
+        this.siteId = siteId;
+    }
+
+    /**
+     * Records a frame the decoder finished.
+     */
+    public void onFrameAnalyzed(int barcodeCount) {
+        framesAnalyzed.incrementAndGet();
+        if (barcodeCount > 0 && firstDetectionNanos.get() < 0) {
+            firstDetectionNanos.compareAndSet(-1, SystemClock.elapsedRealtimeNanos() - startNanos);
+        }
+    }
+
+    /**
+     * Records a frame dropped before the decoder.
+     */
+    public void onFrameDropped() {
+        framesDropped.incrementAndGet();
+    }
+
+    public void onDecoderFailure() {
+        decoderFailures.incrementAndGet();
+    }
+
+    /**
+     * Records a confirmed result of the ML Kit {@code format}.
+     */
+    public void onResult(int format) {
+        firstResultNanos.compareAndSet(-1, SystemClock.elapsedRealtimeNanos() - startNanos);
+        if (format > 0 && Integer.bitCount(format) == 1) {
+            resultCounts.incrementAndGet(Integer.numberOfTrailingZeros(format));
+        }
+    }
+
+    @MainThread
+    public void onTorchStateChanged(boolean on) {
+        if (on == torchOn) {
+            return;
+        }
+        final long now = SystemClock.elapsedRealtimeNanos();
+        if (on) {
+            torchOnSinceNanos = now;
+        } else {
+            torchOnNanos += now - torchOnSinceNanos;
+        }
+        torchOn = on;
+    }
+
+    /**
+     * Records the camera's zoom ratio. The first value is the starting ratio, not a change.
+     */
+    @MainThread
+    public void onZoomRatioChanged(float ratio) {
+        if (zoomRatio >= 0 && Math.abs(ratio - zoomRatio) >= MIN_ZOOM_CHANGE) {
+            zoomChanges++;
+        }
+        zoomRatio = ratio;
+        maxZoomRatio = Math.max(maxZoomRatio, ratio);
+    }
+
+    /**
+     * Returns the record of the session so far.
+     */
+    @MainThread
+    @NonNull
+    public ScanSessionRecord finish() {
+        final long now = SystemClock.elapsedRealtimeNanos();
+
+        int formatCount = 0;
+        for (int i = 0; i < resultCounts.length(); i++) {
+            if (resultCounts.get(i) > 0) {
+                formatCount++;
+            }
+        }
+        final int[] formats = new int[formatCount];
+        final int[] counts = new int[formatCount];
+        for (int i = 0, j = 0; i < resultCounts.length() && j < formatCount; i++) {
+            final int count = resultCounts.get(i);
+            if (count > 0) {
+                formats[j] = 1 << i;
+                counts[j] = count;
+                j++;
+            }
+        }
+
+        final long torchNanos = torchOnNanos + (torchOn ? now - torchOnSinceNanos : 0);
+        return new ScanSessionRecord(startedAtMs, (now - startNanos) / 1_000_000, siteId,
+                toMillis(firstDetectionNanos.get()), toMillis(firstResultNanos.get()),
+                framesAnalyzed.get(), framesDropped.get(), decoderFailures.get(),
+                formats, counts, torchNanos / 1_000_000, zoomChanges, maxZoomRatio);
+    }
+
+    private static long toMillis(long nanos) {
+        return nanos < 0 ? -1 : nanos / 1_000_000;
+    }
+}
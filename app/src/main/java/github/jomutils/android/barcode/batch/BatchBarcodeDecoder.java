@@ -0,0 +1,419 @@
+package github.jomutils.android.barcode.batch;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.core.content.ContextCompat;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.mlkit.vision.barcode.Barcode;
+import com.google.mlkit.vision.barcode.BarcodeScanner;
+import com.google.mlkit.vision.common.InputImage;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import github.jomutils.android.barcode.BarcodeResult;
+import github.jomutils.android.barcode.BarcodeScanners;
+
+/**
+ * Decodes barcodes from still images (files or content {@link Uri}s) on a bounded worker pool.
+ * <p>
+ * Each worker owns its own {@link BarcodeScanner} client so decoding scales with the number of
+ * workers, images are downsampled to {@link Builder#setMaxDimension(int)} before decoding, and the
+ * bitmaps alive at any time never exceed {@link Builder#setMaxBitmapBytes(long)}. Results are
+ * mapped with {@link BarcodeResult#fromBarcode(Barcode)}, the same as the live camera path.
+ */
+public class BatchBarcodeDecoder {
+
+    public interface Callback {
+        /**
+         * Called once per image that was decoded, with or without barcodes found.
+         */
+        void onItemDecoded(int index, @NonNull Uri uri, @NonNull List<BarcodeResult> results,
+                           int completed, int total);
+
+        /**
+         * Called once per image that could not be read or decoded, or whose worker was interrupted
+         * while decoding it, with an {@link InterruptedException}.
+         */
+        void onItemFailed(int index, @NonNull Uri uri, @NonNull Exception e, int completed, int total);
+
+        /**
+         * Called once after every image was handled or the job was cancelled.
+         */
+        void onBatchFinished(@NonNull Stats stats);
+    }
+
+    /**
+     * Summary of a finished batch.
+     */
+    public static class Stats {
+        public final int total;
+        public final int decoded;
+        public final int failed;
+        public final int barcodes;
+        public final long elapsedMs;
+        public final boolean cancelled;
+
+        Stats(int total, int decoded, int failed, int barcodes, long elapsedMs, boolean cancelled) {
+            this.total = total;
+            this.decoded = decoded;
+            this.failed = failed;
+            this.barcodes = barcodes;
+            this.elapsedMs = elapsedMs;
+            this.cancelled = cancelled;
+        }
+
+        public float getImagesPerSecond() {
+            return elapsedMs > 0 ? (decoded + failed) * 1000f / elapsedMs : 0f;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{" +
+                    "total=" + total +
+                    ", decoded=" + decoded +
+                    ", failed=" + failed +
+                    ", barcodes=" + barcodes +
+                    ", elapsedMs=" + elapsedMs +
+                    ", imagesPerSecond=" + getImagesPerSecond() +
+                    ", cancelled=" + cancelled +
+                    '}';
+        }
+    }
+
+    /**
+     * Handle of a running batch.
+     */
+    public static class Job {
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+
+        /**
+         * Stops handing out new images. Images already being decoded still complete.
+         */
+        public void cancel() {
+            cancelled.set(true);
+        }
+
+        public boolean isCancelled() {
+            return cancelled.get();
+        }
+    }
+
+    public static class Builder {
+        private final Context context;
+        private int[] formats;
+        private int workerCount = Runtime.getRuntime().availableProcessors();
+        private int maxDimension = 1600;
+        private long maxBitmapBytes = 64L * 1024 * 1024;
+        private Executor listenerExecutor;
+
+        public Builder(@NonNull Context context) {
+            this.context = context.getApplicationContext();
+        }
+
+        /**
+         * @param formats an array of {@link Barcode}'s Formats. {@code null} for all formats support.
+         */
+        public Builder setBarcodeFormats(@Nullable int[] formats) {
+            this.formats = formats;
+            return this;
+        }
+
+        public Builder setWorkerCount(int workerCount) {
+            this.workerCount = Math.max(1, workerCount);
+            return this;
+        }
+
+        /**
+         * Images whose longest side exceeds this value are downsampled before decoding, to a longest
+         * side of at most this value.
+         */
+        public Builder setMaxDimension(int maxDimension) {
+            this.maxDimension = Math.max(1, maxDimension);
+            return this;
+        }
+
+        /**
+         * Caps the total size of decoded bitmaps held by all workers at once.
+         */
+        public Builder setMaxBitmapBytes(long maxBitmapBytes) {
+            this.maxBitmapBytes = Math.max(1, maxBitmapBytes);
+            return this;
+        }
+
+        /**
+         * Executor that receives {@link Callback} calls. Defaults to the main thread.
+         */
+        public Builder setListenerExecutor(@NonNull Executor listenerExecutor) {
+            this.listenerExecutor = listenerExecutor;
+            return this;
+        }
+
+        public BatchBarcodeDecoder build() {
+            return new BatchBarcodeDecoder(this);
+        }
+    }
+
+    private static final String TAG = "BatchBarcodeDecoder";
+
+    private static final int BYTES_PER_PIXEL = 4;
+    private static final int KB = 1024;
+
+    private final ContentResolver contentResolver;
+    private final int maxDimension;
+    private final int maxBitmapKb;
+    private final Executor listenerExecutor;
+
+    private final ExecutorService workerExecutor;
+    private final BarcodeScanner[] scanners;
+    private final Semaphore bitmapBudget;
+    private final Set<Job> runningJobs = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+    private BatchBarcodeDecoder(Builder builder) {
+        contentResolver = builder.context.getContentResolver();
+        maxDimension = builder.maxDimension;
+        maxBitmapKb = (int) Math.min(Integer.MAX_VALUE, Math.max(1, builder.maxBitmapBytes / KB));
+        listenerExecutor = builder.listenerExecutor != null
+                ? builder.listenerExecutor
+                : ContextCompat.getMainExecutor(builder.context);
+
+        workerExecutor = Executors.newFixedThreadPool(builder.workerCount);
+        scanners = new BarcodeScanner[builder.workerCount];
+        for (int i = 0; i < scanners.length; i++) {
+            scanners[i] = BarcodeScanners.newClient(builder.formats);
+        }
+        bitmapBudget = new Semaphore(maxBitmapKb, true);
+    }
+
+    public Job decodeFiles(@NonNull List<File> files, @NonNull Callback callback) {
+        List<Uri> uris = new ArrayList<>(files.size());
+        for (File file : files) {
+            uris.add(Uri.fromFile(file));
+        }
+        return decode(uris, callback);
+    }
+
+    public Job decode(@NonNull List<Uri> uris, @NonNull Callback callback) {
+        final List<Uri> items = Collections.unmodifiableList(new ArrayList<>(uris));
+        final Job job = new Job();
+        final int total = items.size();
+        final long startMs = SystemClock.elapsedRealtime();
+
+        final AtomicInteger cursor = new AtomicInteger();
+        final AtomicInteger completed = new AtomicInteger();
+        final AtomicInteger decoded = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+        final AtomicInteger barcodes = new AtomicInteger();
+        final AtomicInteger runningWorkers = new AtomicInteger(scanners.length);
+
+        if (total == 0) {
+            listenerExecutor.execute(() -> callback.onBatchFinished(new Stats(0, 0, 0, 0, 0, false)));
+            return job;
+        }
+        runningJobs.add(job);
+
+        // Every worker pulls the next index until the list is drained, so the pool queue never
+        // holds more than one task per worker no matter how large the batch is.
+        for (final BarcodeScanner scanner : scanners) {
+            workerExecutor.execute(() -> {
+                int index;
+                while (!job.isCancelled() && (index = cursor.getAndIncrement()) < total) {
+                    final Uri uri = items.get(index);
+                    final int itemIndex = index;
+                    try {
+                        final List<BarcodeResult> results = decodeOne(scanner, uri);
+                        decoded.incrementAndGet();
+                        barcodes.addAndGet(results.size());
+                        final int done = completed.incrementAndGet();
+                        listenerExecutor.execute(() -> callback.onItemDecoded(itemIndex, uri, results, done, total));
+                    } catch (InterruptedException e) {
+                        // The image counts as failed so the stats still add up, and the job stops.
+                        Thread.currentThread().interrupt();
+                        job.cancel();
+                        failed.incrementAndGet();
+                        final int done = completed.incrementAndGet();
+                        listenerExecutor.execute(() -> callback.onItemFailed(itemIndex, uri, e, done, total));
+                        break;
+                    } catch (Exception e) {
+                        failed.incrementAndGet();
+                        final int done = completed.incrementAndGet();
+                        listenerExecutor.execute(() -> callback.onItemFailed(itemIndex, uri, e, done, total));
+                    }
+                }
+
+                if (runningWorkers.decrementAndGet() == 0) {
+                    runningJobs.remove(job);
+                    final Stats stats = new Stats(total, decoded.get(), failed.get(), barcodes.get(),
+                            SystemClock.elapsedRealtime() - startMs, job.isCancelled());
+                    Log.i(TAG, "decode: " + stats);
+                    listenerExecutor.execute(() -> callback.onBatchFinished(stats));
+                }
+            });
+        }
+
+        return job;
+    }
+
+    /**
+     * Cancels the running jobs and shuts down the worker pool. Pending images are dropped, images
+     * being decoded complete. The scanner clients are closed in the background once every worker
+     * has exited, so no decode is cut short.
+     */
+    public void close() {
+        for (Job job : runningJobs) {
+            job.cancel();
+        }
+        workerExecutor.shutdown();
+        final Thread closer = new Thread(() -> {
+            try {
+                while (!workerExecutor.awaitTermination(1, TimeUnit.MINUTES)) {
+                    Log.w(TAG, "close: still waiting for workers");
+                }
+            } catch (InterruptedException e) {
+                Log.w(TAG, "close: interrupted, scanners left open", e);
+                return;
+            }
+            for (BarcodeScanner scanner : scanners) {
+                scanner.close();
+            }
+        }, TAG + "-close");
+        closer.setDaemon(true);
+        closer.start();
+    }
+
+    private List<BarcodeResult> decodeOne(BarcodeScanner scanner, Uri uri) throws Exception {
+        final BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        try (InputStream in = openStream(uri)) {
+            BitmapFactory.decodeStream(in, null, options);
+        }
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            throw new IOException("Unsupported image: " + uri);
+        }
+
+        final int sampleSize = calculateSampleSize(options.outWidth, options.outHeight, maxDimension);
+        final int sampledWidth = (options.outWidth + sampleSize - 1) / sampleSize;
+        final int sampledHeight = (options.outHeight + sampleSize - 1) / sampleSize;
+        // The sampled bitmap and, while it is scaled, the scaled copy.
+        long estimatedKb = estimateBitmapKb(sampledWidth, sampledHeight, 1);
+        if (Math.max(sampledWidth, sampledHeight) > maxDimension) {
+            estimatedKb += estimateBitmapKb(scaleToMax(sampledWidth, sampledWidth, sampledHeight, maxDimension),
+                    scaleToMax(sampledHeight, sampledWidth, sampledHeight, maxDimension), 1);
+        }
+        final int costKb = (int) Math.min(maxBitmapKb, estimatedKb);
+
+        bitmapBudget.acquire(costKb);
+        Bitmap bitmap = null;
+        // Set once the bitmap is handed to the decoder, which then recycles it and frees its budget.
+        boolean decoding = false;
+        try {
+            options.inJustDecodeBounds = false;
+            options.inSampleSize = sampleSize;
+            options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+            try (InputStream in = openStream(uri)) {
+                bitmap = BitmapFactory.decodeStream(in, null, options);
+            }
+            if (bitmap == null) {
+                throw new IOException("Cannot decode image: " + uri);
+            }
+            final int width = bitmap.getWidth();
+            final int height = bitmap.getHeight();
+            if (Math.max(width, height) > maxDimension) {
+                final Bitmap scaled = Bitmap.createScaledBitmap(bitmap,
+                        scaleToMax(width, width, height, maxDimension),
+                        scaleToMax(height, width, height, maxDimension),
+                        true);
+                if (scaled != bitmap) {
+                    bitmap.recycle();
+                    bitmap = scaled;
+                }
+            }
+
+            final Bitmap input = bitmap;
+            final Task<List<Barcode>> task = scanner.process(InputImage.fromBitmap(input, 0));
+            // The task keeps reading the bitmap even if waiting for it is interrupted.
+            task.addOnCompleteListener(Runnable::run, finished -> {
+                input.recycle();
+                bitmapBudget.release(costKb);
+            });
+            decoding = true;
+            final List<Barcode> found = Tasks.await(task);
+            final List<BarcodeResult> results = new ArrayList<>(found.size());
+            for (Barcode barcode : found) {
+                results.add(BarcodeResult.fromBarcode(barcode));
+            }
+            return results;
+        } finally {
+            if (!decoding) {
+                if (bitmap != null) {
+                    bitmap.recycle();
+                }
+                bitmapBudget.release(costKb);
+            }
+        }
+    }
+
+    private InputStream openStream(Uri uri) throws FileNotFoundException {
+        final InputStream in = contentResolver.openInputStream(uri);
+        if (in == null) {
+            throw new FileNotFoundException("Cannot open " + uri);
+        }
+        return in;
+    }
+
+    /**
+     * Returns the largest power of two that keeps the longest side of the decoded image at or above
+     * {@code maxDimension}, the same rounding {@link BitmapFactory.Options#inSampleSize} applies.
+     * Sampling is cheap but coarse, the rest of the way down is done by {@link #scaleToMax}.
+     */
+    static int calculateSampleSize(int width, int height, int maxDimension) {
+        int sampleSize = 1;
+        int longest = Math.max(width, height);
+        while (longest / (sampleSize * 2) >= maxDimension) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /**
+     * Returns {@code size}, a side of a {@code width} x {@code height} image, scaled so the longest
+     * side is at most {@code maxDimension}. Never below 1.
+     */
+    static int scaleToMax(int size, int width, int height, int maxDimension) {
+        final int longest = Math.max(width, height);
+        if (longest <= maxDimension) {
+            return size;
+        }
+        return Math.max(1, (int) ((long) size * maxDimension / longest));
+    }
+
+    static long estimateBitmapKb(int width, int height, int sampleSize) {
+        final long sampledWidth = (width + sampleSize - 1) / sampleSize;
+        final long sampledHeight = (height + sampleSize - 1) / sampleSize;
+        return Math.max(1, sampledWidth * sampledHeight * BYTES_PER_PIXEL / KB);
+    }
+}
@@ -0,0 +1,321 @@
+package github.jomutils.android.barcode.camera;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.graphics.ImageFormat;
+import android.hardware.camera2.CameraAccessException;
+import android.hardware.camera2.CameraCharacteristics;
+import android.hardware.camera2.CameraManager;
+import android.hardware.camera2.params.StreamConfigurationMap;
+import android.os.Build;
+import android.util.Log;
+import android.util.Size;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Picks the {@link androidx.camera.core.ImageAnalysis} resolution that gives the best trade-off
+ * between decode latency and detection rate on this device.
+ * <p>
+ * A calibration runs every candidate size for a short window while the caller feeds decode results
+ * through {@link #recordFrame(int, int, long, boolean)}. The winner is stored in a private
+ * {@link SharedPreferences} file keyed by device model and camera ID, so later sessions start
+ * directly at the tuned resolution via {@link #getTunedResolution()}.
+ */
+public class AnalysisResolutionTuner {
+
+    private static final String TAG = "ResolutionTuner";
+
+    private static final String PREFS_NAME = "analysis_resolution_profiles";
+
+    private static final int MIN_LONG_SIDE = 480;
+    private static final int MAX_LONG_SIDE = 1920;
+    private static final int MAX_CANDIDATES = 5;
+    /**
+     * Frames right after a rebind run at a transient rate and exposure, so they are not counted.
+     */
+    private static final int WARM_UP_FRAMES = 3;
+    /**
+     * Candidates whose detection rate is within this factor of the best one are considered equally
+     * good and the fastest of them wins.
+     */
+    private static final float DETECTION_RATE_TOLERANCE = 0.9f;
+
+    private final SharedPreferences preferences;
+    private final String profileKey;
+    private final List<Size> candidates;
+
+    private int currentCandidate = -1;
+    private CandidateStats[] stats;
+
+    private AnalysisResolutionTuner(Context context, @Nullable String cameraId, List<Size> candidates) {
+        this.preferences = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        this.profileKey = Build.MANUFACTURER + "/" + Build.MODEL + "/" + cameraId;
+        this.candidates = candidates;
+    }
+
+    /**
+     * Creates a tuner for the first back facing camera, the one
+     * {@link androidx.camera.core.CameraSelector#DEFAULT_BACK_CAMERA} resolves to.
+     */
+    @NonNull
+    public static AnalysisResolutionTuner forBackCamera(@NonNull Context context) {
+        final CameraManager cameraManager = (CameraManager) context.getSystemService(Context.CAMERA_SERVICE);
+        String cameraId = null;
+        List<Size> candidates = new ArrayList<>();
+        try {
+            for (String id : cameraManager.getCameraIdList()) {
+                final CameraCharacteristics characteristics = cameraManager.getCameraCharacteristics(id);
+                final Integer facing = characteristics.get(CameraCharacteristics.LENS_FACING);
+                if (facing != null && facing == CameraCharacteristics.LENS_FACING_BACK) {
+                    cameraId = id;
+                    candidates = selectCandidates(characteristics.get(CameraCharacteristics.SCALER_STREAM_CONFIGURATION_MAP));
+                    break;
+                }
+            }
+        } catch (CameraAccessException e) {
+            Log.e(TAG, "Cannot read camera characteristics", e);
+        }
+        return new AnalysisResolutionTuner(context, cameraId, candidates);
+    }
+
+    private static List<Size> selectCandidates(@Nullable StreamConfigurationMap map) {
+        final List<Size> sizes = new ArrayList<>();
+        if (map == null) {
+            return sizes;
+        }
+        final Size[] outputSizes = map.getOutputSizes(ImageFormat.YUV_420_888);
+        if (outputSizes == null) {
+            return sizes;
+        }
+
+        for (Size size : outputSizes) {
+            final int longSide = Math.max(size.getWidth(), size.getHeight());
+            if (longSide >= MIN_LONG_SIDE && longSide <= MAX_LONG_SIDE) {
+                sizes.add(size);
+            }
+        }
+        Collections.sort(sizes, (a, b) -> Long.compare(
+                (long) a.getWidth() * a.getHeight(),
+                (long) b.getWidth() * b.getHeight()));
+
+        if (sizes.size() <= MAX_CANDIDATES) {
+            return sizes;
+        }
+        // Spread the candidates evenly from the smallest to the largest size.
+        final List<Size> spread = new ArrayList<>(MAX_CANDIDATES);
+        for (int i = 0; i < MAX_CANDIDATES; i++) {
+            spread.add(sizes.get(i * (sizes.size() - 1) / (MAX_CANDIDATES - 1)));
+        }
+        return spread;
+    }
+
+    /**
+     * Returns the stored resolution for this device and camera, or {@code null} before the first
+     * calibration.
+     */
+    @Nullable
+    public Size getTunedResolution() {
+        final String value = preferences.getString(profileKey, null);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Size.parseSize(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public void clearTunedResolution() {
+        preferences.edit().remove(profileKey).apply();
+    }
+
+    @NonNull
+    public List<Size> getCandidates() {
+        return candidates;
+    }
+
+    /**
+     * Returns {@code size} if its long side is at most {@code maxLongSide}, otherwise the largest
+     * candidate that fits, or the smallest candidate when none does.
+     *
+     * @param size        a resolution, {@code null} for the default one, which is treated as too
+     *                    large
+     * @param maxLongSide 0 for no limit
+     */
+    @Nullable
+    public Size limitResolution(@Nullable Size size, int maxLongSide) {
+        if (maxLongSide <= 0
+                || (size != null && Math.max(size.getWidth(), size.getHeight()) <= maxLongSide)
+                || candidates.isEmpty()) {
+            return size;
+        }
+        Size limited = candidates.get(0);
+        for (Size candidate : candidates) {
+            if (Math.max(candidate.getWidth(), candidate.getHeight()) <= maxLongSide) {
+                limited = candidate;
+            }
+        }
+        return limited;
+    }
+
+    public boolean isCalibrating() {
+        return stats != null;
+    }
+
+    /**
+     * Starts a new calibration.
+     *
+     * @return {@code false} when the camera reports no usable analysis size.
+     */
+    @MainThread
+    public boolean startCalibration() {
+        if (candidates.isEmpty()) {
+            return false;
+        }
+        stats = new CandidateStats[candidates.size()];
+        for (int i = 0; i < stats.length; i++) {
+            stats[i] = new CandidateStats();
+        }
+        currentCandidate = -1;
+        return true;
+    }
+
+    /**
+     * Moves to the next candidate.
+     *
+     * @return the resolution to bind for the next window, or {@code null} when every candidate was
+     * measured and {@link #finishCalibration()} should be called.
+     */
+    @MainThread
+    @Nullable
+    public Size nextCandidate() {
+        if (stats == null || currentCandidate + 1 >= candidates.size()) {
+            return null;
+        }
+        currentCandidate++;
+        return candidates.get(currentCandidate);
+    }
+
+    /**
+     * Records one decoded frame of the candidate currently bound.
+     *
+     * @param width         width of the analyzed image
+     * @param height        height of the analyzed image
+     * @param latencyNanos  time from submitting the frame to the decoder until its result
+     * @param detected      whether at least one barcode was found
+     */
+    @MainThread
+    public void recordFrame(int width, int height, long latencyNanos, boolean detected) {
+        if (stats == null || currentCandidate < 0) {
+            return;
+        }
+        final CandidateStats candidate = stats[currentCandidate];
+        if (candidate.skipped < WARM_UP_FRAMES) {
+            candidate.skipped++;
+            return;
+        }
+        candidate.width = width;
+        candidate.height = height;
+        candidate.frames++;
+        candidate.totalLatencyNanos += latencyNanos;
+        if (detected) {
+            candidate.detections++;
+        }
+    }
+
+    /**
+     * Abandons the calibration in progress without storing anything.
+     */
+    @MainThread
+    public void cancelCalibration() {
+        stats = null;
+        currentCandidate = -1;
+    }
+
+    /**
+     * Picks the best candidate and stores it.
+     *
+     * @return the chosen resolution, or {@code null} when nothing was measured or no candidate
+     * detected a barcode, in which case the previous resolution is kept.
+     */
+    @MainThread
+    @Nullable
+    public Size finishCalibration() {
+        if (stats == null) {
+            return null;
+        }
+
+        float bestDetectionRate = 0f;
+        for (CandidateStats candidate : stats) {
+            bestDetectionRate = Math.max(bestDetectionRate, candidate.getDetectionRate());
+        }
+        if (bestDetectionRate <= 0f) {
+            // Nothing was in front of the camera, so latency alone would pick the smallest size.
+            Log.i(TAG, "finishCalibration: no detections " + Arrays.toString(stats));
+            cancelCalibration();
+            return null;
+        }
+
+        CandidateStats best = null;
+        for (CandidateStats candidate : stats) {
+            if (candidate.frames == 0
+                    || candidate.getDetectionRate() < bestDetectionRate * DETECTION_RATE_TOLERANCE) {
+                continue;
+            }
+            if (best == null || candidate.getAverageLatencyNanos() < best.getAverageLatencyNanos()) {
+                best = candidate;
+            }
+        }
+
+        Log.i(TAG, "finishCalibration: " + Arrays.toString(stats) + " -> " + best);
+        cancelCalibration();
+
+        if (best == null) {
+            return null;
+        }
+        // Stores the size the camera actually delivered, which CameraX resolves to again when it is
+        // requested as target resolution.
+        final Size size = new Size(best.width, best.height);
+        preferences.edit().putString(profileKey, size.toString()).apply();
+        return size;
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    // Classes
+    ///////////////////////////////////////////////////////////////////////////
+
+    private static class CandidateStats {
+        int skipped;
+        int width;
+        int height;
+        int frames;
+        int detections;
+        long totalLatencyNanos;
+
+        float getDetectionRate() {
+            return frames > 0 ? (float) detections / frames : 0f;
+        }
+
+        long getAverageLatencyNanos() {
+            return frames > 0 ? totalLatencyNanos / frames : Long.MAX_VALUE;
+        }
+
+        @Override
+        public String toString() {
+            return width + "x" + height +
+                    "{frames=" + frames +
+                    ", detectionRate=" + getDetectionRate() +
+                    ", avgLatencyMs=" + (frames > 0 ? getAverageLatencyNanos() / 1e6 : 0) +
+                    '}';
+        }
+    }
+}
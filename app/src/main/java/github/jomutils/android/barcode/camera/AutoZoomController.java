@@ -0,0 +1,139 @@
+package github.jomutils.android.barcode.camera;
+
+import android.os.SystemClock;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.Nullable;
+import androidx.camera.core.Camera;
+import androidx.camera.core.ZoomState;
+
+/**
+ * Zooms toward a barcode that is too small to be accepted, and sweeps through zoom levels when no
+ * barcode was seen for a while.
+ * <p>
+ * The zoom moves by at most {@link #MAX_LINEAR_STEP} per update and never so far that the barcode
+ * would leave the field of view. Barcodes already between {@link #TARGET_PROGRESS} and
+ * {@link #ZOOM_OUT_PROGRESS} of the required size leave the zoom untouched.
+ */
+public class AutoZoomController {
+
+    /**
+     * Aim slightly above the required size so small measurement noise still passes the check.
+     */
+    private static final float TARGET_PROGRESS = 1.15f;
+    private static final float ZOOM_OUT_PROGRESS = 2.5f;
+    private static final float MAX_LINEAR_STEP = 0.1f;
+    private static final float MIN_LINEAR_CHANGE = 0.01f;
+    private static final long MIN_UPDATE_INTERVAL_MS = 100;
+
+    private static final long IDLE_BEFORE_SWEEP_MS = 2000;
+    private static final long SWEEP_STEP_MS = 800;
+    private static final float[] SWEEP_LEVELS = {0f, 0.2f, 0.4f, 0.6f};
+
+    @Nullable
+    private Camera camera;
+    private long lastUpdateMs;
+    private long lastBarcodeMs;
+    private long lastSweepMs;
+    private int sweepIndex;
+
+    /**
+     * Sets the camera to zoom, {@code null} to disable.
+     */
+    @MainThread
+    public void setCamera(@Nullable Camera camera) {
+        this.camera = camera;
+        final long now = SystemClock.elapsedRealtime();
+        lastBarcodeMs = now;
+        lastUpdateMs = 0;
+        sweepIndex = 0;
+    }
+
+    /**
+     * Reports the barcode the scanner is tracking.
+     *
+     * @param sizeProgress barcode width divided by the required width, 1 when exactly big enough
+     * @param centerX      horizontal position of the barcode's center relative to the view, -0.5
+     *                     at the left edge, 0.5 at the right edge
+     * @param centerY      same as {@code centerX}, vertically
+     * @param halfWidth    half of the barcode's width relative to the view width
+     * @param halfHeight   half of the barcode's height relative to the view height
+     */
+    @MainThread
+    public void onBarcode(float sizeProgress, float centerX, float centerY, float halfWidth, float halfHeight) {
+        final long now = SystemClock.elapsedRealtime();
+        lastBarcodeMs = now;
+        final Camera camera = this.camera;
+        if (camera == null || sizeProgress <= 0f
+                || (sizeProgress >= TARGET_PROGRESS && sizeProgress <= ZOOM_OUT_PROGRESS)
+                || now - lastUpdateMs < MIN_UPDATE_INTERVAL_MS) {
+            return;
+        }
+
+        final ZoomState zoomState = camera.getCameraInfo().getZoomState().getValue();
+        if (zoomState == null) {
+            return;
+        }
+
+        float factor = TARGET_PROGRESS / sizeProgress;
+        // Zooming by a factor shrinks the visible area around the center by the same factor, so
+        // keep the barcode's far edges inside it.
+        final float extentX = Math.abs(centerX) + halfWidth;
+        final float extentY = Math.abs(centerY) + halfHeight;
+        final float extent = Math.max(extentX, extentY);
+        if (extent > 0f) {
+            factor = Math.min(factor, 0.5f / extent);
+        }
+        if (factor > 1f && factor < 1.05f) {
+            return;
+        }
+
+        final float targetRatio = clamp(zoomState.getZoomRatio() * factor,
+                zoomState.getMinZoomRatio(),
+                zoomState.getMaxZoomRatio());
+        final float targetLinear = toLinearZoom(targetRatio, zoomState.getMinZoomRatio(), zoomState.getMaxZoomRatio());
+        moveToward(camera, zoomState.getLinearZoom(), targetLinear, now);
+    }
+
+    /**
+     * Reports a frame without any barcode. Starts sweeping once nothing was seen for
+     * {@link #IDLE_BEFORE_SWEEP_MS}.
+     */
+    @MainThread
+    public void onNoBarcode() {
+        final Camera camera = this.camera;
+        final long now = SystemClock.elapsedRealtime();
+        if (camera == null || now - lastBarcodeMs < IDLE_BEFORE_SWEEP_MS || now - lastSweepMs < SWEEP_STEP_MS) {
+            return;
+        }
+
+        lastSweepMs = now;
+        sweepIndex = (sweepIndex + 1) % SWEEP_LEVELS.length;
+        camera.getCameraControl().setLinearZoom(SWEEP_LEVELS[sweepIndex]);
+        lastUpdateMs = now;
+    }
+
+    private void moveToward(Camera camera, float currentLinear, float targetLinear, long now) {
+        final float delta = clamp(targetLinear - currentLinear, -MAX_LINEAR_STEP, MAX_LINEAR_STEP);
+        if (Math.abs(delta) < MIN_LINEAR_CHANGE) {
+            return;
+        }
+        camera.getCameraControl().setLinearZoom(clamp(currentLinear + delta, 0f, 1f));
+        lastUpdateMs = now;
+    }
+
+    /**
+     * Same mapping as CameraX uses for {@link androidx.camera.core.CameraControl#setLinearZoom(float)},
+     * linear in the inverse of the zoom ratio, i.e. in the visible field width.
+     */
+    private static float toLinearZoom(float ratio, float minRatio, float maxRatio) {
+        if (maxRatio <= minRatio) {
+            return 0f;
+        }
+        return clamp((1f / minRatio - 1f / ratio) / (1f / minRatio - 1f / maxRatio), 0f, 1f);
+    }
+
+    private static float clamp(float value, float min, float max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
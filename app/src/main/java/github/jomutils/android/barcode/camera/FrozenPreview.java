@@ -0,0 +1,85 @@
+package github.jomutils.android.barcode.camera;
+
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.view.View;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.camera.view.PreviewView;
+
+/**
+ * Covers a {@link PreviewView} with a still while scanning is frozen, so the camera can stay bound
+ * underneath.
+ * <p>
+ * The still is drawn as the background of a sibling view laid out over the preview, usually the
+ * graphic overlay, so it is drawn below the overlay's graphics. It is not a child of the preview,
+ * which removes all its children whenever it recreates its surface.
+ * <p>
+ * The preview only gives out the frame it currently displays, not the analyzed one. Calling
+ * {@link #capture()} when the result of a frame is delivered keeps the still within the decode
+ * latency of the frame the overlay's boxes were mapped from, instead of the frame displayed once
+ * the freeze goes through.
+ */
+public class FrozenPreview {
+
+    private final PreviewView previewView;
+    private final View stillView;
+
+    @Nullable
+    private Bitmap captured;
+    @Nullable
+    private Drawable previousBackground;
+    private boolean shown;
+
+    /**
+     * @param stillView a view with the same bounds as {@code previewView}, drawn on top of it
+     */
+    public FrozenPreview(@NonNull PreviewView previewView, @NonNull View stillView) {
+        this.previewView = previewView;
+        this.stillView = stillView;
+    }
+
+    /**
+     * Keeps the frame currently displayed by the preview for the next {@link #show()}.
+     */
+    @MainThread
+    public void capture() {
+        if (!shown) {
+            // Already scaled and cropped to the view, so it lines up with the overlay as is.
+            captured = previewView.getBitmap();
+        }
+    }
+
+    /**
+     * Shows the frame kept by {@link #capture()}, or else the frame currently displayed. Does
+     * nothing if no frame was shown yet.
+     */
+    @MainThread
+    public void show() {
+        if (shown) {
+            return;
+        }
+        final Bitmap bitmap = captured != null ? captured : previewView.getBitmap();
+        captured = null;
+        if (bitmap == null) {
+            return;
+        }
+
+        previousBackground = stillView.getBackground();
+        stillView.setBackground(new BitmapDrawable(stillView.getResources(), bitmap));
+        shown = true;
+    }
+
+    @MainThread
+    public void hide() {
+        captured = null;
+        if (shown) {
+            stillView.setBackground(previousBackground);
+            previousBackground = null;
+            shown = false;
+        }
+    }
+}
@@ -94,7 +94,16 @@ public class GraphicOverlay extends View {
     }
 
     public RectF translateRect(Rect rect) {
-        return new RectF(
+        final RectF out = new RectF();
+        translateRect(rect, out);
+        return out;
+    }
+
+    /**
+     * Same as {@link #translateRect(Rect)}, writing into {@code out} instead of allocating.
+     */
+    public void translateRect(Rect rect, RectF out) {
+        out.set(
                 translateX(rect.left),
                 translateY(rect.top),
                 translateX(rect.right),
@@ -102,6 +111,17 @@ public class GraphicOverlay extends View {
         );
     }
 
+    /**
+     * Maps {@code pointCount} x, y pairs in place from the image's coordinate system to the view
+     * coordinate system.
+     */
+    public void mapPoints(float[] points, int pointCount) {
+        for (int i = 0; i < pointCount * 2; i += 2) {
+            points[i] = translateX(points[i]);
+            points[i + 1] = translateY(points[i + 1]);
+        }
+    }
+
     /**
      * Draws the overlay with its associated graphic objects.
      */
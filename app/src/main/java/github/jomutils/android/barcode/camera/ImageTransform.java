@@ -0,0 +1,310 @@
+package github.jomutils.android.barcode.camera;
+
+import android.graphics.Matrix;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+import androidx.annotation.NonNull;
+import androidx.camera.view.PreviewView;
+
+/**
+ * Immutable mapping between one analysis image and the view showing the camera preview.
+ * <p>
+ * Three coordinate systems are involved: the image buffer as delivered by the camera, the upright
+ * image (the buffer rotated by its rotation degrees, the system ML Kit reports barcodes in) and the
+ * view. The visible part of the upright image is the rotated crop rect, scaled and aligned into the
+ * view as the {@link PreviewView.ScaleType} does with the preview, and mirrored when flipped.
+ */
+public final class ImageTransform {
+
+    private final int bufferWidth;
+    private final int bufferHeight;
+    private final int rotationDegrees;
+    private final int cropLeft;
+    private final int cropTop;
+    private final int cropRight;
+    private final int cropBottom;
+    private final int viewWidth;
+    private final int viewHeight;
+    private final PreviewView.ScaleType scaleType;
+    private final boolean flipped;
+
+    // Derived, in upright image coordinates.
+    private final int imageWidth;
+    private final int imageHeight;
+    private final float visibleLeft;
+    private final float visibleTop;
+    private final float scale;
+    private final float offsetX;
+    private final float offsetY;
+
+    /**
+     * @param cropRect the image's crop rect in buffer coordinates, see
+     *                 {@link androidx.camera.core.ImageProxy#getCropRect()}
+     * @param viewWidth  0 when the image is not shown
+     * @param viewHeight 0 when the image is not shown
+     */
+    public ImageTransform(int bufferWidth, int bufferHeight, int rotationDegrees, @NonNull Rect cropRect,
+                          int viewWidth, int viewHeight, @NonNull PreviewView.ScaleType scaleType, boolean flipped) {
+        this.bufferWidth = bufferWidth;
+        this.bufferHeight = bufferHeight;
+        this.rotationDegrees = rotationDegrees;
+        this.cropLeft = cropRect.left;
+        this.cropTop = cropRect.top;
+        this.cropRight = cropRect.right;
+        this.cropBottom = cropRect.bottom;
+        this.viewWidth = viewWidth;
+        this.viewHeight = viewHeight;
+        this.scaleType = scaleType;
+        this.flipped = flipped;
+
+        final boolean rotated = rotationDegrees == 90 || rotationDegrees == 270;
+        imageWidth = rotated ? bufferHeight : bufferWidth;
+        imageHeight = rotated ? bufferWidth : bufferHeight;
+
+        final float[] corners = {cropLeft, cropTop, cropRight, cropBottom};
+        bufferToUpright(corners);
+        visibleLeft = Math.min(corners[0], corners[2]);
+        visibleTop = Math.min(corners[1], corners[3]);
+        final float visibleWidth = Math.abs(corners[2] - corners[0]);
+        final float visibleHeight = Math.abs(corners[3] - corners[1]);
+
+        if (viewWidth <= 0 || viewHeight <= 0 || visibleWidth <= 0 || visibleHeight <= 0) {
+            scale = 1f;
+            offsetX = 0f;
+            offsetY = 0f;
+            return;
+        }
+
+        final float scaleX = viewWidth / visibleWidth;
+        final float scaleY = viewHeight / visibleHeight;
+        switch (scaleType) {
+            case FIT_START:
+            case FIT_CENTER:
+            case FIT_END:
+                scale = Math.min(scaleX, scaleY);
+                break;
+            default:
+                scale = Math.max(scaleX, scaleY);
+                break;
+        }
+
+        final float extraWidth = viewWidth - visibleWidth * scale;
+        final float extraHeight = viewHeight - visibleHeight * scale;
+        switch (scaleType) {
+            case FILL_START:
+            case FIT_START:
+                offsetX = 0f;
+                offsetY = 0f;
+                break;
+            case FILL_END:
+            case FIT_END:
+                offsetX = extraWidth;
+                offsetY = extraHeight;
+                break;
+            default:
+                offsetX = extraWidth / 2f;
+                offsetY = extraHeight / 2f;
+                break;
+        }
+    }
+
+    /**
+     * Whether the frame buffer, rotation and crop rect are those of this transform.
+     */
+    public boolean matchesImage(int bufferWidth, int bufferHeight, int rotationDegrees, @NonNull Rect cropRect) {
+        return this.bufferWidth == bufferWidth
+                && this.bufferHeight == bufferHeight
+                && this.rotationDegrees == rotationDegrees
+                && cropLeft == cropRect.left
+                && cropTop == cropRect.top
+                && cropRight == cropRect.right
+                && cropBottom == cropRect.bottom;
+    }
+
+    /**
+     * Whether the image is shown in a laid out view, without which nothing maps to the view.
+     */
+    public boolean hasView() {
+        return viewWidth > 0 && viewHeight > 0;
+    }
+
+    /**
+     * Returns the width of the upright image, the width ML Kit's coordinates refer to.
+     */
+    public int getImageWidth() {
+        return imageWidth;
+    }
+
+    public int getImageHeight() {
+        return imageHeight;
+    }
+
+    public int getRotationDegrees() {
+        return rotationDegrees;
+    }
+
+    public int getViewWidth() {
+        return viewWidth;
+    }
+
+    public int getViewHeight() {
+        return viewHeight;
+    }
+
+    /**
+     * Returns view pixels per upright image pixel.
+     */
+    public float getScale() {
+        return scale;
+    }
+
+    public boolean isFlipped() {
+        return flipped;
+    }
+
+    /**
+     * Returns the x offset such that {@code viewX = imageX * scale - offset}, before mirroring.
+     */
+    public float getPostScaleOffsetX() {
+        return visibleLeft * scale - offsetX;
+    }
+
+    public float getPostScaleOffsetY() {
+        return visibleTop * scale - offsetY;
+    }
+
+    public float toViewX(float imageX) {
+        final float x = (imageX - visibleLeft) * scale + offsetX;
+        return flipped ? viewWidth - x : x;
+    }
+
+    public float toViewY(float imageY) {
+        return (imageY - visibleTop) * scale + offsetY;
+    }
+
+    /**
+     * Maps {@code pointCount} x, y pairs in place from upright image to view coordinates.
+     */
+    public void mapPoints(@NonNull float[] points, int pointCount) {
+        for (int i = 0; i < pointCount * 2; i += 2) {
+            points[i] = toViewX(points[i]);
+            points[i + 1] = toViewY(points[i + 1]);
+        }
+    }
+
+    /**
+     * Whether an upright image point is shown in the view. Always {@code true} without a view.
+     */
+    public boolean isVisible(float imageX, float imageY) {
+        if (!hasView()) {
+            return true;
+        }
+        final float x = toViewX(imageX);
+        final float y = toViewY(imageY);
+        return x >= 0 && x < viewWidth && y >= 0 && y < viewHeight;
+    }
+
+    /**
+     * Sets {@code matrix} to map upright image coordinates to view coordinates.
+     */
+    public void getImageToViewMatrix(@NonNull Matrix matrix) {
+        matrix.setTranslate(-visibleLeft, -visibleTop);
+        matrix.postScale(scale, scale);
+        matrix.postTranslate(offsetX, offsetY);
+        if (flipped) {
+            matrix.postScale(-1f, 1f, viewWidth / 2f, 0f);
+        }
+    }
+
+    /**
+     * Maps a view rectangle to the image buffer, clamped to the buffer, e.g. the reticle to the
+     * region of interest of the analyzer.
+     *
+     * @param points scratch array of at least 4 floats
+     */
+    public void viewToBuffer(@NonNull RectF viewRect, @NonNull float[] points, @NonNull Rect out) {
+        points[0] = viewRect.left;
+        points[1] = viewRect.top;
+        points[2] = viewRect.right;
+        points[3] = viewRect.bottom;
+        for (int i = 0; i < 4; i += 2) {
+            final float x = flipped ? viewWidth - points[i] : points[i];
+            points[i] = (x - offsetX) / scale + visibleLeft;
+            points[i + 1] = (points[i + 1] - offsetY) / scale + visibleTop;
+        }
+        uprightToBuffer(points);
+        out.set(clamp(Math.min(points[0], points[2]), bufferWidth),
+                clamp(Math.min(points[1], points[3]), bufferHeight),
+                clamp(Math.max(points[0], points[2]), bufferWidth),
+                clamp(Math.max(points[1], points[3]), bufferHeight));
+    }
+
+    private static int clamp(float value, int max) {
+        return Math.max(0, Math.min(max, Math.round(value)));
+    }
+
+    /**
+     * Rotates two points, as x, y pairs, from buffer to upright coordinates in place.
+     */
+    private void bufferToUpright(float[] points) {
+        for (int i = 0; i < 4; i += 2) {
+            final float x = points[i];
+            final float y = points[i + 1];
+            switch (rotationDegrees) {
+                case 90:
+                    points[i] = bufferHeight - y;
+                    points[i + 1] = x;
+                    break;
+                case 180:
+                    points[i] = bufferWidth - x;
+                    points[i + 1] = bufferHeight - y;
+                    break;
+                case 270:
+                    points[i] = y;
+                    points[i + 1] = bufferWidth - x;
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Inverse of {@link #bufferToUpright(float[])}.
+     */
+    private void uprightToBuffer(float[] points) {
+        for (int i = 0; i < 4; i += 2) {
+            final float u = points[i];
+            final float v = points[i + 1];
+            switch (rotationDegrees) {
+                case 90:
+                    points[i] = v;
+                    points[i + 1] = bufferHeight - u;
+                    break;
+                case 180:
+                    points[i] = bufferWidth - u;
+                    points[i + 1] = bufferHeight - v;
+                    break;
+                case 270:
+                    points[i] = bufferWidth - v;
+                    points[i + 1] = u;
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ImageTransform{" +
+                "buffer=" + bufferWidth + "x" + bufferHeight +
+                ", rotation=" + rotationDegrees +
+                ", crop=[" + cropLeft + "," + cropTop + "," + cropRight + "," + cropBottom + "]" +
+                ", view=" + viewWidth + "x" + viewHeight +
+                ", scaleType=" + scaleType +
+                ", scale=" + scale +
+                '}';
+    }
+}
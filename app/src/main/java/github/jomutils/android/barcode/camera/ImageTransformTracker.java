@@ -0,0 +1,86 @@
+package github.jomutils.android.barcode.camera;
+
+import android.graphics.Rect;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+import androidx.camera.view.PreviewView;
+
+/**
+ * Keeps the current {@link ImageTransform} from the analysis frames on one side and the preview
+ * view on the other, and publishes it as a single immutable instance, so the analyzer and the
+ * overlay always see a consistent image size, rotation, crop and view geometry.
+ * <p>
+ * A new instance is built only when one of the inputs changes; for a steady stream of frames
+ * {@link #onImage(int, int, int, Rect)} is a comparison of a few fields.
+ */
+public class ImageTransformTracker {
+
+    @Nullable
+    private volatile ImageTransform transform;
+
+    // Guarded by this.
+    private int bufferWidth;
+    private int bufferHeight;
+    private int rotationDegrees;
+    private final Rect cropRect = new Rect();
+    private int viewWidth;
+    private int viewHeight;
+    private PreviewView.ScaleType scaleType = PreviewView.ScaleType.FILL_CENTER;
+    private boolean flipped;
+
+    /**
+     * Records the geometry of an analysis frame.
+     */
+    @WorkerThread
+    public void onImage(int bufferWidth, int bufferHeight, int rotationDegrees, @NonNull Rect cropRect) {
+        final ImageTransform current = transform;
+        if (current != null && current.matchesImage(bufferWidth, bufferHeight, rotationDegrees, cropRect)) {
+            return;
+        }
+        synchronized (this) {
+            this.bufferWidth = bufferWidth;
+            this.bufferHeight = bufferHeight;
+            this.rotationDegrees = rotationDegrees;
+            this.cropRect.set(cropRect);
+            publish();
+        }
+    }
+
+    /**
+     * Records the geometry of the view showing the preview.
+     *
+     * @param flipped whether the preview is mirrored, as for a front camera
+     */
+    @MainThread
+    public void setView(int viewWidth, int viewHeight, @NonNull PreviewView.ScaleType scaleType, boolean flipped) {
+        synchronized (this) {
+            this.viewWidth = viewWidth;
+            this.viewHeight = viewHeight;
+            this.scaleType = scaleType;
+            this.flipped = flipped;
+            publish();
+        }
+    }
+
+    /**
+     * Must hold the lock.
+     */
+    private void publish() {
+        if (bufferWidth <= 0 || bufferHeight <= 0) {
+            return;
+        }
+        transform = new ImageTransform(bufferWidth, bufferHeight, rotationDegrees, cropRect,
+                viewWidth, viewHeight, scaleType, flipped);
+    }
+
+    /**
+     * Returns the current transform, {@code null} before the first frame.
+     */
+    @Nullable
+    public ImageTransform get() {
+        return transform;
+    }
+}
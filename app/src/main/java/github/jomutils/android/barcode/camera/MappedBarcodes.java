@@ -0,0 +1,175 @@
+package github.jomutils.android.barcode.camera;
+
+import android.graphics.Point;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+
+import com.google.mlkit.vision.barcode.Barcode;
+
+import java.util.List;
+
+/**
+ * Bounding boxes and corner points of one frame's barcodes in overlay view coordinates.
+ * <p>
+ * {@link #map(GraphicOverlay, List)} copies every box and corner of the frame into flat float
+ * arrays and maps them in one {@link GraphicOverlay#mapPoints(float[], int)} call each. The arrays
+ * are kept and only grow, so hit tests and size checks on a steady stream of frames do not
+ * allocate. Reuse one instance per overlay, from the main thread.
+ */
+public class MappedBarcodes {
+
+    private static final int CORNERS = 4;
+
+    private int size;
+    /**
+     * left, top, right, bottom per barcode, sorted so that left <= right and top <= bottom.
+     */
+    private float[] boxes = new float[0];
+    /**
+     * x, y of {@link #CORNERS} points per barcode.
+     */
+    private float[] corners = new float[0];
+    private boolean[] hasBox = new boolean[0];
+    private boolean[] hasCorners = new boolean[0];
+
+    /**
+     * Maps the boxes and corners of {@code barcodes}, replacing the previous frame's.
+     */
+    @MainThread
+    public void map(@NonNull GraphicOverlay overlay, @NonNull List<Barcode> barcodes) {
+        size = barcodes.size();
+        ensureCapacity(size);
+
+        for (int i = 0; i < size; i++) {
+            final Barcode barcode = barcodes.get(i);
+            final Rect box = barcode.getBoundingBox();
+            final int b = i * 4;
+            hasBox[i] = box != null;
+            if (box != null) {
+                boxes[b] = box.left;
+                boxes[b + 1] = box.top;
+                boxes[b + 2] = box.right;
+                boxes[b + 3] = box.bottom;
+            } else {
+                boxes[b] = boxes[b + 1] = boxes[b + 2] = boxes[b + 3] = 0f;
+            }
+
+            final Point[] points = barcode.getCornerPoints();
+            final int c = i * CORNERS * 2;
+            hasCorners[i] = points != null && points.length == CORNERS;
+            for (int p = 0; p < CORNERS; p++) {
+                corners[c + p * 2] = hasCorners[i] ? points[p].x : 0f;
+                corners[c + p * 2 + 1] = hasCorners[i] ? points[p].y : 0f;
+            }
+        }
+
+        overlay.mapPoints(boxes, size * 2);
+        overlay.mapPoints(corners, size * CORNERS);
+
+        // Mirroring swaps left and right.
+        for (int i = 0; i < size; i++) {
+            final int b = i * 4;
+            if (boxes[b] > boxes[b + 2]) {
+                final float left = boxes[b + 2];
+                boxes[b + 2] = boxes[b];
+                boxes[b] = left;
+            }
+            if (boxes[b + 1] > boxes[b + 3]) {
+                final float top = boxes[b + 3];
+                boxes[b + 3] = boxes[b + 1];
+                boxes[b + 1] = top;
+            }
+        }
+    }
+
+    private void ensureCapacity(int count) {
+        if (hasBox.length >= count) {
+            return;
+        }
+        final int capacity = Math.max(count, hasBox.length * 2);
+        boxes = new float[capacity * 4];
+        corners = new float[capacity * CORNERS * 2];
+        hasBox = new boolean[capacity];
+        hasCorners = new boolean[capacity];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean hasBox(int index) {
+        return hasBox[index];
+    }
+
+    public float getLeft(int index) {
+        return boxes[index * 4];
+    }
+
+    public float getTop(int index) {
+        return boxes[index * 4 + 1];
+    }
+
+    public float getRight(int index) {
+        return boxes[index * 4 + 2];
+    }
+
+    public float getBottom(int index) {
+        return boxes[index * 4 + 3];
+    }
+
+    public float getWidth(int index) {
+        return getRight(index) - getLeft(index);
+    }
+
+    public float getHeight(int index) {
+        return getBottom(index) - getTop(index);
+    }
+
+    public float getCenterX(int index) {
+        return (getLeft(index) + getRight(index)) / 2f;
+    }
+
+    public float getCenterY(int index) {
+        return (getTop(index) + getBottom(index)) / 2f;
+    }
+
+    /**
+     * Copies the mapped box of the barcode at {@code index} into {@code out}.
+     */
+    public void getBox(int index, @NonNull RectF out) {
+        out.set(getLeft(index), getTop(index), getRight(index), getBottom(index));
+    }
+
+    public boolean boxContains(int index, float x, float y) {
+        return hasBox[index]
+                && x >= getLeft(index) && x < getRight(index)
+                && y >= getTop(index) && y < getBottom(index);
+    }
+
+    /**
+     * Returns the index of the first barcode whose box contains the point, or -1.
+     */
+    public int indexOfBoxContaining(float x, float y) {
+        for (int i = 0; i < size; i++) {
+            if (boxContains(i, x, y)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public boolean hasCorners(int index) {
+        return hasCorners[index];
+    }
+
+    public float getCornerX(int index, int corner) {
+        return corners[(index * CORNERS + corner) * 2];
+    }
+
+    public float getCornerY(int index, int corner) {
+        return corners[(index * CORNERS + corner) * 2 + 1];
+    }
+}
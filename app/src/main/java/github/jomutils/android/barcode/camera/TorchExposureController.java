@@ -0,0 +1,149 @@
+package github.jomutils.android.barcode.camera;
+
+import android.os.SystemClock;
+import android.util.Log;
+import android.util.Range;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+import androidx.camera.core.Camera;
+import androidx.camera.core.ExposureState;
+import androidx.camera.core.TorchState;
+
+import github.jomutils.android.barcode.analysis.LuminanceStage;
+
+/**
+ * Turns the torch on in dark scenes and steps exposure compensation when the scene is under- or
+ * overexposed, driven by {@link LuminanceStage} measurements.
+ * <p>
+ * Every change needs several consecutive measurements pointing the same way, and a torch it turned
+ * on stays on for at least {@link #MIN_TORCH_ON_MS}, so it does not flicker around the thresholds.
+ * Compensation goes back toward zero only from well inside the normal band, so a scene just brought
+ * out of the dark is not darkened again on the next streak.
+ * A torch turned on by the user is never turned off.
+ */
+public class TorchExposureController implements LuminanceStage.Listener {
+
+    private static final String TAG = "TorchExposure";
+
+    /**
+     * Below this mean, or with the 95th percentile below {@link #DARK_HIGH}, the scene is too dark.
+     */
+    private static final int DARK_MEAN = 55;
+    private static final int DARK_HIGH = 110;
+    /**
+     * Above this mean with less than {@link #WASHED_OUT_CONTRAST} contrast, or with the 5th
+     * percentile above {@link #WASHED_OUT_LOW}, the scene is washed out.
+     */
+    private static final int WASHED_OUT_MEAN = 190;
+    private static final int WASHED_OUT_CONTRAST = 60;
+    private static final int WASHED_OUT_LOW = 150;
+    /**
+     * The torch is turned off again only when the scene is this bright with it on.
+     */
+    private static final int TORCH_OFF_MEAN = 200;
+    /**
+     * Compensation is stepped back toward zero only from a scene this far inside the normal band,
+     * so the step back does not take it out of the band again. A +EV step is undone from a mean of
+     * at least {@link #UNDO_BRIGHTEN_MEAN}, a -EV step from a mean of at most
+     * {@link #UNDO_DARKEN_MEAN}; scenes in between keep their compensation.
+     */
+    private static final int UNDO_BRIGHTEN_MEAN = 140;
+    private static final int UNDO_DARKEN_MEAN = 100;
+
+    private static final int STREAK_TO_ACT = 3;
+    private static final long MIN_TORCH_ON_MS = 5000;
+
+    @Nullable
+    private volatile Camera camera;
+
+    private int darkStreak;
+    private int brightStreak;
+    private int normalStreak;
+    private boolean torchOnByUs;
+    private long torchOnAtMs;
+
+    /**
+     * Sets the camera to control, {@code null} to stop controlling.
+     */
+    public void setCamera(@Nullable Camera camera) {
+        this.camera = camera;
+    }
+
+    @WorkerThread
+    @Override
+    public void onLuminanceMeasured(int mean, int low, int high) {
+        final Camera camera = this.camera;
+        if (camera == null) {
+            return;
+        }
+
+        final boolean dark = mean < DARK_MEAN || high < DARK_HIGH;
+        final boolean washedOut = (mean > WASHED_OUT_MEAN && high - low < WASHED_OUT_CONTRAST)
+                || low > WASHED_OUT_LOW;
+        darkStreak = dark ? darkStreak + 1 : 0;
+        brightStreak = washedOut ? brightStreak + 1 : 0;
+        normalStreak = !dark && !washedOut && (mean >= UNDO_BRIGHTEN_MEAN || mean <= UNDO_DARKEN_MEAN)
+                ? normalStreak + 1 : 0;
+
+        if (darkStreak >= STREAK_TO_ACT) {
+            darkStreak = 0;
+            onTooDark(camera);
+        } else if (brightStreak >= STREAK_TO_ACT) {
+            brightStreak = 0;
+            onTooBright(camera, mean);
+        } else if (normalStreak >= STREAK_TO_ACT * 2) {
+            normalStreak = 0;
+            stepExposureTowardZero(camera, mean);
+        }
+    }
+
+    private void onTooDark(Camera camera) {
+        if (camera.getCameraInfo().hasFlashUnit() && !isTorchOn(camera)) {
+            Log.i(TAG, "Scene too dark, turning torch on");
+            camera.getCameraControl().enableTorch(true);
+            torchOnByUs = true;
+            torchOnAtMs = SystemClock.elapsedRealtime();
+            return;
+        }
+        stepExposure(camera, 1);
+    }
+
+    private void onTooBright(Camera camera, int mean) {
+        if (torchOnByUs && mean > TORCH_OFF_MEAN
+                && SystemClock.elapsedRealtime() - torchOnAtMs >= MIN_TORCH_ON_MS) {
+            Log.i(TAG, "Scene washed out, turning torch off");
+            camera.getCameraControl().enableTorch(false);
+            torchOnByUs = false;
+            return;
+        }
+        stepExposure(camera, -1);
+    }
+
+    private static boolean isTorchOn(Camera camera) {
+        final Integer torchState = camera.getCameraInfo().getTorchState().getValue();
+        return torchState != null && torchState == TorchState.ON;
+    }
+
+    private static void stepExposureTowardZero(Camera camera, int mean) {
+        final int index = camera.getCameraInfo().getExposureState().getExposureCompensationIndex();
+        if (index > 0 && mean >= UNDO_BRIGHTEN_MEAN) {
+            stepExposure(camera, -1);
+        } else if (index < 0 && mean <= UNDO_DARKEN_MEAN) {
+            stepExposure(camera, 1);
+        }
+    }
+
+    private static void stepExposure(Camera camera, int step) {
+        final ExposureState exposureState = camera.getCameraInfo().getExposureState();
+        if (!exposureState.isExposureCompensationSupported()) {
+            return;
+        }
+        final Range<Integer> range = exposureState.getExposureCompensationRange();
+        final int index = exposureState.getExposureCompensationIndex();
+        final int next = Math.max(range.getLower(), Math.min(range.getUpper(), index + step));
+        if (next != index) {
+            camera.getCameraControl().setExposureCompensationIndex(next);
+        }
+    }
+}
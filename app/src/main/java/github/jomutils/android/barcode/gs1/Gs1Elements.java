@@ -0,0 +1,470 @@
+package github.jomutils.android.barcode.gs1;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * GS1 Application Identifier (AI) element string parsed from a decoded GS1-128, GS1 DataMatrix or
+ * GS1 QR payload.
+ * <p>
+ * {@link #parse(CharSequence)} walks the payload once and only records the AI and the value offsets
+ * of every element, so parsing does not allocate once the instance has been sized for the payload.
+ * Numeric accessors read straight from those offsets; string accessors allocate the returned value.
+ * <p>
+ * Accepted input is the raw payload with FNC1 transmitted as {@code GS} (0x1D), optionally preceded
+ * by a symbology identifier such as {@code ]C1} or {@code ]d2}, or the human readable form with
+ * AIs in parentheses, e.g. {@code (01)09501101530003(17)250101(10)AB-123}.
+ * <p>
+ * Instances are not thread-safe but can be reused by calling {@link #parse(CharSequence)} again.
+ */
+public final class Gs1Elements {
+
+    public static final int AI_SSCC = 0;
+    public static final int AI_GTIN = 1;
+    public static final int AI_CONTENT = 2;
+    public static final int AI_BATCH_LOT = 10;
+    public static final int AI_PRODUCTION_DATE = 11;
+    public static final int AI_BEST_BEFORE_DATE = 15;
+    public static final int AI_EXPIRY_DATE = 17;
+    public static final int AI_SERIAL = 21;
+    public static final int AI_COUNT = 37;
+    /**
+     * Net weight in kilograms, {@code 3100} to {@code 3105} where the last digit is the number of
+     * decimals.
+     */
+    public static final int AI_NET_WEIGHT_KG = 3100;
+    /**
+     * Net weight in pounds, {@code 3200} to {@code 3205}.
+     */
+    public static final int AI_NET_WEIGHT_LB = 3200;
+
+    private static final char GROUP_SEPARATOR = '\u001D';
+    private static final int VARIABLE_LENGTH = -1;
+    private static final int INITIAL_CAPACITY = 8;
+
+    private CharSequence source;
+    private boolean valid;
+    private int count;
+    private int[] ais = new int[INITIAL_CAPACITY];
+    private int[] aiLengths = new int[INITIAL_CAPACITY];
+    private int[] valueStarts = new int[INITIAL_CAPACITY];
+    private int[] valueEnds = new int[INITIAL_CAPACITY];
+
+    /**
+     * Parses a new instance. Prefer reusing one instance with {@link #parse(CharSequence)} on hot
+     * paths.
+     */
+    @NonNull
+    public static Gs1Elements of(@Nullable CharSequence payload) {
+        final Gs1Elements elements = new Gs1Elements();
+        elements.parse(payload);
+        return elements;
+    }
+
+    /**
+     * Parses {@code payload}, replacing the previous content of this instance.
+     *
+     * @return whether the payload is a well-formed GS1 element string.
+     */
+    public boolean parse(@Nullable CharSequence payload) {
+        source = payload;
+        count = 0;
+        valid = payload != null && (payload.length() > 0 && payload.charAt(0) == '('
+                ? parseBracketed(payload)
+                : parseRaw(payload));
+        if (!valid) {
+            count = 0;
+        }
+        return valid;
+    }
+
+    private boolean parseRaw(CharSequence payload) {
+        final int length = payload.length();
+        int pos = skipSymbologyIdentifier(payload);
+        while (pos < length && payload.charAt(pos) == GROUP_SEPARATOR) {
+            pos++;
+        }
+        if (pos >= length) {
+            return false;
+        }
+
+        while (pos < length) {
+            final int aiLength = aiLength(payload, pos, length);
+            if (aiLength <= 0) {
+                return false;
+            }
+            final int ai = readDigits(payload, pos, aiLength);
+            final int valueStart = pos + aiLength;
+            final int dataLength = fixedDataLength(ai, aiLength);
+
+            int valueEnd;
+            if (dataLength == VARIABLE_LENGTH) {
+                valueEnd = valueStart;
+                while (valueEnd < length && payload.charAt(valueEnd) != GROUP_SEPARATOR) {
+                    valueEnd++;
+                }
+            } else {
+                valueEnd = valueStart + dataLength;
+                if (valueEnd > length || !allDigits(payload, valueStart, valueEnd)) {
+                    return false;
+                }
+            }
+            if (valueEnd == valueStart) {
+                return false;
+            }
+
+            add(ai, aiLength, valueStart, valueEnd);
+
+            pos = valueEnd;
+            // A separator is mandatory after variable length values and tolerated after fixed ones.
+            while (pos < length && payload.charAt(pos) == GROUP_SEPARATOR) {
+                pos++;
+            }
+        }
+        return true;
+    }
+
+    private boolean parseBracketed(CharSequence payload) {
+        final int length = payload.length();
+        int pos = 0;
+        while (pos < length) {
+            if (payload.charAt(pos) != '(') {
+                return false;
+            }
+            int close = pos + 1;
+            while (close < length && payload.charAt(close) != ')') {
+                close++;
+            }
+            final int aiLength = close - pos - 1;
+            if (close >= length || aiLength < 2 || aiLength > 4 || !allDigits(payload, pos + 1, close)) {
+                return false;
+            }
+            final int ai = readDigits(payload, pos + 1, aiLength);
+            final int valueStart = close + 1;
+            int valueEnd = valueStart;
+            while (valueEnd < length && payload.charAt(valueEnd) != '(') {
+                valueEnd++;
+            }
+            final int dataLength = fixedDataLength(ai, aiLength);
+            if (valueEnd == valueStart
+                    || (dataLength != VARIABLE_LENGTH && (valueEnd - valueStart != dataLength
+                    || !allDigits(payload, valueStart, valueEnd)))) {
+                return false;
+            }
+
+            add(ai, aiLength, valueStart, valueEnd);
+            pos = valueEnd;
+        }
+        return count > 0;
+    }
+
+    private void add(int ai, int aiLength, int valueStart, int valueEnd) {
+        if (count == ais.length) {
+            final int capacity = count * 2;
+            ais = Arrays.copyOf(ais, capacity);
+            aiLengths = Arrays.copyOf(aiLengths, capacity);
+            valueStarts = Arrays.copyOf(valueStarts, capacity);
+            valueEnds = Arrays.copyOf(valueEnds, capacity);
+        }
+        ais[count] = ai;
+        aiLengths[count] = aiLength;
+        valueStarts[count] = valueStart;
+        valueEnds[count] = valueEnd;
+        count++;
+    }
+
+    private static int skipSymbologyIdentifier(CharSequence payload) {
+        return payload.length() >= 3 && payload.charAt(0) == ']' ? 3 : 0;
+    }
+
+    /**
+     * Returns the number of digits of the AI starting at {@code pos}, following the GS1 General
+     * Specifications AI numbering, or 0 when it is not a known AI prefix.
+     */
+    static int aiLength(CharSequence payload, int pos, int length) {
+        if (pos + 2 > length || !isDigit(payload.charAt(pos)) || !isDigit(payload.charAt(pos + 1))) {
+            return 0;
+        }
+        final int first = payload.charAt(pos) - '0';
+        final int second = payload.charAt(pos + 1) - '0';
+        final int n;
+        switch (first) {
+            case 0:
+            case 1:
+            case 9:
+                n = 2;
+                break;
+            case 2:
+                n = second <= 2 ? 2 : 3;
+                break;
+            case 3:
+                n = (second == 0 || second == 7) ? 2 : 4;
+                break;
+            case 4:
+                n = 3;
+                break;
+            case 7:
+                n = second == 1 ? 3 : 4;
+                break;
+            case 8:
+                n = 4;
+                break;
+            default:
+                return 0;
+        }
+        return pos + n <= length && allDigits(payload, pos, pos + n) ? n : 0;
+    }
+
+    /**
+     * Returns the predefined data length of an AI or {@link #VARIABLE_LENGTH}.
+     */
+    static int fixedDataLength(int ai, int aiLength) {
+        final int prefix;
+        switch (aiLength) {
+            case 2:
+                prefix = ai;
+                break;
+            case 3:
+                prefix = ai / 10;
+                break;
+            default:
+                prefix = ai / 100;
+                break;
+        }
+        switch (prefix) {
+            case 0:
+                return 18;
+            case 1:
+            case 2:
+            case 3:
+                return 14;
+            case 4:
+                return 16;
+            case 11:
+            case 12:
+            case 13:
+            case 14:
+            case 15:
+            case 16:
+            case 17:
+            case 18:
+            case 19:
+                return 6;
+            case 20:
+                return 2;
+            case 31:
+            case 32:
+            case 33:
+            case 34:
+            case 35:
+            case 36:
+                return 6;
+            case 41:
+                return 13;
+            default:
+                return VARIABLE_LENGTH;
+        }
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean allDigits(CharSequence s, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (!isDigit(s.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int readDigits(CharSequence s, int start, int n) {
+        int value = 0;
+        for (int i = start; i < start + n; i++) {
+            value = value * 10 + (s.charAt(i) - '0');
+        }
+        return value;
+    }
+
+    public boolean isValid() {
+        return valid;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Returns the AI of the element at {@code index}, e.g. {@code 1} for {@code (01)} or
+     * {@code 3103} for {@code (3103)}.
+     */
+    public int getAi(int index) {
+        return ais[index];
+    }
+
+    /**
+     * Returns the number of digits of the AI of the element at {@code index}, which tells
+     * {@code (01)} and {@code (0001)} apart.
+     */
+    public int getAiLength(int index) {
+        return aiLengths[index];
+    }
+
+    @NonNull
+    public String getValue(int index) {
+        return source.subSequence(valueStarts[index], valueEnds[index]).toString();
+    }
+
+    /**
+     * Returns the index of the first element with the given AI, or -1.
+     */
+    public int indexOf(int ai) {
+        for (int i = 0; i < count; i++) {
+            if (ais[i] == ai) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the index of the first element whose AI is {@code baseAi} to {@code baseAi + 9}, or
+     * -1. Used for AIs whose last digit is a decimal point position.
+     */
+    private int indexOfDecimalAi(int baseAi) {
+        for (int i = 0; i < count; i++) {
+            if (aiLengths[i] == 4 && ais[i] >= baseAi && ais[i] <= baseAi + 9) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Nullable
+    private String getString(int ai) {
+        final int index = indexOf(ai);
+        return index >= 0 ? getValue(index) : null;
+    }
+
+    private long getLong(int ai) {
+        final int index = indexOf(ai);
+        if (index < 0) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = valueStarts[index]; i < valueEnds[index]; i++) {
+            final char c = source.charAt(i);
+            if (!isDigit(c)) {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Returns the 14 digit GTIN of AI (01) as a number, or -1 when absent.
+     */
+    public long getGtin() {
+        return getLong(AI_GTIN);
+    }
+
+    @Nullable
+    public String getGtinString() {
+        return getString(AI_GTIN);
+    }
+
+    @Nullable
+    public String getSscc() {
+        return getString(AI_SSCC);
+    }
+
+    @Nullable
+    public String getBatchLot() {
+        return getString(AI_BATCH_LOT);
+    }
+
+    @Nullable
+    public String getSerial() {
+        return getString(AI_SERIAL);
+    }
+
+    /**
+     * Returns AI (37), the count of trade items, or -1 when absent.
+     */
+    public long getCount() {
+        return getLong(AI_COUNT);
+    }
+
+    /**
+     * Returns the expiry date of AI (17) as {@code YYMMDD}, or -1 when absent. A day of {@code 00}
+     * means the end of the month.
+     */
+    public int getExpiryDate() {
+        return (int) getLong(AI_EXPIRY_DATE);
+    }
+
+    /**
+     * Returns the best before date of AI (15) as {@code YYMMDD}, or -1 when absent.
+     */
+    public int getBestBeforeDate() {
+        return (int) getLong(AI_BEST_BEFORE_DATE);
+    }
+
+    /**
+     * Returns the production date of AI (11) as {@code YYMMDD}, or -1 when absent.
+     */
+    public int getProductionDate() {
+        return (int) getLong(AI_PRODUCTION_DATE);
+    }
+
+    /**
+     * Returns the net weight of AI (310n) in kilograms, or {@link Double#NaN} when absent.
+     */
+    public double getNetWeightKg() {
+        return getDecimal(indexOfDecimalAi(AI_NET_WEIGHT_KG));
+    }
+
+    /**
+     * Returns the net weight of AI (320n) in pounds, or {@link Double#NaN} when absent.
+     */
+    public double getNetWeightLb() {
+        return getDecimal(indexOfDecimalAi(AI_NET_WEIGHT_LB));
+    }
+
+    private double getDecimal(int index) {
+        if (index < 0) {
+            return Double.NaN;
+        }
+        long value = 0;
+        for (int i = valueStarts[index]; i < valueEnds[index]; i++) {
+            value = value * 10 + (source.charAt(i) - '0');
+        }
+        int decimals = ais[index] % 10;
+        double divisor = 1;
+        while (decimals-- > 0) {
+            divisor *= 10;
+        }
+        return value / divisor;
+    }
+
+    @Override
+    public String toString() {
+        if (!valid) {
+            return "Gs1Elements{invalid}";
+        }
+        final StringBuilder builder = new StringBuilder("Gs1Elements{");
+        for (int i = 0; i < count; i++) {
+            builder.append('(');
+            final String ai = Integer.toString(ais[i]);
+            for (int pad = ai.length(); pad < aiLengths[i]; pad++) {
+                builder.append('0');
+            }
+            builder.append(ai).append(')').append(source, valueStarts[i], valueEnds[i]);
+        }
+        return builder.append('}').toString();
+    }
+}
@@ -0,0 +1,70 @@
+package github.jomutils.android.barcode.power;
+
+import androidx.annotation.NonNull;
+
+import github.jomutils.android.barcode.analysis.RetryPreprocessor;
+
+/**
+ * How hard the scan engine works, from {@link #FULL} on a cool device with a healthy battery to
+ * {@link #SAVER} on a hot or almost empty one.
+ */
+public enum PowerProfile {
+
+    /**
+     * Tuned resolution, every frame, two decodes in flight, every retry variant.
+     */
+    FULL(0, 0f, 2,
+            RetryPreprocessor.Variant.CONTRAST_STRETCH,
+            RetryPreprocessor.Variant.ADAPTIVE_THRESHOLD,
+            RetryPreprocessor.Variant.INVERT),
+    /**
+     * At most 1280 px on the long side, 15 frames per second, one decode in flight, contrast
+     * stretching only.
+     */
+    BALANCED(1280, 15f, 1,
+            RetryPreprocessor.Variant.CONTRAST_STRETCH),
+    /**
+     * At most 640 px on the long side, 5 frames per second, one decode in flight, no retry
+     * preprocessing.
+     */
+    SAVER(640, 5f, 1);
+
+    private final int maxAnalysisLongSide;
+    private final float maxFramesPerSecond;
+    private final int maxDecodesInFlight;
+    private final RetryPreprocessor.Variant[] retryVariants;
+
+    PowerProfile(int maxAnalysisLongSide, float maxFramesPerSecond, int maxDecodesInFlight,
+                 RetryPreprocessor.Variant... retryVariants) {
+        this.maxAnalysisLongSide = maxAnalysisLongSide;
+        this.maxFramesPerSecond = maxFramesPerSecond;
+        this.maxDecodesInFlight = maxDecodesInFlight;
+        this.retryVariants = retryVariants;
+    }
+
+    /**
+     * Returns the largest long side of the analysis resolution, 0 for no limit.
+     */
+    public int getMaxAnalysisLongSide() {
+        return maxAnalysisLongSide;
+    }
+
+    /**
+     * Returns the frame admission rate, 0 for every frame the camera delivers.
+     */
+    public float getMaxFramesPerSecond() {
+        return maxFramesPerSecond;
+    }
+
+    public int getMaxDecodesInFlight() {
+        return maxDecodesInFlight;
+    }
+
+    /**
+     * Returns the retry preprocessing variants, empty for none.
+     */
+    @NonNull
+    public RetryPreprocessor.Variant[] getRetryVariants() {
+        return retryVariants.clone();
+    }
+}
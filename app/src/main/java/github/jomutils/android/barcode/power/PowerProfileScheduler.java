@@ -0,0 +1,180 @@
+package github.jomutils.android.barcode.power;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.BatteryManager;
+import android.os.Build;
+import android.os.PowerManager;
+import android.util.Log;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
+import androidx.core.content.ContextCompat;
+
+/**
+ * Moves the scan engine between {@link PowerProfile}s from the device's thermal status (API 29+),
+ * battery level, charging state and battery saver.
+ * <p>
+ * {@link PowerProfile#SAVER} is chosen when the device is severely hot, the battery saver is on, or
+ * the battery is below {@link #SAVER_BATTERY_PERCENT} and not charging;
+ * {@link PowerProfile#BALANCED} when it is moderately hot or the battery is below
+ * {@link #BALANCED_BATTERY_PERCENT} and not charging. A battery profile is left only once the level
+ * is {@link #BATTERY_HYSTERESIS_PERCENT} above its threshold, so it does not toggle at every
+ * percent. The thermal status has its own hysteresis in the platform.
+ */
+public class PowerProfileScheduler {
+
+    public interface Listener {
+        /**
+         * Called on the main thread with the initial profile from {@link #start()} and on every
+         * change after it.
+         */
+        @MainThread
+        void onPowerProfileChanged(@NonNull PowerProfile profile);
+    }
+
+    private static final String TAG = "PowerProfileScheduler";
+
+    private static final int SAVER_BATTERY_PERCENT = 15;
+    private static final int BALANCED_BATTERY_PERCENT = 30;
+    private static final int BATTERY_HYSTERESIS_PERCENT = 5;
+
+    private final Context context;
+    private final PowerManager powerManager;
+    private final Listener listener;
+
+    private final BroadcastReceiver receiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            if (Intent.ACTION_BATTERY_CHANGED.equals(intent.getAction())) {
+                readBattery(intent);
+            }
+            evaluate();
+        }
+    };
+    @Nullable
+    private PowerManager.OnThermalStatusChangedListener thermalListener;
+
+    private boolean started;
+    private int batteryPercent = 100;
+    private boolean charging = true;
+    private int thermalStatus;
+    @Nullable
+    private PowerProfile profile;
+
+    public PowerProfileScheduler(@NonNull Context context, @NonNull Listener listener) {
+        this.context = context.getApplicationContext();
+        this.powerManager = (PowerManager) this.context.getSystemService(Context.POWER_SERVICE);
+        this.listener = listener;
+    }
+
+    /**
+     * Starts following the device state and reports the initial profile right away.
+     */
+    @MainThread
+    public void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+
+        final IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_BATTERY_CHANGED);
+        filter.addAction(PowerManager.ACTION_POWER_SAVE_MODE_CHANGED);
+        // ACTION_BATTERY_CHANGED is sticky, so the current battery state comes back right away.
+        final Intent battery = context.registerReceiver(receiver, filter);
+        if (battery != null) {
+            readBattery(battery);
+        }
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            registerThermalListener();
+        }
+        evaluate();
+    }
+
+    @MainThread
+    public void stop() {
+        if (!started) {
+            return;
+        }
+        started = false;
+        context.unregisterReceiver(receiver);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            unregisterThermalListener();
+        }
+    }
+
+    @RequiresApi(Build.VERSION_CODES.Q)
+    private void registerThermalListener() {
+        thermalStatus = powerManager.getCurrentThermalStatus();
+        thermalListener = status -> {
+            thermalStatus = status;
+            evaluate();
+        };
+        powerManager.addThermalStatusListener(ContextCompat.getMainExecutor(context), thermalListener);
+    }
+
+    @RequiresApi(Build.VERSION_CODES.Q)
+    private void unregisterThermalListener() {
+        if (thermalListener != null) {
+            powerManager.removeThermalStatusListener(thermalListener);
+            thermalListener = null;
+        }
+    }
+
+    private void readBattery(Intent intent) {
+        final int level = intent.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+        final int scale = intent.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+        if (level >= 0 && scale > 0) {
+            batteryPercent = level * 100 / scale;
+        }
+        final int status = intent.getIntExtra(BatteryManager.EXTRA_STATUS, BatteryManager.BATTERY_STATUS_UNKNOWN);
+        charging = status == BatteryManager.BATTERY_STATUS_CHARGING
+                || status == BatteryManager.BATTERY_STATUS_FULL;
+    }
+
+    private void evaluate() {
+        if (!started) {
+            return;
+        }
+        final PowerProfile next = selectProfile();
+        if (next == profile) {
+            return;
+        }
+        Log.i(TAG, "evaluate: " + profile + " -> " + next
+                + " (thermal " + thermalStatus + ", battery " + batteryPercent + "%"
+                + (charging ? " charging" : "") + ")");
+        profile = next;
+        listener.onPowerProfileChanged(next);
+    }
+
+    private PowerProfile selectProfile() {
+        // Thresholds are raised by the hysteresis while their profile is active.
+        final int hysteresisSaver = profile == PowerProfile.SAVER ? BATTERY_HYSTERESIS_PERCENT : 0;
+        final int hysteresisBalanced = profile != PowerProfile.FULL && profile != null ? BATTERY_HYSTERESIS_PERCENT : 0;
+
+        if (thermalStatus >= PowerManager.THERMAL_STATUS_SEVERE
+                || powerManager.isPowerSaveMode()
+                || (!charging && batteryPercent < SAVER_BATTERY_PERCENT + hysteresisSaver)) {
+            return PowerProfile.SAVER;
+        }
+        if (thermalStatus >= PowerManager.THERMAL_STATUS_MODERATE
+                || (!charging && batteryPercent < BALANCED_BATTERY_PERCENT + hysteresisBalanced)) {
+            return PowerProfile.BALANCED;
+        }
+        return PowerProfile.FULL;
+    }
+
+    /**
+     * Returns the current profile, {@code null} before {@link #start()}.
+     */
+    @Nullable
+    public PowerProfile getProfile() {
+        return profile;
+    }
+}
@@ -0,0 +1,15 @@
+package github.jomutils.android.barcode.sample;
+
+import android.app.Application;
+
+import github.jomutils.android.barcode.ScannerWarmUp;
+
+public class BarcodeApplication extends Application {
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        // Opt in to loading the camera provider and the barcode model before the first scan.
+        ScannerWarmUp.start(this);
+    }
+}
@@ -27,8 +27,6 @@ import androidx.lifecycle.ViewModelProvider;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.mlkit.vision.barcode.Barcode;
 import com.google.mlkit.vision.barcode.BarcodeScanner;
-import com.google.mlkit.vision.barcode.BarcodeScannerOptions;
-import com.google.mlkit.vision.barcode.BarcodeScanning;
 import com.google.mlkit.vision.common.InputImage;
 
 import java.nio.ByteBuffer;
@@ -39,7 +37,9 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 import github.jomutils.android.barcode.BarcodeResult;
+import github.jomutils.android.barcode.BarcodeScannerCache;
 import github.jomutils.android.barcode.CameraHelper;
+import github.jomutils.android.barcode.ScannerWarmUp;
 
 public class BarcodeScannerViewModel extends AndroidViewModel {
 
@@ -83,22 +83,7 @@ public class BarcodeScannerViewModel extends AndroidViewModel {
         analyzeExecutor = Executors.newSingleThreadExecutor();
         imageAnalyzer = this.new BarcodeImageAnalyzer();
 
-        if (formats == null || formats.length == 0) {
-            barcodeScanner = BarcodeScanning.getClient();
-        } else {
-            BarcodeScannerOptions.Builder builder;
-            if (formats.length == 1) {
-                builder = new BarcodeScannerOptions.Builder()
-                        .setBarcodeFormats(formats[0]);
-            } else {
-                int[] nextFormats = new int[formats.length - 1];
-                System.arraycopy(formats, 1, nextFormats, 0, formats.length - 1);
-                builder = new BarcodeScannerOptions.Builder()
-                        .setBarcodeFormats(formats[0], nextFormats);
-            }
-
-            barcodeScanner = BarcodeScanning.getClient(builder.build());
-        }
+        barcodeScanner = BarcodeScannerCache.acquire(formats);
 
         // Request camera permissions
         if (allPermissionsGranted()) {
@@ -112,7 +97,7 @@ public class BarcodeScannerViewModel extends AndroidViewModel {
     @Override
     protected void onCleared() {
         analyzeExecutor.shutdown();
-        barcodeScanner.close();
+        BarcodeScannerCache.release(barcodeScanner);
         super.onCleared();
     }
 
@@ -139,7 +124,7 @@ public class BarcodeScannerViewModel extends AndroidViewModel {
     }
 
     private void processCameraProvider() {
-        final ListenableFuture<ProcessCameraProvider> cameraProviderFuture = ProcessCameraProvider.getInstance(getApplication());
+        final ListenableFuture<ProcessCameraProvider> cameraProviderFuture = ScannerWarmUp.getCameraProvider(getApplication());
         cameraProviderFuture.addListener(() -> {
             try {
                 final ProcessCameraProvider processCameraProvider = cameraProviderFuture.get();
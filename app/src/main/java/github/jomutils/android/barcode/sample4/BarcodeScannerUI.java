@@ -25,6 +25,7 @@ import github.jomutils.android.barcode.BarcodeResult;
 import github.jomutils.android.barcode.R;
 import github.jomutils.android.barcode.WorkflowState;
 import github.jomutils.android.barcode.camera.CameraReticleAnimator;
+import github.jomutils.android.barcode.camera.FrozenPreview;
 import github.jomutils.android.barcode.camera.GraphicOverlay;
 import github.jomutils.android.barcode.settings.PreferenceUtils;
 import github.jomutils.android.barcode.widget.BarcodeLoadingGraphic;
@@ -54,6 +55,7 @@ public class BarcodeScannerUI {
     private boolean isCameraLive = false;
 
     private final CameraReticleAnimator cameraReticleAnimator;
+    private final FrozenPreview frozenPreview;
 
     private ScannerCallback callback;
     private WorkflowCallback workflowCallback;
@@ -65,6 +67,7 @@ public class BarcodeScannerUI {
         this.graphicOverlay = graphicOverlay;
         // Setup Camera Preview Box
         cameraReticleAnimator = new CameraReticleAnimator(this.graphicOverlay);
+        frozenPreview = new FrozenPreview(previewView, graphicOverlay);
     }
 
     public void setCallback(ScannerCallback callback) {
@@ -138,11 +141,21 @@ public class BarcodeScannerUI {
                 size);
     }
 
-    // TODO: 4/19/21 test this method
+    /**
+     * @deprecated the camera stays bound while frozen, so no owner is needed, use
+     * {@link #unfreezeCamera()}.
+     */
+    @Deprecated
     public void unfreezeCamera(LifecycleOwner lifecycleOwner) {
-        isCameraLive = true;
+        unfreezeCamera();
+    }
+
+    @MainThread
+    public void unfreezeCamera() {
         Log.i(TAG, "unfreezeCamera: ");
-        viewModel.unFreezeCamera(lifecycleOwner);
+        frozenPreview.hide();
+        viewModel.unFreezeCamera();
+        isCameraLive = true;
 
         if (this.callback != null) {
             this.callback.onCameraStart(camera);
@@ -151,9 +164,13 @@ public class BarcodeScannerUI {
 
     @MainThread
     public void freezeCamera() {
+        if (!isCameraLive) {
+            return;
+        }
         isCameraLive = false;
         Log.i(TAG, "freezeCamera: ");
         viewModel.freezeCamera();
+        frozenPreview.show();
     }
 
     private Size getBarcodeReticleBoxSize() {
@@ -200,6 +217,7 @@ public class BarcodeScannerUI {
 //                viewModel.setWorkflowState(WorkflowState.CONFIRMING);
 //            } else {
             // Barcode size in the camera view is sufficient.
+            frozenPreview.capture();
             if (PreferenceUtils.shouldDelayLoadingBarcodeResult(graphicOverlay.getContext())) {
                 ValueAnimator loadingAnimator = createLoadingAnimator(graphicOverlay, barcodeInCenter);
                 loadingAnimator.start();
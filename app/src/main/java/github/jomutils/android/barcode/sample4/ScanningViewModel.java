@@ -28,8 +28,6 @@ import com.google.android.gms.tasks.TaskExecutors;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.mlkit.vision.barcode.Barcode;
 import com.google.mlkit.vision.barcode.BarcodeScanner;
-import com.google.mlkit.vision.barcode.BarcodeScannerOptions;
-import com.google.mlkit.vision.barcode.BarcodeScanning;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -39,7 +37,9 @@ import java.util.concurrent.Executors;
 
 import github.jomutils.android.barcode.BarcodeImageAnalyzer;
 import github.jomutils.android.barcode.BarcodeResult;
+import github.jomutils.android.barcode.BarcodeScannerCache;
 import github.jomutils.android.barcode.CameraHelper;
+import github.jomutils.android.barcode.ScannerWarmUp;
 import github.jomutils.android.barcode.ScopedExecutor;
 import github.jomutils.android.barcode.WorkflowState;
 
@@ -63,6 +63,11 @@ public class ScanningViewModel extends AndroidViewModel {
     }
 
     private static final String TAG = "BarcodeScannerViewModel";
+    /**
+     * Initial main thread queue of the analyzer's per-frame bookkeeping, about two seconds of
+     * frames. It grows rather than drop any when the main thread stalls.
+     */
+    private static final int LISTENER_QUEUE_CAPACITY = 64;
 
     public static final int REQUEST_CODE_PERMISSIONS = 10;
     public static final List<String> REQUIRED_PERMISSIONS;
@@ -92,25 +97,14 @@ public class ScanningViewModel extends AndroidViewModel {
         super(application);
         analyzeExecutor = Executors.newSingleThreadExecutor();
 
-        if (formats == null || formats.length == 0) {
-            barcodeScanner = BarcodeScanning.getClient();
-        } else {
-            BarcodeScannerOptions.Builder builder;
-            if (formats.length == 1) {
-                builder = new BarcodeScannerOptions.Builder()
-                        .setBarcodeFormats(formats[0]);
-            } else {
-                int[] nextFormats = new int[formats.length - 1];
-                System.arraycopy(formats, 1, nextFormats, 0, formats.length - 1);
-                builder = new BarcodeScannerOptions.Builder()
-                        .setBarcodeFormats(formats[0], nextFormats);
-            }
-
-            barcodeScanner = BarcodeScanning.getClient(builder.build());
-        }
+        barcodeScanner = BarcodeScannerCache.acquire(formats);
 
-        mainScopeExecutor = new ScopedExecutor(TaskExecutors.MAIN_THREAD);
-        imageAnalyzer = new BarcodeImageAnalyzer(barcodeScanner, mainScopeExecutor) {
+        mainScopeExecutor = new ScopedExecutor(TaskExecutors.MAIN_THREAD, LISTENER_QUEUE_CAPACITY,
+                ScopedExecutor.OverflowPolicy.GROW);
+        // Every frame's bookkeeping runs, but a result still queued when the next one arrives is
+        // stale and only the newest one is delivered.
+        imageAnalyzer = new BarcodeImageAnalyzer(barcodeScanner, mainScopeExecutor,
+                mainScopeExecutor.newSupersedingExecutor()) {
 
             @Override
             public void onProceed(List<Barcode> barcodes) {
@@ -136,7 +130,7 @@ public class ScanningViewModel extends AndroidViewModel {
     protected void onCleared() {
         analyzeExecutor.shutdown();
         mainScopeExecutor.shutdown();
-        barcodeScanner.close();
+        BarcodeScannerCache.release(barcodeScanner);
         super.onCleared();
     }
 
@@ -163,7 +157,7 @@ public class ScanningViewModel extends AndroidViewModel {
     }
 
     private void processCameraProvider() {
-        final ListenableFuture<ProcessCameraProvider> cameraProviderFuture = ProcessCameraProvider.getInstance(getApplication());
+        final ListenableFuture<ProcessCameraProvider> cameraProviderFuture = ScannerWarmUp.getCameraProvider(getApplication());
         cameraProviderFuture.addListener(() -> {
             try {
                 final ProcessCameraProvider processCameraProvider = cameraProviderFuture.get();
@@ -216,18 +210,27 @@ public class ScanningViewModel extends AndroidViewModel {
         );
     }
 
+    /**
+     * Stops analyzing frames while every use case stays bound. Unbinding the preview instead makes
+     * some devices crash, see https://issuetracker.google.com/issues/153891428
+     */
     public void freezeCamera() {
-        final ProcessCameraProvider value = processCameraProvider.getValue();
-        if (value != null) {
-            value.unbind(cameraPreview);
-        }
+        imageAnalyzer.freeze();
+    }
+
+    /**
+     * Analyzes again from the next frame on.
+     */
+    public void unFreezeCamera() {
+        imageAnalyzer.resume();
     }
 
+    /**
+     * @deprecated nothing is unbound while frozen anymore, use {@link #unFreezeCamera()}.
+     */
+    @Deprecated
     public void unFreezeCamera(LifecycleOwner lifecycleOwner) {
-        final ProcessCameraProvider value = processCameraProvider.getValue();
-        if (value != null && !value.isBound(cameraPreview)) {
-            value.bindToLifecycle(lifecycleOwner, cameraSelector, cameraPreview);
-        }
+        unFreezeCamera();
     }
 
     private Preview.Builder setupPreviewBuilder(PreviewView previewView,
@@ -3,13 +3,9 @@ package github.jomutils.android.barcode.sample5;
 import android.animation.ValueAnimator;
 import android.app.Activity;
 import android.content.Context;
-import android.graphics.Rect;
-import android.graphics.RectF;
 import android.media.MediaPlayer;
 import android.os.Build;
 import android.os.Bundle;
-import android.os.Handler;
-import android.os.Looper;
 import android.os.VibrationEffect;
 import android.os.Vibrator;
 import android.util.Log;
@@ -32,13 +28,17 @@ import java.util.List;
 import github.jomutils.android.barcode.BarcodeResult;
 import github.jomutils.android.barcode.R;
 import github.jomutils.android.barcode.WorkflowState;
+import github.jomutils.android.barcode.camera.AutoZoomController;
 import github.jomutils.android.barcode.camera.CameraReticleAnimator;
+import github.jomutils.android.barcode.camera.FrozenPreview;
 import github.jomutils.android.barcode.camera.GraphicOverlay;
+import github.jomutils.android.barcode.camera.MappedBarcodes;
 import github.jomutils.android.barcode.settings.PreferenceUtils;
 import github.jomutils.android.barcode.widget.BarcodeConfirmingGraphic;
 import github.jomutils.android.barcode.widget.BarcodeLoadingGraphic;
 import github.jomutils.android.barcode.widget.BarcodeReticleGraphic;
 import github.jomutils.android.barcode.widget.GoogleGraphicOverlay;
+import github.jomutils.android.barcode.widget.MultiBarcodeGraphic;
 
 
 /**
@@ -67,11 +67,15 @@ public class BarcodeScannerX {
     private final PreviewView previewView;
     private final GraphicOverlay graphicOverlay;
 
-    private final Handler mainHandler;
     private final CameraReticleAnimator cameraReticleAnimator;
+    private final FrozenPreview frozenPreview;
+    private final AutoZoomController autoZoomController = new AutoZoomController();
+    private final MappedBarcodes mappedBarcodes = new MappedBarcodes();
+    private final MultiBarcodeGraphic multiBarcodeGraphic;
 
     private Camera camera;
     private boolean isCameraLive = false;
+    private int useCases = BarcodeScannerXViewModel.DEFAULT_USE_CASES;
 
     private ScannerCallback callback;
     private WorkflowCallback workflowCallback;
@@ -88,12 +92,16 @@ public class BarcodeScannerX {
         this.graphicOverlay = graphicOverlay;
 
         // TODO: 4/20/21 Try to fix on some device drawing black - https://stackoverflow.com/a/44607874/857346
+        // The software layer also lets MultiBarcodeGraphic time its draws directly, no frame metrics.
         this.graphicOverlay.setLayerType(GraphicOverlay.LAYER_TYPE_SOFTWARE, null);
 
-        this.mainHandler = new Handler(Looper.getMainLooper());
         // Setup Camera Preview Box
         this.cameraReticleAnimator = new CameraReticleAnimator(this.graphicOverlay);
+        this.frozenPreview = new FrozenPreview(previewView, this.graphicOverlay);
+        this.multiBarcodeGraphic = new MultiBarcodeGraphic(this.graphicOverlay);
 
+        previewView.addOnLayoutChangeListener(
+                (view, left, top, right, bottom, oldLeft, oldTop, oldRight, oldBottom) -> updateViewTransform());
     }
 
     /**
@@ -147,6 +155,15 @@ public class BarcodeScannerX {
         this.workflowCallback = workflowCallback;
     }
 
+    /**
+     * Selects the use cases bound next to image analysis, see
+     * {@link BarcodeScannerXViewModel#startCamera(ProcessCameraProvider, LifecycleOwner, PreviewView, int)}.
+     * Takes effect the next time the camera starts.
+     */
+    public void setUseCases(int useCases) {
+        this.useCases = useCases;
+    }
+
     public void bindToLifecycle(final LifecycleOwner lifecycleOwner) {
         viewModel.getWorkflowState().observe(lifecycleOwner, workflowState -> {
             Log.i(TAG, "workflowState: " + workflowState);
@@ -194,6 +211,7 @@ public class BarcodeScannerX {
                 }
             }
         });
+
     }
 
     private void checkPermission(Activity activity) {
@@ -212,43 +230,77 @@ public class BarcodeScannerX {
     private Camera startCamera(@NonNull ProcessCameraProvider cameraProvider, LifecycleOwner lifecycleOwner) {
         isCameraLive = true;
 
+        // The overlay maps through the transform the analyzer derives from every frame.
         if (graphicOverlay instanceof GoogleGraphicOverlay) {
-            GoogleGraphicOverlay overlay = (GoogleGraphicOverlay) graphicOverlay;
-            final RectF box = PreferenceUtils.getBarcodeReticleBox(overlay);
-            overlay.setImageSourceInfo(
-                    Math.round(box.width()),
-                    Math.round(box.height()),
-                    false);
+            ((GoogleGraphicOverlay) graphicOverlay).setImageTransformTracker(viewModel.getImageTransformTracker());
         }
+        updateViewTransform();
 
         Log.i(TAG, "startCamera: GraphOverlay(" + graphicOverlay.getWidth() + ", " + graphicOverlay.getHeight() + ")");
 
-        return viewModel.startCamera(
+        final Camera startedCamera = viewModel.startCamera(
                 cameraProvider,
                 lifecycleOwner,
-                previewView);
+                previewView,
+                useCases);
+
+        autoZoomController.setCamera(PreferenceUtils.shouldAutoZoom(context) ? startedCamera : null);
+
+        if (PreferenceUtils.shouldAutoTuneAnalysisResolution(context) && !viewModel.hasTunedAnalysisResolution()) {
+            viewModel.calibrateAnalysisResolution(lifecycleOwner);
+        }
+
+        return startedCamera;
+    }
+
+    private void updateViewTransform() {
+        viewModel.getImageTransformTracker().setView(
+                previewView.getWidth(),
+                previewView.getHeight(),
+                previewView.getScaleType(),
+                false);
     }
 
+    /**
+     * @deprecated the camera stays bound while frozen, so no owner is needed, use
+     * {@link #unfreezeCamera()}.
+     */
+    @Deprecated
     @MainThread
     public void unfreezeCamera(LifecycleOwner lifecycleOwner) {
-        viewModel.unFreezeCamera(lifecycleOwner);
-        Log.i(TAG, "unfreezeCamera: ");
+        unfreezeCamera();
+    }
 
-        // Pending Image Analysis to let Preview finishes
-        mainHandler.postDelayed(() -> {
-            isCameraLive = true;
-        }, 500);
+    /**
+     * Resumes scanning from the next analyzed frame. The camera was never unbound, so nothing has
+     * to be rebound or waited for.
+     */
+    @MainThread
+    public void unfreezeCamera() {
+        Log.i(TAG, "unfreezeCamera: ");
+        frozenPreview.hide();
+        viewModel.resetDetectedBarcode();
+        viewModel.unFreezeCamera();
+        isCameraLive = true;
 
         if (this.callback != null) {
             this.callback.onCameraStart(camera);
         }
     }
 
+    /**
+     * Stops analyzing frames and shows a still of the frame the result was read from, with the
+     * camera left bound.
+     */
     @MainThread
     public void freezeCamera() {
+        if (!isCameraLive) {
+            return;
+        }
+        Log.i(TAG, "freezeCamera: ");
         isCameraLive = false;
-        //viewModel.freezeCamera();
-        //Log.i(TAG, "freezeCamera: ");
+        viewModel.freezeCamera();
+        frozenPreview.show();
     }
 
     private void onBarcodeProcessing(@NonNull List<Barcode> barcodes) {
@@ -259,39 +311,41 @@ public class BarcodeScannerX {
 
         GraphicOverlay graphicOverlay = this.graphicOverlay;
 
+        // Maps every box of the frame at once, hit test and size checks read the mapped arrays.
+        final MappedBarcodes mappedBarcodes = this.mappedBarcodes;
+        mappedBarcodes.map(graphicOverlay, barcodes);
+
         // Picks the barcode, if exists, that covers the center of graphic overlay.
-        Barcode barcodeInCenter = null;
+        int centerIndex = -1;
         if (PreferenceUtils.getCheckBarcodeInCenter(context)) {
-            for (Barcode barcode : barcodes) {
-                final Rect boundingBox = barcode.getBoundingBox();
-                if (boundingBox != null) {
-                    final RectF barcodeBox = graphicOverlay.translateRect(boundingBox);
-                    final boolean contains = barcodeBox.contains(graphicOverlay.getWidth() / 2f, graphicOverlay.getHeight() / 2f);
-                    if (contains) {
-                        barcodeInCenter = barcode;
-                        break;
-                    }
-                }
-            }
+            centerIndex = mappedBarcodes.indexOfBoxContaining(graphicOverlay.getWidth() / 2f, graphicOverlay.getHeight() / 2f);
         } else if (!barcodes.isEmpty()) {
-            barcodeInCenter = barcodes.get(0);
+            centerIndex = 0;
         }
+        final Barcode barcodeInCenter = centerIndex >= 0 ? barcodes.get(centerIndex) : null;
 
         graphicOverlay.clear();
+        if (!barcodes.isEmpty() && PreferenceUtils.shouldOutlineAllBarcodes(context)) {
+            multiBarcodeGraphic.update(mappedBarcodes, barcodes);
+            graphicOverlay.add(multiBarcodeGraphic);
+        }
         if (barcodeInCenter == null) {
+            autoZoomController.onNoBarcode();
             cameraReticleAnimator.start();
             graphicOverlay.add(new BarcodeReticleGraphic(graphicOverlay, cameraReticleAnimator));
             viewModel.setWorkflowState(WorkflowState.DETECTING);
         } else {
             cameraReticleAnimator.cancel();
             Log.i(TAG, "onCameraProcessing: barcodeInCenter " + barcodeInCenter.getBoundingBox());
-            float sizeProgress = PreferenceUtils.getProgressToMeetBarcodeSizeRequirement(graphicOverlay, barcodeInCenter);
+            updateAutoZoom(mappedBarcodes, centerIndex);
+            float sizeProgress = PreferenceUtils.getProgressToMeetBarcodeSizeRequirement(graphicOverlay, mappedBarcodes.getWidth(centerIndex));
             if (sizeProgress < 1) {
 //             Barcode in the camera view is too small, so prompt user to move camera closer.
                 graphicOverlay.add(new BarcodeConfirmingGraphic(graphicOverlay, barcodeInCenter));
                 viewModel.setWorkflowState(WorkflowState.CONFIRMING);
             } else {
 //             Barcode size in the camera view is sufficient.
+                frozenPreview.capture();
                 if (PreferenceUtils.shouldDelayLoadingBarcodeResult(context)) {
                     ValueAnimator loadingAnimator = createLoadingAnimator(graphicOverlay, barcodeInCenter);
                     loadingAnimator.start();
@@ -310,6 +364,21 @@ public class BarcodeScannerX {
         graphicOverlay.invalidate();
     }
 
+    private void updateAutoZoom(@NonNull MappedBarcodes mappedBarcodes, int index) {
+        final float viewWidth = graphicOverlay.getWidth();
+        final float viewHeight = graphicOverlay.getHeight();
+        if (!mappedBarcodes.hasBox(index) || viewWidth == 0 || viewHeight == 0) {
+            return;
+        }
+
+        autoZoomController.onBarcode(
+                PreferenceUtils.getBarcodeWidthProgress(graphicOverlay, mappedBarcodes.getWidth(index)),
+                mappedBarcodes.getCenterX(index) / viewWidth - 0.5f,
+                mappedBarcodes.getCenterY(index) / viewHeight - 0.5f,
+                mappedBarcodes.getWidth(index) / viewWidth / 2f,
+                mappedBarcodes.getHeight(index) / viewHeight / 2f);
+    }
+
     private ValueAnimator createLoadingAnimator(final GraphicOverlay graphicOverlay, final Barcode barcode) {
         float endProgress = 1.1f;
         final ValueAnimator valueAnimator = ValueAnimator.ofFloat(0f, endProgress)
@@ -2,24 +2,44 @@ package github.jomutils.android.barcode.sample5;
 
 import android.Manifest;
 import android.app.Application;
+import android.content.Context;
 import android.content.pm.PackageManager;
+import android.hardware.display.DisplayManager;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.DisplayMetrics;
 import android.util.Log;
+import android.util.Size;
+import android.view.Display;
+import android.view.Surface;
 
+import androidx.annotation.MainThread;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.experimental.UseExperimental;
+import androidx.camera.core.AspectRatio;
 import androidx.camera.core.Camera;
+import androidx.camera.core.CameraInfo;
 import androidx.camera.core.CameraSelector;
+import androidx.camera.core.ExperimentalUseCaseGroup;
 import androidx.camera.core.ImageAnalysis;
 import androidx.camera.core.ImageCapture;
 import androidx.camera.core.Preview;
+import androidx.camera.core.TorchState;
+import androidx.camera.core.UseCase;
+import androidx.camera.core.UseCaseGroup;
+import androidx.camera.core.ViewPort;
+import androidx.camera.core.ZoomState;
+import androidx.camera.lifecycle.ExperimentalUseCaseGroupLifecycle;
 import androidx.camera.lifecycle.ProcessCameraProvider;
 import androidx.camera.view.PreviewView;
 import androidx.core.content.ContextCompat;
 import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.Lifecycle;
 import androidx.lifecycle.LifecycleOwner;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.Observer;
 import androidx.lifecycle.ViewModel;
 import androidx.lifecycle.ViewModelProvider;
 
@@ -27,10 +47,10 @@ import com.google.android.gms.tasks.TaskExecutors;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.mlkit.vision.barcode.Barcode;
 import com.google.mlkit.vision.barcode.BarcodeScanner;
-import com.google.mlkit.vision.barcode.BarcodeScannerOptions;
-import com.google.mlkit.vision.barcode.BarcodeScanning;
 
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
@@ -38,9 +58,32 @@ import java.util.concurrent.Executors;
 
 import github.jomutils.android.barcode.BarcodeImageAnalyzer;
 import github.jomutils.android.barcode.BarcodeResult;
+import github.jomutils.android.barcode.BarcodeScannerCache;
+import github.jomutils.android.barcode.BarcodeScanners;
 import github.jomutils.android.barcode.CameraHelper;
+import github.jomutils.android.barcode.FormatStatistics;
+import github.jomutils.android.barcode.PooledBarcode;
+import github.jomutils.android.barcode.ScanMetrics;
+import github.jomutils.android.barcode.ScannerWarmUp;
 import github.jomutils.android.barcode.ScopedExecutor;
 import github.jomutils.android.barcode.WorkflowState;
+import github.jomutils.android.barcode.analysis.FrameRateLimiter;
+import github.jomutils.android.barcode.analysis.FrameStage;
+import github.jomutils.android.barcode.analysis.LuminanceStage;
+import github.jomutils.android.barcode.analysis.RetryPreprocessor;
+import github.jomutils.android.barcode.analysis.RoiResultCache;
+import github.jomutils.android.barcode.analysis.SharpnessGate;
+import github.jomutils.android.barcode.analysis.StaticSceneGate;
+import github.jomutils.android.barcode.analytics.ScanSessionLog;
+import github.jomutils.android.barcode.analytics.ScanSessionRecorder;
+import github.jomutils.android.barcode.camera.AnalysisResolutionTuner;
+import github.jomutils.android.barcode.camera.ImageTransformTracker;
+import github.jomutils.android.barcode.camera.TorchExposureController;
+import github.jomutils.android.barcode.power.PowerProfile;
+import github.jomutils.android.barcode.power.PowerProfileScheduler;
+import github.jomutils.android.barcode.settings.PreferenceUtils;
+import github.jomutils.android.barcode.stream.ScanEventLiveData;
+import github.jomutils.android.barcode.stream.ScanEventPublisher;
 
 public class BarcodeScannerXViewModel extends AndroidViewModel {
 
@@ -71,56 +114,226 @@ public class BarcodeScannerXViewModel extends AndroidViewModel {
         REQUIRED_PERMISSIONS.add(Manifest.permission.CAMERA);
     }
 
+    /**
+     * Binds a {@link Preview} to the {@link PreviewView} given to {@link #startCamera}.
+     */
+    public static final int USE_CASE_PREVIEW = 1;
+    /**
+     * Binds an {@link ImageCapture}. Nothing in the scanner uses it, it only reserves the stream.
+     */
+    public static final int USE_CASE_IMAGE_CAPTURE = 1 << 1;
+    public static final int DEFAULT_USE_CASES = USE_CASE_PREVIEW;
+
+    /**
+     * How long each candidate resolution is measured during calibration.
+     */
+    private static final long CALIBRATION_WINDOW_MS = 3000;
+    /**
+     * Share of past scans the prioritized formats must cover.
+     */
+    private static final float FORMAT_COVERAGE = 0.95f;
+    /**
+     * Scans counted at a site before its formats are prioritized.
+     */
+    private static final long MIN_SCANS_TO_PRIORITIZE = 50;
+    /**
+     * With prioritized formats, every this many decoded frames one goes to an all-formats scanner.
+     */
+    private static final int FALLBACK_INTERVAL_FRAMES = 10;
+    /**
+     * Initial main thread queue of the analyzer's per-frame bookkeeping, about two seconds of
+     * frames. It grows rather than drop any when the main thread stalls.
+     */
+    private static final int LISTENER_QUEUE_CAPACITY = 64;
+
     private final CameraSelector cameraSelector = CameraSelector.DEFAULT_BACK_CAMERA;
     private Preview cameraPreview;
+    private ImageAnalysis imageAnalysis;
+    private int analysisRotation;
+    private int analysisAspectRatio;
+    /**
+     * The owner {@link #imageAnalysis} is bound to, to rebind it on a power profile change.
+     */
+    private WeakReference<LifecycleOwner> analysisOwner = new WeakReference<>(null);
+    /**
+     * Whether a power profile changed the analysis resolution while frozen, to rebind on unfreeze.
+     */
+    private boolean analysisRebindPending;
+    /**
+     * The preview view's viewport every use case is bound with, {@code null} when headless.
+     */
+    @Nullable
+    private ViewPort viewPort;
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final AnalysisResolutionTuner resolutionTuner;
+    private final ScanMetrics scanMetrics = new ScanMetrics();
+    private final TorchExposureController torchExposureController = new TorchExposureController();
+    private final ImageTransformTracker imageTransformTracker = new ImageTransformTracker();
+    @Nullable
+    private final StaticSceneGate staticSceneGate;
+    @Nullable
+    private final SharpnessGate sharpnessGate;
+    @Nullable
+    private final RoiResultCache<List<Barcode>> resultCache;
+    @Nullable
+    private final FormatStatistics formatStatistics;
+    @Nullable
+    private final ScanSessionRecorder sessionRecorder;
+    /**
+     * The camera whose torch and zoom states feed {@link #sessionRecorder}.
+     */
+    @Nullable
+    private CameraInfo observedCameraInfo;
+    private final Observer<Integer> torchStateObserver = this::onTorchStateChanged;
+    private final Observer<ZoomState> zoomStateObserver = this::onZoomStateChanged;
 
     private final ExecutorService analyzeExecutor;
     private final ScopedExecutor mainScopeExecutor;
 
     private final BarcodeScanner barcodeScanner;
+    @Nullable
+    private final BarcodeScanner fallbackScanner;
     private final BarcodeImageAnalyzer imageAnalyzer;
+    @Nullable
+    private final FrameRateLimiter frameRateLimiter;
+    @Nullable
+    private final PowerProfileScheduler powerProfileScheduler;
+    private final boolean preprocessRetryFrames;
+    private PowerProfile powerProfile = PowerProfile.FULL;
+
+    private final ScanEventPublisher<WorkflowState> workflowStates = new ScanEventPublisher<>();
+    private final ScanEventPublisher<List<Barcode>> frameDetections = new ScanEventPublisher<>();
+    private final ScanEventPublisher<BarcodeResult> results = new ScanEventPublisher<>();
 
-    private final MutableLiveData<WorkflowState> workflowState = new MutableLiveData<>(WorkflowState.NOT_STARTED);
+    private final LiveData<WorkflowState> workflowState = new ScanEventLiveData<>(workflowStates, WorkflowState.NOT_STARTED);
 
     private final MutableLiveData<Boolean> permissionGrantingObservable = new MutableLiveData<>();
     private final MutableLiveData<ProcessCameraProvider> processCameraProvider = new MutableLiveData<>();
-    private final MutableLiveData<List<Barcode>> allBarcodesObservable = new MutableLiveData<>();
-    private final MutableLiveData<BarcodeResult> detectedBarcode = new MutableLiveData<>();
+    private final LiveData<List<Barcode>> allBarcodesObservable = new ScanEventLiveData<>(frameDetections);
+    private final LiveData<BarcodeResult> detectedBarcode = new ScanEventLiveData<>(results);
+
+    private final PooledBarcode.Pool barcodePool = new PooledBarcode.Pool(4);
+    private PooledBarcode lastDetectedBarcode;
 
     public BarcodeScannerXViewModel(@NonNull Application application, @Nullable int[] formats) {
         super(application);
         analyzeExecutor = Executors.newSingleThreadExecutor();
 
-        if (formats == null || formats.length == 0) {
-            barcodeScanner = BarcodeScanning.getClient();
+        // Formats are prioritized only when the caller did not restrict them.
+        final int prioritizedFormats;
+        if (formats == null && PreferenceUtils.shouldPrioritizeFormats(application)) {
+            formatStatistics = FormatStatistics.forSite(application, PreferenceUtils.getScanSiteId(application));
+            prioritizedFormats = formatStatistics.getPrioritizedFormatMask(FORMAT_COVERAGE, MIN_SCANS_TO_PRIORITIZE);
+            Log.i(TAG, "Prioritized formats " + prioritizedFormats + " from " + formatStatistics);
         } else {
-            BarcodeScannerOptions.Builder builder;
-            if (formats.length == 1) {
-                builder = new BarcodeScannerOptions.Builder()
-                        .setBarcodeFormats(formats[0]);
-            } else {
-                int[] nextFormats = new int[formats.length - 1];
-                System.arraycopy(formats, 1, nextFormats, 0, formats.length - 1);
-                builder = new BarcodeScannerOptions.Builder()
-                        .setBarcodeFormats(formats[0], nextFormats);
-            }
+            formatStatistics = null;
+            prioritizedFormats = Barcode.FORMAT_ALL_FORMATS;
+        }
 
-            barcodeScanner = BarcodeScanning.getClient(builder.build());
+        if (prioritizedFormats != Barcode.FORMAT_ALL_FORMATS) {
+            barcodeScanner = BarcodeScannerCache.acquire(BarcodeScanners.toFormats(prioritizedFormats));
+            fallbackScanner = BarcodeScannerCache.acquire(null);
+        } else {
+            barcodeScanner = BarcodeScannerCache.acquire(formats);
+            fallbackScanner = null;
         }
 
-        mainScopeExecutor = new ScopedExecutor(TaskExecutors.MAIN_THREAD);
-        imageAnalyzer = new BarcodeImageAnalyzer(barcodeScanner, mainScopeExecutor) {
+        sessionRecorder = PreferenceUtils.shouldLogScanSessions(application)
+                ? new ScanSessionRecorder(PreferenceUtils.getScanSiteId(application))
+                : null;
+
+        mainScopeExecutor = new ScopedExecutor(TaskExecutors.MAIN_THREAD, LISTENER_QUEUE_CAPACITY,
+                ScopedExecutor.OverflowPolicy.GROW);
+        // Every frame's bookkeeping runs, but a result still queued when the next one arrives is
+        // stale and only the newest one is delivered.
+        imageAnalyzer = new BarcodeImageAnalyzer(barcodeScanner, mainScopeExecutor,
+                mainScopeExecutor.newSupersedingExecutor()) {
 
             @Override
             public void onProceed(List<Barcode> barcodes) {
-                allBarcodesObservable.setValue(barcodes);
+                frameDetections.publish(barcodes);
             }
 
             @Override
             public void onProcessFail(Exception e) {
                 Log.e(TAG, "onProcessFail: ", e);
+                if (sessionRecorder != null) {
+                    sessionRecorder.onDecoderFailure();
+                }
+            }
+
+            @Override
+            protected void onFrameProcessed(int width, int height, long latencyNanos, int barcodeCount) {
+                scanMetrics.onFrameDecoded(latencyNanos);
+                resolutionTuner.recordFrame(width, height, latencyNanos, barcodeCount > 0);
+                if (sessionRecorder != null) {
+                    sessionRecorder.onFrameAnalyzed(barcodeCount);
+                }
+            }
+
+            @Override
+            protected void onFallbackFrameProcessed(long latencyNanos, int barcodeCount) {
+                scanMetrics.onFallbackFrameDecoded(latencyNanos);
+            }
+
+            @Override
+            protected void onFrameSkipped(FrameStage stage) {
+                scanMetrics.onFrameSkipped();
+                if (sessionRecorder != null) {
+                    sessionRecorder.onFrameDropped();
+                }
             }
         };
+        resolutionTuner = AnalysisResolutionTuner.forBackCamera(application);
+        imageAnalyzer.setImageTransformTracker(imageTransformTracker);
+        imageAnalyzer.setFilterToVisibleArea(true);
+        if (fallbackScanner != null) {
+            imageAnalyzer.setFallbackScanner(fallbackScanner, FALLBACK_INTERVAL_FRAMES);
+        }
+
+        // The scheduler may throttle frames, do it before anything else looks at them.
+        if (PreferenceUtils.shouldSchedulePowerProfiles(application)) {
+            frameRateLimiter = new FrameRateLimiter();
+            imageAnalyzer.addStage(frameRateLimiter);
+        } else {
+            frameRateLimiter = null;
+        }
+        imageAnalyzer.setRoiFractions(
+                PreferenceUtils.getBarcodeReticleWidthFraction(application),
+                PreferenceUtils.getBarcodeReticleHeightFraction(application));
+        if (PreferenceUtils.shouldAutoAdjustTorchAndExposure(application)) {
+            imageAnalyzer.addStage(new LuminanceStage(torchExposureController));
+        }
+        // Cheapest gates first.
+        if (PreferenceUtils.shouldSkipUnchangedFrames(application)) {
+            staticSceneGate = new StaticSceneGate();
+            imageAnalyzer.addStage(staticSceneGate);
+        } else {
+            staticSceneGate = null;
+        }
+        if (PreferenceUtils.shouldSkipBlurredFrames(application)) {
+            sharpnessGate = new SharpnessGate();
+            imageAnalyzer.addStage(sharpnessGate);
+        } else {
+            sharpnessGate = null;
+        }
+        if (PreferenceUtils.shouldCacheRoiResults(application)) {
+            resultCache = new RoiResultCache<>();
+            imageAnalyzer.setResultCache(resultCache);
+        } else {
+            resultCache = null;
+        }
+        preprocessRetryFrames = PreferenceUtils.shouldPreprocessRetryFrames(application);
+        if (preprocessRetryFrames) {
+            imageAnalyzer.setRetryPreprocessor(new RetryPreprocessor());
+        }
+        if (frameRateLimiter != null) {
+            powerProfileScheduler = new PowerProfileScheduler(application, this::applyPowerProfile);
+            powerProfileScheduler.start();
+        } else {
+            powerProfileScheduler = null;
+        }
 
         // Request camera permissions
         if (allPermissionsGranted()) {
@@ -133,9 +346,45 @@ public class BarcodeScannerXViewModel extends AndroidViewModel {
 
     @Override
     protected void onCleared() {
+        mainHandler.removeCallbacksAndMessages(null);
+        torchExposureController.setCamera(null);
+        observeCameraState(null);
+        if (sessionRecorder != null) {
+            // Written in the background, right away: the process may not outlive the screen.
+            final ScanSessionLog sessionLog = ScanSessionLog.getInstance(getApplication());
+            sessionLog.append(sessionRecorder.finish());
+            sessionLog.flush();
+        }
+        if (powerProfileScheduler != null) {
+            powerProfileScheduler.stop();
+            Log.i(TAG, "onCleared: " + scanMetrics);
+        }
+        if (staticSceneGate != null) {
+            Log.i(TAG, "onCleared: " + staticSceneGate);
+        }
+        if (sharpnessGate != null) {
+            Log.i(TAG, "onCleared: " + sharpnessGate);
+        }
+        if (resultCache != null) {
+            Log.i(TAG, "onCleared: " + resultCache);
+        }
+        if (formatStatistics != null) {
+            formatStatistics.save();
+        }
+        if (fallbackScanner != null) {
+            Log.i(TAG, "onCleared: prioritized formats " + scanMetrics.getAveragePrioritizedDecodeLatencyMs()
+                    + " ms, all formats " + scanMetrics.getAverageFallbackDecodeLatencyMs() + " ms per frame");
+        }
+        workflowStates.complete();
+        frameDetections.complete();
+        results.complete();
         analyzeExecutor.shutdown();
         mainScopeExecutor.shutdown();
-        barcodeScanner.close();
+        Log.i(TAG, "onCleared: " + mainScopeExecutor);
+        BarcodeScannerCache.release(barcodeScanner);
+        if (fallbackScanner != null) {
+            BarcodeScannerCache.release(fallbackScanner);
+        }
         super.onCleared();
     }
 
@@ -162,7 +411,7 @@ public class BarcodeScannerXViewModel extends AndroidViewModel {
     }
 
     private void processCameraProvider() {
-        final ListenableFuture<ProcessCameraProvider> cameraProviderFuture = ProcessCameraProvider.getInstance(getApplication());
+        final ListenableFuture<ProcessCameraProvider> cameraProviderFuture = ScannerWarmUp.getCameraProvider(getApplication());
         cameraProviderFuture.addListener(() -> {
             try {
                 final ProcessCameraProvider processCameraProvider = cameraProviderFuture.get();
@@ -176,79 +425,404 @@ public class BarcodeScannerXViewModel extends AndroidViewModel {
     public Camera startCamera(ProcessCameraProvider processCameraProvider,
                               LifecycleOwner owner,
                               PreviewView previewView) {
-        workflowState.setValue(WorkflowState.DETECTING);
+        return startCamera(processCameraProvider, owner, previewView, DEFAULT_USE_CASES);
+    }
+
+    /**
+     * Binds {@link ImageAnalysis} only, without a preview surface. Frames are delivered through the
+     * same observables as {@link #startCamera(ProcessCameraProvider, LifecycleOwner, PreviewView)}.
+     */
+    public Camera startHeadless(ProcessCameraProvider processCameraProvider, LifecycleOwner owner) {
+        return startCamera(processCameraProvider, owner, null, 0);
+    }
+
+    /**
+     * Binds {@link ImageAnalysis} together with the use cases selected in {@code useCases}.
+     *
+     * @param previewView required when {@code useCases} contains {@link #USE_CASE_PREVIEW}.
+     * @param useCases    a combination of {@link #USE_CASE_PREVIEW} and {@link #USE_CASE_IMAGE_CAPTURE},
+     *                    0 for analysis only.
+     */
+    @UseExperimental(markerClass = ExperimentalUseCaseGroup.class)
+    public Camera startCamera(ProcessCameraProvider processCameraProvider,
+                              LifecycleOwner owner,
+                              @Nullable PreviewView previewView,
+                              int useCases) {
+        final boolean withPreview = (useCases & USE_CASE_PREVIEW) != 0;
+        if (withPreview && previewView == null) {
+            throw new IllegalArgumentException("USE_CASE_PREVIEW requires a PreviewView");
+        }
+
+        workflowStates.publish(WorkflowState.DETECTING);
+
+        final int aspectRatio;
+        final int rotation;
+        if (previewView != null) {
+            DisplayMetrics displayMetrics = new DisplayMetrics();
+            previewView.getDisplay().getRealMetrics(displayMetrics);
+
+            aspectRatio = CameraHelper.getAspectRatio(
+                    displayMetrics.widthPixels,
+                    displayMetrics.heightPixels
+            );
+            rotation = previewView.getDisplay().getRotation();
+        } else {
+            // Nothing is shown, so use the sensor's native aspect ratio and the default display's rotation.
+            final DisplayManager displayManager = (DisplayManager) getApplication().getSystemService(Context.DISPLAY_SERVICE);
+            final Display display = displayManager.getDisplay(Display.DEFAULT_DISPLAY);
+            aspectRatio = AspectRatio.RATIO_4_3;
+            rotation = display != null ? display.getRotation() : Surface.ROTATION_0;
+        }
 
-        // Create a Preview
-        DisplayMetrics displayMetrics = new DisplayMetrics();
-        previewView.getDisplay().getRealMetrics(displayMetrics);
+        analysisRotation = rotation;
+        analysisAspectRatio = aspectRatio;
+        analysisOwner = new WeakReference<>(owner);
+        analysisRebindPending = false;
+        imageAnalysis = buildImageAnalysis(getAnalysisResolution());
 
-        final int aspectRatio = CameraHelper.getAspectRatio(
-                displayMetrics.widthPixels,
-                displayMetrics.heightPixels
-        );
+        final List<UseCase> boundUseCases = new ArrayList<>(3);
+        boundUseCases.add(imageAnalysis);
 
-        final int rotation = previewView.getDisplay().getRotation();
+        cameraPreview = null;
+        if (withPreview) {
+            Preview.Builder previewBuilder = new Preview.Builder()
+                    .setTargetAspectRatio(aspectRatio)
+                    .setTargetRotation(rotation);
 
-        final ImageAnalysis imageAnalysis = new ImageAnalysis.Builder()
-                .setTargetAspectRatio(aspectRatio)
-                .setTargetRotation(rotation)
-                .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST)
-                /*.setTargetResolution(analyzeSize)*/
-                .build();
-        imageAnalysis.setAnalyzer(analyzeExecutor, imageAnalyzer);
+//            setBokehEffect(previewBuilder, cameraSelector);
+
+            cameraPreview = previewBuilder.build();
+            cameraPreview.setSurfaceProvider(previewView.getSurfaceProvider());
+            boundUseCases.add(cameraPreview);
+        }
 
-        Preview.Builder previewBuilder = new Preview.Builder()
-                .setTargetAspectRatio(aspectRatio)
-                .setTargetRotation(rotation);
+        if ((useCases & USE_CASE_IMAGE_CAPTURE) != 0) {
+            ImageCapture imageCapture = new ImageCapture.Builder()
+                    .setCaptureMode(ImageCapture.CAPTURE_MODE_MINIMIZE_LATENCY)
+                    .setTargetRotation(rotation)
+                    .build();
+            boundUseCases.add(imageCapture);
+        }
 
-//        setBokehEffect(previewBuilder, cameraSelector);
+        // Analysis crops to what the view shows, so its crop rect maps onto the view as is.
+        viewPort = previewView != null ? previewView.getViewPort() : null;
+        Log.i(TAG, "startCamera: binding " + boundUseCases.size() + " use cases (" + useCases + "), " + viewPort);
+        final Camera camera = bindUseCases(processCameraProvider, owner, boundUseCases);
+        torchExposureController.setCamera(camera);
+        observeCameraState(camera.getCameraInfo());
+        return camera;
+    }
 
-        cameraPreview = previewBuilder.build();
-        cameraPreview.setSurfaceProvider(previewView.getSurfaceProvider());
+    /**
+     * Moves the torch and zoom observers of the session record to {@code cameraInfo}, {@code null}
+     * to stop observing.
+     */
+    @MainThread
+    private void observeCameraState(@Nullable CameraInfo cameraInfo) {
+        if (sessionRecorder == null || cameraInfo == observedCameraInfo) {
+            return;
+        }
+        if (observedCameraInfo != null) {
+            observedCameraInfo.getTorchState().removeObserver(torchStateObserver);
+            observedCameraInfo.getZoomState().removeObserver(zoomStateObserver);
+        }
+        observedCameraInfo = cameraInfo;
+        if (cameraInfo != null) {
+            cameraInfo.getTorchState().observeForever(torchStateObserver);
+            cameraInfo.getZoomState().observeForever(zoomStateObserver);
+        }
+    }
 
-        ImageCapture imageCapture = new ImageCapture.Builder()
-                .setCaptureMode(ImageCapture.CAPTURE_MODE_MINIMIZE_LATENCY)
-                .build();
+    private void onTorchStateChanged(@Nullable Integer torchState) {
+        if (sessionRecorder != null && torchState != null) {
+            sessionRecorder.onTorchStateChanged(torchState == TorchState.ON);
+        }
+    }
 
-        return processCameraProvider.bindToLifecycle(
-                owner,
-                cameraSelector,
-                cameraPreview,
-                imageCapture,
-                imageAnalysis
-        );
+    private void onZoomStateChanged(@Nullable ZoomState zoomState) {
+        if (sessionRecorder != null && zoomState != null) {
+            sessionRecorder.onZoomRatioChanged(zoomState.getZoomRatio());
+        }
     }
 
-    @Deprecated
+    /**
+     * Builds the analysis use case at {@code sensorSize}, expressed in sensor orientation, or at
+     * the preview aspect ratio when {@code null}.
+     */
+    private ImageAnalysis buildImageAnalysis(@Nullable Size sensorSize) {
+        final ImageAnalysis.Builder builder = new ImageAnalysis.Builder()
+                .setTargetRotation(analysisRotation)
+                .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST);
+        if (sensorSize != null) {
+            builder.setTargetResolution(toTargetResolution(sensorSize, analysisRotation));
+        } else {
+            builder.setTargetAspectRatio(analysisAspectRatio);
+        }
+
+        final ImageAnalysis analysis = builder.build();
+        analysis.setAnalyzer(analyzeExecutor, imageAnalyzer);
+        return analysis;
+    }
+
+    /**
+     * CameraX expects the target resolution in the target rotation's coordinates, while sensor
+     * sizes are landscape.
+     */
+    private static Size toTargetResolution(Size sensorSize, int rotation) {
+        final boolean portrait = rotation == Surface.ROTATION_0 || rotation == Surface.ROTATION_180;
+        return portrait ? new Size(sensorSize.getHeight(), sensorSize.getWidth()) : sensorSize;
+    }
+
+    /**
+     * Returns the tuned resolution limited by the power profile, {@code null} for the default one.
+     */
+    @Nullable
+    private Size getAnalysisResolution() {
+        return resolutionTuner.limitResolution(resolutionTuner.getTunedResolution(),
+                powerProfile.getMaxAnalysisLongSide());
+    }
+
+    /**
+     * Applies the frame rate, decode concurrency, retry preprocessing and analysis resolution of
+     * {@code profile}.
+     */
+    @MainThread
+    private void applyPowerProfile(PowerProfile profile) {
+        final Size previousResolution = getAnalysisResolution();
+        powerProfile = profile;
+        scanMetrics.onPowerProfileChanged(profile);
+
+        if (frameRateLimiter != null) {
+            frameRateLimiter.setMaxFramesPerSecond(profile.getMaxFramesPerSecond());
+        }
+        imageAnalyzer.setMaxDecodesInFlight(profile.getMaxDecodesInFlight());
+        if (preprocessRetryFrames) {
+            final RetryPreprocessor.Variant[] variants = profile.getRetryVariants();
+            imageAnalyzer.setRetryPreprocessor(variants.length > 0 ? new RetryPreprocessor(variants) : null);
+        }
+
+        final Size resolution = getAnalysisResolution();
+        if (!resolutionTuner.isCalibrating()
+                && (resolution == null ? previousResolution != null : !resolution.equals(previousResolution))) {
+            Log.i(TAG, "applyPowerProfile: analysis resolution " + previousResolution + " -> " + resolution);
+            if (imageAnalyzer.isFrozen()) {
+                // Nothing is analyzed, rebinding now would only interrupt the frozen camera.
+                analysisRebindPending = true;
+            } else {
+                rebindImageAnalysisToOwner();
+            }
+        }
+    }
+
+    /**
+     * Rebinds {@link #imageAnalysis} at the current analysis resolution, unless its owner is gone
+     * or destroyed, where binding would throw.
+     */
+    private void rebindImageAnalysisToOwner() {
+        analysisRebindPending = false;
+        final LifecycleOwner owner = analysisOwner.get();
+        if (owner == null || owner.getLifecycle().getCurrentState() == Lifecycle.State.DESTROYED) {
+            return;
+        }
+        rebindImageAnalysis(owner, getAnalysisResolution());
+    }
+
+    private void rebindImageAnalysis(LifecycleOwner owner, @Nullable Size sensorSize) {
+        final ProcessCameraProvider provider = processCameraProvider.getValue();
+        if (provider == null || imageAnalysis == null) {
+            return;
+        }
+        provider.unbind(imageAnalysis);
+        imageAnalysis = buildImageAnalysis(sensorSize);
+        bindUseCases(provider, owner, Collections.singletonList(imageAnalysis));
+    }
+
+    /**
+     * Binds {@code useCases} as one group sharing {@link #viewPort}, or on their own without a
+     * preview view.
+     */
+    @UseExperimental(markerClass = {ExperimentalUseCaseGroup.class, ExperimentalUseCaseGroupLifecycle.class})
+    private Camera bindUseCases(ProcessCameraProvider provider, LifecycleOwner owner, List<UseCase> useCases) {
+        if (viewPort == null) {
+            return provider.bindToLifecycle(owner, cameraSelector, useCases.toArray(new UseCase[0]));
+        }
+        final UseCaseGroup.Builder group = new UseCaseGroup.Builder().setViewPort(viewPort);
+        for (UseCase useCase : useCases) {
+            group.addUseCase(useCase);
+        }
+        return provider.bindToLifecycle(owner, cameraSelector, group.build());
+    }
+
+    public boolean hasTunedAnalysisResolution() {
+        return resolutionTuner.getTunedResolution() != null;
+    }
+
+    /**
+     * Measures every candidate analysis resolution for {@link #CALIBRATION_WINDOW_MS}, then keeps
+     * and stores the best one. Must be called after {@link #startCamera}.
+     *
+     * @return {@code false} if calibration could not start.
+     */
+    @MainThread
+    public boolean calibrateAnalysisResolution(LifecycleOwner owner) {
+        if (imageAnalysis == null || resolutionTuner.isCalibrating() || !resolutionTuner.startCalibration()) {
+            return false;
+        }
+        Log.i(TAG, "calibrateAnalysisResolution: " + resolutionTuner.getCandidates());
+        analysisOwner = new WeakReference<>(owner);
+        runNextCalibrationStep();
+        return true;
+    }
+
+    /**
+     * Binds the next candidate, or the result once every candidate was measured. The owner is only
+     * held weakly between steps and calibration is abandoned once it is destroyed.
+     */
+    private void runNextCalibrationStep() {
+        final LifecycleOwner owner = analysisOwner.get();
+        if (owner == null || owner.getLifecycle().getCurrentState() == Lifecycle.State.DESTROYED) {
+            Log.i(TAG, "calibrateAnalysisResolution: owner gone, abandoned");
+            resolutionTuner.cancelCalibration();
+            return;
+        }
+
+        final Size candidate = resolutionTuner.nextCandidate();
+        if (candidate == null) {
+            final Size tuned = resolutionTuner.finishCalibration();
+            Log.i(TAG, "calibrateAnalysisResolution: tuned to " + tuned);
+            rebindImageAnalysis(owner, getAnalysisResolution());
+            return;
+        }
+
+        rebindImageAnalysis(owner, candidate);
+        mainHandler.postDelayed(this::runNextCalibrationStep, CALIBRATION_WINDOW_MS);
+    }
+
+    /**
+     * Stops analyzing frames while every use case stays bound. Unbinding the preview instead makes
+     * some devices crash, see https://issuetracker.google.com/issues/153891428
+     */
     public void freezeCamera() {
-        final ProcessCameraProvider value = processCameraProvider.getValue();
-        if (value != null) {
-            // TODO: 4/21/21 This make some devices crash. Issue at https://issuetracker.google.com/issues/153891428
-            value.unbind(cameraPreview);
+        imageAnalyzer.freeze();
+    }
+
+    /**
+     * Analyzes again from the next frame on.
+     */
+    public void unFreezeCamera() {
+        if (analysisRebindPending) {
+            rebindImageAnalysisToOwner();
         }
+        imageAnalyzer.resume();
     }
 
+    /**
+     * @deprecated nothing is unbound while frozen anymore, use {@link #unFreezeCamera()}.
+     */
     @Deprecated
     public void unFreezeCamera(LifecycleOwner lifecycleOwner) {
-        final ProcessCameraProvider value = processCameraProvider.getValue();
-        if (value != null && !value.isBound(cameraPreview)) {
-            value.bindToLifecycle(lifecycleOwner, cameraSelector, cameraPreview);
-        }
+        unFreezeCamera();
     }
 
     public void setWorkflowState(WorkflowState state) {
         final WorkflowState value = workflowState.getValue();
         if (value == null || value != state) {
-            workflowState.setValue(state);
+            workflowStates.publish(state);
+        }
+
+        if (state == WorkflowState.DETECTING) {
+            // Back to detecting, so the same barcode may be delivered again.
+            resetDetectedBarcode();
         }
     }
 
+    /**
+     * Forgets the last delivered barcode so {@link #setDetectedBarcodeIfChanged(Barcode)} reports
+     * it again.
+     */
+    public void resetDetectedBarcode() {
+        barcodePool.release(lastDetectedBarcode);
+        lastDetectedBarcode = null;
+    }
+
+    /**
+     * Delivers the barcode, every time it is called.
+     */
     public void setDetectedBarcode(Barcode barcode) {
-        final BarcodeResult barcodeResult = BarcodeResult.fromBarcode(barcode);
-//        final BarcodeResult value = detectedBarcode.getValue();
-//        if (value == null || !value.equals(barcodeResult)) {
-        detectedBarcode.setValue(barcodeResult);
-//        }
+        deliver(barcodePool.acquire(barcode));
+    }
+
+    /**
+     * Delivers the barcode unless it equals the last delivered one, for callers that offer a
+     * barcode on every analyzed frame, e.g. continuous scanning. A repeat is compared from pooled
+     * primitives and no {@link BarcodeResult} is materialized for it.
+     */
+    public void setDetectedBarcodeIfChanged(Barcode barcode) {
+        final PooledBarcode pooledBarcode = barcodePool.acquire(barcode);
+        if (pooledBarcode.equals(lastDetectedBarcode)) {
+            barcodePool.release(pooledBarcode);
+            return;
+        }
+        deliver(pooledBarcode);
+    }
+
+    private void deliver(PooledBarcode pooledBarcode) {
+        barcodePool.release(lastDetectedBarcode);
+        lastDetectedBarcode = pooledBarcode;
+        if (formatStatistics != null) {
+            formatStatistics.record(pooledBarcode.getFormat());
+        }
+        if (sessionRecorder != null) {
+            sessionRecorder.onResult(pooledBarcode.getFormat());
+        }
+        results.publish(pooledBarcode.toBarcodeResult());
+    }
+
+    /**
+     * Returns the image-to-view transform of the analysis frames, to be fed the preview view's
+     * geometry by the UI.
+     */
+    public ImageTransformTracker getImageTransformTracker() {
+        return imageTransformTracker;
+    }
+
+    public ScanMetrics getScanMetrics() {
+        return scanMetrics;
+    }
+
+    /**
+     * Returns the power profile in use, {@link PowerProfile#FULL} when power profiles are not
+     * scheduled.
+     */
+    public PowerProfile getPowerProfile() {
+        return powerProfile;
+    }
+
+    /**
+     * Returns the ROI result cache with its hit and miss counts, {@code null} when disabled.
+     */
+    @Nullable
+    public RoiResultCache<List<Barcode>> getResultCache() {
+        return resultCache;
+    }
+
+    /**
+     * Returns the stream of barcodes found in each analyzed frame, empty lists included.
+     */
+    public ScanEventPublisher<List<Barcode>> getFrameDetectionPublisher() {
+        return frameDetections;
+    }
+
+    /**
+     * Returns the stream of confirmed barcodes, each delivered once until the scanner goes back
+     * to {@link WorkflowState#DETECTING}.
+     */
+    public ScanEventPublisher<BarcodeResult> getResultPublisher() {
+        return results;
+    }
+
+    public ScanEventPublisher<WorkflowState> getWorkflowStatePublisher() {
+        return workflowStates;
     }
 
     public LiveData<Boolean> getPermissionGrantingObservable() {
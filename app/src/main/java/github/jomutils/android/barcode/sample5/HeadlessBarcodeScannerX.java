@@ -0,0 +1,155 @@
+package github.jomutils.android.barcode.sample5;
+
+import android.app.Application;
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.camera.core.Camera;
+import androidx.camera.lifecycle.ProcessCameraProvider;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+import androidx.lifecycle.ViewModelProvider;
+import androidx.lifecycle.ViewModelStore;
+
+import com.google.mlkit.vision.barcode.Barcode;
+
+import java.util.List;
+
+import github.jomutils.android.barcode.ScanMetrics;
+import github.jomutils.android.barcode.WorkflowState;
+
+/**
+ * Analysis-only counterpart of {@link BarcodeScannerX} for scanners that show nothing, e.g. a
+ * kiosk reading through a fixed window. Only {@link androidx.camera.core.ImageAnalysis} is bound,
+ * unless more use cases are selected with {@link #setUseCases(int)}.
+ * <p>
+ * Any {@link LifecycleOwner} works, including a service-scoped one such as
+ * {@code androidx.lifecycle.LifecycleService}. The scanner owns its view model and clears it when
+ * the owner is destroyed. Camera permission must be granted beforehand, there is no UI to ask for it.
+ */
+public class HeadlessBarcodeScannerX {
+
+    private static final String TAG = "HeadlessBarcodeScanner";
+
+    private final ViewModelStore viewModelStore = new ViewModelStore();
+    private final BarcodeScannerXViewModel viewModel;
+    private final LifecycleOwner lifecycleOwner;
+
+    private Camera camera;
+    private int useCases = 0;
+
+    private BarcodeScannerX.ScannerCallback callback;
+    private BarcodeScannerX.WorkflowCallback workflowCallback;
+
+    /**
+     * @param formats an array of {@link Barcode}'s Formats. {@code null} for all formats support.
+     */
+    @MainThread
+    public HeadlessBarcodeScannerX(@NonNull Context context,
+                                   @NonNull LifecycleOwner lifecycleOwner,
+                                   @Nullable int[] formats) {
+        this.lifecycleOwner = lifecycleOwner;
+
+        BarcodeScannerXViewModel.Factory factory = new BarcodeScannerXViewModel.Factory(
+                (Application) context.getApplicationContext(), formats);
+        this.viewModel = new ViewModelProvider(viewModelStore, factory).get(BarcodeScannerXViewModel.class);
+
+        if (!viewModel.allPermissionsGranted()) {
+            Log.w(TAG, "Camera permission is not granted, the scanner will not start");
+        }
+
+        bindToLifecycle();
+    }
+
+    public void setCallback(BarcodeScannerX.ScannerCallback callback) {
+        this.callback = callback;
+    }
+
+    public void setWorkflowCallback(BarcodeScannerX.WorkflowCallback workflowCallback) {
+        this.workflowCallback = workflowCallback;
+    }
+
+    /**
+     * Selects the use cases bound next to image analysis, 0 (the default) for analysis only, e.g.
+     * {@link BarcodeScannerXViewModel#USE_CASE_IMAGE_CAPTURE} to compare frame rate and power with
+     * the full composition. {@link BarcodeScannerXViewModel#USE_CASE_PREVIEW} is not supported as
+     * there is no preview surface. Takes effect the next time the camera starts.
+     */
+    public void setUseCases(int useCases) {
+        this.useCases = useCases;
+    }
+
+    @Nullable
+    public Camera getCamera() {
+        return camera;
+    }
+
+    public ScanMetrics getScanMetrics() {
+        return viewModel.getScanMetrics();
+    }
+
+    private void bindToLifecycle() {
+        viewModel.getWorkflowState().observe(lifecycleOwner, workflowState -> {
+            if (workflowState != null && workflowCallback != null) {
+                workflowCallback.onWorkflowStateChanged(workflowState);
+            }
+        });
+
+        viewModel.getDetectedBarcodeResult().observe(lifecycleOwner, barcodeResult -> {
+            if (barcodeResult != null) {
+                Log.i(TAG, "detectedBarcodeResult: " + barcodeResult);
+                if (callback != null) {
+                    callback.onBarcodeDetectedResult(barcodeResult);
+                }
+            }
+        });
+
+        viewModel.getAllBarcodesObservable().observe(lifecycleOwner, barcodes -> {
+            if (barcodes != null) {
+                onBarcodeProcessing(barcodes);
+            }
+        });
+
+        viewModel.getProcessCameraProvider().observe(lifecycleOwner, processCameraProvider -> {
+            if (processCameraProvider != null) {
+                camera = startCamera(processCameraProvider);
+
+                if (callback != null) {
+                    callback.onCameraStart(camera);
+                }
+            }
+        });
+
+        lifecycleOwner.getLifecycle().addObserver((LifecycleEventObserver) (source, event) -> {
+            if (event == Lifecycle.Event.ON_DESTROY) {
+                Log.i(TAG, "Destroyed: " + viewModel.getScanMetrics());
+                viewModelStore.clear();
+            }
+        });
+    }
+
+    private Camera startCamera(@NonNull ProcessCameraProvider cameraProvider) {
+        if (useCases == 0) {
+            return viewModel.startHeadless(cameraProvider, lifecycleOwner);
+        }
+        return viewModel.startCamera(cameraProvider, lifecycleOwner, null, useCases);
+    }
+
+    /**
+     * Delivers the first barcode of the frame. There is no reticle to aim with, so a barcode that
+     * is still in front of the camera is only delivered once, until a frame without barcodes.
+     */
+    private void onBarcodeProcessing(@NonNull List<Barcode> barcodes) {
+        if (barcodes.isEmpty()) {
+            viewModel.setWorkflowState(WorkflowState.DETECTING);
+            return;
+        }
+
+        viewModel.setWorkflowState(WorkflowState.DETECTED);
+        viewModel.setDetectedBarcodeIfChanged(barcodes.get(0));
+    }
+}
@@ -11,6 +11,7 @@ import com.google.mlkit.vision.barcode.Barcode;
 
 import github.jomutils.android.barcode.R;
 import github.jomutils.android.barcode.camera.GraphicOverlay;
+import github.jomutils.android.barcode.camera.MappedBarcodes;
 
 public final class PreferenceUtils {
     private PreferenceUtils() {
@@ -27,19 +28,67 @@ public final class PreferenceUtils {
         return sharedPreferences.getInt(prefKey, defaultValue);
     }
 
+    private static String getStringPref(Context context, @StringRes int prefKeyId, String defaultValue) {
+        SharedPreferences sharedPreferences = PreferenceManager.getDefaultSharedPreferences(context);
+        String prefKey = context.getString(prefKeyId);
+        return sharedPreferences.getString(prefKey, defaultValue);
+    }
+
     public static float getProgressToMeetBarcodeSizeRequirement(GraphicOverlay overlay, Barcode barcode) {
+        float x = barcode.getBoundingBox() != null ? (float) barcode.getBoundingBox().width() : 0f;
+        return getProgressToMeetBarcodeSizeRequirement(overlay, overlay.translateX(x));
+    }
+
+    /**
+     * Same as {@link #getProgressToMeetBarcodeSizeRequirement(GraphicOverlay, Barcode)} for a
+     * barcode width already in view coordinates, e.g. from {@link MappedBarcodes#getWidth(int)}.
+     */
+    public static float getProgressToMeetBarcodeSizeRequirement(GraphicOverlay overlay, float barcodeWidth) {
         Context context = overlay.getContext();
         if (getBooleanPref(context, R.string.pref_key_enable_barcode_size_check, false)) {
-            float reticleBoxWidth = getBarcodeReticleBox(overlay).width();
-            float x = barcode.getBoundingBox() != null ? (float) barcode.getBoundingBox().width() : 0f;
-            float barcodeWidth = overlay.translateX(x);
-            float requiredWidth = reticleBoxWidth * getIntPref(context, R.string.pref_key_minimum_barcode_width, 50) / 100;
+            float requiredWidth = getRequiredBarcodeWidth(overlay);
             return coerceAtMost(barcodeWidth / requiredWidth, 1f);
         } else {
             return 1f;
         }
     }
 
+    /**
+     * Returns the barcode width divided by the minimum width, not capped at 1, regardless of
+     * whether the size check is enabled.
+     */
+    public static float getBarcodeWidthProgress(GraphicOverlay overlay, Barcode barcode) {
+        if (barcode.getBoundingBox() == null) {
+            return 0f;
+        }
+        return getBarcodeWidthProgress(overlay, overlay.translateX(barcode.getBoundingBox().width()));
+    }
+
+    /**
+     * Same as {@link #getBarcodeWidthProgress(GraphicOverlay, Barcode)} for a barcode width
+     * already in view coordinates.
+     */
+    public static float getBarcodeWidthProgress(GraphicOverlay overlay, float barcodeWidth) {
+        float requiredWidth = getRequiredBarcodeWidth(overlay);
+        return requiredWidth > 0 ? barcodeWidth / requiredWidth : 0f;
+    }
+
+    /**
+     * Returns the minimum barcode width in view coordinates, the width of
+     * {@link #getBarcodeReticleBox(GraphicOverlay)} without allocating it.
+     */
+    private static float getRequiredBarcodeWidth(GraphicOverlay overlay) {
+        Context context = overlay.getContext();
+        return overlay.getWidth() * getBarcodeReticleWidthFraction(context) * getMinimumBarcodeWidthFraction(context);
+    }
+
+    /**
+     * Returns the minimum barcode width relative to the reticle width.
+     */
+    public static float getMinimumBarcodeWidthFraction(Context context) {
+        return getIntPref(context, R.string.pref_key_minimum_barcode_width, 50) / 100f;
+    }
+
     private static float coerceAtMost(float val, final float max) {
         final float max1 = Math.max(val, max);
         return Math.min(max, max1);
@@ -49,13 +98,27 @@ public final class PreferenceUtils {
         Context context = overlay.getContext();
         float overlayWidth = (float) overlay.getWidth();
         float overlayHeight = (float) overlay.getHeight();
-        float boxWidth = overlayWidth * getIntPref(context, R.string.pref_key_barcode_reticle_width, 80) / 100;
-        float boxHeight = overlayHeight * getIntPref(context, R.string.pref_key_barcode_reticle_height, 35) / 100;
+        float boxWidth = overlayWidth * getBarcodeReticleWidthFraction(context);
+        float boxHeight = overlayHeight * getBarcodeReticleHeightFraction(context);
         float cx = overlayWidth / 2;
         float cy = overlayHeight / 2;
         return new RectF(cx - boxWidth / 2, cy - boxHeight / 2, cx + boxWidth / 2, cy + boxHeight / 2);
     }
 
+    /**
+     * Returns the reticle width relative to the camera view width.
+     */
+    public static float getBarcodeReticleWidthFraction(Context context) {
+        return getIntPref(context, R.string.pref_key_barcode_reticle_width, 80) / 100f;
+    }
+
+    /**
+     * Returns the reticle height relative to the camera view height.
+     */
+    public static float getBarcodeReticleHeightFraction(Context context) {
+        return getIntPref(context, R.string.pref_key_barcode_reticle_height, 35) / 100f;
+    }
+
     public static boolean shouldDelayLoadingBarcodeResult(Context context) {
         return getBooleanPref(context, R.string.pref_key_delay_loading_barcode_result, true);
     }
@@ -63,4 +126,57 @@ public final class PreferenceUtils {
     public static boolean getCheckBarcodeInCenter(Context context) {
         return getBooleanPref(context, R.string.pref_key_enable_barcode_center_screen, false);
     }
+
+    public static boolean shouldAutoTuneAnalysisResolution(Context context) {
+        return getBooleanPref(context, R.string.pref_key_auto_tune_analysis_resolution, false);
+    }
+
+    public static boolean shouldAutoAdjustTorchAndExposure(Context context) {
+        return getBooleanPref(context, R.string.pref_key_auto_torch_exposure, false);
+    }
+
+    public static boolean shouldAutoZoom(Context context) {
+        return getBooleanPref(context, R.string.pref_key_auto_zoom, false);
+    }
+
+    public static boolean shouldPreprocessRetryFrames(Context context) {
+        return getBooleanPref(context, R.string.pref_key_preprocess_retry_frames, false);
+    }
+
+    public static boolean shouldSkipBlurredFrames(Context context) {
+        return getBooleanPref(context, R.string.pref_key_skip_blurred_frames, false);
+    }
+
+    public static boolean shouldSkipUnchangedFrames(Context context) {
+        return getBooleanPref(context, R.string.pref_key_skip_unchanged_frames, false);
+    }
+
+    public static boolean shouldCacheRoiResults(Context context) {
+        return getBooleanPref(context, R.string.pref_key_cache_roi_results, false);
+    }
+
+    public static boolean shouldPrioritizeFormats(Context context) {
+        return getBooleanPref(context, R.string.pref_key_prioritize_formats, false);
+    }
+
+    /**
+     * Returns the site whose format statistics are used, e.g. a warehouse or a till.
+     */
+    public static String getScanSiteId(Context context) {
+        final String defaultSiteId = context.getString(R.string.pref_default_scan_site_id);
+        final String siteId = getStringPref(context, R.string.pref_key_scan_site_id, defaultSiteId);
+        return siteId == null || siteId.trim().isEmpty() ? defaultSiteId : siteId.trim();
+    }
+
+    public static boolean shouldSchedulePowerProfiles(Context context) {
+        return getBooleanPref(context, R.string.pref_key_schedule_power_profiles, false);
+    }
+
+    public static boolean shouldOutlineAllBarcodes(Context context) {
+        return getBooleanPref(context, R.string.pref_key_outline_all_barcodes, false);
+    }
+
+    public static boolean shouldLogScanSessions(Context context) {
+        return getBooleanPref(context, R.string.pref_key_log_scan_sessions, false);
+    }
 }
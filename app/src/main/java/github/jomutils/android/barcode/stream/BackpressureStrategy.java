@@ -0,0 +1,21 @@
+package github.jomutils.android.barcode.stream;
+
+/**
+ * What a subscription of {@link ScanEventPublisher} does with events its subscriber has not
+ * requested yet.
+ */
+public enum BackpressureStrategy {
+    /**
+     * Queues every event. When the queue is full the subscription fails with
+     * {@link MissingBackpressureException} and is cancelled.
+     */
+    BUFFER,
+    /**
+     * Queues events and drops the oldest one when the queue is full.
+     */
+    DROP_OLDEST,
+    /**
+     * Keeps only the newest event, for subscribers interested in the current value only.
+     */
+    LATEST
+}
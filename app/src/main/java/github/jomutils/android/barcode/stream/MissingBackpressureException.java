@@ -0,0 +1,12 @@
+package github.jomutils.android.barcode.stream;
+
+/**
+ * Signalled to a {@link BackpressureStrategy#BUFFER} subscriber that fell so far behind that its
+ * queue overflowed.
+ */
+public class MissingBackpressureException extends RuntimeException {
+
+    public MissingBackpressureException(String message) {
+        super(message);
+    }
+}
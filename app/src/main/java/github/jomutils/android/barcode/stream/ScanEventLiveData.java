@@ -0,0 +1,73 @@
+package github.jomutils.android.barcode.stream;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.lifecycle.LiveData;
+
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+/**
+ * {@link LiveData} view of a {@link ScanEventPublisher}, holding its latest event.
+ * <p>
+ * It subscribes once, for the lifetime of the publisher, so the value is kept up to date while no
+ * observer is active, as with a {@link androidx.lifecycle.MutableLiveData} set by the scanner.
+ * Events published on the main thread are set synchronously, others are posted.
+ * <p>
+ * An observer throwing from {@link #setValue(Object)} is rethrown on the main looper, so it crashes
+ * as it would with a {@link androidx.lifecycle.MutableLiveData}, instead of reaching the publisher,
+ * which would cancel the subscription and leave this value stale for the rest of the session.
+ */
+public class ScanEventLiveData<T> extends LiveData<T> {
+
+    private static final String TAG = "ScanEventLiveData";
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    public ScanEventLiveData(@NonNull ScanEventPublisher<T> publisher) {
+        super();
+        subscribe(publisher);
+    }
+
+    public ScanEventLiveData(@NonNull ScanEventPublisher<T> publisher, @Nullable T initialValue) {
+        super(initialValue);
+        subscribe(publisher);
+    }
+
+    private void subscribe(ScanEventPublisher<T> publisher) {
+        publisher.subscribe(new Subscriber<T>() {
+            @Override
+            public void onSubscribe(Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(T event) {
+                if (Looper.myLooper() == Looper.getMainLooper()) {
+                    try {
+                        setValue(event);
+                    } catch (RuntimeException e) {
+                        mainHandler.post(() -> {
+                            throw e;
+                        });
+                    }
+                } else {
+                    postValue(event);
+                }
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                Log.e(TAG, "onError: ", throwable);
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        }, Runnable::run, BackpressureStrategy.LATEST);
+    }
+}
@@ -0,0 +1,285 @@
+package github.jomutils.android.barcode.stream;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A hot {@link Publisher} of scan events: subscribers receive the events published after they
+ * subscribed, until {@link #complete()}.
+ * <p>
+ * Each subscriber chooses the {@link Executor} its signals run on and a
+ * {@link BackpressureStrategy} for the events it has not requested yet. Signals to one subscriber
+ * are serialized even on a multi-threaded executor, and {@link #publish(Object)} never blocks on a
+ * subscriber, so a slow background pipeline cannot stall the scanner.
+ *
+ * @param <T> the event type
+ */
+public class ScanEventPublisher<T> implements Publisher<T> {
+
+    public static final int DEFAULT_CAPACITY = 128;
+
+    private static final String TAG = "ScanEventPublisher";
+
+    private static final Executor DIRECT_EXECUTOR = Runnable::run;
+
+    private final CopyOnWriteArrayList<EventSubscription<T>> subscriptions = new CopyOnWriteArrayList<>();
+    private volatile boolean completed;
+
+    /**
+     * Subscribes with {@link BackpressureStrategy#BUFFER} of {@link #DEFAULT_CAPACITY} events,
+     * signalled on the publishing thread.
+     */
+    @Override
+    public void subscribe(Subscriber<? super T> subscriber) {
+        subscribe(subscriber, DIRECT_EXECUTOR, BackpressureStrategy.BUFFER, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Subscribes with a queue of {@link #DEFAULT_CAPACITY} events.
+     */
+    public void subscribe(@NonNull Subscriber<? super T> subscriber,
+                          @NonNull Executor executor,
+                          @NonNull BackpressureStrategy strategy) {
+        subscribe(subscriber, executor, strategy, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param executor runs every signal to {@code subscriber}, {@code onSubscribe} included
+     * @param capacity size of the queue of unrequested events, ignored for
+     *                 {@link BackpressureStrategy#LATEST}
+     */
+    public void subscribe(@NonNull Subscriber<? super T> subscriber,
+                          @NonNull Executor executor,
+                          @NonNull BackpressureStrategy strategy,
+                          int capacity) {
+        if (subscriber == null) {
+            throw new NullPointerException("subscriber == null");
+        }
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity < 1: " + capacity);
+        }
+
+        final EventSubscription<T> subscription = new EventSubscription<>(this, subscriber, executor,
+                strategy, strategy == BackpressureStrategy.LATEST ? 1 : capacity);
+        subscriptions.add(subscription);
+        if (completed) {
+            subscription.complete();
+        }
+        subscription.drain();
+    }
+
+    /**
+     * Offers {@code event} to every current subscriber. Ignored after {@link #complete()}.
+     */
+    public void publish(@NonNull T event) {
+        if (event == null) {
+            throw new NullPointerException("event == null");
+        }
+        if (completed) {
+            return;
+        }
+        for (EventSubscription<T> subscription : subscriptions) {
+            subscription.offer(event);
+        }
+    }
+
+    /**
+     * Completes every subscriber once it has received its queued events. Later subscribers are
+     * completed right away.
+     */
+    public void complete() {
+        completed = true;
+        for (EventSubscription<T> subscription : subscriptions) {
+            subscription.complete();
+        }
+    }
+
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    // Classes
+    ///////////////////////////////////////////////////////////////////////////
+
+    private static final class EventSubscription<T> implements Subscription, Runnable {
+
+        private final ScanEventPublisher<T> publisher;
+        private final Subscriber<? super T> subscriber;
+        private final Executor executor;
+        private final BackpressureStrategy strategy;
+        private final int capacity;
+
+        private final ArrayDeque<T> queue = new ArrayDeque<>();
+        private final AtomicLong requested = new AtomicLong();
+        /**
+         * Drain requests not handled yet; the one bringing it up from 0 schedules the drain loop.
+         */
+        private final AtomicInteger pendingDrains = new AtomicInteger();
+        private volatile boolean cancelled;
+        // Guarded by queue.
+        private boolean done;
+        private Throwable error;
+        // Only touched by the drain loop.
+        private boolean subscribed;
+
+        EventSubscription(ScanEventPublisher<T> publisher, Subscriber<? super T> subscriber,
+                          Executor executor, BackpressureStrategy strategy, int capacity) {
+            this.publisher = publisher;
+            this.subscriber = subscriber;
+            this.executor = executor;
+            this.strategy = strategy;
+            this.capacity = capacity;
+        }
+
+        void offer(T event) {
+            synchronized (queue) {
+                if (done || cancelled) {
+                    return;
+                }
+                if (queue.size() >= capacity) {
+                    if (strategy == BackpressureStrategy.BUFFER) {
+                        fail(new MissingBackpressureException(
+                                "Subscriber did not keep up, " + capacity + " events queued"));
+                    } else {
+                        queue.poll();
+                        queue.offer(event);
+                    }
+                } else {
+                    queue.offer(event);
+                }
+            }
+            drain();
+        }
+
+        void complete() {
+            synchronized (queue) {
+                done = true;
+            }
+            drain();
+        }
+
+        /**
+         * Must hold the queue lock.
+         */
+        private void fail(Throwable throwable) {
+            if (!done) {
+                done = true;
+                error = throwable;
+                queue.clear();
+            }
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                synchronized (queue) {
+                    fail(new IllegalArgumentException("Non-positive request: " + n));
+                }
+            } else {
+                long current;
+                long next;
+                do {
+                    current = requested.get();
+                    next = current + n < 0 ? Long.MAX_VALUE : current + n;
+                } while (!requested.compareAndSet(current, next));
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            publisher.subscriptions.remove(this);
+            synchronized (queue) {
+                queue.clear();
+            }
+        }
+
+        void drain() {
+            if (pendingDrains.getAndIncrement() != 0) {
+                return;
+            }
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                cancel();
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                drainLoop();
+            } catch (RuntimeException e) {
+                // A subscriber throwing from a signal counts as cancelled (rule 2.13). Rethrowing
+                // would only reach the executor, or the scanner publishing on a direct executor.
+                cancel();
+                Log.w(TAG, "Subscriber " + subscriber + " threw, cancelled", e);
+            }
+        }
+
+        private void drainLoop() {
+            int missed = 1;
+            while (true) {
+                if (!subscribed) {
+                    subscribed = true;
+                    subscriber.onSubscribe(this);
+                }
+
+                final long wanted = requested.get();
+                long emitted = 0;
+                while (emitted != wanted && !cancelled) {
+                    final T event;
+                    synchronized (queue) {
+                        event = queue.poll();
+                    }
+                    if (event == null) {
+                        break;
+                    }
+                    subscriber.onNext(event);
+                    emitted++;
+                }
+                if (emitted != 0 && wanted != Long.MAX_VALUE) {
+                    requested.addAndGet(-emitted);
+                }
+                if (cancelled) {
+                    return;
+                }
+
+                final boolean terminated;
+                final Throwable terminalError;
+                synchronized (queue) {
+                    terminated = done && queue.isEmpty();
+                    terminalError = error;
+                }
+                if (terminated) {
+                    cancel();
+                    if (terminalError != null) {
+                        subscriber.onError(terminalError);
+                    } else {
+                        subscriber.onComplete();
+                    }
+                    return;
+                }
+
+                missed = pendingDrains.addAndGet(-missed);
+                if (missed == 0) {
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -5,9 +5,13 @@ import android.graphics.Canvas;
 import android.graphics.Matrix;
 import android.util.AttributeSet;
 
+import androidx.annotation.Nullable;
+
 import com.google.firebase.components.Preconditions;
 
 import github.jomutils.android.barcode.camera.GraphicOverlay;
+import github.jomutils.android.barcode.camera.ImageTransform;
+import github.jomutils.android.barcode.camera.ImageTransformTracker;
 
 /**
  * A view which renders a series of custom graphics to be overlayed on top of an associated preview
@@ -45,6 +49,10 @@ public class GoogleGraphicOverlay extends GraphicOverlay {
     private float postScaleHeightOffset;
     private boolean isImageFlipped;
     private boolean needUpdateTransformation = true;
+    @Nullable
+    private ImageTransformTracker imageTransformTracker;
+    @Nullable
+    private ImageTransform appliedTransform;
 
     public GoogleGraphicOverlay(Context context, AttributeSet attrs) {
         super(context, attrs);
@@ -84,6 +92,18 @@ public class GoogleGraphicOverlay extends GraphicOverlay {
         return scale(y) - postScaleHeightOffset;
     }
 
+    /**
+     * Maps the points in one pass through {@link #getTransformationMatrix()}, brought up to date
+     * with the current image source and view size first.
+     */
+    @Override
+    public void mapPoints(float[] points, int pointCount) {
+        synchronized (lock) {
+            updateTransformationIfNeeded();
+            transformationMatrix.mapPoints(points, 0, points, 0, pointCount);
+        }
+    }
+
     /**
      * Returns a {@link Matrix} for transforming from image coordinates to overlay view coordinates.
      */
@@ -122,6 +142,21 @@ public class GoogleGraphicOverlay extends GraphicOverlay {
         postInvalidate();
     }
 
+    /**
+     * Takes the transformation from {@code tracker}, derived from the analysis frames and the
+     * preview view, instead of {@link #setImageSourceInfo(int, int, boolean)}. The overlay is
+     * expected to cover the preview view exactly. {@code null} to go back to the image source
+     * info.
+     */
+    public void setImageTransformTracker(@Nullable ImageTransformTracker tracker) {
+        synchronized (lock) {
+            imageTransformTracker = tracker;
+            appliedTransform = null;
+            needUpdateTransformation = true;
+        }
+        postInvalidate();
+    }
+
     public int getImageWidth() {
         return imageWidth;
     }
@@ -131,6 +166,14 @@ public class GoogleGraphicOverlay extends GraphicOverlay {
     }
 
     private void updateTransformationIfNeeded() {
+        final ImageTransform transform = imageTransformTracker != null ? imageTransformTracker.get() : null;
+        if (transform != null && transform.hasView()) {
+            if (transform != appliedTransform) {
+                applyTransform(transform);
+            }
+            return;
+        }
+
         if (!needUpdateTransformation || imageWidth <= 0 || imageHeight <= 0) {
             return;
         }
@@ -159,6 +202,18 @@ public class GoogleGraphicOverlay extends GraphicOverlay {
         needUpdateTransformation = false;
     }
 
+    private void applyTransform(ImageTransform transform) {
+        imageWidth = transform.getImageWidth();
+        imageHeight = transform.getImageHeight();
+        isImageFlipped = transform.isFlipped();
+        scaleFactor = transform.getScale();
+        postScaleWidthOffset = transform.getPostScaleOffsetX();
+        postScaleHeightOffset = transform.getPostScaleOffsetY();
+        transform.getImageToViewMatrix(transformationMatrix);
+        appliedTransform = transform;
+        needUpdateTransformation = false;
+    }
+
     /**
      * Draws the overlay with its associated graphic objects.
      */
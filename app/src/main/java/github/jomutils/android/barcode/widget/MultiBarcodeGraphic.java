@@ -0,0 +1,268 @@
+package github.jomutils.android.barcode.widget;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.FrameMetrics;
+import android.view.Window;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
+import androidx.core.content.ContextCompat;
+
+import com.google.mlkit.vision.barcode.Barcode;
+
+import java.util.HashMap;
+import java.util.List;
+
+import github.jomutils.android.barcode.R;
+import github.jomutils.android.barcode.camera.GraphicOverlay;
+import github.jomutils.android.barcode.camera.MappedBarcodes;
+
+/**
+ * Outlines and labels every barcode of a frame, for labels and pallets carrying many codes.
+ * <p>
+ * Keep one instance and call {@link #update(MappedBarcodes, List)} every frame: all corner polygons
+ * go into one reused {@link Path} and all label backgrounds into another, so a frame costs two
+ * {@code drawPath} calls plus one {@code drawText} per label. Label strings are shortened and
+ * measured once and kept in a fixed-size cache. When drawing takes longer than
+ * {@link #DRAW_BUDGET_NANOS}, fewer labels are drawn on the following frames, outlines are always
+ * drawn.
+ * <p>
+ * On a software canvas, such as an overlay with a software layer, {@link #draw(Canvas)} rasterizes
+ * and is timed directly. On a hardware accelerated canvas it only records a display list, rendered
+ * later on the render thread, so the time is read from the frame metrics of the window passed to
+ * {@link #attachFrameMetrics(Window)} instead, and not measured at all without one.
+ */
+public class MultiBarcodeGraphic extends GraphicOverlay.Graphic {
+
+    private static final String TAG = "MultiBarcodeGraphic";
+
+    private static final int MAX_LABEL_CHARS = 24;
+    private static final String ELLIPSIS = "\u2026";
+    private static final int LABEL_CACHE_SIZE = 128;
+    private static final int MAX_LABELS = 64;
+    private static final int MIN_LABELS = 8;
+    private static final long DRAW_BUDGET_NANOS = 4_000_000;
+
+    private final Paint outlinePaint;
+    private final Paint labelBackgroundPaint;
+    private final Paint labelPaint;
+    private final float labelPadding;
+    private final float labelHeight;
+    private final float labelBaseline;
+
+    private final Path outlines = new Path();
+    private final Path labelBackgrounds = new Path();
+
+    // Labels of the current frame.
+    private final String[] labelTexts = new String[MAX_LABELS];
+    private final float[] labelX = new float[MAX_LABELS];
+    private final float[] labelY = new float[MAX_LABELS];
+    private int labelCount;
+    private int labelLimit = MAX_LABELS;
+
+    // Label cache, a ring of shortened texts and widths indexed by the original text.
+    private final HashMap<String, Integer> cacheIndex = new HashMap<>(LABEL_CACHE_SIZE * 2);
+    private final String[] cacheKeys = new String[LABEL_CACHE_SIZE];
+    private final String[] cacheTexts = new String[LABEL_CACHE_SIZE];
+    private final float[] cacheWidths = new float[LABEL_CACHE_SIZE];
+    private int nextCacheSlot;
+
+    private long lastDrawNanos;
+    /**
+     * Whether a hardware accelerated draw is waiting for the frame metrics of its frame.
+     */
+    private boolean awaitingFrameMetrics;
+    @Nullable
+    private Window frameMetricsWindow;
+    @Nullable
+    private Window.OnFrameMetricsAvailableListener frameMetricsListener;
+
+    public MultiBarcodeGraphic(GraphicOverlay overlay) {
+        super(overlay);
+        outlinePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        outlinePaint.setColor(ContextCompat.getColor(getContext(), R.color.barcode_outline_stroke));
+        outlinePaint.setStyle(Paint.Style.STROKE);
+        outlinePaint.setStrokeWidth(getContext().getResources().getDimension(R.dimen.barcode_outline_stroke_width));
+
+        labelBackgroundPaint = new Paint();
+        labelBackgroundPaint.setColor(ContextCompat.getColor(getContext(), R.color.barcode_label_background));
+        labelBackgroundPaint.setStyle(Paint.Style.FILL);
+
+        labelPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        labelPaint.setColor(Color.WHITE);
+        labelPaint.setTextSize(getContext().getResources().getDimension(R.dimen.barcode_label_text_size));
+
+        labelPadding = getContext().getResources().getDimension(R.dimen.barcode_label_padding);
+        final Paint.FontMetrics metrics = labelPaint.getFontMetrics();
+        labelHeight = metrics.descent - metrics.ascent + labelPadding * 2;
+        labelBaseline = labelPadding - metrics.ascent;
+    }
+
+    /**
+     * Rebuilds the outlines and labels from a frame already mapped into view coordinates.
+     *
+     * @param barcodes the list {@code mappedBarcodes} was mapped from, for the label texts
+     */
+    @MainThread
+    public void update(@NonNull MappedBarcodes mappedBarcodes, @NonNull List<Barcode> barcodes) {
+        outlines.rewind();
+        labelBackgrounds.rewind();
+        labelCount = 0;
+
+        final int size = mappedBarcodes.size();
+        for (int i = 0; i < size; i++) {
+            if (mappedBarcodes.hasCorners(i)) {
+                outlines.moveTo(mappedBarcodes.getCornerX(i, 0), mappedBarcodes.getCornerY(i, 0));
+                for (int c = 1; c < 4; c++) {
+                    outlines.lineTo(mappedBarcodes.getCornerX(i, c), mappedBarcodes.getCornerY(i, c));
+                }
+                outlines.close();
+            } else if (mappedBarcodes.hasBox(i)) {
+                outlines.addRect(mappedBarcodes.getLeft(i), mappedBarcodes.getTop(i),
+                        mappedBarcodes.getRight(i), mappedBarcodes.getBottom(i), Path.Direction.CW);
+            } else {
+                continue;
+            }
+
+            final String value = barcodes.get(i).getDisplayValue();
+            if (value == null || value.isEmpty() || labelCount >= labelLimit) {
+                continue;
+            }
+            final int slot = getCacheSlot(value);
+            final float width = cacheWidths[slot] + labelPadding * 2;
+            // Centered under the box.
+            final float left = mappedBarcodes.getCenterX(i) - width / 2f;
+            final float top = mappedBarcodes.getBottom(i) + labelPadding;
+            labelBackgrounds.addRect(left, top, left + width, top + labelHeight, Path.Direction.CW);
+            labelTexts[labelCount] = cacheTexts[slot];
+            labelX[labelCount] = left + labelPadding;
+            labelY[labelCount] = top + labelBaseline;
+            labelCount++;
+        }
+        // Drop references to the previous frame's texts.
+        for (int i = labelCount; i < labelTexts.length && labelTexts[i] != null; i++) {
+            labelTexts[i] = null;
+        }
+    }
+
+    /**
+     * Returns the cache slot holding the shortened and measured {@code value}, filling the oldest
+     * slot on a miss.
+     */
+    private int getCacheSlot(String value) {
+        final Integer cached = cacheIndex.get(value);
+        if (cached != null) {
+            return cached;
+        }
+
+        final int slot = nextCacheSlot;
+        nextCacheSlot = (nextCacheSlot + 1) % LABEL_CACHE_SIZE;
+        if (cacheKeys[slot] != null) {
+            cacheIndex.remove(cacheKeys[slot]);
+        }
+        final String text = value.length() > MAX_LABEL_CHARS
+                ? value.substring(0, MAX_LABEL_CHARS - 1) + ELLIPSIS
+                : value;
+        cacheKeys[slot] = value;
+        cacheTexts[slot] = text;
+        cacheWidths[slot] = labelPaint.measureText(text);
+        cacheIndex.put(value, slot);
+        return slot;
+    }
+
+    @Override
+    public void draw(Canvas canvas) {
+        final boolean hardwareAccelerated = canvas.isHardwareAccelerated();
+        final long start = SystemClock.elapsedRealtimeNanos();
+
+        canvas.drawPath(outlines, outlinePaint);
+        canvas.drawPath(labelBackgrounds, labelBackgroundPaint);
+        for (int i = 0; i < labelCount; i++) {
+            canvas.drawText(labelTexts[i], labelX[i], labelY[i], labelPaint);
+        }
+
+        if (hardwareAccelerated) {
+            // Nothing was rendered yet, the frame metrics of this frame tell how long it took.
+            awaitingFrameMetrics = true;
+        } else {
+            onDrawMeasured(SystemClock.elapsedRealtimeNanos() - start);
+        }
+    }
+
+    /**
+     * Measures hardware accelerated draws with the frame metrics of {@code window}, the window the
+     * overlay is in. The metrics cover the whole window's frame, which is what the budget is for.
+     * Does nothing before API 24, which has no frame metrics.
+     */
+    @MainThread
+    public void attachFrameMetrics(@NonNull Window window) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.N || frameMetricsWindow != null) {
+            return;
+        }
+        frameMetricsWindow = window;
+        frameMetricsListener = (w, frameMetrics, dropCount) -> onFrameMetrics(frameMetrics);
+        window.addOnFrameMetricsAvailableListener(frameMetricsListener, new Handler(Looper.getMainLooper()));
+    }
+
+    @MainThread
+    public void detachFrameMetrics() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.N || frameMetricsWindow == null) {
+            return;
+        }
+        frameMetricsWindow.removeOnFrameMetricsAvailableListener(frameMetricsListener);
+        frameMetricsWindow = null;
+        frameMetricsListener = null;
+        awaitingFrameMetrics = false;
+    }
+
+    @RequiresApi(Build.VERSION_CODES.N)
+    private void onFrameMetrics(FrameMetrics frameMetrics) {
+        if (!awaitingFrameMetrics) {
+            // A frame without this graphic.
+            return;
+        }
+        awaitingFrameMetrics = false;
+        // Recording, syncing the display list and issuing it to the GPU.
+        onDrawMeasured(frameMetrics.getMetric(FrameMetrics.DRAW_DURATION)
+                + frameMetrics.getMetric(FrameMetrics.SYNC_DURATION)
+                + frameMetrics.getMetric(FrameMetrics.COMMAND_ISSUE_DURATION));
+    }
+
+    private void onDrawMeasured(long nanos) {
+        lastDrawNanos = nanos;
+        final int previousLimit = labelLimit;
+        if (nanos > DRAW_BUDGET_NANOS) {
+            labelLimit = Math.max(MIN_LABELS, labelLimit / 2);
+        } else if (nanos < DRAW_BUDGET_NANOS / 2 && labelLimit < MAX_LABELS) {
+            labelLimit++;
+        }
+        if (labelLimit < previousLimit) {
+            Log.d(TAG, "Drawing " + labelCount + " labels took " + nanos / 1000 + " us, limit now " + labelLimit);
+        }
+    }
+
+    /**
+     * Returns how long the last measured draw took, see the class documentation for what is
+     * measured.
+     */
+    public long getLastDrawNanos() {
+        return lastDrawNanos;
+    }
+
+    /**
+     * Returns how many labels are drawn at most per frame, lowered while over budget.
+     */
+    public int getLabelLimit() {
+        return labelLimit;
+    }
+}
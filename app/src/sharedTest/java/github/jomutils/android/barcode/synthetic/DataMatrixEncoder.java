@@ -0,0 +1,258 @@
+package github.jomutils.android.barcode.synthetic;
+
+import java.nio.charset.Charset;
+
+/**
+ * Encodes text as a square ECC 200 Data Matrix in ASCII encodation, digit pairs compacted, in the
+ * smallest single-block size that fits (up to 48x48).
+ */
+final class DataMatrixEncoder {
+
+    private DataMatrixEncoder() {
+        //no instance
+    }
+
+    /**
+     * Per size: symbol size, data region size, data codewords, error correction codewords.
+     */
+    private static final int[][] SIZES = {
+            {10, 8, 3, 5}, {12, 10, 5, 7}, {14, 12, 8, 10}, {16, 14, 12, 12}, {18, 16, 18, 14},
+            {20, 18, 22, 18}, {22, 20, 30, 20}, {24, 22, 36, 24}, {26, 24, 44, 28},
+            {32, 14, 62, 36}, {36, 16, 86, 42}, {40, 18, 114, 48}, {44, 20, 144, 56}, {48, 22, 174, 68},
+    };
+
+    private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+
+    private static final int PAD = 129;
+    private static final int UPPER_SHIFT = 235;
+
+    static Symbol encode(String content) {
+        final int[] data = encodeAscii(content.getBytes(ISO_8859_1));
+
+        int[] size = null;
+        for (int[] candidate : SIZES) {
+            if (candidate[2] >= data.length) {
+                size = candidate;
+                break;
+            }
+        }
+        if (size == null) {
+            throw new IllegalArgumentException("Too long for Data Matrix 48x48: " + content);
+        }
+
+        final int[] codewords = getCodewords(data, size[2], size[3]);
+        final int regionSize = size[1];
+        final int regions = size[0] / (regionSize + 2);
+        final boolean[][] mapping = place(codewords, regions * regionSize, regions * regionSize);
+
+        final int symbolSize = size[0];
+        final boolean[][] modules = new boolean[symbolSize][symbolSize];
+        for (int y = 0; y < symbolSize; y++) {
+            final int ry = y % (regionSize + 2);
+            for (int x = 0; x < symbolSize; x++) {
+                final int rx = x % (regionSize + 2);
+                if (rx == 0 || ry == regionSize + 1) {
+                    // Solid left and bottom edges of the finder.
+                    modules[y][x] = true;
+                } else if (ry == 0) {
+                    modules[y][x] = x % 2 == 0;
+                } else if (rx == regionSize + 1) {
+                    modules[y][x] = y % 2 == 1;
+                } else {
+                    modules[y][x] = mapping[(y / (regionSize + 2)) * regionSize + ry - 1]
+                            [(x / (regionSize + 2)) * regionSize + rx - 1];
+                }
+            }
+        }
+        return new Symbol(Symbology.DATA_MATRIX, modules);
+    }
+
+    static int[] encodeAscii(byte[] bytes) {
+        final int[] out = new int[bytes.length * 2];
+        int length = 0;
+        for (int i = 0; i < bytes.length; i++) {
+            final int c = bytes[i] & 0xFF;
+            if (isDigit(c) && i + 1 < bytes.length && isDigit(bytes[i + 1] & 0xFF)) {
+                out[length++] = 130 + (c - '0') * 10 + (bytes[i + 1] - '0');
+                i++;
+            } else if (c > 127) {
+                out[length++] = UPPER_SHIFT;
+                out[length++] = c - 127;
+            } else {
+                out[length++] = c + 1;
+            }
+        }
+        final int[] data = new int[length];
+        System.arraycopy(out, 0, data, 0, length);
+        return data;
+    }
+
+    private static boolean isDigit(int c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * Pads {@code data} to {@code dataCount} codewords and appends the error correction.
+     */
+    static int[] getCodewords(int[] data, int dataCount, int ecCount) {
+        final int[] codewords = new int[dataCount + ecCount];
+        System.arraycopy(data, 0, codewords, 0, data.length);
+        for (int i = data.length; i < dataCount; i++) {
+            if (i == data.length) {
+                codewords[i] = PAD;
+            } else {
+                // 253-state randomization of the pads after the first, position being 1-based.
+                final int pad = PAD + (149 * (i + 1)) % 253 + 1;
+                codewords[i] = pad <= 254 ? pad : pad - 254;
+            }
+        }
+        final int[] ec = ReedSolomon.DATA_MATRIX.encode(codewords, 0, dataCount, ecCount);
+        System.arraycopy(ec, 0, codewords, dataCount, ecCount);
+        return codewords;
+    }
+
+    /**
+     * Places the codewords in the mapping matrix along the diagonal "utah" shapes of ISO/IEC
+     * 16022 Annex F.
+     */
+    static boolean[][] place(int[] codewords, int rows, int columns) {
+        return new Placement(codewords, rows, columns).place();
+    }
+
+    private static final class Placement {
+        private final int[] codewords;
+        private final int rows;
+        private final int columns;
+        private final boolean[][] bits;
+        private final boolean[][] placed;
+
+        Placement(int[] codewords, int rows, int columns) {
+            this.codewords = codewords;
+            this.rows = rows;
+            this.columns = columns;
+            this.bits = new boolean[rows][columns];
+            this.placed = new boolean[rows][columns];
+        }
+
+        boolean[][] place() {
+            int pos = 0;
+            int row = 4;
+            int column = 0;
+            do {
+                if (row == rows && column == 0) {
+                    corner1(pos++);
+                }
+                if (row == rows - 2 && column == 0 && columns % 4 != 0) {
+                    corner2(pos++);
+                }
+                if (row == rows - 2 && column == 0 && columns % 8 == 4) {
+                    corner3(pos++);
+                }
+                if (row == rows + 4 && column == 2 && columns % 8 == 0) {
+                    corner4(pos++);
+                }
+                // Up and to the right.
+                do {
+                    if (row < rows && column >= 0 && !placed[row][column]) {
+                        utah(row, column, pos++);
+                    }
+                    row -= 2;
+                    column += 2;
+                } while (row >= 0 && column < columns);
+                row++;
+                column += 3;
+                // Down and to the left.
+                do {
+                    if (row >= 0 && column < columns && !placed[row][column]) {
+                        utah(row, column, pos++);
+                    }
+                    row += 2;
+                    column -= 2;
+                } while (row < rows && column >= 0);
+                row += 3;
+                column++;
+            } while (row < rows || column < columns);
+
+            if (pos != codewords.length) {
+                throw new IllegalStateException("Placed " + pos + " of " + codewords.length + " codewords");
+            }
+            // The fixed pattern of sizes leaving the bottom right corner unused.
+            if (!placed[rows - 1][columns - 1]) {
+                bits[rows - 1][columns - 1] = true;
+                bits[rows - 2][columns - 2] = true;
+            }
+            return bits;
+        }
+
+        /**
+         * Places bit {@code bit} (1 being the MSB) of codeword {@code pos}, wrapping around edges.
+         */
+        private void module(int row, int column, int pos, int bit) {
+            if (row < 0) {
+                row += rows;
+                column += 4 - ((rows + 4) % 8);
+            }
+            if (column < 0) {
+                column += columns;
+                row += 4 - ((columns + 4) % 8);
+            }
+            bits[row][column] = (codewords[pos] & (1 << (8 - bit))) != 0;
+            placed[row][column] = true;
+        }
+
+        private void utah(int row, int column, int pos) {
+            module(row - 2, column - 2, pos, 1);
+            module(row - 2, column - 1, pos, 2);
+            module(row - 1, column - 2, pos, 3);
+            module(row - 1, column - 1, pos, 4);
+            module(row - 1, column, pos, 5);
+            module(row, column - 2, pos, 6);
+            module(row, column - 1, pos, 7);
+            module(row, column, pos, 8);
+        }
+
+        private void corner1(int pos) {
+            module(rows - 1, 0, pos, 1);
+            module(rows - 1, 1, pos, 2);
+            module(rows - 1, 2, pos, 3);
+            module(0, columns - 2, pos, 4);
+            module(0, columns - 1, pos, 5);
+            module(1, columns - 1, pos, 6);
+            module(2, columns - 1, pos, 7);
+            module(3, columns - 1, pos, 8);
+        }
+
+        private void corner2(int pos) {
+            module(rows - 3, 0, pos, 1);
+            module(rows - 2, 0, pos, 2);
+            module(rows - 1, 0, pos, 3);
+            module(0, columns - 4, pos, 4);
+            module(0, columns - 3, pos, 5);
+            module(0, columns - 2, pos, 6);
+            module(0, columns - 1, pos, 7);
+            module(1, columns - 1, pos, 8);
+        }
+
+        private void corner3(int pos) {
+            module(rows - 3, 0, pos, 1);
+            module(rows - 2, 0, pos, 2);
+            module(rows - 1, 0, pos, 3);
+            module(0, columns - 2, pos, 4);
+            module(0, columns - 1, pos, 5);
+            module(1, columns - 1, pos, 6);
+            module(2, columns - 1, pos, 7);
+            module(3, columns - 1, pos, 8);
+        }
+
+        private void corner4(int pos) {
+            module(rows - 1, 0, pos, 1);
+            module(rows - 1, columns - 1, pos, 2);
+            module(0, columns - 3, pos, 3);
+            module(0, columns - 2, pos, 4);
+            module(0, columns - 1, pos, 5);
+            module(1, columns - 3, pos, 6);
+            module(1, columns - 2, pos, 7);
+            module(1, columns - 1, pos, 8);
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package github.jomutils.android.barcode.synthetic;
+
+/**
+ * Encodes the linear symbologies into bars, one boolean per module, {@code true} for a bar.
+ */
+final class LinearEncoder {
+
+    private LinearEncoder() {
+        //no instance
+    }
+
+    /**
+     * Wide elements of Code 39 and ITF are this many modules.
+     */
+    private static final int WIDE = 3;
+
+    ///////////////////////////////////////////////////////////////////////////
+    // EAN-13 / UPC-A
+    ///////////////////////////////////////////////////////////////////////////
+
+    private static final int[] EAN_L_PATTERNS = {
+            0b0001101, 0b0011001, 0b0010011, 0b0111101, 0b0100011,
+            0b0110001, 0b0101111, 0b0111011, 0b0110111, 0b0001011,
+    };
+    /**
+     * Parity of the 6 left digits, set bit meaning the G (even parity) pattern, first digit MSB.
+     */
+    private static final int[] EAN_FIRST_DIGIT_PARITY = {
+            0b000000, 0b001011, 0b001101, 0b001110, 0b010011,
+            0b011001, 0b011100, 0b010101, 0b010110, 0b011010,
+    };
+
+    /**
+     * Returns {@code digits} with the EAN / UPC check digit appended.
+     */
+    static String appendCheckDigit(String digits) {
+        int sum = 0;
+        for (int i = 0; i < digits.length(); i++) {
+            final int digit = digits.charAt(digits.length() - 1 - i) - '0';
+            sum += i % 2 == 0 ? digit * 3 : digit;
+        }
+        return digits + (10 - sum % 10) % 10;
+    }
+
+    /**
+     * @param content 12 digits, or 13 with a valid check digit
+     */
+    static boolean[] encodeEan13(String content) {
+        requireDigits(content);
+        final String digits;
+        if (content.length() == 12) {
+            digits = appendCheckDigit(content);
+        } else if (content.length() == 13 && appendCheckDigit(content.substring(0, 12)).equals(content)) {
+            digits = content;
+        } else {
+            throw new IllegalArgumentException("Not 12 digits or 13 with a valid check digit: " + content);
+        }
+
+        final boolean[] bars = new boolean[95];
+        int pos = appendPattern(bars, 0, 0b101, 3);
+        final int parity = EAN_FIRST_DIGIT_PARITY[digits.charAt(0) - '0'];
+        for (int i = 1; i <= 6; i++) {
+            final int l = EAN_L_PATTERNS[digits.charAt(i) - '0'];
+            final boolean even = (parity & (1 << (6 - i))) != 0;
+            pos = appendPattern(bars, pos, even ? reverse7(~l & 0x7F) : l, 7);
+        }
+        pos = appendPattern(bars, pos, 0b01010, 5);
+        for (int i = 7; i <= 12; i++) {
+            pos = appendPattern(bars, pos, ~EAN_L_PATTERNS[digits.charAt(i) - '0'] & 0x7F, 7);
+        }
+        appendPattern(bars, pos, 0b101, 3);
+        return bars;
+    }
+
+    /**
+     * UPC-A is EAN-13 with a leading 0.
+     *
+     * @param content 11 digits, or 12 with a valid check digit
+     */
+    static boolean[] encodeUpcA(String content) {
+        if (content.length() != 11 && content.length() != 12) {
+            throw new IllegalArgumentException("Not 11 or 12 digits: " + content);
+        }
+        return encodeEan13("0" + content);
+    }
+
+    private static int reverse7(int pattern) {
+        return Integer.reverse(pattern) >>> (Integer.SIZE - 7);
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    // Code 128
+    ///////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Bar and space widths of the 106 symbols, the stop pattern excluded.
+     */
+    static final int[][] CODE_128_PATTERNS = {
+            {2, 1, 2, 2, 2, 2}, {2, 2, 2, 1, 2, 2}, {2, 2, 2, 2, 2, 1}, {1, 2, 1, 2, 2, 3}, {1, 2, 1, 3, 2, 2},
+            {1, 3, 1, 2, 2, 2}, {1, 2, 2, 2, 1, 3}, {1, 2, 2, 3, 1, 2}, {1, 3, 2, 2, 1, 2}, {2, 2, 1, 2, 1, 3},
+            {2, 2, 1, 3, 1, 2}, {2, 3, 1, 2, 1, 2}, {1, 1, 2, 2, 3, 2}, {1, 2, 2, 1, 3, 2}, {1, 2, 2, 2, 3, 1},
+            {1, 1, 3, 2, 2, 2}, {1, 2, 3, 1, 2, 2}, {1, 2, 3, 2, 2, 1}, {2, 2, 3, 2, 1, 1}, {2, 2, 1, 1, 3, 2},
+            {2, 2, 1, 2, 3, 1}, {2, 1, 3, 2, 1, 2}, {2, 2, 3, 1, 1, 2}, {3, 1, 2, 1, 3, 1}, {3, 1, 1, 2, 2, 2},
+            {3, 2, 1, 1, 2, 2}, {3, 2, 1, 2, 2, 1}, {3, 1, 2, 2, 1, 2}, {3, 2, 2, 1, 1, 2}, {3, 2, 2, 2, 1, 1},
+            {2, 1, 2, 1, 2, 3}, {2, 1, 2, 3, 2, 1}, {2, 3, 2, 1, 2, 1}, {1, 1, 1, 3, 2, 3}, {1, 3, 1, 1, 2, 3},
+            {1, 3, 1, 3, 2, 1}, {1, 1, 2, 3, 1, 3}, {1, 3, 2, 1, 1, 3}, {1, 3, 2, 3, 1, 1}, {2, 1, 1, 3, 1, 3},
+            {2, 3, 1, 1, 1, 3}, {2, 3, 1, 3, 1, 1}, {1, 1, 2, 1, 3, 3}, {1, 1, 2, 3, 3, 1}, {1, 3, 2, 1, 3, 1},
+            {1, 1, 3, 1, 2, 3}, {1, 1, 3, 3, 2, 1}, {1, 3, 3, 1, 2, 1}, {3, 1, 3, 1, 2, 1}, {2, 1, 1, 3, 3, 1},
+            {2, 3, 1, 1, 3, 1}, {2, 1, 3, 1, 1, 3}, {2, 1, 3, 3, 1, 1}, {2, 1, 3, 1, 3, 1}, {3, 1, 1, 1, 2, 3},
+            {3, 1, 1, 3, 2, 1}, {3, 3, 1, 1, 2, 1}, {3, 1, 2, 1, 1, 3}, {3, 1, 2, 3, 1, 1}, {3, 3, 2, 1, 1, 1},
+            {3, 1, 4, 1, 1, 1}, {2, 2, 1, 4, 1, 1}, {4, 3, 1, 1, 1, 1}, {1, 1, 1, 2, 2, 4}, {1, 1, 1, 4, 2, 2},
+            {1, 2, 1, 1, 2, 4}, {1, 2, 1, 4, 2, 1}, {1, 4, 1, 1, 2, 2}, {1, 4, 1, 2, 2, 1}, {1, 1, 2, 2, 1, 4},
+            {1, 1, 2, 4, 1, 2}, {1, 2, 2, 1, 1, 4}, {1, 2, 2, 4, 1, 1}, {1, 4, 2, 1, 1, 2}, {1, 4, 2, 2, 1, 1},
+            {2, 4, 1, 2, 1, 1}, {2, 2, 1, 1, 1, 4}, {4, 1, 3, 1, 1, 1}, {2, 4, 1, 1, 1, 2}, {1, 3, 4, 1, 1, 1},
+            {1, 1, 1, 2, 4, 2}, {1, 2, 1, 1, 4, 2}, {1, 2, 1, 2, 4, 1}, {1, 1, 4, 2, 1, 2}, {1, 2, 4, 1, 1, 2},
+            {1, 2, 4, 2, 1, 1}, {4, 1, 1, 2, 1, 2}, {4, 2, 1, 1, 1, 2}, {4, 2, 1, 2, 1, 1}, {2, 1, 2, 1, 4, 1},
+            {2, 1, 4, 1, 2, 1}, {4, 1, 2, 1, 2, 1}, {1, 1, 1, 1, 4, 3}, {1, 1, 1, 3, 4, 1}, {1, 3, 1, 1, 4, 1},
+            {1, 1, 4, 1, 1, 3}, {1, 1, 4, 3, 1, 1}, {4, 1, 1, 1, 1, 3}, {4, 1, 1, 3, 1, 1}, {1, 1, 3, 1, 4, 1},
+            {1, 1, 4, 1, 3, 1}, {3, 1, 1, 1, 4, 1}, {4, 1, 1, 1, 3, 1}, {2, 1, 1, 4, 1, 2}, {2, 1, 1, 2, 1, 4},
+            {2, 1, 1, 2, 3, 2},
+    };
+    private static final int[] CODE_128_STOP = {2, 3, 3, 1, 1, 1, 2};
+    private static final int CODE_128_START_B = 104;
+    private static final int CODE_128_START_C = 105;
+
+    /**
+     * Encodes an even number of digits in code set C, anything else in code set B, so printable
+     * ASCII only.
+     */
+    static boolean[] encodeCode128(String content) {
+        if (content.isEmpty()) {
+            throw new IllegalArgumentException("Empty content");
+        }
+        final boolean codeSetC = content.length() % 2 == 0 && isDigits(content);
+        final int[] values = new int[(codeSetC ? content.length() / 2 : content.length()) + 2];
+        values[0] = codeSetC ? CODE_128_START_C : CODE_128_START_B;
+        for (int i = 1; i < values.length - 1; i++) {
+            if (codeSetC) {
+                values[i] = Integer.parseInt(content.substring(i * 2 - 2, i * 2));
+            } else {
+                final char c = content.charAt(i - 1);
+                if (c < ' ' || c > '~') {
+                    throw new IllegalArgumentException("Not printable ASCII: " + content);
+                }
+                values[i] = c - ' ';
+            }
+        }
+        int checksum = values[0];
+        for (int i = 1; i < values.length - 1; i++) {
+            checksum += i * values[i];
+        }
+        values[values.length - 1] = checksum % 103;
+
+        // 11 modules per symbol, 13 for the stop pattern.
+        final boolean[] bars = new boolean[values.length * 11 + 13];
+        int pos = 0;
+        for (int value : values) {
+            pos = appendWidths(bars, pos, CODE_128_PATTERNS[value]);
+        }
+        appendWidths(bars, pos, CODE_128_STOP);
+        return bars;
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    // Code 39
+    ///////////////////////////////////////////////////////////////////////////
+
+    private static final String CODE_39_ALPHABET = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ-. $/+%*";
+    /**
+     * The 9 elements of each character, bar first, set bit meaning wide, first element MSB.
+     */
+    private static final int[] CODE_39_PATTERNS = {
+            0x034, 0x121, 0x061, 0x160, 0x031, 0x130, 0x070, 0x025, 0x124, 0x064,
+            0x109, 0x049, 0x148, 0x019, 0x118, 0x058, 0x00D, 0x10C, 0x04C, 0x01C,
+            0x103, 0x043, 0x142, 0x013, 0x112, 0x052, 0x007, 0x106, 0x046, 0x016,
+            0x181, 0x0C1, 0x1C0, 0x091, 0x190, 0x0D0, 0x085, 0x184, 0x0C4, 0x0A8,
+            0x0A2, 0x08A, 0x02A, 0x094,
+    };
+
+    /**
+     * Encodes {@code content} between {@code *} start and stop characters, without check digit.
+     */
+    static boolean[] encodeCode39(String content) {
+        final String text = "*" + content + "*";
+        final int[] widths = new int[text.length() * 10 - 1];
+        for (int i = 0; i < text.length(); i++) {
+            final int index = CODE_39_ALPHABET.indexOf(text.charAt(i));
+            if (index < 0 || (index == CODE_39_ALPHABET.length() - 1 && i > 0 && i < text.length() - 1)) {
+                throw new IllegalArgumentException("Not encodable in Code 39: " + content);
+            }
+            final int pattern = CODE_39_PATTERNS[index];
+            for (int e = 0; e < 9; e++) {
+                widths[i * 10 + e] = (pattern & (1 << (8 - e))) != 0 ? WIDE : 1;
+            }
+            if (i < text.length() - 1) {
+                // Inter-character gap.
+                widths[i * 10 + 9] = 1;
+            }
+        }
+        return toBars(widths);
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    // ITF
+    ///////////////////////////////////////////////////////////////////////////
+
+    /**
+     * The 5 elements of each digit, set bit meaning wide, first element MSB.
+     */
+    private static final int[] ITF_PATTERNS = {
+            0b00110, 0b10001, 0b01001, 0b11000, 0b00101,
+            0b10100, 0b01100, 0b00011, 0b10010, 0b01010,
+    };
+
+    /**
+     * Encodes digits in pairs, the first of a pair in the bars and the second in the spaces. An
+     * odd number of digits gets a leading 0.
+     */
+    static boolean[] encodeItf(String content) {
+        requireDigits(content);
+        final String digits = content.length() % 2 == 0 ? content : "0" + content;
+
+        final int[] widths = new int[4 + digits.length() * 5 + 3];
+        int e = 0;
+        // Start: narrow bar, space, bar, space.
+        for (int i = 0; i < 4; i++) {
+            widths[e++] = 1;
+        }
+        for (int i = 0; i < digits.length(); i += 2) {
+            final int bars = ITF_PATTERNS[digits.charAt(i) - '0'];
+            final int spaces = ITF_PATTERNS[digits.charAt(i + 1) - '0'];
+            for (int j = 4; j >= 0; j--) {
+                widths[e++] = (bars & (1 << j)) != 0 ? WIDE : 1;
+                widths[e++] = (spaces & (1 << j)) != 0 ? WIDE : 1;
+            }
+        }
+        // Stop: wide bar, narrow space, narrow bar.
+        widths[e++] = WIDE;
+        widths[e++] = 1;
+        widths[e] = 1;
+        return toBars(widths);
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    // Helpers
+    ///////////////////////////////////////////////////////////////////////////
+
+    private static boolean isDigits(String content) {
+        for (int i = 0; i < content.length(); i++) {
+            if (content.charAt(i) < '0' || content.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return !content.isEmpty();
+    }
+
+    private static void requireDigits(String content) {
+        if (!isDigits(content)) {
+            throw new IllegalArgumentException("Not digits: " + content);
+        }
+    }
+
+    /**
+     * Writes the low {@code length} bits of {@code pattern}, MSB first.
+     */
+    private static int appendPattern(boolean[] bars, int pos, int pattern, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            bars[pos++] = (pattern & (1 << i)) != 0;
+        }
+        return pos;
+    }
+
+    /**
+     * Writes alternating bars and spaces of the given widths, starting with a bar.
+     */
+    private static int appendWidths(boolean[] bars, int pos, int[] widths) {
+        for (int i = 0; i < widths.length; i++) {
+            for (int j = 0; j < widths[i]; j++) {
+                bars[pos++] = i % 2 == 0;
+            }
+        }
+        return pos;
+    }
+
+    private static boolean[] toBars(int[] widths) {
+        int length = 0;
+        for (int width : widths) {
+            length += width;
+        }
+        final boolean[] bars = new boolean[length];
+        appendWidths(bars, 0, widths);
+        return bars;
+    }
+}
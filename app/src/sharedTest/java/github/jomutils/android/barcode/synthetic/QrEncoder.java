@@ -0,0 +1,445 @@
+package github.jomutils.android.barcode.synthetic;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Encodes text as a QR code in byte mode, versions 1 to 10, picking the smallest version that
+ * fits and the mask with the lowest penalty.
+ */
+final class QrEncoder {
+
+    private QrEncoder() {
+        //no instance
+    }
+
+    enum ErrorCorrection {
+        L(1), M(0), Q(3), H(2);
+
+        /**
+         * The 2 bits of the level in the format information.
+         */
+        private final int bits;
+
+        ErrorCorrection(int bits) {
+            this.bits = bits;
+        }
+    }
+
+    static final int MAX_VERSION = 10;
+
+    private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+
+    /**
+     * Per version, then per level in {@link ErrorCorrection} order: EC codewords per block, then
+     * count and data codewords of the first group of blocks, then of the second group.
+     */
+    private static final int[][][] BLOCKS = {
+            {{7, 1, 19, 0, 0}, {10, 1, 16, 0, 0}, {13, 1, 13, 0, 0}, {17, 1, 9, 0, 0}},
+            {{10, 1, 34, 0, 0}, {16, 1, 28, 0, 0}, {22, 1, 22, 0, 0}, {28, 1, 16, 0, 0}},
+            {{15, 1, 55, 0, 0}, {26, 1, 44, 0, 0}, {18, 2, 17, 0, 0}, {22, 2, 13, 0, 0}},
+            {{20, 1, 80, 0, 0}, {18, 2, 32, 0, 0}, {26, 2, 24, 0, 0}, {16, 4, 9, 0, 0}},
+            {{26, 1, 108, 0, 0}, {24, 2, 43, 0, 0}, {18, 2, 15, 2, 16}, {22, 2, 11, 2, 12}},
+            {{18, 2, 68, 0, 0}, {16, 4, 27, 0, 0}, {24, 4, 19, 0, 0}, {28, 4, 15, 0, 0}},
+            {{20, 2, 78, 0, 0}, {18, 4, 31, 0, 0}, {18, 2, 14, 4, 15}, {26, 4, 13, 1, 14}},
+            {{24, 2, 97, 0, 0}, {22, 2, 38, 2, 39}, {22, 4, 18, 2, 19}, {26, 4, 14, 2, 15}},
+            {{30, 2, 116, 0, 0}, {22, 3, 36, 2, 37}, {20, 4, 16, 4, 17}, {24, 4, 12, 4, 13}},
+            {{18, 2, 68, 2, 69}, {26, 4, 43, 1, 44}, {24, 6, 19, 2, 20}, {28, 6, 15, 2, 16}},
+    };
+
+    private static final int[][] ALIGNMENT_CENTERS = {
+            {}, {6, 18}, {6, 22}, {6, 26}, {6, 30}, {6, 34},
+            {6, 22, 38}, {6, 24, 42}, {6, 26, 46}, {6, 28, 50},
+    };
+
+    private static final int FORMAT_GENERATOR = 0x537;
+    private static final int FORMAT_MASK = 0x5412;
+    private static final int VERSION_GENERATOR = 0x1F25;
+
+    private static final int EMPTY = -1;
+
+    static Symbol encode(String content, ErrorCorrection level) {
+        final byte[] bytes = content.getBytes(ISO_8859_1);
+
+        int version = 1;
+        while (version <= MAX_VERSION && getDataBits(version, level) < 4 + 8 + bytes.length * 8
+                + (version >= 10 ? 8 : 0)) {
+            version++;
+        }
+        if (version > MAX_VERSION) {
+            throw new IllegalArgumentException("Too long for version " + MAX_VERSION + "-" + level + ": " + content);
+        }
+
+        final int[] codewords = interleave(version, level, encodeData(version, level, bytes));
+        final int size = getSize(version);
+
+        int[][] best = null;
+        int bestPenalty = Integer.MAX_VALUE;
+        for (int mask = 0; mask < 8; mask++) {
+            final int[][] matrix = buildMatrix(version, level, mask, codewords);
+            final int penalty = penalty(matrix);
+            if (penalty < bestPenalty) {
+                bestPenalty = penalty;
+                best = matrix;
+            }
+        }
+
+        final boolean[][] modules = new boolean[size][size];
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                modules[y][x] = best[y][x] == 1;
+            }
+        }
+        return new Symbol(Symbology.QR_CODE, modules);
+    }
+
+    static int getSize(int version) {
+        return 17 + version * 4;
+    }
+
+    private static int[] getBlocks(int version, ErrorCorrection level) {
+        return BLOCKS[version - 1][level.ordinal()];
+    }
+
+    static int getDataCodewords(int version, ErrorCorrection level) {
+        final int[] blocks = getBlocks(version, level);
+        return blocks[1] * blocks[2] + blocks[3] * blocks[4];
+    }
+
+    static int getTotalCodewords(int version, ErrorCorrection level) {
+        final int[] blocks = getBlocks(version, level);
+        return getDataCodewords(version, level) + (blocks[1] + blocks[3]) * blocks[0];
+    }
+
+    private static int getDataBits(int version, ErrorCorrection level) {
+        return getDataCodewords(version, level) * 8;
+    }
+
+    /**
+     * Returns the data codewords: mode, count, bytes, terminator and padding.
+     */
+    static int[] encodeData(int version, ErrorCorrection level, byte[] bytes) {
+        final BitWriter bits = new BitWriter(getDataCodewords(version, level));
+        bits.write(0b0100, 4);
+        bits.write(bytes.length, version < 10 ? 8 : 16);
+        for (byte b : bytes) {
+            bits.write(b & 0xFF, 8);
+        }
+        bits.write(0, Math.min(4, bits.capacity() - bits.length()));
+        bits.write(0, (8 - bits.length() % 8) % 8);
+        for (int pad = 0; bits.length() < bits.capacity(); pad++) {
+            bits.write(pad % 2 == 0 ? 0xEC : 0x11, 8);
+        }
+        return bits.toCodewords();
+    }
+
+    /**
+     * Splits the data into blocks, appends each block's EC codewords and interleaves them.
+     */
+    static int[] interleave(int version, ErrorCorrection level, int[] data) {
+        final int[] blocks = getBlocks(version, level);
+        final int ecCount = blocks[0];
+        final int blockCount = blocks[1] + blocks[3];
+        final int[] dataOffsets = new int[blockCount];
+        final int[] dataLengths = new int[blockCount];
+        final int[][] ec = new int[blockCount][];
+        int offset = 0;
+        for (int i = 0; i < blockCount; i++) {
+            dataOffsets[i] = offset;
+            dataLengths[i] = i < blocks[1] ? blocks[2] : blocks[4];
+            ec[i] = ReedSolomon.QR_CODE.encode(data, offset, dataLengths[i], ecCount);
+            offset += dataLengths[i];
+        }
+
+        final int[] result = new int[getTotalCodewords(version, level)];
+        int pos = 0;
+        final int maxDataLength = Math.max(blocks[2], blocks[4]);
+        for (int j = 0; j < maxDataLength; j++) {
+            for (int i = 0; i < blockCount; i++) {
+                if (j < dataLengths[i]) {
+                    result[pos++] = data[dataOffsets[i] + j];
+                }
+            }
+        }
+        for (int j = 0; j < ecCount; j++) {
+            for (int i = 0; i < blockCount; i++) {
+                result[pos++] = ec[i][j];
+            }
+        }
+        return result;
+    }
+
+    private static int[][] buildMatrix(int version, ErrorCorrection level, int mask, int[] codewords) {
+        final int size = getSize(version);
+        final int[][] matrix = new int[size][size];
+        for (int[] row : matrix) {
+            Arrays.fill(row, EMPTY);
+        }
+
+        placeFinder(matrix, 0, 0);
+        placeFinder(matrix, size - 7, 0);
+        placeFinder(matrix, 0, size - 7);
+        final int[] centers = ALIGNMENT_CENTERS[version - 1];
+        for (int cy : centers) {
+            for (int cx : centers) {
+                if (matrix[cy][cx] == EMPTY) {
+                    placeAlignment(matrix, cx, cy);
+                }
+            }
+        }
+        for (int i = 8; i < size - 8; i++) {
+            matrix[6][i] = (i + 1) % 2;
+            matrix[i][6] = (i + 1) % 2;
+        }
+        placeFormat(matrix, level, mask);
+        if (version >= 7) {
+            placeVersion(matrix, version);
+        }
+        placeData(matrix, mask, codewords);
+        return matrix;
+    }
+
+    /**
+     * Places a finder pattern with its separator, {@code left} and {@code top} being the pattern's.
+     */
+    private static void placeFinder(int[][] matrix, int left, int top) {
+        final int size = matrix.length;
+        for (int dy = -1; dy <= 7; dy++) {
+            for (int dx = -1; dx <= 7; dx++) {
+                final int x = left + dx;
+                final int y = top + dy;
+                if (x < 0 || y < 0 || x >= size || y >= size) {
+                    continue;
+                }
+                final int ring = Math.max(Math.abs(dx - 3), Math.abs(dy - 3));
+                matrix[y][x] = ring == 4 || ring == 2 ? 0 : 1;
+            }
+        }
+    }
+
+    private static void placeAlignment(int[][] matrix, int cx, int cy) {
+        for (int dy = -2; dy <= 2; dy++) {
+            for (int dx = -2; dx <= 2; dx++) {
+                matrix[cy + dy][cx + dx] = Math.max(Math.abs(dx), Math.abs(dy)) == 1 ? 0 : 1;
+            }
+        }
+    }
+
+    /**
+     * Returns {@code value} followed by the remainder of its division by {@code generator}.
+     */
+    private static int bch(int value, int generator) {
+        final int degree = 31 - Integer.numberOfLeadingZeros(generator);
+        int remainder = value << degree;
+        while (remainder >= 1 << degree) {
+            remainder ^= generator << (31 - Integer.numberOfLeadingZeros(remainder) - degree);
+        }
+        return (value << degree) | remainder;
+    }
+
+    static int getFormatBits(ErrorCorrection level, int mask) {
+        return bch(level.bits << 3 | mask, FORMAT_GENERATOR) ^ FORMAT_MASK;
+    }
+
+    static int getVersionBits(int version) {
+        return bch(version, VERSION_GENERATOR);
+    }
+
+    private static void placeFormat(int[][] matrix, ErrorCorrection level, int mask) {
+        final int size = matrix.length;
+        final int bits = getFormatBits(level, mask);
+        for (int i = 0; i < 15; i++) {
+            final int bit = (bits >> i) & 1;
+            // Around the top-left finder: down column 8, then left along row 8, skipping timing.
+            if (i < 6) {
+                matrix[i][8] = bit;
+            } else if (i < 8) {
+                matrix[i + 1][8] = bit;
+            } else if (i == 8) {
+                matrix[8][7] = bit;
+            } else {
+                matrix[8][14 - i] = bit;
+            }
+            // Along row 8 at the top right, then up column 8 at the bottom left.
+            if (i < 8) {
+                matrix[8][size - 1 - i] = bit;
+            } else {
+                matrix[size - 15 + i][8] = bit;
+            }
+        }
+        // Always dark.
+        matrix[size - 8][8] = 1;
+    }
+
+    private static void placeVersion(int[][] matrix, int version) {
+        final int size = matrix.length;
+        final int bits = getVersionBits(version);
+        for (int i = 0; i < 18; i++) {
+            final int bit = (bits >> i) & 1;
+            final int a = i / 3;
+            final int b = size - 11 + i % 3;
+            matrix[b][a] = bit;
+            matrix[a][b] = bit;
+        }
+    }
+
+    private static boolean isMasked(int mask, int x, int y) {
+        switch (mask) {
+            case 0:
+                return (x + y) % 2 == 0;
+            case 1:
+                return y % 2 == 0;
+            case 2:
+                return x % 3 == 0;
+            case 3:
+                return (x + y) % 3 == 0;
+            case 4:
+                return (y / 2 + x / 3) % 2 == 0;
+            case 5:
+                return (x * y) % 2 + (x * y) % 3 == 0;
+            case 6:
+                return ((x * y) % 2 + (x * y) % 3) % 2 == 0;
+            default:
+                return ((x * y) % 3 + (x + y) % 2) % 2 == 0;
+        }
+    }
+
+    /**
+     * Fills the free modules in two-column strips from the bottom right, zigzagging up and down.
+     */
+    private static void placeData(int[][] matrix, int mask, int[] codewords) {
+        final int size = matrix.length;
+        int bitIndex = 0;
+        int placed = 0;
+        boolean upward = true;
+        for (int right = size - 1; right > 0; right -= 2) {
+            if (right == 6) {
+                // Skips the vertical timing pattern.
+                right--;
+            }
+            for (int step = 0; step < size; step++) {
+                final int y = upward ? size - 1 - step : step;
+                for (int x = right; x > right - 2; x--) {
+                    if (matrix[y][x] != EMPTY) {
+                        continue;
+                    }
+                    int bit = 0;
+                    if (bitIndex < codewords.length * 8) {
+                        bit = (codewords[bitIndex / 8] >> (7 - bitIndex % 8)) & 1;
+                        bitIndex++;
+                    }
+                    if (isMasked(mask, x, y)) {
+                        bit ^= 1;
+                    }
+                    matrix[y][x] = bit;
+                    placed++;
+                }
+            }
+            upward = !upward;
+        }
+        // Up to 7 remainder bits follow the codewords.
+        final int remainder = placed - codewords.length * 8;
+        if (remainder < 0 || remainder > 7) {
+            throw new IllegalStateException(codewords.length + " codewords in " + placed + " data modules");
+        }
+    }
+
+    /**
+     * The four penalty rules of the mask evaluation.
+     */
+    private static int penalty(int[][] matrix) {
+        final int size = matrix.length;
+        int penalty = 0;
+        int dark = 0;
+        for (int i = 0; i < size; i++) {
+            int rowRun = 1;
+            int columnRun = 1;
+            for (int j = 0; j < size; j++) {
+                dark += matrix[i][j];
+                if (j > 0) {
+                    rowRun = matrix[i][j] == matrix[i][j - 1] ? rowRun + 1 : 1;
+                    columnRun = matrix[j][i] == matrix[j - 1][i] ? columnRun + 1 : 1;
+                    penalty += rowRun == 5 ? 3 : rowRun > 5 ? 1 : 0;
+                    penalty += columnRun == 5 ? 3 : columnRun > 5 ? 1 : 0;
+                }
+                if (i > 0 && j > 0) {
+                    final int v = matrix[i][j];
+                    if (v == matrix[i - 1][j] && v == matrix[i][j - 1] && v == matrix[i - 1][j - 1]) {
+                        penalty += 3;
+                    }
+                }
+                if (j + 6 < size && isFinderLike(matrix, i, j, true)) {
+                    penalty += 40;
+                }
+                if (j + 6 < size && isFinderLike(matrix, j, i, false)) {
+                    penalty += 40;
+                }
+            }
+        }
+        final int percent = dark * 100 / (size * size);
+        penalty += Math.abs(percent - 50) / 5 * 10;
+        return penalty;
+    }
+
+    /**
+     * Whether 1:1:3:1:1 starts at ({@code row}, {@code column}) with 4 light modules on one side.
+     */
+    private static boolean isFinderLike(int[][] matrix, int row, int column, boolean horizontal) {
+        final int[] pattern = {1, 0, 1, 1, 1, 0, 1};
+        for (int k = 0; k < pattern.length; k++) {
+            final int v = horizontal ? matrix[row][column + k] : matrix[row + k][column];
+            if (v != pattern[k]) {
+                return false;
+            }
+        }
+        return isLight(matrix, row, column, horizontal, -4) || isLight(matrix, row, column, horizontal, 7);
+    }
+
+    private static boolean isLight(int[][] matrix, int row, int column, boolean horizontal, int from) {
+        final int size = matrix.length;
+        for (int k = from; k < from + 4; k++) {
+            final int r = horizontal ? row : row + k;
+            final int c = horizontal ? column + k : column;
+            if (r < 0 || c < 0 || r >= size || c >= size) {
+                continue;
+            }
+            if (matrix[r][c] == 1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Appends bits MSB first into a fixed number of codewords.
+     */
+    private static final class BitWriter {
+        private final int[] codewords;
+        private int length;
+
+        BitWriter(int codewordCount) {
+            codewords = new int[codewordCount];
+        }
+
+        void write(int value, int bitCount) {
+            for (int i = bitCount - 1; i >= 0; i--) {
+                if (((value >> i) & 1) != 0) {
+                    codewords[length / 8] |= 0x80 >> (length % 8);
+                }
+                length++;
+            }
+        }
+
+        int length() {
+            return length;
+        }
+
+        int capacity() {
+            return codewords.length * 8;
+        }
+
+        int[] toCodewords() {
+            return codewords;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package github.jomutils.android.barcode.synthetic;
+
+/**
+ * Reed-Solomon error correction over GF(256), as used by QR codes and Data Matrix, which differ in
+ * the field's primitive polynomial and in the first root of the generator polynomial.
+ */
+final class ReedSolomon {
+
+    /**
+     * x^8 + x^4 + x^3 + x^2 + 1, generator roots from a^0.
+     */
+    static final ReedSolomon QR_CODE = new ReedSolomon(0x11D, 0);
+    /**
+     * x^8 + x^5 + x^3 + x^2 + 1, generator roots from a^1.
+     */
+    static final ReedSolomon DATA_MATRIX = new ReedSolomon(0x12D, 1);
+
+    private final int[] exp = new int[512];
+    private final int[] log = new int[256];
+    private final int generatorBase;
+
+    private ReedSolomon(int primitive, int generatorBase) {
+        this.generatorBase = generatorBase;
+        int x = 1;
+        for (int i = 0; i < 255; i++) {
+            exp[i] = x;
+            log[x] = i;
+            x <<= 1;
+            if (x >= 256) {
+                x ^= primitive;
+            }
+        }
+        for (int i = 255; i < exp.length; i++) {
+            exp[i] = exp[i - 255];
+        }
+    }
+
+    private int multiply(int a, int b) {
+        return a == 0 || b == 0 ? 0 : exp[log[a] + log[b]];
+    }
+
+    /**
+     * Returns the coefficients of the generator polynomial of degree {@code degree}, highest
+     * degree first, without the leading 1.
+     */
+    private int[] generator(int degree) {
+        final int[] poly = new int[degree + 1];
+        poly[0] = 1;
+        for (int i = 0; i < degree; i++) {
+            final int root = exp[generatorBase + i];
+            // poly *= (x - root), subtraction being addition in GF(2^8).
+            for (int j = i + 1; j > 0; j--) {
+                poly[j] ^= multiply(poly[j - 1], root);
+            }
+        }
+        final int[] coefficients = new int[degree];
+        System.arraycopy(poly, 1, coefficients, 0, degree);
+        return coefficients;
+    }
+
+    /**
+     * Returns the {@code ecCount} error correction codewords of {@code data[offset, offset + length)}.
+     */
+    int[] encode(int[] data, int offset, int length, int ecCount) {
+        final int[] generator = generator(ecCount);
+        final int[] remainder = new int[ecCount];
+        for (int i = 0; i < length; i++) {
+            final int factor = data[offset + i] ^ remainder[0];
+            System.arraycopy(remainder, 1, remainder, 0, ecCount - 1);
+            remainder[ecCount - 1] = 0;
+            for (int j = 0; j < ecCount; j++) {
+                remainder[j] ^= multiply(generator[j], factor);
+            }
+        }
+        return remainder;
+    }
+}
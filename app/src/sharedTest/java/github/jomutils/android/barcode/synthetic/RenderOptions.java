@@ -0,0 +1,286 @@
+package github.jomutils.android.barcode.synthetic;
+
+import androidx.annotation.NonNull;
+
+/**
+ * How a symbol is placed in a synthetic camera frame and degraded. Built with a {@link Builder};
+ * the defaults are a clean, upright, centered symbol at 3 px per module in a 1280x720 frame.
+ */
+public final class RenderOptions {
+
+    private final int frameWidth;
+    private final int frameHeight;
+    private final float moduleSize;
+    private final float rotationDegrees;
+    private final float perspectiveX;
+    private final float perspectiveY;
+    private final float offsetX;
+    private final float offsetY;
+    private final int blurRadius;
+    private final float noiseSigma;
+    private final float glare;
+    private final float contrast;
+    private final int background;
+    private final long seed;
+
+    private RenderOptions(Builder builder) {
+        frameWidth = builder.frameWidth;
+        frameHeight = builder.frameHeight;
+        moduleSize = builder.moduleSize;
+        rotationDegrees = builder.rotationDegrees;
+        perspectiveX = builder.perspectiveX;
+        perspectiveY = builder.perspectiveY;
+        offsetX = builder.offsetX;
+        offsetY = builder.offsetY;
+        blurRadius = builder.blurRadius;
+        noiseSigma = builder.noiseSigma;
+        glare = builder.glare;
+        contrast = builder.contrast;
+        background = builder.background;
+        seed = builder.seed;
+    }
+
+    public int getFrameWidth() {
+        return frameWidth;
+    }
+
+    public int getFrameHeight() {
+        return frameHeight;
+    }
+
+    public float getModuleSize() {
+        return moduleSize;
+    }
+
+    public float getRotationDegrees() {
+        return rotationDegrees;
+    }
+
+    public float getPerspectiveX() {
+        return perspectiveX;
+    }
+
+    public float getPerspectiveY() {
+        return perspectiveY;
+    }
+
+    public float getOffsetX() {
+        return offsetX;
+    }
+
+    public float getOffsetY() {
+        return offsetY;
+    }
+
+    public int getBlurRadius() {
+        return blurRadius;
+    }
+
+    public float getNoiseSigma() {
+        return noiseSigma;
+    }
+
+    public float getGlare() {
+        return glare;
+    }
+
+    public float getContrast() {
+        return contrast;
+    }
+
+    public int getBackground() {
+        return background;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    @NonNull
+    public Builder buildUpon() {
+        return new Builder(this);
+    }
+
+    @Override
+    public String toString() {
+        return "RenderOptions{" +
+                "frame=" + frameWidth + "x" + frameHeight +
+                ", moduleSize=" + moduleSize +
+                ", rotation=" + rotationDegrees +
+                ", perspective=" + perspectiveX + "," + perspectiveY +
+                ", blurRadius=" + blurRadius +
+                ", noiseSigma=" + noiseSigma +
+                ", glare=" + glare +
+                ", contrast=" + contrast +
+                ", seed=" + seed +
+                '}';
+    }
+
+    public static final class Builder {
+        private int frameWidth = 1280;
+        private int frameHeight = 720;
+        private float moduleSize = 3f;
+        private float rotationDegrees;
+        private float perspectiveX;
+        private float perspectiveY;
+        private float offsetX;
+        private float offsetY;
+        private int blurRadius;
+        private float noiseSigma;
+        private float glare;
+        private float contrast = 1f;
+        private int background = 96;
+        private long seed = 1;
+
+        public Builder() {
+        }
+
+        private Builder(RenderOptions options) {
+            frameWidth = options.frameWidth;
+            frameHeight = options.frameHeight;
+            moduleSize = options.moduleSize;
+            rotationDegrees = options.rotationDegrees;
+            perspectiveX = options.perspectiveX;
+            perspectiveY = options.perspectiveY;
+            offsetX = options.offsetX;
+            offsetY = options.offsetY;
+            blurRadius = options.blurRadius;
+            noiseSigma = options.noiseSigma;
+            glare = options.glare;
+            contrast = options.contrast;
+            background = options.background;
+            seed = options.seed;
+        }
+
+        /**
+         * Sets the frame size, in the orientation of the camera buffer.
+         */
+        @NonNull
+        public Builder setFrameSize(int width, int height) {
+            if (width <= 0 || height <= 0) {
+                throw new IllegalArgumentException("Frame size " + width + "x" + height);
+            }
+            frameWidth = width;
+            frameHeight = height;
+            return this;
+        }
+
+        /**
+         * Sets the scale, in pixels per module at the symbol's center.
+         */
+        @NonNull
+        public Builder setModuleSize(float moduleSize) {
+            if (moduleSize <= 0) {
+                throw new IllegalArgumentException("moduleSize <= 0: " + moduleSize);
+            }
+            this.moduleSize = moduleSize;
+            return this;
+        }
+
+        /**
+         * Sets the in-plane rotation, clockwise.
+         */
+        @NonNull
+        public Builder setRotationDegrees(float rotationDegrees) {
+            this.rotationDegrees = rotationDegrees;
+            return this;
+        }
+
+        /**
+         * Sets the keystone of a tilted label, in [0, 1): {@code x} shortens the right edge and
+         * {@code y} the top edge by that fraction, and lengthens the opposite ones as much.
+         */
+        @NonNull
+        public Builder setPerspective(float x, float y) {
+            if (Math.abs(x) >= 1 || Math.abs(y) >= 1) {
+                throw new IllegalArgumentException("Perspective " + x + "," + y);
+            }
+            perspectiveX = x;
+            perspectiveY = y;
+            return this;
+        }
+
+        /**
+         * Moves the symbol's center from the frame's, as fractions of the frame size.
+         */
+        @NonNull
+        public Builder setOffset(float x, float y) {
+            offsetX = x;
+            offsetY = y;
+            return this;
+        }
+
+        /**
+         * Sets the radius of the blur, in pixels, 0 for none. Three box blur passes approximate a
+         * Gaussian with a standard deviation of about the radius.
+         */
+        @NonNull
+        public Builder setBlurRadius(int blurRadius) {
+            if (blurRadius < 0) {
+                throw new IllegalArgumentException("blurRadius < 0: " + blurRadius);
+            }
+            this.blurRadius = blurRadius;
+            return this;
+        }
+
+        /**
+         * Sets the standard deviation of the Gaussian sensor noise, in luma levels.
+         */
+        @NonNull
+        public Builder setNoiseSigma(float noiseSigma) {
+            if (noiseSigma < 0) {
+                throw new IllegalArgumentException("noiseSigma < 0: " + noiseSigma);
+            }
+            this.noiseSigma = noiseSigma;
+            return this;
+        }
+
+        /**
+         * Sets the strength of a specular highlight over the symbol, in [0, 1], 1 saturating its
+         * center.
+         */
+        @NonNull
+        public Builder setGlare(float glare) {
+            if (glare < 0 || glare > 1) {
+                throw new IllegalArgumentException("glare " + glare);
+            }
+            this.glare = glare;
+            return this;
+        }
+
+        /**
+         * Sets the print contrast in (0, 1], 1 being black on white.
+         */
+        @NonNull
+        public Builder setContrast(float contrast) {
+            if (contrast <= 0 || contrast > 1) {
+                throw new IllegalArgumentException("contrast " + contrast);
+            }
+            this.contrast = contrast;
+            return this;
+        }
+
+        /**
+         * Sets the luma of the scene around the label.
+         */
+        @NonNull
+        public Builder setBackground(int background) {
+            this.background = Math.max(0, Math.min(255, background));
+            return this;
+        }
+
+        /**
+         * Sets the seed of the noise, equal options render identical frames.
+         */
+        @NonNull
+        public Builder setSeed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        @NonNull
+        public RenderOptions build() {
+            return new RenderOptions(this);
+        }
+    }
+}
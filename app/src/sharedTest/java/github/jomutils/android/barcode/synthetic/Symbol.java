@@ -0,0 +1,58 @@
+package github.jomutils.android.barcode.synthetic;
+
+/**
+ * The dark and light modules of an encoded barcode, without quiet zone. A linear barcode is a
+ * single row, stretched to its bar height when rendered.
+ */
+public final class Symbol {
+
+    private final Symbology symbology;
+    private final boolean[][] modules;
+
+    Symbol(Symbology symbology, boolean[][] modules) {
+        this.symbology = symbology;
+        this.modules = modules;
+    }
+
+    static Symbol linear(Symbology symbology, boolean[] bars) {
+        return new Symbol(symbology, new boolean[][]{bars});
+    }
+
+    public Symbology getSymbology() {
+        return symbology;
+    }
+
+    public boolean isLinear() {
+        return modules.length == 1;
+    }
+
+    /**
+     * Returns the width in modules.
+     */
+    public int getWidth() {
+        return modules[0].length;
+    }
+
+    /**
+     * Returns the height in modules, 1 for linear barcodes.
+     */
+    public int getHeight() {
+        return modules.length;
+    }
+
+    public boolean isDark(int x, int y) {
+        return modules[y][x];
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder(getHeight() * (getWidth() + 1));
+        for (boolean[] row : modules) {
+            for (boolean dark : row) {
+                builder.append(dark ? '#' : '.');
+            }
+            builder.append('\n');
+        }
+        return builder.toString();
+    }
+}
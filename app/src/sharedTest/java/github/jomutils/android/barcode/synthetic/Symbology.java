@@ -0,0 +1,84 @@
+package github.jomutils.android.barcode.synthetic;
+
+import com.google.mlkit.vision.barcode.Barcode;
+
+/**
+ * The symbologies the {@link SyntheticFrameGenerator} can render, with the ML Kit format each
+ * decodes as.
+ */
+public enum Symbology {
+    /**
+     * 12 digits, the check digit is appended; or 13 with a valid check digit.
+     */
+    EAN_13(Barcode.FORMAT_EAN_13, 10),
+    /**
+     * 11 digits, the check digit is appended; or 12 with a valid check digit.
+     */
+    UPC_A(Barcode.FORMAT_UPC_A, 10),
+    /**
+     * Printable ASCII, digits only in code set C when of even length.
+     */
+    CODE_128(Barcode.FORMAT_CODE_128, 10),
+    /**
+     * Upper case letters, digits and {@code -. $/+%}.
+     */
+    CODE_39(Barcode.FORMAT_CODE_39, 10),
+    /**
+     * Digits, a 0 is prepended to an odd count.
+     */
+    ITF(Barcode.FORMAT_ITF, 10),
+    /**
+     * Latin-1 text of up to a version 10 symbol at the chosen level.
+     */
+    QR_CODE(Barcode.FORMAT_QR_CODE, 4),
+    /**
+     * Latin-1 text of up to 174 data codewords.
+     */
+    DATA_MATRIX(Barcode.FORMAT_DATA_MATRIX, 2);
+
+    private final int format;
+    private final int quietZone;
+
+    Symbology(int format, int quietZone) {
+        this.format = format;
+        this.quietZone = quietZone;
+    }
+
+    /**
+     * Returns the {@link Barcode} format constant.
+     */
+    public int getFormat() {
+        return format;
+    }
+
+    /**
+     * Returns the minimum light margin around the symbol, in modules.
+     */
+    public int getQuietZone() {
+        return quietZone;
+    }
+
+    /**
+     * Encodes {@code content} with QR codes at level M.
+     *
+     * @throws IllegalArgumentException when the content cannot be encoded in this symbology
+     */
+    public Symbol encode(String content) {
+        switch (this) {
+            case EAN_13:
+                return Symbol.linear(this, LinearEncoder.encodeEan13(content));
+            case UPC_A:
+                return Symbol.linear(this, LinearEncoder.encodeUpcA(content));
+            case CODE_128:
+                return Symbol.linear(this, LinearEncoder.encodeCode128(content));
+            case CODE_39:
+                return Symbol.linear(this, LinearEncoder.encodeCode39(content));
+            case ITF:
+                return Symbol.linear(this, LinearEncoder.encodeItf(content));
+            case QR_CODE:
+                return QrEncoder.encode(content, QrEncoder.ErrorCorrection.M);
+            default:
+                return DataMatrixEncoder.encode(content);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package github.jomutils.android.barcode.synthetic;
+
+import androidx.annotation.NonNull;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import github.jomutils.android.barcode.analysis.LumaFrame;
+
+/**
+ * A rendered camera frame: an 8 bit luminance plane without row padding, and where the symbol is.
+ */
+public final class SyntheticFrame {
+
+    private final Symbol symbol;
+    private final String content;
+    private final RenderOptions options;
+    private final byte[] luma;
+    private final float[] corners;
+
+    SyntheticFrame(Symbol symbol, String content, RenderOptions options, byte[] luma, float[] corners) {
+        this.symbol = symbol;
+        this.content = content;
+        this.options = options;
+        this.luma = luma;
+        this.corners = corners;
+    }
+
+    @NonNull
+    public Symbology getSymbology() {
+        return symbol.getSymbology();
+    }
+
+    @NonNull
+    public Symbol getSymbol() {
+        return symbol;
+    }
+
+    /**
+     * Returns the encoded text, as given to the generator.
+     */
+    @NonNull
+    public String getContent() {
+        return content;
+    }
+
+    @NonNull
+    public RenderOptions getOptions() {
+        return options;
+    }
+
+    public int getWidth() {
+        return options.getFrameWidth();
+    }
+
+    public int getHeight() {
+        return options.getFrameHeight();
+    }
+
+    /**
+     * Returns the luminance plane, row stride equal to the width. Not a copy.
+     */
+    @NonNull
+    public byte[] getLuma() {
+        return luma;
+    }
+
+    /**
+     * Returns the symbol's top-left, top-right, bottom-right and bottom-left corners as x, y
+     * pairs in frame pixels, quiet zone excluded.
+     */
+    @NonNull
+    public float[] getCorners() {
+        return corners.clone();
+    }
+
+    /**
+     * Returns the frame as NV21 with neutral chroma, as taken by
+     * {@code InputImage.fromByteArray(..., InputImage.IMAGE_FORMAT_NV21)}.
+     */
+    @NonNull
+    public byte[] toNv21() {
+        final int width = getWidth();
+        final int height = getHeight();
+        final byte[] nv21 = new byte[width * height + 2 * ((width + 1) / 2) * ((height + 1) / 2)];
+        System.arraycopy(luma, 0, nv21, 0, luma.length);
+        Arrays.fill(nv21, luma.length, nv21.length, (byte) 128);
+        return nv21;
+    }
+
+    /**
+     * Points {@code frame} at this frame's luminance plane, as the analyzer does for a camera
+     * frame.
+     */
+    public void setTo(@NonNull LumaFrame frame, long sequence) {
+        frame.set(ByteBuffer.wrap(luma), getWidth(), getWidth(), getHeight(), 0, sequence);
+    }
+}
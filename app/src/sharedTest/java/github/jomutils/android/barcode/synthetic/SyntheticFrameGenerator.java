@@ -0,0 +1,303 @@
+package github.jomutils.android.barcode.synthetic;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Renders barcodes into luminance frames sized like camera frames, for decode rate and cost
+ * measurements without a device or a recorded corpus.
+ * <p>
+ * The symbol, quiet zone included, is scaled to {@link RenderOptions#getModuleSize()}, given a
+ * keystone, rotated and placed in the frame, then sampled 2x2 per pixel. Blur, glare and noise
+ * are applied to the result in that order, noise from {@link RenderOptions#getSeed()} so equal
+ * options give identical frames.
+ */
+public final class SyntheticFrameGenerator {
+
+    private SyntheticFrameGenerator() {
+        //no instance
+    }
+
+    /**
+     * Height of linear barcodes relative to their width.
+     */
+    private static final float LINEAR_ASPECT = 0.5f;
+    private static final int MIN_LINEAR_HEIGHT = 16;
+    /**
+     * Light margin above and below linear barcodes, in modules.
+     */
+    private static final int LINEAR_VERTICAL_MARGIN = 2;
+    /**
+     * Luma distance of ink and paper from mid gray at full contrast.
+     */
+    private static final int PRINT_AMPLITUDE = 100;
+    private static final int BLUR_PASSES = 3;
+
+    @NonNull
+    public static SyntheticFrame render(@NonNull Symbology symbology, @NonNull String content,
+                                        @NonNull RenderOptions options) {
+        return render(symbology.encode(content), content, options);
+    }
+
+    @NonNull
+    public static SyntheticFrame render(@NonNull Symbol symbol, @NonNull String content,
+                                        @NonNull RenderOptions options) {
+        final int quietZone = symbol.getSymbology().getQuietZone();
+        final int symbolWidth = symbol.getWidth();
+        final int symbolHeight = symbol.isLinear()
+                ? Math.max(MIN_LINEAR_HEIGHT, Math.round(symbolWidth * LINEAR_ASPECT))
+                : symbol.getHeight();
+        final int marginY = symbol.isLinear() ? LINEAR_VERTICAL_MARGIN : quietZone;
+        final int totalWidth = symbolWidth + 2 * quietZone;
+        final int totalHeight = symbolHeight + 2 * marginY;
+
+        // Label corners, quiet zone included, around the frame center, then distorted.
+        final float halfWidth = totalWidth * options.getModuleSize() / 2f;
+        final float halfHeight = totalHeight * options.getModuleSize() / 2f;
+        final float[] label = {
+                -halfWidth, -halfHeight,
+                halfWidth, -halfHeight,
+                halfWidth, halfHeight,
+                -halfWidth, halfHeight,
+        };
+        distort(label, options);
+        final Homography toFrame = Homography.squareToQuad(label);
+        final Homography toLabel = toFrame.invert();
+
+        final int width = options.getFrameWidth();
+        final int height = options.getFrameHeight();
+        final int paper = 128 + Math.round(PRINT_AMPLITUDE * options.getContrast());
+        final int ink = 128 - Math.round(PRINT_AMPLITUDE * options.getContrast());
+        final int[] pixels = new int[width * height];
+        Arrays.fill(pixels, options.getBackground());
+
+        final int left = clamp((int) Math.floor(min(label, 0)), width);
+        final int right = clamp((int) Math.ceil(max(label, 0)) + 1, width);
+        final int top = clamp((int) Math.floor(min(label, 1)), height);
+        final int bottom = clamp((int) Math.ceil(max(label, 1)) + 1, height);
+        final double[] point = new double[2];
+        for (int y = top; y < bottom; y++) {
+            for (int x = left; x < right; x++) {
+                int sum = 0;
+                int samples = 0;
+                for (int s = 0; s < 4; s++) {
+                    point[0] = x + 0.25 + (s % 2) * 0.5;
+                    point[1] = y + 0.25 + (s / 2) * 0.5;
+                    toLabel.map(point);
+                    if (point[0] < 0 || point[0] >= 1 || point[1] < 0 || point[1] >= 1) {
+                        continue;
+                    }
+                    final int moduleX = (int) (point[0] * totalWidth) - quietZone;
+                    final int moduleY = (int) (point[1] * totalHeight) - marginY;
+                    final boolean dark = moduleX >= 0 && moduleX < symbolWidth
+                            && moduleY >= 0 && moduleY < symbolHeight
+                            && symbol.isDark(moduleX, symbol.isLinear() ? 0 : moduleY);
+                    sum += dark ? ink : paper;
+                    samples++;
+                }
+                if (samples > 0) {
+                    pixels[y * width + x] = (sum + options.getBackground() * (4 - samples)) / 4;
+                }
+            }
+        }
+
+        if (options.getBlurRadius() > 0) {
+            blur(pixels, width, height, options.getBlurRadius());
+        }
+        if (options.getGlare() > 0) {
+            addGlare(pixels, width, height, label, options.getGlare());
+        }
+        final byte[] luma = new byte[width * height];
+        final Random random = new Random(options.getSeed());
+        final float sigma = options.getNoiseSigma();
+        for (int i = 0; i < pixels.length; i++) {
+            int value = pixels[i];
+            if (sigma > 0) {
+                value += Math.round(random.nextGaussian() * sigma);
+            }
+            luma[i] = (byte) Math.max(0, Math.min(255, value));
+        }
+
+        // Corners without quiet zone.
+        final float u0 = (float) quietZone / totalWidth;
+        final float v0 = (float) marginY / totalHeight;
+        final float[] corners = {u0, v0, 1 - u0, v0, 1 - u0, 1 - v0, u0, 1 - v0};
+        for (int i = 0; i < corners.length; i += 2) {
+            point[0] = corners[i];
+            point[1] = corners[i + 1];
+            toFrame.map(point);
+            corners[i] = (float) point[0];
+            corners[i + 1] = (float) point[1];
+        }
+        return new SyntheticFrame(symbol, content, options, luma, corners);
+    }
+
+    /**
+     * Applies keystone, rotation and placement to corners centered on the origin.
+     */
+    private static void distort(float[] corners, RenderOptions options) {
+        final float px = options.getPerspectiveX();
+        final float py = options.getPerspectiveY();
+        // Top edge (corners 0 and 1) and right edge (corners 1 and 2).
+        for (int i = 0; i < 4; i++) {
+            final boolean topEdge = i < 2;
+            final boolean rightEdge = i == 1 || i == 2;
+            corners[i * 2] *= topEdge ? 1 - py : 1 + py;
+            corners[i * 2 + 1] *= rightEdge ? 1 - px : 1 + px;
+        }
+
+        final double radians = Math.toRadians(options.getRotationDegrees());
+        final float cos = (float) Math.cos(radians);
+        final float sin = (float) Math.sin(radians);
+        final float centerX = options.getFrameWidth() * (0.5f + options.getOffsetX());
+        final float centerY = options.getFrameHeight() * (0.5f + options.getOffsetY());
+        for (int i = 0; i < corners.length; i += 2) {
+            final float x = corners[i];
+            final float y = corners[i + 1];
+            corners[i] = x * cos - y * sin + centerX;
+            corners[i + 1] = x * sin + y * cos + centerY;
+        }
+    }
+
+    private static void blur(int[] pixels, int width, int height, int radius) {
+        final int[] scratch = new int[Math.max(width, height)];
+        for (int pass = 0; pass < BLUR_PASSES; pass++) {
+            for (int y = 0; y < height; y++) {
+                boxBlur(pixels, y * width, 1, width, radius, scratch);
+            }
+            for (int x = 0; x < width; x++) {
+                boxBlur(pixels, x, width, height, radius, scratch);
+            }
+        }
+    }
+
+    /**
+     * Averages {@code length} values {@code stride} apart over a window of {@code 2 * radius + 1},
+     * repeating the edge values.
+     */
+    private static void boxBlur(int[] pixels, int offset, int stride, int length, int radius, int[] scratch) {
+        for (int i = 0; i < length; i++) {
+            scratch[i] = pixels[offset + i * stride];
+        }
+        final int window = 2 * radius + 1;
+        int sum = 0;
+        for (int k = -radius; k <= radius; k++) {
+            sum += scratch[clamp(k, length)];
+        }
+        for (int i = 0; i < length; i++) {
+            pixels[offset + i * stride] = sum / window;
+            sum += scratch[clamp(i + radius + 1, length)] - scratch[clamp(i - radius, length)];
+        }
+    }
+
+    /**
+     * Adds a Gaussian highlight centered a quarter of the way from the label's center to its
+     * top-left corner.
+     */
+    private static void addGlare(int[] pixels, int width, int height, float[] label, float strength) {
+        final float centerX = (label[0] + label[2] + label[4] + label[6]) / 4f;
+        final float centerY = (label[1] + label[3] + label[5] + label[7]) / 4f;
+        final float glareX = centerX + (label[0] - centerX) / 4f;
+        final float glareY = centerY + (label[1] - centerY) / 4f;
+        final float diagonal = (float) Math.hypot(label[4] - label[0], label[5] - label[1]);
+        final float sigma = Math.max(1f, diagonal / 4f);
+        final float peak = 255 * strength;
+        final int reach = (int) Math.ceil(sigma * 3);
+
+        for (int y = clamp((int) glareY - reach, height); y < clamp((int) glareY + reach, height); y++) {
+            for (int x = clamp((int) glareX - reach, width); x < clamp((int) glareX + reach, width); x++) {
+                final float dx = x - glareX;
+                final float dy = y - glareY;
+                pixels[y * width + x] += Math.round(peak * Math.exp(-(dx * dx + dy * dy) / (2 * sigma * sigma)));
+            }
+        }
+    }
+
+    private static int clamp(int value, int length) {
+        return Math.max(0, Math.min(length - 1, value));
+    }
+
+    private static float min(float[] points, int offset) {
+        float min = Float.MAX_VALUE;
+        for (int i = offset; i < points.length; i += 2) {
+            min = Math.min(min, points[i]);
+        }
+        return min;
+    }
+
+    private static float max(float[] points, int offset) {
+        float max = -Float.MAX_VALUE;
+        for (int i = offset; i < points.length; i += 2) {
+            max = Math.max(max, points[i]);
+        }
+        return max;
+    }
+
+    /**
+     * A projective transform of the plane, {@code [x', y', w] = m * [x, y, 1]}.
+     */
+    private static final class Homography {
+        private final double[] m;
+
+        private Homography(double[] m) {
+            this.m = m;
+        }
+
+        /**
+         * Maps the unit square's (0, 0), (1, 0), (1, 1) and (0, 1) to the four x, y pairs.
+         */
+        static Homography squareToQuad(float[] quad) {
+            final double x0 = quad[0], y0 = quad[1];
+            final double x1 = quad[2], y1 = quad[3];
+            final double x2 = quad[4], y2 = quad[5];
+            final double x3 = quad[6], y3 = quad[7];
+            final double dx3 = x0 - x1 + x2 - x3;
+            final double dy3 = y0 - y1 + y2 - y3;
+            if (dx3 == 0 && dy3 == 0) {
+                return new Homography(new double[]{
+                        x1 - x0, x3 - x0, x0,
+                        y1 - y0, y3 - y0, y0,
+                        0, 0, 1,
+                });
+            }
+            final double dx1 = x1 - x2;
+            final double dx2 = x3 - x2;
+            final double dy1 = y1 - y2;
+            final double dy2 = y3 - y2;
+            final double denominator = dx1 * dy2 - dx2 * dy1;
+            final double g = (dx3 * dy2 - dx2 * dy3) / denominator;
+            final double h = (dx1 * dy3 - dx3 * dy1) / denominator;
+            return new Homography(new double[]{
+                    x1 - x0 + g * x1, x3 - x0 + h * x3, x0,
+                    y1 - y0 + g * y1, y3 - y0 + h * y3, y0,
+                    g, h, 1,
+            });
+        }
+
+        Homography invert() {
+            final double a = m[0], b = m[1], c = m[2];
+            final double d = m[3], e = m[4], f = m[5];
+            final double g = m[6], h = m[7], i = m[8];
+            final double[] inverse = {
+                    e * i - f * h, c * h - b * i, b * f - c * e,
+                    f * g - d * i, a * i - c * g, c * d - a * f,
+                    d * h - e * g, b * g - a * h, a * e - b * d,
+            };
+            // The adjugate, the determinant cancels out in the projective division.
+            return new Homography(inverse);
+        }
+
+        /**
+         * Maps the x, y pair in place.
+         */
+        void map(double[] point) {
+            final double x = point[0];
+            final double y = point[1];
+            final double w = m[6] * x + m[7] * y + m[8];
+            point[0] = (m[0] * x + m[1] * y + m[2]) / w;
+            point[1] = (m[3] * x + m[4] * y + m[5]) / w;
+        }
+    }
+}
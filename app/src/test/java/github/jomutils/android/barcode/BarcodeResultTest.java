@@ -0,0 +1,47 @@
+package github.jomutils.android.barcode;
+
+import org.junit.Test;
+
+import github.jomutils.android.barcode.gs1.Gs1Elements;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class BarcodeResultTest {
+
+    @Test
+    public void gs1ElementsAreParsedOnce() {
+        final BarcodeResult result = new BarcodeResult();
+        result.rawValue = "(01)09501101530003";
+        final Gs1Elements elements = result.getGs1Elements();
+        assertTrue(elements.isValid());
+        assertSame(elements, result.getGs1Elements());
+    }
+
+    @Test
+    public void gs1ElementsFollowRawValue() {
+        final BarcodeResult result = new BarcodeResult();
+        result.rawValue = "(01)09501101530003";
+        assertEquals(9501101530003L, result.getGs1Elements().getGtin());
+
+        result.rawValue = "(01)04006381333931";
+        assertEquals(4006381333931L, result.getGs1Elements().getGtin());
+
+        result.rawValue = "not gs1";
+        assertFalse(result.getGs1Elements().isValid());
+    }
+
+    @Test
+    public void returnedGs1ElementsAreNotOverwritten() {
+        final BarcodeResult result = new BarcodeResult();
+        result.rawValue = "(01)09501101530003";
+        final Gs1Elements first = result.getGs1Elements();
+
+        result.rawValue = "(01)04006381333931";
+        assertNotSame(first, result.getGs1Elements());
+        assertEquals(9501101530003L, first.getGtin());
+    }
+}
@@ -0,0 +1,153 @@
+package github.jomutils.android.barcode;
+
+import android.graphics.Point;
+import android.graphics.Rect;
+
+import com.google.mlkit.vision.barcode.Barcode;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Robolectric supplies the {@link Rect} and {@link Point} the geometry is copied from and into.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class PooledBarcodeTest {
+
+    private static final Rect BOX = new Rect(10, 20, 110, 70);
+    private static final Point[] CORNERS = {
+            new Point(10, 20), new Point(110, 22), new Point(108, 70), new Point(12, 68)
+    };
+
+    private final PooledBarcode.Pool pool = new PooledBarcode.Pool(8);
+
+    @Test
+    public void equalityMatchesBarcodeResult() {
+        final PooledBarcode base = acquire("4006381333931", "4006381333931",
+                Barcode.TYPE_PRODUCT, Barcode.FORMAT_EAN_13);
+        final PooledBarcode[] others = {
+                acquire("4006381333931", "4006381333931", Barcode.TYPE_PRODUCT, Barcode.FORMAT_EAN_13),
+                acquire("4006381333932", "4006381333931", Barcode.TYPE_PRODUCT, Barcode.FORMAT_EAN_13),
+                acquire("4006381333931", "400638133393", Barcode.TYPE_PRODUCT, Barcode.FORMAT_EAN_13),
+                acquire("4006381333931", "4006381333931", Barcode.TYPE_ISBN, Barcode.FORMAT_EAN_13),
+                acquire("4006381333931", "4006381333931", Barcode.TYPE_PRODUCT, Barcode.FORMAT_UPC_A),
+                acquire(null, "4006381333931", Barcode.TYPE_PRODUCT, Barcode.FORMAT_EAN_13),
+                acquire("4006381333931", null, Barcode.TYPE_PRODUCT, Barcode.FORMAT_EAN_13),
+        };
+
+        for (PooledBarcode other : others) {
+            final boolean equal = base.toBarcodeResult().equals(other.toBarcodeResult());
+            assertEquals(other.toString(), equal, base.equals(other));
+            assertEquals(other.toString(), equal, other.equals(base));
+            assertEquals(other.toString(), equal, base.getIdentityHash() == other.getIdentityHash());
+            if (equal) {
+                assertEquals(base.hashCode(), other.hashCode());
+            }
+        }
+    }
+
+    @Test
+    public void geometryTakesNoPartInEquality() {
+        final PooledBarcode withGeometry = pool.acquire("https://example.com", "example.com",
+                Barcode.TYPE_URL, Barcode.FORMAT_QR_CODE, BOX, CORNERS);
+        final PooledBarcode without = pool.acquire("https://example.com", "example.com",
+                Barcode.TYPE_URL, Barcode.FORMAT_QR_CODE, null, null);
+
+        assertEquals(withGeometry.toBarcodeResult(), without.toBarcodeResult());
+        assertEquals(withGeometry, without);
+        assertEquals(withGeometry.getIdentityHash(), without.getIdentityHash());
+    }
+
+    @Test
+    public void identityHashKeepsFieldBoundaries() {
+        assertNotEquals(PooledBarcode.computeIdentityHash("ab", "c", 0, 0),
+                PooledBarcode.computeIdentityHash("a", "bc", 0, 0));
+        assertNotEquals(PooledBarcode.computeIdentityHash(null, "", 0, 0),
+                PooledBarcode.computeIdentityHash("", null, 0, 0));
+        assertNotEquals(PooledBarcode.computeIdentityHash("x", "x", 1, 2),
+                PooledBarcode.computeIdentityHash("x", "x", 2, 1));
+    }
+
+    @Test
+    public void releasedInstancesAreReusedWithTheNewFields() {
+        final PooledBarcode first = pool.acquire("first", "first",
+                Barcode.TYPE_TEXT, Barcode.FORMAT_QR_CODE, BOX, CORNERS);
+        final long firstHash = first.getIdentityHash();
+        pool.release(first);
+
+        final PooledBarcode second = pool.acquire("second", "second",
+                Barcode.TYPE_TEXT, Barcode.FORMAT_CODE_128, null, null);
+        assertSame(first, second);
+        assertEquals("second", second.getRawValue());
+        assertEquals(Barcode.FORMAT_CODE_128, second.getFormat());
+        assertFalse(second.hasBoundingBox());
+        assertEquals(0, second.getCornerCount());
+        assertNotEquals(firstHash, second.getIdentityHash());
+        assertEquals(PooledBarcode.computeIdentityHash("second", "second",
+                Barcode.TYPE_TEXT, Barcode.FORMAT_CODE_128), second.getIdentityHash());
+    }
+
+    @Test
+    public void poolKeepsAtMostItsCapacity() {
+        final PooledBarcode.Pool single = new PooledBarcode.Pool(1);
+        final PooledBarcode a = single.acquire("a", "a", Barcode.TYPE_TEXT, Barcode.FORMAT_QR_CODE, null, null);
+        final PooledBarcode b = single.acquire("b", "b", Barcode.TYPE_TEXT, Barcode.FORMAT_QR_CODE, null, null);
+        assertNotSame(a, b);
+        single.release(a);
+        single.release(b);
+
+        assertSame(a, single.acquire("c", "c", Barcode.TYPE_TEXT, Barcode.FORMAT_QR_CODE, null, null));
+        final PooledBarcode fresh = single.acquire("d", "d", Barcode.TYPE_TEXT, Barcode.FORMAT_QR_CODE, null, null);
+        assertNotSame(a, fresh);
+        assertNotSame(b, fresh);
+    }
+
+    @Test
+    public void toBarcodeResultCopiesEveryField() {
+        final PooledBarcode pooled = pool.acquire("https://example.com", "example.com",
+                Barcode.TYPE_URL, Barcode.FORMAT_QR_CODE, BOX, CORNERS);
+        final BarcodeResult result = pooled.toBarcodeResult();
+
+        assertEquals("https://example.com", result.rawValue);
+        assertEquals("example.com", result.displayValue);
+        assertEquals(Barcode.TYPE_URL, result.valueType);
+        assertEquals(Barcode.FORMAT_QR_CODE, result.format);
+        assertEquals(BOX, result.boundingBox);
+        assertArrayEquals(CORNERS, result.cornerPoints);
+        // No source barcode, so no payload.
+        assertNull(result.wifi);
+        assertNull(result.url);
+
+        // The result owns its state, reusing the instance leaves it as it was.
+        pool.release(pooled);
+        pool.acquire("other", "other", Barcode.TYPE_TEXT, Barcode.FORMAT_CODE_128,
+                new Rect(0, 0, 1, 1), new Point[]{new Point(0, 0)});
+        assertEquals("https://example.com", result.rawValue);
+        assertEquals(BOX, result.boundingBox);
+        assertArrayEquals(CORNERS, result.cornerPoints);
+    }
+
+    @Test
+    public void toBarcodeResultLeavesMissingGeometryNull() {
+        final BarcodeResult result = pool.acquire("text", "text",
+                Barcode.TYPE_TEXT, Barcode.FORMAT_QR_CODE, null, null).toBarcodeResult();
+
+        assertNull(result.boundingBox);
+        assertNull(result.cornerPoints);
+    }
+
+    private PooledBarcode acquire(String rawValue, String displayValue, int valueType, int format) {
+        return pool.acquire(rawValue, displayValue, valueType, format, BOX, CORNERS);
+    }
+}
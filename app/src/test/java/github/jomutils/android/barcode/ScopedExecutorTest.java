@@ -0,0 +1,208 @@
+package github.jomutils.android.barcode;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Robolectric supplies the {@link android.os.SystemClock} queue waits are measured with.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class ScopedExecutorTest {
+
+    private final ManualExecutor looper = new ManualExecutor();
+    private final List<Integer> ran = new ArrayList<>();
+
+    @Test
+    public void runsInSubmissionOrderAcrossTheRingBufferEnd() {
+        final ScopedExecutor executor = new ScopedExecutor(looper, 4, ScopedExecutor.OverflowPolicy.DROP_OLDEST);
+        submit(executor, 1, 2, 3);
+        looper.runAll();
+        // The head is now in the middle of the buffer, so these wrap around its end.
+        submit(executor, 4, 5, 6, 7);
+        looper.runAll();
+
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6, 7), ran);
+        assertEquals(7, executor.getExecutedCount());
+        assertEquals(4, executor.getMaxQueueDepth());
+        assertEquals(0, executor.getQueueDepth());
+    }
+
+    @Test
+    public void postsASingleDrainTask() {
+        final ScopedExecutor executor = new ScopedExecutor(looper, 4, ScopedExecutor.OverflowPolicy.DROP_OLDEST);
+        submit(executor, 1, 2, 3);
+        assertEquals(1, looper.size());
+    }
+
+    @Test
+    public void dropOldestMakesRoomForTheNewest() {
+        final ScopedExecutor executor = new ScopedExecutor(looper, 3, ScopedExecutor.OverflowPolicy.DROP_OLDEST);
+        submit(executor, 1, 2, 3, 4, 5);
+        looper.runAll();
+
+        assertEquals(Arrays.asList(3, 4, 5), ran);
+        assertEquals(2, executor.getDroppedCount());
+    }
+
+    @Test
+    public void dropNewestKeepsTheQueue() {
+        final ScopedExecutor executor = new ScopedExecutor(looper, 3, ScopedExecutor.OverflowPolicy.DROP_NEWEST);
+        submit(executor, 1, 2, 3, 4, 5);
+        looper.runAll();
+
+        assertEquals(Arrays.asList(1, 2, 3), ran);
+        assertEquals(2, executor.getDroppedCount());
+    }
+
+    @Test
+    public void growKeepsEveryRunnableInOrder() {
+        final ScopedExecutor executor = new ScopedExecutor(looper, 3, ScopedExecutor.OverflowPolicy.GROW);
+        submit(executor, 1, 2);
+        looper.runAll();
+        // The head is in the middle of the buffer when it grows.
+        submit(executor, 3, 4, 5, 6, 7, 8);
+        looper.runAll();
+
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8), ran);
+        assertEquals(0, executor.getDroppedCount());
+        assertEquals(6, executor.getMaxQueueDepth());
+    }
+
+    @Test
+    public void supersedingReplacesTheQueuedRunnableInPlace() {
+        final ScopedExecutor executor = new ScopedExecutor(looper, 8, ScopedExecutor.OverflowPolicy.DROP_OLDEST);
+        final Executor results = executor.newSupersedingExecutor();
+        final Executor otherResults = executor.newSupersedingExecutor();
+
+        submit(executor, 1);
+        submit(results, 10);
+        submit(executor, 2);
+        submit(otherResults, 20);
+        submit(results, 11);
+        submit(results, 12);
+        looper.runAll();
+
+        assertEquals(Arrays.asList(1, 12, 2, 20), ran);
+        assertEquals(2, executor.getSupersededCount());
+    }
+
+    @Test
+    public void supersedingQueuesAgainOnceTheQueuedOneRan() {
+        final ScopedExecutor executor = new ScopedExecutor(looper, 8, ScopedExecutor.OverflowPolicy.DROP_OLDEST);
+        final Executor results = executor.newSupersedingExecutor();
+
+        submit(results, 1);
+        looper.runAll();
+        submit(results, 2);
+        looper.runAll();
+
+        assertEquals(Arrays.asList(1, 2), ran);
+        assertEquals(0, executor.getSupersededCount());
+    }
+
+    @Test
+    public void supersedingNeverDropsUnkeyedRunnables() {
+        final ScopedExecutor executor = new ScopedExecutor(looper, 4, ScopedExecutor.OverflowPolicy.DROP_OLDEST);
+        final Executor results = executor.newSupersedingExecutor();
+
+        submit(executor, 1, 2, 3);
+        for (int i = 10; i < 20; i++) {
+            submit(results, i);
+        }
+        looper.runAll();
+
+        assertEquals(Arrays.asList(1, 2, 3, 19), ran);
+        assertEquals(0, executor.getDroppedCount());
+    }
+
+    @Test
+    public void drainYieldsToTheWrappedExecutor() {
+        final ScopedExecutor executor = new ScopedExecutor(looper, 32, ScopedExecutor.OverflowPolicy.DROP_OLDEST);
+        for (int i = 0; i < 20; i++) {
+            submit(executor, i);
+        }
+
+        looper.runOne();
+        assertEquals(8, ran.size());
+        assertEquals(1, looper.size());
+        looper.runAll();
+        assertEquals(20, ran.size());
+    }
+
+    @Test
+    public void throwingRunnableDoesNotStallTheQueue() {
+        final ScopedExecutor executor = new ScopedExecutor(looper, 8, ScopedExecutor.OverflowPolicy.DROP_OLDEST);
+        submit(executor, 1);
+        executor.execute(() -> {
+            throw new IllegalStateException();
+        });
+        submit(executor, 2);
+
+        try {
+            looper.runOne();
+            fail();
+        } catch (IllegalStateException expected) {
+            // Reached the wrapped executor, as it would have without the queue.
+        }
+        looper.runAll();
+        assertEquals(Arrays.asList(1, 2), ran);
+    }
+
+    @Test
+    public void shutdownCancelsQueuedAndLaterRunnables() {
+        final ScopedExecutor executor = new ScopedExecutor(looper, 8, ScopedExecutor.OverflowPolicy.DROP_OLDEST);
+        submit(executor, 1, 2);
+        executor.shutdown();
+        submit(executor, 3);
+        looper.runAll();
+
+        assertTrue(ran.isEmpty());
+        assertEquals(2, executor.getCancelledCount());
+        assertEquals(0, executor.getQueueDepth());
+    }
+
+    private void submit(Executor executor, int... values) {
+        for (int value : values) {
+            executor.execute(() -> ran.add(value));
+        }
+    }
+
+    /**
+     * Runs what was posted to it only when asked, like a looper between messages.
+     */
+    private static final class ManualExecutor implements Executor {
+        private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        int size() {
+            return tasks.size();
+        }
+
+        void runOne() {
+            tasks.poll().run();
+        }
+
+        void runAll() {
+            while (!tasks.isEmpty()) {
+                runOne();
+            }
+        }
+    }
+}
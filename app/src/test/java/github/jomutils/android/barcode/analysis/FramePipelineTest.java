@@ -0,0 +1,108 @@
+package github.jomutils.android.barcode.analysis;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class FramePipelineTest {
+
+    private static final int WIDTH = 64;
+    private static final int HEIGHT = 32;
+
+    @Test
+    public void stopsAtTheFirstRejectingStage() {
+        final RecordingStage first = new RecordingStage(true);
+        final RecordingStage rejecting = new RecordingStage(false);
+        final RecordingStage last = new RecordingStage(true);
+        final FramePipeline<String> pipeline = new FramePipeline<String>()
+                .withStage(first).withStage(rejecting).withStage(last);
+
+        assertEquals(FramePipeline.REJECTED, pipeline.prepare(frame(1)));
+        assertSame(rejecting, pipeline.getRejectingStage());
+        assertEquals(1, first.frames);
+        assertEquals(1, rejecting.frames);
+        assertEquals(0, last.frames);
+    }
+
+    @Test
+    public void answersARepeatedRoiFromTheCache() {
+        final RecordingStage stage = new RecordingStage(true);
+        final FramePipeline<String> pipeline = new FramePipeline<String>()
+                .withStage(stage)
+                .withResultCache(new RoiResultCache<>());
+
+        assertEquals(FramePipeline.DECODE, pipeline.prepare(frame(1)));
+        assertNull(pipeline.getPreprocessed());
+        pipeline.onFrameDecoded(1, pipeline.getRoiHash(), "4006381333931", 1);
+
+        assertEquals(FramePipeline.CACHED, pipeline.prepare(frame(2)));
+        assertEquals("4006381333931", pipeline.getCachedResult());
+        pipeline.onCachedFrameDecoded(2, 1);
+        assertEquals(2, stage.lastDecodedSequence);
+        assertEquals(1, stage.lastBarcodeCount);
+    }
+
+    @Test
+    public void preprocessesAfterAMissUntilReleased() {
+        final RetryPreprocessor preprocessor = new RetryPreprocessor(RetryPreprocessor.Variant.INVERT);
+        final FramePipeline<String> pipeline = new FramePipeline<String>()
+                .withRetryPreprocessor(preprocessor);
+
+        assertEquals(FramePipeline.DECODE, pipeline.prepare(frame(1)));
+        assertNull(pipeline.getPreprocessed());
+        pipeline.onFrameDecoded(1, pipeline.getRoiHash(), null, 0);
+
+        assertEquals(FramePipeline.DECODE, pipeline.prepare(frame(2)));
+        final byte[] preprocessed = pipeline.getPreprocessed();
+        assertNotNull(preprocessed);
+        pipeline.release(preprocessed);
+        pipeline.onFrameDecoded(2, pipeline.getRoiHash(), null, 0);
+
+        // Raw and preprocessed frames alternate, the released buffer is reused.
+        pipeline.prepare(frame(3));
+        assertNull(pipeline.getPreprocessed());
+        pipeline.onFrameDecoded(3, pipeline.getRoiHash(), null, 0);
+        pipeline.prepare(frame(4));
+        assertSame(preprocessed, pipeline.getPreprocessed());
+    }
+
+    private static LumaFrame frame(long sequence) {
+        final byte[] luma = new byte[WIDTH * HEIGHT];
+        for (int i = 0; i < luma.length; i++) {
+            luma[i] = (byte) ((i % WIDTH) / 4 % 2 == 0 ? 20 : 230);
+        }
+        final LumaFrame frame = new LumaFrame();
+        frame.set(ByteBuffer.wrap(luma), WIDTH, WIDTH, HEIGHT, 0, sequence);
+        return frame;
+    }
+
+    private static final class RecordingStage extends FrameStage {
+        private final boolean admit;
+        int frames;
+        long lastDecodedSequence;
+        int lastBarcodeCount;
+
+        RecordingStage(boolean admit) {
+            this.admit = admit;
+        }
+
+        @Override
+        public boolean onFrame(@NonNull LumaFrame frame) {
+            frames++;
+            return admit;
+        }
+
+        @Override
+        public void onFrameDecoded(long sequence, int barcodeCount) {
+            lastDecodedSequence = sequence;
+            lastBarcodeCount = barcodeCount;
+        }
+    }
+}
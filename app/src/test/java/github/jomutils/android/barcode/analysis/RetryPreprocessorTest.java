@@ -0,0 +1,145 @@
+package github.jomutils.android.barcode.analysis;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class RetryPreprocessorTest {
+
+    private static final int WIDTH = 64;
+    private static final int HEIGHT = 32;
+
+    @Test
+    public void invertsOnlyTheRoi() {
+        final byte[] luma = filled(10);
+        new RetryPreprocessor().apply(RetryPreprocessor.Variant.INVERT, luma, WIDTH, 8, 8, 16, 16);
+
+        assertEquals(245, luma[8 * WIDTH + 8] & 0xFF);
+        assertEquals(245, luma[15 * WIDTH + 15] & 0xFF);
+        assertEquals(10, luma[7 * WIDTH + 8] & 0xFF);
+        assertEquals(10, luma[8 * WIDTH + 16] & 0xFF);
+    }
+
+    @Test
+    public void contrastStretchUsesFullRange() {
+        final byte[] luma = new byte[WIDTH * HEIGHT];
+        // Faded bars: 100 and 140 only.
+        for (int i = 0; i < luma.length; i++) {
+            luma[i] = (byte) ((i / 4) % 2 == 0 ? 100 : 140);
+        }
+        new RetryPreprocessor().apply(RetryPreprocessor.Variant.CONTRAST_STRETCH, luma, WIDTH, 0, 0, WIDTH, HEIGHT);
+
+        assertEquals(0, luma[0] & 0xFF);
+        assertEquals(255, luma[4] & 0xFF);
+    }
+
+    @Test
+    public void adaptiveThresholdSeparatesBarsUnderUnevenLight() {
+        final byte[] luma = new byte[WIDTH * HEIGHT];
+        // Bars 60 below the background, with a brightness ramp from left to right.
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                final int background = 80 + x * 2;
+                final boolean bar = (x / 3) % 2 == 0;
+                luma[y * WIDTH + x] = (byte) (bar ? background - 60 : background);
+            }
+        }
+        new RetryPreprocessor().apply(RetryPreprocessor.Variant.ADAPTIVE_THRESHOLD, luma, WIDTH, 0, 0, WIDTH, HEIGHT);
+
+        final int row = HEIGHT / 2 * WIDTH;
+        for (int x = 6; x < WIDTH - 6; x++) {
+            final boolean bar = (x / 3) % 2 == 0;
+            assertEquals("x=" + x, bar ? 0 : 255, luma[row + x] & 0xFF);
+        }
+    }
+
+    @Test
+    public void preprocessesOnlyAfterAMissAndAlternatesWithRaw() {
+        final RetryPreprocessor preprocessor = new RetryPreprocessor(
+                RetryPreprocessor.Variant.INVERT, RetryPreprocessor.Variant.CONTRAST_STRETCH);
+        assertFalse(preprocessor.shouldPreprocess());
+
+        preprocessor.onFrameDecoded(0);
+        assertTrue(preprocessor.shouldPreprocess());
+
+        final LumaFrame frame = frame(filled(10), WIDTH);
+        final byte[] first = preprocessor.process(frame);
+        assertEquals(WIDTH * HEIGHT * 3 / 2, first.length);
+        assertEquals(245, first[0] & 0xFF);
+        assertEquals(128, first[WIDTH * HEIGHT] & 0xFF);
+        assertSame(RetryPreprocessor.Variant.CONTRAST_STRETCH, preprocessor.peekVariant());
+
+        // The frame after a preprocessed one goes raw, even after another miss.
+        preprocessor.onFrameDecoded(0);
+        assertFalse(preprocessor.shouldPreprocess());
+        preprocessor.onRawFrame();
+        assertTrue(preprocessor.shouldPreprocess());
+
+        preprocessor.onFrameDecoded(1);
+        assertFalse(preprocessor.shouldPreprocess());
+    }
+
+    @Test
+    public void keepsBuffersOutOfThePoolUntilReleased() {
+        final RetryPreprocessor preprocessor = new RetryPreprocessor(RetryPreprocessor.Variant.INVERT);
+        final LumaFrame frame = frame(filled(10), WIDTH);
+
+        // Three retries decoding at once, each alternating with a raw frame.
+        final byte[][] decoding = new byte[3][];
+        for (int i = 0; i < decoding.length; i++) {
+            preprocessor.onFrameDecoded(0);
+            preprocessor.onRawFrame();
+            assertTrue(preprocessor.shouldPreprocess());
+            decoding[i] = preprocessor.process(frame);
+            for (int j = 0; j < i; j++) {
+                assertNotSame(decoding[j], decoding[i]);
+            }
+        }
+        preprocessor.onRawFrame();
+        assertFalse(preprocessor.shouldPreprocess());
+
+        preprocessor.release(decoding[1]);
+        assertTrue(preprocessor.shouldPreprocess());
+        assertSame(decoding[1], preprocessor.process(frame));
+    }
+
+    @Test
+    public void copiesPaddedRows() {
+        final int rowStride = WIDTH + 16;
+        final byte[] padded = new byte[rowStride * HEIGHT];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < rowStride; x++) {
+                padded[y * rowStride + x] = (byte) (x < WIDTH ? y : 255);
+            }
+        }
+        final LumaFrame frame = frame(padded, rowStride);
+        frame.setRoi(0, 0, 0, 0);
+
+        final RetryPreprocessor preprocessor = new RetryPreprocessor(RetryPreprocessor.Variant.INVERT);
+        final byte[] output = preprocessor.process(frame);
+        for (int y = 0; y < HEIGHT; y++) {
+            assertEquals(y, output[y * WIDTH] & 0xFF);
+            assertEquals(y, output[y * WIDTH + WIDTH - 1] & 0xFF);
+        }
+    }
+
+    private static byte[] filled(int value) {
+        final byte[] luma = new byte[WIDTH * HEIGHT];
+        for (int i = 0; i < luma.length; i++) {
+            luma[i] = (byte) value;
+        }
+        return luma;
+    }
+
+    private static LumaFrame frame(byte[] luma, int rowStride) {
+        final LumaFrame frame = new LumaFrame();
+        frame.set(ByteBuffer.wrap(luma), rowStride, WIDTH, HEIGHT, 0, 1);
+        return frame;
+    }
+}
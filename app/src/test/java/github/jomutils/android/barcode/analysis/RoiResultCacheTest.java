@@ -0,0 +1,156 @@
+package github.jomutils.android.barcode.analysis;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import github.jomutils.android.barcode.synthetic.RenderOptions;
+import github.jomutils.android.barcode.synthetic.SyntheticFrame;
+import github.jomutils.android.barcode.synthetic.SyntheticFrameGenerator;
+import github.jomutils.android.barcode.synthetic.Symbology;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class RoiResultCacheTest {
+
+    private static final RenderOptions EAN_13 = new RenderOptions.Builder()
+            .setFrameSize(640, 480).setModuleSize(4).build();
+    private static final RenderOptions QR_CODE = new RenderOptions.Builder()
+            .setFrameSize(640, 480).setModuleSize(6).build();
+    private static final String EAN_13_CONTENT = "400638133393";
+    private static final String QR_CODE_CONTENT = "https://example.com/a";
+
+    private final RoiResultCache<String> cache = new RoiResultCache<>();
+
+    @Test
+    public void sameEan13HitsUnderBrightnessAndNoise() {
+        final SyntheticFrame reference = SyntheticFrameGenerator.render(Symbology.EAN_13, EAN_13_CONTENT, EAN_13);
+        final int[] roi = roiAround(reference);
+
+        for (int brightness = -40; brightness <= 40; brightness += 40) {
+            for (int seed = 1; seed <= 3; seed++) {
+                final SyntheticFrame noisy = SyntheticFrameGenerator.render(Symbology.EAN_13, EAN_13_CONTENT,
+                        EAN_13.buildUpon().setNoiseSigma(4 * seed).setContrast(0.7f).setSeed(seed).build());
+                assertHit(reference, noisy, brightness, roi);
+            }
+        }
+    }
+
+    @Test
+    public void sameQrCodeHitsUnderBrightnessAndNoise() {
+        final SyntheticFrame reference = SyntheticFrameGenerator.render(Symbology.QR_CODE, QR_CODE_CONTENT, QR_CODE);
+        final int[] roi = roiAround(reference);
+
+        for (int brightness = -40; brightness <= 40; brightness += 40) {
+            for (int seed = 1; seed <= 3; seed++) {
+                final SyntheticFrame noisy = SyntheticFrameGenerator.render(Symbology.QR_CODE, QR_CODE_CONTENT,
+                        QR_CODE.buildUpon().setNoiseSigma(4 * seed).setSeed(seed).build());
+                assertHit(reference, noisy, brightness, roi);
+            }
+        }
+    }
+
+    @Test
+    public void differentEan13AtTheSamePositionMisses() {
+        final SyntheticFrame reference = SyntheticFrameGenerator.render(Symbology.EAN_13, EAN_13_CONTENT, EAN_13);
+        final int[] roi = roiAround(reference);
+        cache.put(cache.hash(frame(reference, 0, roi)), EAN_13_CONTENT);
+
+        // The first differs from the reference in its last digit and check digit only.
+        for (String content : new String[]{"400638133394", "012345678901", "950110153000", "590123412345"}) {
+            final SyntheticFrame other = SyntheticFrameGenerator.render(Symbology.EAN_13, content, EAN_13);
+            assertNull(content, cache.get(cache.hash(frame(other, 0, roi))));
+        }
+    }
+
+    @Test
+    public void differentQrCodeAtTheSamePositionMisses() {
+        final SyntheticFrame reference = SyntheticFrameGenerator.render(Symbology.QR_CODE, QR_CODE_CONTENT, QR_CODE);
+        final int[] roi = roiAround(reference);
+        cache.put(cache.hash(frame(reference, 0, roi)), QR_CODE_CONTENT);
+
+        for (String content : new String[]{"https://example.com/b", "HELLO", "WIFI:S:x;T:WPA;P:y;;"}) {
+            final SyntheticFrame other = SyntheticFrameGenerator.render(Symbology.QR_CODE, content, QR_CODE);
+            assertNull(content, cache.get(cache.hash(frame(other, 0, roi))));
+        }
+    }
+
+    @Test
+    public void invalidateDropsOnlyTheEntriesWithinTolerance() {
+        final SyntheticFrame ean13 = SyntheticFrameGenerator.render(Symbology.EAN_13, EAN_13_CONTENT, EAN_13);
+        final SyntheticFrame qrCode = SyntheticFrameGenerator.render(Symbology.QR_CODE, QR_CODE_CONTENT, QR_CODE);
+        final int[] roi = roiAround(ean13);
+        final long ean13Hash = cache.hash(frame(ean13, 0, roi));
+        final long qrCodeHash = cache.hash(frame(qrCode, 0, roi));
+        cache.put(ean13Hash, EAN_13_CONTENT);
+        cache.put(qrCodeHash, QR_CODE_CONTENT);
+
+        // A noisy frame of the same code decoded to nothing.
+        final SyntheticFrame noisy = SyntheticFrameGenerator.render(Symbology.EAN_13, EAN_13_CONTENT,
+                EAN_13.buildUpon().setNoiseSigma(8).build());
+        cache.invalidate(cache.hash(frame(noisy, 20, roi)));
+
+        assertNull(cache.get(ean13Hash));
+        assertEquals(QR_CODE_CONTENT, cache.get(qrCodeHash));
+    }
+
+    @Test
+    public void entryExpiresAfterMaxHits() {
+        final SyntheticFrame reference = SyntheticFrameGenerator.render(Symbology.EAN_13, EAN_13_CONTENT, EAN_13);
+        final long hash = cache.hash(frame(reference, 0, roiAround(reference)));
+        cache.put(hash, EAN_13_CONTENT);
+
+        for (int i = 0; i < RoiResultCache.MAX_HITS_PER_ENTRY; i++) {
+            assertEquals(EAN_13_CONTENT, cache.get(hash));
+        }
+        assertNull(cache.get(hash));
+        assertEquals(RoiResultCache.MAX_HITS_PER_ENTRY, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+
+        // Decoding it again brings it back.
+        cache.put(hash, EAN_13_CONTENT);
+        assertEquals(EAN_13_CONTENT, cache.get(hash));
+    }
+
+    private void assertHit(SyntheticFrame reference, SyntheticFrame variant, int brightness, int[] roi) {
+        cache.clear();
+        cache.put(cache.hash(frame(reference, 0, roi)), "reference");
+        assertEquals(variant.getOptions() + ", brightness " + brightness, "reference",
+                cache.get(cache.hash(frame(variant, brightness, roi))));
+    }
+
+    /**
+     * Returns the symbol's bounds with a margin, the reticle a user holds the code in.
+     */
+    private static int[] roiAround(SyntheticFrame frame) {
+        final float[] corners = frame.getCorners();
+        float left = Float.MAX_VALUE;
+        float top = Float.MAX_VALUE;
+        float right = 0;
+        float bottom = 0;
+        for (int i = 0; i < corners.length; i += 2) {
+            left = Math.min(left, corners[i]);
+            right = Math.max(right, corners[i]);
+            top = Math.min(top, corners[i + 1]);
+            bottom = Math.max(bottom, corners[i + 1]);
+        }
+        final int margin = 8;
+        return new int[]{(int) left - margin, (int) top - margin, (int) right + margin, (int) bottom + margin};
+    }
+
+    /**
+     * Wraps a copy of {@code synthetic} with every luma level shifted by {@code brightness}, as an
+     * exposure change would.
+     */
+    private static LumaFrame frame(SyntheticFrame synthetic, int brightness, int[] roi) {
+        final byte[] luma = synthetic.getLuma().clone();
+        for (int i = 0; i < luma.length; i++) {
+            luma[i] = (byte) Math.max(0, Math.min(255, (luma[i] & 0xFF) + brightness));
+        }
+        final LumaFrame lumaFrame = new LumaFrame();
+        lumaFrame.set(ByteBuffer.wrap(luma), synthetic.getWidth(), synthetic.getWidth(), synthetic.getHeight(), 0, 1);
+        lumaFrame.setRoi(roi[0], roi[1], roi[2], roi[3]);
+        return lumaFrame;
+    }
+}
@@ -0,0 +1,99 @@
+package github.jomutils.android.barcode.analysis;
+
+import android.os.SystemClock;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Robolectric supplies the {@link SystemClock} the peak decays with.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class SharpnessGateTest {
+
+    private static final int WIDTH = 96;
+    private static final int HEIGHT = 32;
+
+    private final LumaFrame frame = new LumaFrame();
+    private long sequence;
+
+    @Test
+    public void scoreDoesNotDependOnContrast() {
+        final float crisp = SharpnessGate.measure(frame(bars(20, 235, 0)));
+        final float faded = SharpnessGate.measure(frame(bars(110, 150, 0)));
+        assertEquals(crisp, faded, crisp * 0.3f);
+    }
+
+    @Test
+    public void blurLowersTheScore() {
+        final float sharp = SharpnessGate.measure(frame(bars(20, 235, 0)));
+        final float blurred = SharpnessGate.measure(frame(bars(20, 235, 2)));
+        assertTrue(blurred < sharp * 0.4f);
+    }
+
+    @Test
+    public void admitsAFadedLabelAfterACrispOne() {
+        final SharpnessGate gate = new SharpnessGate();
+        assertTrue(gate.onFrame(frame(bars(20, 235, 0))));
+        advanceMillis(33);
+        assertTrue(gate.onFrame(frame(bars(110, 150, 0))));
+    }
+
+    @Test
+    public void peakDecaysWithTimeNotFrames() {
+        final SharpnessGate gate = new SharpnessGate();
+        final byte[] sharp = bars(20, 235, 0);
+        final byte[] blurred = bars(20, 235, 2);
+
+        assertTrue(gate.onFrame(frame(sharp)));
+        advanceMillis(33);
+        assertFalse(gate.onFrame(frame(blurred)));
+
+        // Few frames, but seconds apart, as behind a static scene gate.
+        advanceMillis(5000);
+        assertTrue(gate.onFrame(frame(blurred)));
+    }
+
+    private LumaFrame frame(byte[] luma) {
+        frame.set(ByteBuffer.wrap(luma), WIDTH, WIDTH, HEIGHT, 0, ++sequence);
+        frame.setRoi(0, 0, WIDTH, HEIGHT);
+        return frame;
+    }
+
+    private static void advanceMillis(long millis) {
+        SystemClock.setCurrentTimeMillis(SystemClock.elapsedRealtime() + millis);
+    }
+
+    /**
+     * Vertical bars 8 pixels wide alternating between {@code dark} and {@code light}, box blurred
+     * horizontally by {@code blurRadius}.
+     */
+    private static byte[] bars(int dark, int light, int blurRadius) {
+        final int[] row = new int[WIDTH];
+        for (int x = 0; x < WIDTH; x++) {
+            row[x] = (x / 8) % 2 == 0 ? dark : light;
+        }
+        final byte[] luma = new byte[WIDTH * HEIGHT];
+        for (int x = 0; x < WIDTH; x++) {
+            int sum = 0;
+            int count = 0;
+            for (int i = Math.max(0, x - blurRadius); i <= Math.min(WIDTH - 1, x + blurRadius); i++) {
+                sum += row[i];
+                count++;
+            }
+            for (int y = 0; y < HEIGHT; y++) {
+                luma[y * WIDTH + x] = (byte) (sum / count);
+            }
+        }
+        return luma;
+    }
+}
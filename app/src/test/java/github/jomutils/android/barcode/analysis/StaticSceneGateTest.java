@@ -0,0 +1,81 @@
+package github.jomutils.android.barcode.analysis;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class StaticSceneGateTest {
+
+    private static final int WIDTH = 64;
+    private static final int HEIGHT = 64;
+
+    private final LumaFrame frame = new LumaFrame();
+    private long sequence;
+
+    @Test
+    public void skipsTheSceneOfTheLastDecodedFrame() {
+        final StaticSceneGate gate = new StaticSceneGate();
+        final byte[] scene = scene(40);
+
+        assertTrue(offer(gate, scene));
+        gate.onFrameDecoded(sequence, 0);
+        assertFalse(offer(gate, scene));
+        assertTrue(offer(gate, scene(200)));
+    }
+
+    @Test
+    public void keepsLettingThroughANewSceneUntilItIsDecoded() {
+        final StaticSceneGate gate = new StaticSceneGate();
+        assertTrue(offer(gate, scene(40)));
+        gate.onFrameDecoded(sequence, 0);
+
+        // A later stage rejects the first frames of the new scene, so they never decode.
+        final byte[] label = scene(200);
+        assertTrue(offer(gate, label));
+        assertTrue(offer(gate, label));
+        assertTrue(offer(gate, label));
+        gate.onFrameDecoded(sequence, 1);
+        assertFalse(offer(gate, label));
+    }
+
+    @Test
+    public void ignoresDecodesOfFramesStagedBefore() {
+        final StaticSceneGate gate = new StaticSceneGate();
+        assertTrue(offer(gate, scene(40)));
+        final long first = sequence;
+        final byte[] label = scene(200);
+        assertTrue(offer(gate, label));
+
+        gate.onFrameDecoded(first, 0);
+        assertTrue(offer(gate, label));
+    }
+
+    @Test
+    public void forcesADecodeAfterTheInterval() {
+        final StaticSceneGate gate = new StaticSceneGate();
+        gate.setForcedDecodeIntervalFrames(3);
+        final byte[] scene = scene(40);
+        assertTrue(offer(gate, scene));
+        gate.onFrameDecoded(sequence, 0);
+
+        assertFalse(offer(gate, scene));
+        assertFalse(offer(gate, scene));
+        assertTrue(offer(gate, scene));
+    }
+
+    private boolean offer(StaticSceneGate gate, byte[] luma) {
+        frame.set(ByteBuffer.wrap(luma), WIDTH, WIDTH, HEIGHT, 0, ++sequence);
+        frame.setRoi(0, 0, WIDTH, HEIGHT);
+        return gate.onFrame(frame);
+    }
+
+    private static byte[] scene(int value) {
+        final byte[] luma = new byte[WIDTH * HEIGHT];
+        Arrays.fill(luma, (byte) value);
+        return luma;
+    }
+}
@@ -0,0 +1,89 @@
+package github.jomutils.android.barcode.analytics;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ScanSessionLogTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static ScanSessionRecord record(String siteId, long framesAnalyzed) {
+        return new ScanSessionRecord(1_600_000_000_000L, 4200, siteId, 350, 900,
+                framesAnalyzed, 12, 1, new int[]{1, 256}, new int[]{2, 1}, 0, 3, 2.5f);
+    }
+
+    private static List<String> readLines(File file) throws Exception {
+        return Files.readAllLines(file.toPath(), Charset.forName("UTF-8"));
+    }
+
+    @Test
+    public void writesOneJsonObjectPerLine() {
+        assertEquals("{\"startedAt\":1600000000000,\"durationMs\":4200,\"site\":\"dock \\\"A\\\"\""
+                        + ",\"firstDetectionMs\":350,\"firstResultMs\":900,\"framesAnalyzed\":40"
+                        + ",\"framesDropped\":12,\"decoderFailures\":1,\"formats\":{\"1\":2,\"256\":1}"
+                        + ",\"torchOnMs\":0,\"zoomChanges\":3,\"maxZoom\":2.5}",
+                record("dock \"A\"", 40).toJson());
+    }
+
+    @Test
+    public void batchesUntilFlushed() throws Exception {
+        final File file = new File(folder.getRoot(), ScanSessionLog.FILE_NAME);
+        final ScanSessionLog log = new ScanSessionLog(file, 1024 * 1024);
+
+        log.append(record("a", 1));
+        log.append(record("a", 2));
+        // Runs after the appends, on the log's single thread.
+        log.flush().get();
+        final List<String> lines = readLines(file);
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(1).contains("\"framesAnalyzed\":2"));
+
+        // A full batch is written without a flush.
+        for (int i = 0; i < ScanSessionLog.BATCH_SIZE; i++) {
+            log.append(record("b", i));
+        }
+        log.flush().get();
+        assertEquals(2 + ScanSessionLog.BATCH_SIZE, readLines(file).size());
+    }
+
+    @Test
+    public void rollsOverWhenFull() throws Exception {
+        final File file = new File(folder.getRoot(), ScanSessionLog.FILE_NAME);
+        final int lineBytes = record("a", 1).toJson().length() + 1;
+        final ScanSessionLog log = new ScanSessionLog(file, lineBytes * 3);
+
+        for (int i = 0; i < 4; i++) {
+            log.append(record("a", i));
+            log.flush().get();
+        }
+
+        final List<File> files = log.getFiles();
+        assertEquals(2, files.size());
+        assertEquals(3, readLines(files.get(0)).size());
+        final List<String> current = readLines(files.get(1));
+        assertEquals(1, current.size());
+        assertTrue(current.get(0).contains("\"framesAnalyzed\":3"));
+    }
+
+    @Test
+    public void flushWithoutRecordsWritesNothing() throws Exception {
+        final File file = new File(folder.getRoot(), ScanSessionLog.FILE_NAME);
+        final ScanSessionLog log = new ScanSessionLog(file, 1024);
+
+        log.flush().get();
+
+        assertFalse(file.exists());
+        assertTrue(log.getFiles().isEmpty());
+    }
+}
@@ -0,0 +1,49 @@
+package github.jomutils.android.barcode.batch;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BatchBarcodeDecoderTest {
+
+    @Test
+    public void smallImagesAreNotSampled() {
+        assertEquals(1, BatchBarcodeDecoder.calculateSampleSize(1600, 1200, 1600));
+        assertEquals(1, BatchBarcodeDecoder.calculateSampleSize(800, 600, 1600));
+    }
+
+    @Test
+    public void samplingStopsAtTheMaxDimension() {
+        assertEquals(1, BatchBarcodeDecoder.calculateSampleSize(3199, 2000, 1600));
+        assertEquals(2, BatchBarcodeDecoder.calculateSampleSize(3200, 2000, 1600));
+        assertEquals(4, BatchBarcodeDecoder.calculateSampleSize(2000, 8000, 1600));
+    }
+
+    @Test
+    public void scalingBringsTheLongestSideToTheMax() {
+        // 3199 px is not sampled, the scale does the rest.
+        assertEquals(1600, BatchBarcodeDecoder.scaleToMax(3199, 3199, 2000, 1600));
+        assertEquals(1000, BatchBarcodeDecoder.scaleToMax(2000, 3199, 2000, 1600));
+
+        for (int longest = 1601; longest < 6400; longest += 97) {
+            final int sampleSize = BatchBarcodeDecoder.calculateSampleSize(longest, 100, 1600);
+            final int sampled = (longest + sampleSize - 1) / sampleSize;
+            final int scaled = BatchBarcodeDecoder.scaleToMax(sampled, sampled, 100, 1600);
+            assertTrue("longest=" + longest, scaled <= 1600 && scaled >= 1599);
+        }
+    }
+
+    @Test
+    public void scalingLeavesImagesWithinTheMaxAlone() {
+        assertEquals(640, BatchBarcodeDecoder.scaleToMax(640, 640, 480, 1600));
+        assertEquals(1, BatchBarcodeDecoder.scaleToMax(1, 10000, 1, 1600));
+    }
+
+    @Test
+    public void bitmapCostFollowsTheSampledSize() {
+        assertEquals(4000L * 3000 * 4 / 1024, BatchBarcodeDecoder.estimateBitmapKb(4000, 3000, 1));
+        assertEquals(2000L * 1500 * 4 / 1024, BatchBarcodeDecoder.estimateBitmapKb(4000, 3000, 2));
+        assertEquals(1, BatchBarcodeDecoder.estimateBitmapKb(1, 1, 1));
+    }
+}
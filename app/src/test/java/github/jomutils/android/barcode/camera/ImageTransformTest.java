@@ -0,0 +1,200 @@
+package github.jomutils.android.barcode.camera;
+
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+import androidx.camera.view.PreviewView;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Robolectric supplies the {@link Rect} and {@link RectF} mapped between view and buffer.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class ImageTransformTest {
+
+    private static final int BUFFER_WIDTH = 640;
+    private static final int BUFFER_HEIGHT = 480;
+    private static final Rect FULL_BUFFER = new Rect(0, 0, BUFFER_WIDTH, BUFFER_HEIGHT);
+    private static final int[] ROTATIONS = {0, 90, 180, 270};
+    private static final float DELTA = 1e-3f;
+
+    private final float[] points = new float[4];
+    private final Rect out = new Rect();
+
+    @Test
+    public void viewCornerMapsToTheRotatedBufferCorner() {
+        // The view shows the upright image pixel for pixel, its top left 10x20 is then the buffer
+        // corner the rotation brings to the top left.
+        final Rect[] expected = {
+                new Rect(0, 0, 10, 20),
+                new Rect(0, 470, 20, 480),
+                new Rect(630, 460, 640, 480),
+                new Rect(620, 0, 640, 10),
+        };
+        for (int i = 0; i < ROTATIONS.length; i++) {
+            final int rotation = ROTATIONS[i];
+            final boolean rotated = rotation == 90 || rotation == 270;
+            final int uprightWidth = rotated ? BUFFER_HEIGHT : BUFFER_WIDTH;
+            final int uprightHeight = rotated ? BUFFER_WIDTH : BUFFER_HEIGHT;
+            final ImageTransform transform = new ImageTransform(BUFFER_WIDTH, BUFFER_HEIGHT, rotation,
+                    FULL_BUFFER, uprightWidth, uprightHeight, PreviewView.ScaleType.FILL_CENTER, false);
+
+            assertEquals(uprightWidth, transform.getImageWidth());
+            assertEquals(uprightHeight, transform.getImageHeight());
+            assertEquals(1f, transform.getScale(), DELTA);
+            transform.viewToBuffer(new RectF(0, 0, 10, 20), points, out);
+            assertEquals("rotation " + rotation, expected[i], out);
+        }
+    }
+
+    @Test
+    public void cropRectFillsTheViewForEachRotation() {
+        final Rect crop = new Rect(80, 60, 560, 420);
+        for (int rotation : ROTATIONS) {
+            final boolean rotated = rotation == 90 || rotation == 270;
+            final int viewWidth = (rotated ? crop.height() : crop.width()) * 2;
+            final int viewHeight = (rotated ? crop.width() : crop.height()) * 2;
+            final ImageTransform transform = new ImageTransform(BUFFER_WIDTH, BUFFER_HEIGHT, rotation,
+                    crop, viewWidth, viewHeight, PreviewView.ScaleType.FIT_CENTER, false);
+
+            assertEquals(2f, transform.getScale(), DELTA);
+            transform.viewToBuffer(new RectF(0, 0, viewWidth, viewHeight), points, out);
+            assertEquals("rotation " + rotation, crop, out);
+        }
+
+        // Upright and buffer coincide without rotation, the crop's top left is the view's.
+        final ImageTransform transform = new ImageTransform(BUFFER_WIDTH, BUFFER_HEIGHT, 0,
+                crop, 960, 720, PreviewView.ScaleType.FILL_CENTER, false);
+        assertEquals(0f, transform.toViewX(80), DELTA);
+        assertEquals(0f, transform.toViewY(60), DELTA);
+        assertEquals(960f, transform.toViewX(560), DELTA);
+        assertEquals(720f, transform.toViewY(420), DELTA);
+        assertFalse(transform.isVisible(79, 240));
+        assertTrue(transform.isVisible(80, 240));
+    }
+
+    @Test
+    public void bufferRectRoundTripsThroughTheView() {
+        final Rect crop = new Rect(40, 30, 600, 450);
+        final Rect bufferRect = new Rect(100, 80, 260, 200);
+        final PreviewView.ScaleType[] scaleTypes = {
+                PreviewView.ScaleType.FILL_CENTER, PreviewView.ScaleType.FIT_CENTER,
+                PreviewView.ScaleType.FILL_START, PreviewView.ScaleType.FIT_END,
+        };
+        for (int rotation : ROTATIONS) {
+            for (PreviewView.ScaleType scaleType : scaleTypes) {
+                for (boolean flipped : new boolean[]{false, true}) {
+                    final ImageTransform transform = new ImageTransform(BUFFER_WIDTH, BUFFER_HEIGHT, rotation,
+                            crop, 1080, 1920, scaleType, flipped);
+
+                    final RectF viewRect = bufferToView(transform, bufferRect);
+                    transform.viewToBuffer(viewRect, points, out);
+                    assertEquals(transform.toString() + ", flipped " + flipped, bufferRect, out);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void fillCropsTheImageAndFitLetterboxesIt() {
+        final RectF square = new RectF(0, 0, 1000, 1000);
+
+        final ImageTransform fill = new ImageTransform(BUFFER_WIDTH, BUFFER_HEIGHT, 0,
+                FULL_BUFFER, 1000, 1000, PreviewView.ScaleType.FILL_CENTER, false);
+        assertEquals(1000f / 480, fill.getScale(), DELTA);
+        fill.viewToBuffer(square, points, out);
+        assertEquals(new Rect(80, 0, 560, 480), out);
+        assertFalse(fill.isVisible(10, 240));
+
+        final ImageTransform fillStart = new ImageTransform(BUFFER_WIDTH, BUFFER_HEIGHT, 0,
+                FULL_BUFFER, 1000, 1000, PreviewView.ScaleType.FILL_START, false);
+        fillStart.viewToBuffer(square, points, out);
+        assertEquals(new Rect(0, 0, 480, 480), out);
+
+        final ImageTransform fit = new ImageTransform(BUFFER_WIDTH, BUFFER_HEIGHT, 0,
+                FULL_BUFFER, 1000, 1000, PreviewView.ScaleType.FIT_CENTER, false);
+        assertEquals(1000f / 640, fit.getScale(), DELTA);
+        assertEquals(125f, fit.toViewY(0), DELTA);
+        assertEquals(875f, fit.toViewY(480), DELTA);
+        assertTrue(fit.isVisible(10, 240));
+        // The bars above and below show no image, the mapped rect is clamped to the buffer.
+        fit.viewToBuffer(square, points, out);
+        assertEquals(FULL_BUFFER, out);
+
+        final ImageTransform fitEnd = new ImageTransform(BUFFER_WIDTH, BUFFER_HEIGHT, 0,
+                FULL_BUFFER, 1000, 1000, PreviewView.ScaleType.FIT_END, false);
+        assertEquals(250f, fitEnd.toViewY(0), DELTA);
+        assertEquals(1000f, fitEnd.toViewY(480), DELTA);
+    }
+
+    @Test
+    public void flippedViewMirrorsX() {
+        final ImageTransform transform = new ImageTransform(BUFFER_WIDTH, BUFFER_HEIGHT, 0,
+                FULL_BUFFER, BUFFER_WIDTH, BUFFER_HEIGHT, PreviewView.ScaleType.FILL_CENTER, true);
+
+        assertEquals(640f, transform.toViewX(0), DELTA);
+        assertEquals(540f, transform.toViewX(100), DELTA);
+        assertEquals(100f, transform.toViewY(100), DELTA);
+
+        final float[] corners = {0, 0, 100, 50};
+        transform.mapPoints(corners, 2);
+        assertEquals(640f, corners[0], DELTA);
+        assertEquals(540f, corners[2], DELTA);
+        assertEquals(50f, corners[3], DELTA);
+
+        transform.viewToBuffer(new RectF(0, 0, 100, 50), points, out);
+        assertEquals(new Rect(540, 0, 640, 50), out);
+    }
+
+    @Test
+    public void withoutAViewEverythingIsVisible() {
+        final ImageTransform transform = new ImageTransform(BUFFER_WIDTH, BUFFER_HEIGHT, 90,
+                FULL_BUFFER, 0, 0, PreviewView.ScaleType.FILL_CENTER, false);
+
+        assertFalse(transform.hasView());
+        assertEquals(1f, transform.getScale(), DELTA);
+        assertTrue(transform.isVisible(-1, 10_000));
+    }
+
+    /**
+     * Maps a buffer rect to the view: rotated clockwise by the transform's degrees into the
+     * upright image, then through {@link ImageTransform#toViewX(float)} and
+     * {@link ImageTransform#toViewY(float)}.
+     */
+    private static RectF bufferToView(ImageTransform transform, Rect rect) {
+        final float[] corners = {rect.left, rect.top, rect.right, rect.bottom};
+        for (int i = 0; i < corners.length; i += 2) {
+            final float x = corners[i];
+            final float y = corners[i + 1];
+            switch (transform.getRotationDegrees()) {
+                case 90:
+                    corners[i] = BUFFER_HEIGHT - y;
+                    corners[i + 1] = x;
+                    break;
+                case 180:
+                    corners[i] = BUFFER_WIDTH - x;
+                    corners[i + 1] = BUFFER_HEIGHT - y;
+                    break;
+                case 270:
+                    corners[i] = y;
+                    corners[i + 1] = BUFFER_WIDTH - x;
+                    break;
+                default:
+                    break;
+            }
+            corners[i] = transform.toViewX(corners[i]);
+            corners[i + 1] = transform.toViewY(corners[i + 1]);
+        }
+        return new RectF(Math.min(corners[0], corners[2]), Math.min(corners[1], corners[3]),
+                Math.max(corners[0], corners[2]), Math.max(corners[1], corners[3]));
+    }
+}
@@ -0,0 +1,75 @@
+package github.jomutils.android.barcode.camera;
+
+import android.graphics.Rect;
+
+import androidx.camera.view.PreviewView;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Robolectric supplies the {@link Rect} crop rects are compared and copied with.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class ImageTransformTrackerTest {
+
+    private final ImageTransformTracker tracker = new ImageTransformTracker();
+
+    @Test
+    public void publishesNothingBeforeTheFirstFrame() {
+        tracker.setView(1080, 1920, PreviewView.ScaleType.FILL_CENTER, false);
+        assertNull(tracker.get());
+
+        tracker.onImage(640, 480, 90, new Rect(0, 0, 640, 480));
+        final ImageTransform transform = tracker.get();
+        assertNotNull(transform);
+        assertTrue(transform.hasView());
+        assertEquals(480, transform.getImageWidth());
+        assertEquals(1080, transform.getViewWidth());
+    }
+
+    @Test
+    public void keepsTheInstanceWhileTheFramesMatch() {
+        tracker.onImage(640, 480, 90, new Rect(0, 0, 640, 480));
+        final ImageTransform first = tracker.get();
+        assertNotNull(first);
+        assertFalse(first.hasView());
+
+        tracker.onImage(640, 480, 90, new Rect(0, 0, 640, 480));
+        assertSame(first, tracker.get());
+
+        tracker.onImage(640, 480, 90, new Rect(0, 60, 640, 420));
+        final ImageTransform cropped = tracker.get();
+        assertNotSame(first, cropped);
+        assertTrue(cropped.matchesImage(640, 480, 90, new Rect(0, 60, 640, 420)));
+
+        tracker.onImage(640, 480, 270, new Rect(0, 60, 640, 420));
+        assertEquals(270, tracker.get().getRotationDegrees());
+    }
+
+    @Test
+    public void viewChangesKeepTheImageGeometry() {
+        final Rect crop = new Rect(80, 60, 560, 420);
+        tracker.onImage(640, 480, 0, crop);
+        // The tracker holds a copy, later changes to the frame's rect are not seen.
+        crop.set(0, 0, 1, 1);
+
+        tracker.setView(960, 720, PreviewView.ScaleType.FIT_CENTER, true);
+        final ImageTransform transform = tracker.get();
+        assertTrue(transform.matchesImage(640, 480, 0, new Rect(80, 60, 560, 420)));
+        assertTrue(transform.isFlipped());
+        assertEquals(2f, transform.getScale(), 1e-3f);
+        assertEquals(960f, transform.toViewX(80), 1e-3f);
+    }
+}
@@ -0,0 +1,82 @@
+package github.jomutils.android.barcode.gs1;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class Gs1ElementsTest {
+
+    private static final String GS = "\u001D";
+
+    @Test
+    public void parsesRawPayloadWithSeparators() {
+        final Gs1Elements elements = Gs1Elements.of(
+                "]C1" + "0109501101530003" + "17250131" + "10AB-123" + GS + "21SER9" + GS + "3103001250");
+
+        assertTrue(elements.isValid());
+        assertEquals(5, elements.size());
+        assertEquals(9501101530003L, elements.getGtin());
+        assertEquals("09501101530003", elements.getGtinString());
+        assertEquals(250131, elements.getExpiryDate());
+        assertEquals("AB-123", elements.getBatchLot());
+        assertEquals("SER9", elements.getSerial());
+        assertEquals(1.25, elements.getNetWeightKg(), 1e-9);
+        assertTrue(Double.isNaN(elements.getNetWeightLb()));
+    }
+
+    @Test
+    public void parsesLeadingFnc1AndBracketedForm() {
+        final Gs1Elements raw = Gs1Elements.of(GS + "00012345678901234567" + "3202000150");
+        assertTrue(raw.isValid());
+        assertEquals("012345678901234567", raw.getSscc());
+        assertEquals(1.5, raw.getNetWeightLb(), 1e-9);
+
+        final Gs1Elements bracketed = Gs1Elements.of("(01)09501101530003(15)251200(10)LOT 7");
+        assertTrue(bracketed.isValid());
+        assertEquals(9501101530003L, bracketed.getGtin());
+        assertEquals(251200, bracketed.getBestBeforeDate());
+        assertEquals("LOT 7", bracketed.getBatchLot());
+    }
+
+    @Test
+    public void rejectsNonGs1Payloads() {
+        assertFalse(Gs1Elements.of(null).isValid());
+        assertFalse(Gs1Elements.of("").isValid());
+        assertFalse(Gs1Elements.of("https://example.com").isValid());
+        assertFalse(Gs1Elements.of("5901234123457").isValid());
+        // Fixed length AI (01) cut short.
+        assertFalse(Gs1Elements.of("010950110153").isValid());
+        assertFalse(Gs1Elements.of("(01)0950110153").isValid());
+    }
+
+    @Test
+    public void rejectsLettersInFixedLengthValues() {
+        assertFalse(Gs1Elements.of("(01)0950110153000X").isValid());
+        assertFalse(Gs1Elements.of("(01)09501101530003(17)25O131").isValid());
+        assertFalse(Gs1Elements.of("(3103)00125A").isValid());
+        assertFalse(Gs1Elements.of("0109501101530003" + "1725O131").isValid());
+    }
+
+    @Test
+    public void absentFieldsReturnSentinels() {
+        final Gs1Elements elements = Gs1Elements.of("10ABC");
+        assertTrue(elements.isValid());
+        assertEquals(-1, elements.getGtin());
+        assertEquals(-1, elements.getExpiryDate());
+        assertNull(elements.getSerial());
+    }
+
+    @Test
+    public void reusedInstanceReplacesPreviousContent() {
+        final Gs1Elements elements = new Gs1Elements();
+        assertTrue(elements.parse("0109501101530003" + "21A"));
+        assertEquals("A", elements.getSerial());
+
+        assertFalse(elements.parse("not gs1"));
+        assertEquals(0, elements.size());
+        assertNull(elements.getSerial());
+    }
+}
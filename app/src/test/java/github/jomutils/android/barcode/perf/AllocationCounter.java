@@ -0,0 +1,56 @@
+package github.jomutils.android.barcode.perf;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Bytes allocated by the current thread, from the HotSpot extension of {@link ThreadMXBean}. The
+ * cost of reading the counter itself is measured once and subtracted.
+ */
+final class AllocationCounter {
+
+    private static final int CALIBRATION_ROUNDS = 1000;
+
+    private final com.sun.management.ThreadMXBean bean;
+    private final long threadId;
+    private final long overhead;
+
+    private AllocationCounter(com.sun.management.ThreadMXBean bean) {
+        this.bean = bean;
+        threadId = Thread.currentThread().getId();
+        long overhead = Long.MAX_VALUE;
+        for (int i = 0; i < CALIBRATION_ROUNDS; i++) {
+            final long before = bean.getThreadAllocatedBytes(threadId);
+            overhead = Math.min(overhead, bean.getThreadAllocatedBytes(threadId) - before);
+        }
+        this.overhead = overhead;
+    }
+
+    /**
+     * Returns a counter for the calling thread, or {@code null} when the JVM does not count
+     * allocations.
+     */
+    static AllocationCounter forCurrentThread() {
+        final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+        final com.sun.management.ThreadMXBean hotSpotBean = (com.sun.management.ThreadMXBean) bean;
+        if (!hotSpotBean.isThreadAllocatedMemorySupported()) {
+            return null;
+        }
+        hotSpotBean.setThreadAllocatedMemoryEnabled(true);
+        return new AllocationCounter(hotSpotBean);
+    }
+
+    long get() {
+        return bean.getThreadAllocatedBytes(threadId);
+    }
+
+    /**
+     * Returns the bytes allocated since {@code before} was read with {@link #get()}.
+     */
+    long since(long before) {
+        return Math.max(0, get() - before - overhead);
+    }
+}
@@ -0,0 +1,182 @@
+package github.jomutils.android.barcode.perf;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * A deliberately plain EAN-13 reader standing in for the ML Kit decoder, which does not run on the
+ * JVM: a few horizontal scanlines through the region of interest, binarized at a fixed threshold.
+ * <p>
+ * Clean and moderately rotated, tilted or noisy labels read; glare and faded print usually need
+ * the {@link github.jomutils.android.barcode.analysis.RetryPreprocessor} first, so the detection
+ * rate of the pipeline follows the preprocessing as well as the gates.
+ */
+final class Ean13ScanlineDecoder {
+
+    private static final int THRESHOLD = 128;
+    private static final int SCANLINES = 9;
+    /**
+     * Runs of guard, 6 digits, middle guard, 6 digits and end guard.
+     */
+    private static final int SYMBOL_RUNS = 3 + 6 * 4 + 5 + 6 * 4 + 3;
+    private static final int SYMBOL_MODULES = 95;
+    /**
+     * Largest summed deviation of the 4 runs of a digit from its pattern, in modules.
+     */
+    private static final float MAX_DIGIT_VARIANCE = 1.5f;
+
+    /**
+     * Run widths of the L patterns, starting with a space; R patterns have the same widths
+     * starting with a bar, G patterns are them reversed.
+     */
+    private static final int[][] DIGIT_RUNS = {
+            {3, 2, 1, 1}, {2, 2, 2, 1}, {2, 1, 2, 2}, {1, 4, 1, 1}, {1, 1, 3, 2},
+            {1, 2, 3, 1}, {1, 1, 1, 4}, {1, 3, 1, 2}, {1, 2, 1, 3}, {3, 1, 1, 2},
+    };
+    /**
+     * Parity of the 6 left digits, set bit meaning G, first digit MSB, by leading digit.
+     */
+    private static final int[] FIRST_DIGIT_PARITY = {
+            0b000000, 0b001011, 0b001101, 0b001110, 0b010011,
+            0b011001, 0b011100, 0b010101, 0b010110, 0b011010,
+    };
+
+    private int[] runs = new int[0];
+    private final char[] digits = new char[13];
+
+    /**
+     * Returns the 13 digits of the first EAN-13 symbol found in the rectangle, or {@code null}.
+     */
+    @Nullable
+    String decode(@NonNull byte[] luma, int stride, int left, int top, int right, int bottom) {
+        if (runs.length < right - left + 1) {
+            runs = new int[right - left + 1];
+        }
+        // Spread over the middle half, center first.
+        final int step = (bottom - top) / (4 * (SCANLINES / 2));
+        for (int line = 0; line < SCANLINES; line++) {
+            final int offset = (line + 1) / 2 * (line % 2 == 0 ? 1 : -1);
+            final int y = (top + bottom) / 2 + offset * step;
+            final int count = buildRuns(luma, y * stride, left, right);
+            for (int start = 0; start + SYMBOL_RUNS <= count; start += 2) {
+                if (decodeAt(start)) {
+                    return new String(digits);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Fills {@link #runs} with the widths of alternating bars and spaces, starting with the first
+     * bar of the row.
+     */
+    private int buildRuns(byte[] luma, int rowOffset, int left, int right) {
+        int x = left;
+        while (x < right && (luma[rowOffset + x] & 0xFF) >= THRESHOLD) {
+            x++;
+        }
+        int count = 0;
+        boolean dark = true;
+        int width = 0;
+        for (; x < right; x++) {
+            if ((luma[rowOffset + x] & 0xFF) < THRESHOLD == dark) {
+                width++;
+            } else {
+                runs[count++] = width;
+                dark = !dark;
+                width = 1;
+            }
+        }
+        if (width > 0) {
+            runs[count++] = width;
+        }
+        return count;
+    }
+
+    private boolean decodeAt(int start) {
+        int total = 0;
+        for (int i = start; i < start + SYMBOL_RUNS; i++) {
+            total += runs[i];
+        }
+        final float module = (float) total / SYMBOL_MODULES;
+        // The quiet zone before the start guard.
+        if (start > 0 && runs[start - 1] < module * 5) {
+            return false;
+        }
+        if (!isGuard(start, 3, module) || !isGuard(start + 3 + 24, 5, module)
+                || !isGuard(start + SYMBOL_RUNS - 3, 3, module)) {
+            return false;
+        }
+
+        int parity = 0;
+        for (int i = 0; i < 6; i++) {
+            final int digit = matchDigit(start + 3 + i * 4, true);
+            if (digit < 0) {
+                return false;
+            }
+            parity = parity << 1 | (digit >= 10 ? 1 : 0);
+            digits[i + 1] = (char) ('0' + digit % 10);
+        }
+        for (int i = 0; i < 6; i++) {
+            final int digit = matchDigit(start + 3 + 24 + 5 + i * 4, false);
+            if (digit < 0) {
+                return false;
+            }
+            digits[i + 7] = (char) ('0' + digit);
+        }
+
+        digits[0] = 0;
+        for (int first = 0; first < FIRST_DIGIT_PARITY.length; first++) {
+            if (FIRST_DIGIT_PARITY[first] == parity) {
+                digits[0] = (char) ('0' + first);
+            }
+        }
+        return digits[0] != 0 && hasValidCheckDigit();
+    }
+
+    private boolean isGuard(int start, int length, float module) {
+        for (int i = start; i < start + length; i++) {
+            if (runs[i] > module * 2) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the digit whose pattern the 4 runs at {@code start} match best, plus 10 when it is a
+     * G pattern, or -1.
+     */
+    private int matchDigit(int start, boolean allowG) {
+        final float unit = (runs[start] + runs[start + 1] + runs[start + 2] + runs[start + 3]) / 7f;
+        int best = -1;
+        float bestVariance = MAX_DIGIT_VARIANCE;
+        for (int digit = 0; digit < DIGIT_RUNS.length; digit++) {
+            final int[] pattern = DIGIT_RUNS[digit];
+            float variance = 0;
+            float reversedVariance = 0;
+            for (int i = 0; i < 4; i++) {
+                variance += Math.abs(runs[start + i] / unit - pattern[i]);
+                reversedVariance += Math.abs(runs[start + i] / unit - pattern[3 - i]);
+            }
+            if (variance < bestVariance) {
+                bestVariance = variance;
+                best = digit;
+            }
+            if (allowG && reversedVariance < bestVariance) {
+                bestVariance = reversedVariance;
+                best = digit + 10;
+            }
+        }
+        return best;
+    }
+
+    private boolean hasValidCheckDigit() {
+        int sum = 0;
+        for (int i = 0; i < 12; i++) {
+            sum += (digits[i] - '0') * (i % 2 == 0 ? 1 : 3);
+        }
+        return (10 - sum % 10) % 10 == digits[12] - '0';
+    }
+}
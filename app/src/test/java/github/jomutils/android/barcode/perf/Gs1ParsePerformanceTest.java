@@ -0,0 +1,61 @@
+package github.jomutils.android.barcode.perf;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import github.jomutils.android.barcode.gs1.Gs1Elements;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Parses typical GS1 payloads, raw and bracketed, into one reused {@link Gs1Elements} and holds
+ * parse throughput and allocations to {@code budgets.properties}.
+ */
+public class Gs1ParsePerformanceTest {
+
+    private static final String[] PAYLOADS = {
+            "]C1010950110153000317250101" + "10AB-123\u001D21SN000042",
+            "(01)09501101530003(17)250101(10)AB-123(21)SN000042",
+            "]d2" + "00395011010000000017" + "3103001250" + "37" + "24",
+            "(01)04006381333931(15)231130(3202)000350(10)LOT-2021-0457",
+    };
+    private static final int WARM_UP_PARSES = 2_000_000;
+    private static final int MEASURED_PARSES = 5_000_000;
+
+    @Test
+    public void parseStaysWithinBudgets() throws IOException {
+        final Gs1Elements elements = new Gs1Elements();
+        // Also sizes the instance for the longest payload.
+        int valid = parse(elements, WARM_UP_PARSES);
+        assertEquals(WARM_UP_PARSES, valid);
+
+        final AllocationCounter allocationCounter = AllocationCounter.forCurrentThread();
+        final long allocatedBefore = allocationCounter != null ? allocationCounter.get() : 0;
+        final long startNanos = System.nanoTime();
+        valid = parse(elements, MEASURED_PARSES);
+        final long elapsedNanos = System.nanoTime() - startNanos;
+        final long allocated = allocationCounter != null ? allocationCounter.since(allocatedBefore) : 0;
+        assertEquals(MEASURED_PARSES, valid);
+
+        final PerformanceBudgets budgets = PerformanceBudgets.load();
+        budgets.checkTiming("gs1.parse.perSecond.min", MEASURED_PARSES * 1e9 / elapsedNanos);
+        final String allocationKey = "gs1.parse.allocation.bytesPerParse.max";
+        if (allocationCounter != null) {
+            budgets.check(allocationKey, (double) allocated / MEASURED_PARSES);
+        } else {
+            budgets.skip(allocationKey, "not counted by this JVM");
+        }
+        budgets.assertWithinBudgets("GS1 parse: " + MEASURED_PARSES + " parses of " + PAYLOADS.length + " payloads");
+    }
+
+    private static int parse(Gs1Elements elements, int count) {
+        int valid = 0;
+        for (int i = 0; i < count; i++) {
+            if (elements.parse(PAYLOADS[i % PAYLOADS.length])) {
+                valid++;
+            }
+        }
+        return valid;
+    }
+}
@@ -0,0 +1,208 @@
+package github.jomutils.android.barcode.perf;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+
+import static org.junit.Assert.fail;
+
+/**
+ * The checked-in budgets of {@code budgets.properties} next to this class, and the measurements of
+ * one run against them.
+ * <p>
+ * A key ending in {@code .min} is a floor and one ending in {@code .max} a ceiling. A measurement
+ * regresses when it is worse than its budget by more than the tolerance, a fraction of the budget
+ * read from {@code <key>.tolerance} or else from {@code tolerance}.
+ * <p>
+ * Throughput and latency depend on the host, so {@link #checkTiming(String, double)} only lists
+ * them next to their budgets, unless the {@value #ENFORCE_TIMING_PROPERTY} system property is
+ * {@code true}, e.g. on a dedicated benchmark machine:
+ * {@code ./gradlew test -PscanPipeline.enforceTiming=true}.
+ */
+final class PerformanceBudgets {
+
+    static final String ENFORCE_TIMING_PROPERTY = "scanPipeline.enforceTiming";
+
+    private static final String RESOURCE = "budgets.properties";
+    private static final String TOLERANCE = "tolerance";
+    private static final String MIN_SUFFIX = ".min";
+    private static final String MAX_SUFFIX = ".max";
+
+    private static final String STATUS_OK = "ok";
+    private static final String STATUS_REGRESSED = "REGRESSED";
+    private static final String STATUS_SKIPPED = "skipped";
+    private static final String STATUS_REPORTED = "not enforced";
+
+    private final Properties properties;
+    private final List<Row> rows = new ArrayList<>();
+
+    private PerformanceBudgets(Properties properties) {
+        this.properties = properties;
+    }
+
+    @NonNull
+    static PerformanceBudgets load() throws IOException {
+        final Properties properties = new Properties();
+        try (InputStream in = PerformanceBudgets.class.getResourceAsStream(RESOURCE)) {
+            if (in == null) {
+                throw new IOException("Missing " + RESOURCE + " next to " + PerformanceBudgets.class.getName());
+            }
+            properties.load(in);
+        }
+        return new PerformanceBudgets(properties);
+    }
+
+    /**
+     * Compares {@code measured} with the budget under {@code key}, which must exist.
+     */
+    void check(@NonNull String key, double measured) {
+        final boolean floor = key.endsWith(MIN_SUFFIX);
+        if (!floor && !key.endsWith(MAX_SUFFIX)) {
+            throw new IllegalArgumentException("Budget key without " + MIN_SUFFIX + " or " + MAX_SUFFIX + ": " + key);
+        }
+        final double budget = getDouble(key, null);
+        final double tolerance = getDouble(key + "." + TOLERANCE, getDouble(TOLERANCE, null));
+
+        final boolean regressed = floor
+                ? measured < budget * (1 - tolerance)
+                : measured > budget * (1 + tolerance);
+        rows.add(new Row(key, format(budget), format(measured), delta(budget, measured),
+                String.format(Locale.US, "%.0f%%", tolerance * 100), regressed ? STATUS_REGRESSED : STATUS_OK));
+    }
+
+    /**
+     * Same as {@link #check(String, double)} for a host dependent timing, which is only reported
+     * unless {@value #ENFORCE_TIMING_PROPERTY} is set.
+     */
+    void checkTiming(@NonNull String key, double measured) {
+        if (Boolean.getBoolean(ENFORCE_TIMING_PROPERTY)) {
+            check(key, measured);
+        } else {
+            report(key, measured);
+        }
+    }
+
+    /**
+     * Lists {@code measured} next to the budget under {@code key}, which must exist, without
+     * failing.
+     */
+    void report(@NonNull String key, double measured) {
+        final double budget = getDouble(key, null);
+        rows.add(new Row(key, format(budget), format(measured), delta(budget, measured), "", STATUS_REPORTED));
+    }
+
+    /**
+     * Lists {@code key} as not measured in this run, without failing.
+     */
+    void skip(@NonNull String key, @NonNull String reason) {
+        rows.add(new Row(key, format(getDouble(key, null)), reason, "", "", STATUS_SKIPPED));
+    }
+
+    /**
+     * Prints the comparison table and fails with it when any measurement regressed.
+     */
+    void assertWithinBudgets(@NonNull String title) {
+        final String table = toTable(title);
+        System.out.println(table);
+        for (Row row : rows) {
+            if (STATUS_REGRESSED.equals(row.status)) {
+                fail("Performance budget exceeded\n" + table);
+            }
+        }
+    }
+
+    @NonNull
+    String toTable(@NonNull String title) {
+        final String[] header = {"metric", "budget", "measured", "delta", "tolerance", "status"};
+        final int[] widths = new int[header.length];
+        for (int i = 0; i < header.length; i++) {
+            widths[i] = header[i].length();
+        }
+        for (Row row : rows) {
+            final String[] cells = row.cells();
+            for (int i = 0; i < cells.length; i++) {
+                widths[i] = Math.max(widths[i], cells[i].length());
+            }
+        }
+
+        final StringBuilder builder = new StringBuilder(title).append('\n');
+        appendLine(builder, header, widths);
+        final String[] rule = new String[header.length];
+        for (int i = 0; i < rule.length; i++) {
+            rule[i] = repeat('-', widths[i]);
+        }
+        appendLine(builder, rule, widths);
+        for (Row row : rows) {
+            appendLine(builder, row.cells(), widths);
+        }
+        return builder.toString();
+    }
+
+    private static String delta(double budget, double measured) {
+        return budget != 0
+                ? String.format(Locale.US, "%+.1f%%", (measured - budget) * 100 / budget)
+                : "n/a";
+    }
+
+    private double getDouble(String key, Double defaultValue) {
+        final String value = properties.getProperty(key);
+        if (value == null) {
+            if (defaultValue == null) {
+                throw new IllegalStateException("No " + key + " in " + RESOURCE);
+            }
+            return defaultValue;
+        }
+        return Double.parseDouble(value.trim());
+    }
+
+    private static String format(double value) {
+        return value == Math.rint(value) && Math.abs(value) < 1e9
+                ? String.format(Locale.US, "%.0f", value)
+                : String.format(Locale.US, "%.3f", value);
+    }
+
+    private static void appendLine(StringBuilder builder, String[] cells, int[] widths) {
+        for (int i = 0; i < cells.length; i++) {
+            builder.append(cells[i]);
+            if (i < cells.length - 1) {
+                builder.append(repeat(' ', widths[i] - cells[i].length() + 2));
+            }
+        }
+        builder.append('\n');
+    }
+
+    private static String repeat(char c, int count) {
+        final StringBuilder builder = new StringBuilder(count);
+        for (int i = 0; i < count; i++) {
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+
+    private static final class Row {
+        final String key;
+        final String budget;
+        final String measured;
+        final String delta;
+        final String tolerance;
+        final String status;
+
+        Row(String key, String budget, String measured, String delta, String tolerance, String status) {
+            this.key = key;
+            this.budget = budget;
+            this.measured = measured;
+            this.delta = delta;
+            this.tolerance = tolerance;
+            this.status = status;
+        }
+
+        String[] cells() {
+            return new String[]{key, budget, measured, delta, tolerance, status};
+        }
+    }
+}
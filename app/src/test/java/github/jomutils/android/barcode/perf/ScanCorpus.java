@@ -0,0 +1,141 @@
+package github.jomutils.android.barcode.perf;
+
+import androidx.annotation.NonNull;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import github.jomutils.android.barcode.synthetic.RenderOptions;
+import github.jomutils.android.barcode.synthetic.Symbology;
+import github.jomutils.android.barcode.synthetic.SyntheticFrame;
+import github.jomutils.android.barcode.synthetic.SyntheticFrameGenerator;
+
+/**
+ * A replayable scanning session: EAN-13 labels brought one after the other in front of a 30 fps
+ * camera, each under its own conditions.
+ * <p>
+ * Every label is shown for {@link #FRAMES_PER_SCENE} frames, the first {@link #MOVING_FRAMES} of
+ * them blurred while it moves into place, then held still with fresh sensor noise on every frame.
+ * Frames are rendered once and wrapped once, so replaying them allocates nothing.
+ */
+final class ScanCorpus {
+
+    static final int FRAME_WIDTH = 1280;
+    static final int FRAME_HEIGHT = 720;
+    static final int FRAMES_PER_SCENE = 45;
+    static final int MOVING_FRAMES = 3;
+    /**
+     * Distinct noise renders of a held label, cycled.
+     */
+    private static final int STILL_RENDERS = 3;
+    private static final int MOVING_BLUR_RADIUS = 6;
+    private static final float SENSOR_NOISE = 2f;
+
+    private final List<Scene> scenes;
+
+    private ScanCorpus(List<Scene> scenes) {
+        this.scenes = scenes;
+    }
+
+    @NonNull
+    List<Scene> getScenes() {
+        return scenes;
+    }
+
+    int getFrameCount() {
+        return scenes.size() * FRAMES_PER_SCENE;
+    }
+
+    /**
+     * Renders the session, always the same for a given build of the generator.
+     */
+    @NonNull
+    static ScanCorpus generate() {
+        final RenderOptions base = new RenderOptions.Builder()
+                .setFrameSize(FRAME_WIDTH, FRAME_HEIGHT)
+                .setNoiseSigma(SENSOR_NOISE)
+                .build();
+        final RenderOptions[] conditions = {
+                base,
+                base.buildUpon().setRotationDegrees(6).build(),
+                base.buildUpon().setPerspective(0.15f, 0.1f).build(),
+                base.buildUpon().setNoiseSigma(10).build(),
+                base.buildUpon().setContrast(0.4f).build(),
+                base.buildUpon().setGlare(0.7f).build(),
+                base.buildUpon().setBlurRadius(1).setNoiseSigma(4).build(),
+                base.buildUpon().setModuleSize(2f).build(),
+                base.buildUpon().setOffset(0.05f, -0.05f).setRotationDegrees(-4).build(),
+                base.buildUpon().setGlare(0.5f).setContrast(0.6f).build(),
+                base.buildUpon().setBackground(30).setContrast(0.5f).build(),
+                base.buildUpon().setBlurRadius(2).build(),
+        };
+
+        final List<Scene> scenes = new ArrayList<>(conditions.length);
+        for (int i = 0; i < conditions.length; i++) {
+            final String content = String.format(Locale.US, "%012d", 400638100000L + i * 7919L);
+            final RenderOptions still = conditions[i];
+            final SyntheticFrame[] renders = new SyntheticFrame[1 + STILL_RENDERS];
+            renders[0] = SyntheticFrameGenerator.render(Symbology.EAN_13, content, still.buildUpon()
+                    .setBlurRadius(MOVING_BLUR_RADIUS)
+                    .setOffset(still.getOffsetX() - 0.1f, still.getOffsetY())
+                    .build());
+            for (int r = 1; r < renders.length; r++) {
+                renders[r] = SyntheticFrameGenerator.render(Symbology.EAN_13, content,
+                        still.buildUpon().setSeed(i * 100L + r).build());
+            }
+
+            final SyntheticFrame[] frames = new SyntheticFrame[FRAMES_PER_SCENE];
+            for (int f = 0; f < FRAMES_PER_SCENE; f++) {
+                frames[f] = f < MOVING_FRAMES ? renders[0] : renders[1 + (f - MOVING_FRAMES) % STILL_RENDERS];
+            }
+            scenes.add(new Scene(content, frames));
+        }
+        return new ScanCorpus(Collections.unmodifiableList(scenes));
+    }
+
+    /**
+     * One label and the frames showing it.
+     */
+    static final class Scene {
+        private final String content;
+        private final SyntheticFrame[] frames;
+        private final ByteBuffer[] buffers;
+
+        Scene(String content, SyntheticFrame[] frames) {
+            this.content = content;
+            this.frames = frames;
+            buffers = new ByteBuffer[frames.length];
+            for (int i = 0; i < frames.length; i++) {
+                buffers[i] = ByteBuffer.wrap(frames[i].getLuma());
+            }
+        }
+
+        /**
+         * Returns the 12 encoded digits, without the check digit.
+         */
+        @NonNull
+        String getContent() {
+            return content;
+        }
+
+        int getFrameCount() {
+            return frames.length;
+        }
+
+        @NonNull
+        SyntheticFrame getFrame(int index) {
+            return frames[index];
+        }
+
+        /**
+         * Returns the luminance plane of frame {@code index}, wrapped once for all replays.
+         */
+        @NonNull
+        ByteBuffer getBuffer(int index) {
+            return buffers[index];
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package github.jomutils.android.barcode.perf;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Arrays;
+
+import github.jomutils.android.barcode.analysis.FramePipeline;
+import github.jomutils.android.barcode.analysis.FrameRateLimiter;
+import github.jomutils.android.barcode.analysis.FrameStage;
+import github.jomutils.android.barcode.analysis.LumaFrame;
+import github.jomutils.android.barcode.analysis.LuminanceStage;
+import github.jomutils.android.barcode.analysis.RetryPreprocessor;
+import github.jomutils.android.barcode.analysis.RoiResultCache;
+import github.jomutils.android.barcode.analysis.SharpnessGate;
+import github.jomutils.android.barcode.analysis.StaticSceneGate;
+import github.jomutils.android.barcode.power.PowerProfile;
+
+/**
+ * Replays a {@link ScanCorpus} through the {@link FramePipeline} of
+ * {@link github.jomutils.android.barcode.BarcodeImageAnalyzer}, set up like
+ * {@code BarcodeScannerXViewModel} with every optional stage enabled and a power profile applied.
+ * <p>
+ * Each frame goes through the stages in the view model's order, the ROI result cache and the retry
+ * preprocessor, then to an {@link Ean13ScanlineDecoder} in place of ML Kit, and the result is fed
+ * back to the pipeline as the analyzer does. Time and allocations are measured over the pipeline's own code only,
+ * the decoder excluded. Decoding is synchronous, so the limit on decodes in flight never applies.
+ * The camera clock is advanced by {@link SystemClock} at 30 fps, so the frame rate limiter sees
+ * camera time rather than replay time.
+ */
+final class ScanPipelineHarness {
+
+    private static final int CAMERA_FRAMES_PER_SECOND = 30;
+    /**
+     * The default reticle, see {@code PreferenceUtils.getBarcodeReticleWidthFraction}.
+     */
+    private static final float ROI_WIDTH_FRACTION = 0.8f;
+    private static final float ROI_HEIGHT_FRACTION = 0.35f;
+
+    private final StaticSceneGate staticSceneGate = new StaticSceneGate();
+    private final RoiResultCache<String> resultCache = new RoiResultCache<>();
+    private final FramePipeline<String> pipeline;
+    private final Ean13ScanlineDecoder decoder = new Ean13ScanlineDecoder();
+    private final LumaFrame frame = new LumaFrame();
+    @Nullable
+    private final AllocationCounter allocationCounter;
+
+    private final long cameraStartMs;
+    private long sequence;
+
+    ScanPipelineHarness(@NonNull PowerProfile profile) {
+        final FrameRateLimiter frameRateLimiter = new FrameRateLimiter();
+        frameRateLimiter.setMaxFramesPerSecond(profile.getMaxFramesPerSecond());
+        final FrameStage[] stages = {
+                frameRateLimiter,
+                new LuminanceStage(null),
+                staticSceneGate,
+                new SharpnessGate(),
+        };
+        final RetryPreprocessor.Variant[] variants = profile.getRetryVariants();
+        pipeline = new FramePipeline<>(stages,
+                variants.length > 0 ? new RetryPreprocessor(variants) : null, resultCache);
+        allocationCounter = AllocationCounter.forCurrentThread();
+        cameraStartMs = SystemClock.elapsedRealtime() + 1;
+    }
+
+    /**
+     * Whether {@link Pass#getAllocatedBytes()} is measured on this JVM.
+     */
+    boolean isCountingAllocations() {
+        return allocationCounter != null;
+    }
+
+    /**
+     * Replays every scene once, as a new scanning session: the result cache and the static scene
+     * reference start empty, buffers pooled by earlier passes are kept.
+     */
+    @NonNull
+    Pass run(@NonNull ScanCorpus corpus) {
+        resultCache.clear();
+        staticSceneGate.reset();
+
+        final Pass pass = new Pass(corpus.getFrameCount(), corpus.getScenes().size());
+        for (ScanCorpus.Scene scene : corpus.getScenes()) {
+            boolean detected = false;
+            for (int i = 0; i < scene.getFrameCount(); i++) {
+                final String result = runFrame(scene, i, pass);
+                detected |= result != null && result.startsWith(scene.getContent());
+            }
+            if (detected) {
+                pass.detectedScenes++;
+            }
+        }
+        return pass;
+    }
+
+    /**
+     * Runs one frame and returns what it decoded to, from the decoder or the cache.
+     */
+    @Nullable
+    private String runFrame(ScanCorpus.Scene scene, int index, Pass pass) {
+        final long sequence = ++this.sequence;
+        SystemClock.setCurrentTimeMillis(cameraStartMs + sequence * 1000 / CAMERA_FRAMES_PER_SECOND);
+        final int width = ScanCorpus.FRAME_WIDTH;
+        final int height = ScanCorpus.FRAME_HEIGHT;
+
+        // The analyzer thread, up to the decoder.
+        final long allocatedBefore = allocationCounter != null ? allocationCounter.get() : 0;
+        final long startNanos = System.nanoTime();
+        frame.set(scene.getBuffer(index), width, width, height, 0, sequence);
+        frame.setCenteredRoi(ROI_WIDTH_FRACTION, ROI_HEIGHT_FRACTION);
+        final int outcome = pipeline.prepare(frame);
+        final String cached = pipeline.getCachedResult();
+        final byte[] preprocessed = pipeline.getPreprocessed();
+        final long roiHash = pipeline.getRoiHash();
+        long elapsedNanos = System.nanoTime() - startNanos;
+        long allocated = allocationCounter != null ? allocationCounter.since(allocatedBefore) : 0;
+
+        if (outcome == FramePipeline.REJECTED) {
+            pass.addFrame(elapsedNanos, allocated);
+            return null;
+        }
+        pass.admittedFrames++;
+        final String decoded = outcome == FramePipeline.DECODE
+                ? decoder.decode(preprocessed != null ? preprocessed : scene.getFrame(index).getLuma(), width,
+                frame.getRoiLeft(), frame.getRoiTop(), frame.getRoiRight(), frame.getRoiBottom())
+                : null;
+
+        // The decoder's completion, then the listener executor with the result.
+        final long resultAllocatedBefore = allocationCounter != null ? allocationCounter.get() : 0;
+        final long resultStartNanos = System.nanoTime();
+        final String result;
+        if (outcome == FramePipeline.CACHED) {
+            result = cached;
+            pipeline.onCachedFrameDecoded(sequence, 1);
+        } else {
+            if (preprocessed != null) {
+                pipeline.release(preprocessed);
+            }
+            result = decoded;
+            pipeline.onFrameDecoded(sequence, roiHash, decoded, decoded != null ? 1 : 0);
+        }
+        elapsedNanos += System.nanoTime() - resultStartNanos;
+        allocated += allocationCounter != null ? allocationCounter.since(resultAllocatedBefore) : 0;
+        pass.addFrame(elapsedNanos, allocated);
+        return result;
+    }
+
+    /**
+     * What one replay of the corpus cost and found.
+     */
+    static final class Pass {
+        private final long[] frameNanos;
+        private int frames;
+        private long allocatedBytes;
+        private int admittedFrames;
+        private final int scenes;
+        private int detectedScenes;
+
+        Pass(int frameCount, int scenes) {
+            frameNanos = new long[frameCount];
+            this.scenes = scenes;
+        }
+
+        private void addFrame(long nanos, long allocated) {
+            frameNanos[frames++] = nanos;
+            allocatedBytes += allocated;
+        }
+
+        int getFrames() {
+            return frames;
+        }
+
+        int getAdmittedFrames() {
+            return admittedFrames;
+        }
+
+        /**
+         * Returns the pipeline time of every frame, in replay order.
+         */
+        @NonNull
+        long[] getFrameNanos() {
+            return Arrays.copyOf(frameNanos, frames);
+        }
+
+        long getTotalNanos() {
+            long total = 0;
+            for (int i = 0; i < frames; i++) {
+                total += frameNanos[i];
+            }
+            return total;
+        }
+
+        long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+
+        /**
+         * Returns the share of scenes whose label was read from at least one of their frames.
+         */
+        float getDetectionRate() {
+            return (float) detectedScenes / scenes;
+        }
+    }
+}
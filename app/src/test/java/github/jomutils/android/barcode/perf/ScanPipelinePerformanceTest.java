@@ -0,0 +1,121 @@
+package github.jomutils.android.barcode.perf;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Locale;
+
+import github.jomutils.android.barcode.power.PowerProfile;
+import github.jomutils.android.barcode.synthetic.SyntheticFrame;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Replays a generated scanning session through the frame pipeline and holds allocations per frame
+ * and detection rate to {@code budgets.properties}. A regression beyond the tolerance fails the
+ * build; the comparison table is printed either way.
+ * <p>
+ * Throughput and latency are only enforced on request, see {@link PerformanceBudgets}.
+ * <p>
+ * Robolectric supplies the {@link android.os.SystemClock} the frame rate limiter reads.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class ScanPipelinePerformanceTest {
+
+    /**
+     * Passes to let the JIT compile the pipeline and fill the buffer pools, not measured.
+     */
+    private static final int WARM_UP_PASSES = 3;
+    private static final int MEASURED_PASSES = 5;
+
+    private static ScanCorpus corpus;
+
+    private static synchronized ScanCorpus getCorpus() {
+        if (corpus == null) {
+            corpus = ScanCorpus.generate();
+        }
+        return corpus;
+    }
+
+    @Test
+    public void referenceDecoderReadsHeldLabelsOnly() {
+        final ScanCorpus.Scene clean = getCorpus().getScenes().get(0);
+        final Ean13ScanlineDecoder decoder = new Ean13ScanlineDecoder();
+
+        final SyntheticFrame held = clean.getFrame(ScanCorpus.FRAMES_PER_SCENE - 1);
+        final String decoded = decoder.decode(held.getLuma(), held.getWidth(), 0, 0, held.getWidth(), held.getHeight());
+        assertNotNull(decoded);
+        assertEquals(13, decoded.length());
+        assertTrue(decoded.startsWith(clean.getContent()));
+
+        final SyntheticFrame moving = clean.getFrame(0);
+        assertNull(decoder.decode(moving.getLuma(), moving.getWidth(), 0, 0, moving.getWidth(), moving.getHeight()));
+    }
+
+    @Test
+    public void fullProfileStaysWithinBudgets() throws IOException {
+        assertWithinBudgets(PowerProfile.FULL);
+    }
+
+    @Test
+    public void balancedProfileStaysWithinBudgets() throws IOException {
+        assertWithinBudgets(PowerProfile.BALANCED);
+    }
+
+    private static void assertWithinBudgets(PowerProfile profile) throws IOException {
+        final ScanCorpus corpus = getCorpus();
+        final ScanPipelineHarness harness = new ScanPipelineHarness(profile);
+        for (int i = 0; i < WARM_UP_PASSES; i++) {
+            harness.run(corpus);
+        }
+
+        final long[] frameNanos = new long[corpus.getFrameCount() * MEASURED_PASSES];
+        int frames = 0;
+        int admittedFrames = 0;
+        long totalNanos = 0;
+        long allocatedBytes = 0;
+        float detectionRate = 1f;
+        for (int i = 0; i < MEASURED_PASSES; i++) {
+            final ScanPipelineHarness.Pass pass = harness.run(corpus);
+            System.arraycopy(pass.getFrameNanos(), 0, frameNanos, frames, pass.getFrames());
+            frames += pass.getFrames();
+            admittedFrames += pass.getAdmittedFrames();
+            totalNanos += pass.getTotalNanos();
+            allocatedBytes += pass.getAllocatedBytes();
+            detectionRate = Math.min(detectionRate, pass.getDetectionRate());
+        }
+        Arrays.sort(frameNanos, 0, frames);
+
+        final String prefix = profile.name().toLowerCase(Locale.US);
+        final PerformanceBudgets budgets = PerformanceBudgets.load();
+        budgets.checkTiming(prefix + ".throughput.fps.min", frames * 1e9 / totalNanos);
+        budgets.checkTiming(prefix + ".latency.p50.us.max", percentile(frameNanos, frames, 50) / 1e3);
+        budgets.checkTiming(prefix + ".latency.p95.us.max", percentile(frameNanos, frames, 95) / 1e3);
+        final String allocationKey = prefix + ".allocation.bytesPerFrame.max";
+        if (harness.isCountingAllocations()) {
+            budgets.check(allocationKey, (double) allocatedBytes / frames);
+        } else {
+            budgets.skip(allocationKey, "not counted by this JVM");
+        }
+        budgets.check(prefix + ".detection.rate.min", detectionRate);
+        budgets.assertWithinBudgets(String.format(Locale.US,
+                "Scan pipeline, %s profile: %d frames, %d past the stages, %d scenes per pass",
+                profile, frames, admittedFrames, corpus.getScenes().size()));
+    }
+
+    /**
+     * Returns the nearest-rank percentile of the first {@code count} sorted values.
+     */
+    private static long percentile(long[] sorted, int count, int percent) {
+        final int rank = (int) Math.ceil(percent / 100.0 * count);
+        return sorted[Math.max(0, rank - 1)];
+    }
+}
@@ -0,0 +1,53 @@
+package github.jomutils.android.barcode.stream;
+
+import android.os.Looper;
+
+import androidx.lifecycle.Observer;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Robolectric supplies the main looper events are set on and observer failures rethrown on.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class ScanEventLiveDataTest {
+
+    @Test
+    public void throwingObserverCrashesWithoutDetachingTheLiveData() {
+        final ScanEventPublisher<Integer> publisher = new ScanEventPublisher<>();
+        final ScanEventLiveData<Integer> liveData = new ScanEventLiveData<>(publisher);
+        final Observer<Integer> throwing = value -> {
+            throw new IllegalStateException("observer failed on " + value);
+        };
+        liveData.observeForever(throwing);
+
+        publisher.publish(1);
+        try {
+            shadowOf(Looper.getMainLooper()).idle();
+            fail("The observer's exception was swallowed");
+        } catch (RuntimeException e) {
+            assertEquals("observer failed on 1", rootCause(e).getMessage());
+        }
+
+        // Still subscribed, so the value keeps following the publisher.
+        assertEquals(1, publisher.getSubscriberCount());
+        liveData.removeObserver(throwing);
+        publisher.publish(2);
+        assertEquals(Integer.valueOf(2), liveData.getValue());
+    }
+
+    private static Throwable rootCause(Throwable throwable) {
+        while (throwable.getCause() != null) {
+            throwable = throwable.getCause();
+        }
+        return throwable;
+    }
+}
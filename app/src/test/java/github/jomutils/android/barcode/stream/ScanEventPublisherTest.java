@@ -0,0 +1,193 @@
+package github.jomutils.android.barcode.stream;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Robolectric supplies the {@link android.util.Log} a throwing subscriber is reported to.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class ScanEventPublisherTest {
+
+    private static final Executor DIRECT = Runnable::run;
+
+    @Test
+    public void buffersUntilRequested() {
+        final ScanEventPublisher<Integer> publisher = new ScanEventPublisher<>();
+        final RecordingSubscriber subscriber = new RecordingSubscriber(0);
+        publisher.subscribe(subscriber, DIRECT, BackpressureStrategy.BUFFER, 4);
+
+        publisher.publish(1);
+        publisher.publish(2);
+        publisher.publish(3);
+        assertTrue(subscriber.events.isEmpty());
+
+        subscriber.subscription.request(2);
+        assertEquals(Arrays.asList(1, 2), subscriber.events);
+        subscriber.subscription.request(5);
+        assertEquals(Arrays.asList(1, 2, 3), subscriber.events);
+    }
+
+    @Test
+    public void bufferOverflowFailsTheSubscription() {
+        final ScanEventPublisher<Integer> publisher = new ScanEventPublisher<>();
+        final RecordingSubscriber subscriber = new RecordingSubscriber(0);
+        publisher.subscribe(subscriber, DIRECT, BackpressureStrategy.BUFFER, 2);
+
+        publisher.publish(1);
+        publisher.publish(2);
+        publisher.publish(3);
+
+        assertTrue(subscriber.error instanceof MissingBackpressureException);
+        assertEquals(0, publisher.getSubscriberCount());
+    }
+
+    @Test
+    public void dropOldestKeepsTheNewestEvents() {
+        final ScanEventPublisher<Integer> publisher = new ScanEventPublisher<>();
+        final RecordingSubscriber subscriber = new RecordingSubscriber(0);
+        publisher.subscribe(subscriber, DIRECT, BackpressureStrategy.DROP_OLDEST, 2);
+
+        for (int i = 1; i <= 5; i++) {
+            publisher.publish(i);
+        }
+        subscriber.subscription.request(10);
+
+        assertEquals(Arrays.asList(4, 5), subscriber.events);
+    }
+
+    @Test
+    public void latestKeepsOnlyTheLastEvent() {
+        final ScanEventPublisher<Integer> publisher = new ScanEventPublisher<>();
+        final RecordingSubscriber subscriber = new RecordingSubscriber(0);
+        publisher.subscribe(subscriber, DIRECT, BackpressureStrategy.LATEST);
+
+        for (int i = 1; i <= 5; i++) {
+            publisher.publish(i);
+        }
+        subscriber.subscription.request(10);
+
+        assertEquals(Arrays.asList(5), subscriber.events);
+    }
+
+    @Test
+    public void completesAfterQueuedEvents() {
+        final ScanEventPublisher<Integer> publisher = new ScanEventPublisher<>();
+        final RecordingSubscriber subscriber = new RecordingSubscriber(0);
+        publisher.subscribe(subscriber, DIRECT, BackpressureStrategy.BUFFER);
+
+        publisher.publish(1);
+        publisher.complete();
+        assertFalse(subscriber.completed);
+
+        subscriber.subscription.request(1);
+        assertEquals(Arrays.asList(1), subscriber.events);
+        assertTrue(subscriber.completed);
+    }
+
+    @Test
+    public void subscriberAfterCompleteIsCompletedRightAway() {
+        final ScanEventPublisher<Integer> publisher = new ScanEventPublisher<>();
+        publisher.complete();
+        final RecordingSubscriber subscriber = new RecordingSubscriber(1);
+        publisher.subscribe(subscriber);
+
+        assertTrue(subscriber.completed);
+    }
+
+    @Test
+    public void nonPositiveRequestFails() {
+        final ScanEventPublisher<Integer> publisher = new ScanEventPublisher<>();
+        final RecordingSubscriber subscriber = new RecordingSubscriber(0);
+        publisher.subscribe(subscriber);
+
+        subscriber.subscription.request(0);
+
+        assertTrue(subscriber.error instanceof IllegalArgumentException);
+    }
+
+    @Test
+    public void cancelStopsDelivery() {
+        final ScanEventPublisher<Integer> publisher = new ScanEventPublisher<>();
+        final RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE);
+        publisher.subscribe(subscriber);
+
+        publisher.publish(1);
+        subscriber.subscription.cancel();
+        publisher.publish(2);
+
+        assertEquals(Arrays.asList(1), subscriber.events);
+        assertEquals(0, publisher.getSubscriberCount());
+    }
+
+    @Test
+    public void throwingSubscriberIsCancelledWithoutReachingThePublisher() {
+        final ScanEventPublisher<Integer> publisher = new ScanEventPublisher<>();
+        final RecordingSubscriber healthy = new RecordingSubscriber(Long.MAX_VALUE);
+        final RecordingSubscriber throwing = new RecordingSubscriber(Long.MAX_VALUE) {
+            @Override
+            public void onNext(Integer event) {
+                super.onNext(event);
+                throw new IllegalStateException("onNext " + event);
+            }
+        };
+        publisher.subscribe(throwing, DIRECT, BackpressureStrategy.BUFFER);
+        publisher.subscribe(healthy, DIRECT, BackpressureStrategy.BUFFER);
+
+        publisher.publish(1);
+        publisher.publish(2);
+
+        assertEquals(Arrays.asList(1), throwing.events);
+        assertEquals(Arrays.asList(1, 2), healthy.events);
+        assertEquals(1, publisher.getSubscriberCount());
+    }
+
+    private static class RecordingSubscriber implements Subscriber<Integer> {
+        final List<Integer> events = new ArrayList<>();
+        final long initialRequest;
+        Subscription subscription;
+        Throwable error;
+        boolean completed;
+
+        RecordingSubscriber(long initialRequest) {
+            this.initialRequest = initialRequest;
+        }
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            this.subscription = subscription;
+            if (initialRequest > 0) {
+                subscription.request(initialRequest);
+            }
+        }
+
+        @Override
+        public void onNext(Integer event) {
+            events.add(event);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package github.jomutils.android.barcode.synthetic;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SyntheticFrameGeneratorTest {
+
+    private static String bars(boolean[] modules, int from, int to) {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = from; i < to; i++) {
+            builder.append(modules[i] ? '1' : '0');
+        }
+        return builder.toString();
+    }
+
+    @Test
+    public void ean13AppendsTheCheckDigit() {
+        assertEquals("4006381333931", LinearEncoder.appendCheckDigit("400638133393"));
+
+        final boolean[] modules = LinearEncoder.encodeEan13("400638133393");
+        assertEquals(95, modules.length);
+        assertEquals("101", bars(modules, 0, 3));
+        assertEquals("01010", bars(modules, 45, 50));
+        assertEquals("101", bars(modules, 92, 95));
+        // Last digit 1 in the R set.
+        assertEquals("1100110", bars(modules, 85, 92));
+    }
+
+    @Test
+    public void upcAIsEan13WithALeadingZero() {
+        assertArrayEquals(LinearEncoder.encodeEan13("003600029145"), LinearEncoder.encodeUpcA("03600029145"));
+    }
+
+    @Test
+    public void code128PatternsAreWellFormed() {
+        final Set<String> seen = new HashSet<>();
+        for (int[] pattern : LinearEncoder.CODE_128_PATTERNS) {
+            int modules = 0;
+            int barModules = 0;
+            for (int i = 0; i < pattern.length; i++) {
+                modules += pattern[i];
+                barModules += i % 2 == 0 ? pattern[i] : 0;
+            }
+            assertEquals(11, modules);
+            assertEquals(0, barModules % 2);
+            assertTrue(seen.add(Arrays.toString(pattern)));
+        }
+        assertEquals(106, seen.size());
+    }
+
+    @Test
+    public void qrErrorCorrectionMatchesTheSpecificationExample() {
+        // ISO/IEC 18004 Annex I, "01234567" as 1-M.
+        final int[] data = {16, 32, 12, 86, 97, 128, 236, 17, 236, 17, 236, 17, 236, 17, 236, 17};
+        assertArrayEquals(new int[]{165, 36, 212, 193, 237, 54, 199, 135, 44, 85},
+                ReedSolomon.QR_CODE.encode(data, 0, data.length, 10));
+    }
+
+    @Test
+    public void qrFormatAndVersionInformation() {
+        assertEquals(0b111011111000100, QrEncoder.getFormatBits(QrEncoder.ErrorCorrection.L, 0));
+        assertEquals(0b101010000010010, QrEncoder.getFormatBits(QrEncoder.ErrorCorrection.M, 0));
+        assertEquals(0x07C94, QrEncoder.getVersionBits(7));
+    }
+
+    @Test
+    public void qrCodewordsFillEveryVersion() {
+        for (QrEncoder.ErrorCorrection level : QrEncoder.ErrorCorrection.values()) {
+            for (int version = 1; version <= QrEncoder.MAX_VERSION; version++) {
+                // The longest content of that version.
+                final int length = QrEncoder.getDataCodewords(version, level) - (version < 10 ? 2 : 3);
+                final char[] content = new char[length];
+                Arrays.fill(content, 'x');
+                final Symbol symbol = QrEncoder.encode(new String(content), level);
+                assertEquals(QrEncoder.getSize(version), symbol.getWidth());
+            }
+        }
+    }
+
+    @Test
+    public void dataMatrixMatchesTheSpecificationExample() {
+        // ISO/IEC 16022 Annex O, "123456" in 10x10.
+        final int[] data = DataMatrixEncoder.encodeAscii("123456".getBytes());
+        assertArrayEquals(new int[]{142, 164, 186}, data);
+        assertArrayEquals(new int[]{142, 164, 186, 114, 25, 5, 88, 102},
+                DataMatrixEncoder.getCodewords(data, 3, 5));
+        assertEquals(10, DataMatrixEncoder.encode("123456").getWidth());
+    }
+
+    @Test
+    public void dataMatrixPlacesEveryCodewordOfEverySize() {
+        final StringBuilder content = new StringBuilder();
+        int lastSize = 0;
+        for (int i = 0; i < 174; i++) {
+            final Symbol symbol = DataMatrixEncoder.encode(content.toString());
+            assertTrue(symbol.getWidth() >= lastSize);
+            lastSize = symbol.getWidth();
+            content.append('a');
+        }
+        assertEquals(48, lastSize);
+    }
+
+    @Test
+    public void rendersEverySymbology() {
+        final RenderOptions options = new RenderOptions.Builder().setFrameSize(640, 480).setModuleSize(2f).build();
+        final String[] contents = {"400638133393", "03600029145", "Pallet-0042", "ABC-123", "1234567890", "https://example.com/p/42", "LOT 7781"};
+        final Symbology[] symbologies = Symbology.values();
+        for (int i = 0; i < symbologies.length; i++) {
+            final SyntheticFrame frame = SyntheticFrameGenerator.render(symbologies[i], contents[i], options);
+            assertEquals(640 * 480, frame.getLuma().length);
+            assertEquals(640 * 480 * 3 / 2, frame.toNv21().length);
+
+            // Ink and paper both appear around the center.
+            final byte[] luma = frame.getLuma();
+            int darkest = 255;
+            int brightest = 0;
+            for (int y = 230; y < 250; y++) {
+                for (int x = 300; x < 340; x++) {
+                    darkest = Math.min(darkest, luma[y * 640 + x] & 0xFF);
+                    brightest = Math.max(brightest, luma[y * 640 + x] & 0xFF);
+                }
+            }
+            assertEquals(symbologies[i].toString(), 28, darkest);
+            assertEquals(symbologies[i].toString(), 228, brightest);
+        }
+    }
+
+    @Test
+    public void cornersFollowRotation() {
+        final RenderOptions options = new RenderOptions.Builder().setFrameSize(400, 400).setModuleSize(4f).build();
+        final float[] upright = SyntheticFrameGenerator.render(Symbology.QR_CODE, "hello", options).getCorners();
+        // 21 modules of 4 px around the center.
+        assertArrayEquals(new float[]{158, 158, 242, 158, 242, 242, 158, 242}, upright, 0.01f);
+
+        final float[] rotated = SyntheticFrameGenerator.render(Symbology.QR_CODE, "hello",
+                options.buildUpon().setRotationDegrees(90).build()).getCorners();
+        // The top-left corner turns to the top right.
+        assertEquals(242, rotated[0], 0.01f);
+        assertEquals(158, rotated[1], 0.01f);
+    }
+
+    @Test
+    public void sameSeedRendersTheSameFrame() {
+        final RenderOptions options = new RenderOptions.Builder()
+                .setFrameSize(320, 240)
+                .setRotationDegrees(12)
+                .setPerspective(0.1f, 0.05f)
+                .setBlurRadius(1)
+                .setNoiseSigma(6)
+                .setGlare(0.4f)
+                .setContrast(0.6f)
+                .setSeed(7)
+                .build();
+
+        final byte[] first = SyntheticFrameGenerator.render(Symbology.CODE_128, "12345678", options).getLuma();
+        final byte[] second = SyntheticFrameGenerator.render(Symbology.CODE_128, "12345678", options).getLuma();
+        final byte[] otherSeed = SyntheticFrameGenerator.render(Symbology.CODE_128, "12345678",
+                options.buildUpon().setSeed(8).build()).getLuma();
+
+        assertArrayEquals(first, second);
+        assertFalse(Arrays.equals(first, otherSeed));
+    }
+}